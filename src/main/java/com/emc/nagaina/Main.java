@@ -13,11 +13,6 @@ import static com.emc.nagaina.ui.config.Config.ItemConfig;
 import static com.emc.nagaina.ui.config.Config.StorageConfig;
 import static com.emc.nagaina.ui.config.Config.TestConfig.StepConfig;
 import com.emc.nagaina.ui.config.Config.ItemConfig.DataConfig.ContentConfig;
-import com.emc.nagaina.ui.config.Config.ItemConfig.NamingConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.FailConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.NetConfig;
 import com.emc.nagaina.ui.config.reader.jackson.ConfigParser;
 
 import org.apache.logging.log4j.Level;
@@ -61,12 +56,7 @@ public class Main {
 		Loggers.MSG.info("Configuration loaded");
 
 		final StorageConfig storageConfig = config.getStorageConfig();
-		final MockConfig mockConfig = storageConfig.getMockConfig();
-		final NetConfig netConfig = storageConfig.getNetConfig();
-		final ContainerConfig containerConfig = mockConfig.getContainerConfig();
-		final FailConfig failConfig = mockConfig.getFailConfig();
 		final ItemConfig itemConfig = config.getItemConfig();
-		final NamingConfig namingConfig = itemConfig.getNamingConfig();
 		final ContentConfig contentConfig = itemConfig.getDataConfig().getContentConfig();
 		final DataInput contentSrc = DataInput.getInstance(
 			contentConfig.getFile(), contentConfig.getSeed(), contentConfig.getRingConfig().getSize(),
@@ -74,10 +64,7 @@ public class Main {
 		);
 
 		final StorageMockFactory storageMockFactory = new StorageMockFactory(
-			itemConfig.getInputConfig().getFile(), mockConfig.getCapacity(), containerConfig.getCapacity(),
-			containerConfig.getCountLimit(), (int) stepConfig.getMetricsConfig().getPeriod(), failConfig.getConnections(),
-			failConfig.getResponses(), contentSrc, netConfig.getNodeConfig().getPort(), netConfig.getSsl(),
-			(float) stepConfig.getLimitConfig().getRate(), namingConfig.getPrefix(), namingConfig.getRadix()
+			itemConfig, storageConfig, stepConfig, contentSrc
 		);
 		if(storageConfig.getMockConfig().getNode()) {
 			try(final Daemon storageNodeMock = storageMockFactory.newStorageNodeMock()) {
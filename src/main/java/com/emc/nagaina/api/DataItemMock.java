@@ -17,4 +17,15 @@ extends DataItem {
 
 	void append(final long size);
 
+	/**
+	 @return the modified ranges mask packed into the single value, the range count never exceeds 64
+	 */
+	long getModifiedRangesMask();
+
+	/**
+	 @return the object's logical size, which is held in memory, so no I/O is involved
+	 */
+	@Override
+	long size();
+
 }
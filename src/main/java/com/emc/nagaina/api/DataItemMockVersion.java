@@ -0,0 +1,31 @@
+package com.emc.nagaina.api;
+
+/**
+ Created by agent on 17.10.26.
+ The object version listing entry. The version 0 means the object written while the versioning was
+ disabled.
+ */
+public final class DataItemMockVersion<T extends DataItemMock> {
+
+	private final T item;
+	private final long version;
+	private final boolean latest;
+
+	public DataItemMockVersion(final T item, final long version, final boolean latest) {
+		this.item = item;
+		this.version = version;
+		this.latest = latest;
+	}
+
+	public final T getItem() {
+		return item;
+	}
+
+	public final long getVersion() {
+		return version;
+	}
+
+	public final boolean isLatest() {
+		return latest;
+	}
+}
@@ -11,13 +11,64 @@ import java.util.Collection;
 public interface ObjectContainerMock<T extends DataItemMock>
 extends Closeable, Listable<T> {
 
+	enum Type {LRU, CONCURRENT, COMPACT, OFFHEAP}
+
+	/**
+	 The policy choosing the object to evict when the container's capacity is exceeded. NONE means
+	 the new objects are rejected instead.
+	 */
+	enum EvictionPolicy {NONE, FIFO, CLOCK, RANDOM, SIZE}
+
 	T get (final String key);
 
 	T put(final String key, final T value);
 
+	/**
+	 Puts the object which size is reserved with reserve(), the reservation becomes the object's
+	 accounting and shouldn't be released
+	 @param countReserved true if the object's count is reserved with reserveCount(), the count
+	 reservation is released if the object replaces the other one
+	 */
+	T putReserved(final String key, final T value, final boolean countReserved);
+
 	T remove(final String key);
 
+	/**
+	 The in place modification (append/update) of the object
+	 */
+	interface Modification<T> {
+		void apply(final T value);
+	}
+
+	/**
+	 Modifies the object got from the container and accounts its size change atomically with the
+	 object's removal or eviction
+	 @return false if the object is not in the container anymore, nothing is modified then
+	 */
+	boolean commit(final String key, final T value, final Modification<T> modification);
+
+	/**
+	 Reserves the size for the object write, the reservation should be released after the write
+	 @return false if the container's or the storage's size limit would be exceeded
+	 */
+	boolean reserve(final long size);
+
+	void release(final long size);
+
+	/**
+	 Reserves the count for the new object
+	 @return false if the storage's capacity would be exceeded
+	 */
+	boolean reserveCount();
+
+	void releaseCount();
+
 	int size();
 
+	/**
+	 @return the logical size of the objects in bytes
+	 */
+	long sizeBytes();
+
 	Collection<T> values();
 }
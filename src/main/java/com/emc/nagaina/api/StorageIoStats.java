@@ -17,6 +17,13 @@ extends Runnable, Closeable {
 	void markWrite(final boolean success, final long size);
 	void markRead(final boolean success, final long size);
 	void markDelete(final boolean success);
+	void markExpire();
+	void markEvict();
+	void markListingCursor(final boolean hit);
+	void markJournalDrop();
+
+	void setBackendSlotCount(final int count);
+	void markBackendIo(final long waitNanos, final long serviceNanos);
 
 	void containerCreate();
 	void containerDelete();
@@ -29,4 +36,19 @@ extends Runnable, Closeable {
 
 	double getDeleteRate();
 
+	/**
+	 @return the average count of the requests waiting for the backend slot
+	 */
+	double getBackendQueueDepth();
+
+	/**
+	 @return the average fraction of the busy backend slots
+	 */
+	double getBackendUtilization();
+
+	/**
+	 @return the average time waited for the backend slot by a request in milliseconds
+	 */
+	double getBackendWaitTimeMillis();
+
 }
@@ -21,12 +21,24 @@ extends Daemon {
 
 	long getSize();
 
+	long getSizeBytes();
+
 	long getCapacity();
 
+	/**
+	 @return the count of the shards in every container, 0 or 1 if the containers are not sharded
+	 */
+	int getShardCount();
+
 	int getPort();
 	
 	boolean sslEnabled();
 
+	/**
+	 @return true if the object content is written by the chunks instead of the zero copy transfer
+	 */
+	boolean chunkedContentEnabled();
+
 	boolean dropConnection();
 
 	boolean missResponse();
@@ -35,6 +47,10 @@ extends Daemon {
 
 	void put(final List<T> dataItems);
 
+	/**
+	 @return the new container, null if the containers count limit is reached and the eviction is
+	 disabled
+	 */
 	ObjectContainerMock<T> createContainer(final String name);
 
 	ObjectContainerMock<T> getContainer(final String name);
@@ -45,7 +61,10 @@ extends Daemon {
 		final String containerName, final String id, final long offset, final long size
 	) throws ContainerMockException;
 
-	void createObject(
+	/**
+	 @return the version of the created object, 0 if the versioning is disabled
+	 */
+	long createObject(
 		final String containerName, final String id, final long offset, final long size
 	) throws ContainerMockNotFoundException, StorageMockCapacityLimitReachedException;
 
@@ -55,10 +74,67 @@ extends Daemon {
 
 	void updateObject(
 		final String containerName, final String id, final long size, final Range byteRange
-	) throws ContainerMockException, ObjectMockNotFoundException;
+	) throws ContainerMockException, ObjectMockNotFoundException,
+		StorageMockCapacityLimitReachedException;
 
 	T listObjects(
 		final String containerName, final String marker,
 		final Collection<T> outputBuffer, final int maxCount
 	) throws ContainerMockException;
+
+	/**
+	 Lists the objects in the lexicographical order of the names, or in the container's order if
+	 neither the prefix nor the delimiter is given
+	 @param prefix the names prefix, may be empty
+	 @param delimiter the names with the delimiter after the prefix are rolled up into the common
+	 prefixes, null means no roll up
+	 @param maxCount the max count of the objects and the common prefixes in total
+	 @return the marker for the next page, null if there are no more objects
+	 */
+	String listObjects(
+		final String containerName, final String prefix, final String delimiter,
+		final String marker, final Collection<T> outputBuffer,
+		final Collection<String> commonPrefixes, final int maxCount
+	) throws ContainerMockException;
+
+	/**
+	 Lists the objects in the lexicographical order of the names continuing from the server side
+	 cursor of the previous page if the continuation token is given. The listing continues by the
+	 lookup of the last listed name if the cursor is expired or evicted. The containers which are
+	 sorted by the name are listed directly without the cursor if neither the prefix nor the
+	 delimiter is given.
+	 @param continuationToken the token returned for the previous page, null for the first page
+	 @param startAfter the name to list after, ignored if the continuation token is given
+	 @return the continuation token for the next page, null if there are no more objects
+	 @throws IllegalArgumentException if the continuation token is not valid
+	 */
+	String listObjectsPage(
+		final String containerName, final String prefix, final String delimiter,
+		final String continuationToken, final String startAfter, final Collection<T> outputBuffer,
+		final Collection<String> commonPrefixes, final int maxCount
+	) throws ContainerMockException, IllegalArgumentException;
+
+	/**
+	 @param version 0 means the object written while the versioning was disabled
+	 @return the object's version (current or not), null if there's no such version
+	 */
+	T getObjectVersion(final String containerName, final String id, final long version)
+	throws ContainerMockException;
+
+	/**
+	 Removes the object's version, the latest of the remaining versions becomes the current one if
+	 the current version is removed
+	 @return false if there was no such version
+	 */
+	boolean deleteObjectVersion(final String containerName, final String id, final long version)
+	throws ContainerMockNotFoundException;
+
+	/**
+	 Lists the versions of the objects, the objects are paged in the same way as by listObjects
+	 @return the last listed object, null if there are no more objects
+	 */
+	T listObjectVersions(
+		final String containerName, final String marker,
+		final Collection<DataItemMockVersion<T>> outputBuffer, final int maxCount
+	) throws ContainerMockException;
 }
@@ -1,12 +1,16 @@
 package com.emc.nagaina.impl.base;
 
 import com.emc.mongoose.api.model.item.BasicDataItem;
+import com.emc.mongoose.api.model.item.DataItem;
 import static com.emc.mongoose.api.model.item.DataItem.getRangeCount;
 import static com.emc.mongoose.api.model.item.DataItem.getRangeOffset;
 import com.emc.mongoose.ui.log.Loggers;
 
 import com.emc.nagaina.api.DataItemMock;
 
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 public class BasicDataItemMock
 extends BasicDataItem
 implements DataItemMock {
@@ -31,39 +35,103 @@ implements DataItemMock {
 		super(name, offset, size, layerNum);
 	}
 	//
+	public BasicDataItemMock(
+		final String name, final long offset, final long size, final int layerNum,
+		final long modifiedRangesMask
+	) {
+		super(name, offset, size, layerNum);
+		if(modifiedRangesMask != 0) {
+			this.modifiedRangesMask.or(BitSet.valueOf(new long[] { modifiedRangesMask }));
+		}
+	}
+	/**
+	 The immutable snapshot of the mutable item's state, replaced using the compare and set. The
+	 base item's fields keep the initial state, so the methods reading the layer, the ranges mask or
+	 the size are overridden to read the snapshot instead.
+	 */
+	private static final class RangesState {
+
+		private final int layer;
+		private final long mask;
+		private final long size;
+
+		private RangesState(final int layer, final long mask, final long size) {
+			this.layer = layer;
+			this.mask = mask;
+			this.size = size;
+		}
+	}
+	//
+	private static final AtomicReferenceFieldUpdater<BasicDataItemMock, RangesState>
+		RANGES_STATE_UPDATER = AtomicReferenceFieldUpdater.newUpdater(
+			BasicDataItemMock.class, RangesState.class, "rangesState"
+		);
+	// null until the first modification, the constructors don't need to initialize it then
+	private volatile RangesState rangesState = null;
+	//
+	private RangesState rangesState() {
+		final RangesState state = rangesState;
+		if(state != null) {
+			return state;
+		}
+		final RangesState initState = new RangesState(
+			layerNum,
+			modifiedRangesMask.isEmpty() ? 0 : modifiedRangesMask.toLongArray()[0],
+			size
+		);
+		return RANGES_STATE_UPDATER.compareAndSet(this, null, initState) ?
+			initState : rangesState;
+	}
+	//
+	private static long cellsMask(final int cellIndexStart, final int cellIndexEnd) {
+		if(cellIndexEnd <= cellIndexStart) {
+			return 0;
+		}
+		final int n = cellIndexEnd - cellIndexStart;
+		return (n < Long.SIZE ? (1L << n) - 1 : -1L) << cellIndexStart;
+	}
+	//
 	@Override
-	public final synchronized void update(final long offset, final long size)
+	public final void update(final long offset, final long size)
 	throws IllegalArgumentException, IllegalStateException {
 		if(size < 0) {
 			throw new IllegalArgumentException("Range size should not be negative");
 		}
 		final int
-			countRangesTotal = getRangeCount(this.size),
 			cellIndexStart = getRangeCount(offset),
 			cellIndexEnd = getRangeCount(offset + size);
 		// check if offset is equal to the cell offset
 		if(offset != getRangeOffset(cellIndexStart)) {
 			return;
 		}
-		// check if the range end is at end of the item either end is equal to a cell end
-		if(offset + size != this.size && offset + size != getRangeOffset(cellIndexEnd)) {
-			return;
-		}
-		for(int i = cellIndexStart; i < cellIndexEnd; i ++) {
-			if(countRangesTotal > 0 && countRangesTotal == modifiedRangesMask.cardinality()) {
-				// mask is full, switch to the next layer
-				layerNum ++;
-				modifiedRangesMask.clear();
+		RangesState prevState, nextState;
+		do {
+			prevState = rangesState();
+			// check if the range end is at end of the item either end is equal to a cell end
+			if(offset + size != prevState.size && offset + size != getRangeOffset(cellIndexEnd)) {
+				return;
 			}
-			if(modifiedRangesMask.get(i)) {
-				throw new IllegalStateException(
-					"Range " + i + " is already updated, but mask is: " +
-					modifiedRangesMask.toString()
-				);
-			} else {
-				modifiedRangesMask.set(i);
+			final int countRangesTotal = getRangeCount(prevState.size);
+			int layer = prevState.layer;
+			long mask = prevState.mask;
+			long cellBit;
+			for(int i = cellIndexStart; i < cellIndexEnd; i ++) {
+				if(countRangesTotal > 0 && countRangesTotal == Long.bitCount(mask)) {
+					// mask is full, switch to the next layer
+					layer ++;
+					mask = 0;
+				}
+				cellBit = 1L << i;
+				if((mask & cellBit) != 0) {
+					throw new IllegalStateException(
+						"Range " + i + " is already updated, but mask is: " +
+						Long.toBinaryString(mask)
+					);
+				}
+				mask |= cellBit;
 			}
-		}
+			nextState = new RangesState(layer, mask, prevState.size);
+		} while(!RANGES_STATE_UPDATER.compareAndSet(this, prevState, nextState));
 		if(Loggers.MSG.isTraceEnabled()) {
 			Loggers.MSG.trace(
 				"{}: byte range {}-{} updated, mask range {}-{} is set",
@@ -73,16 +141,102 @@ implements DataItemMock {
 	}
 	//
 	@Override
-	public final synchronized void append(final long size) {
+	public final void append(final long size) {
 		if(size < 0) {
 			throw new IllegalArgumentException(name + ": range size should not be negative");
 		}
-		final int
-			lastCellPos = this.size > 0 ? getRangeCount(this.size) - 1 : 0,
-			nextCellPos = getRangeCount(this.size + size);
-		if(lastCellPos < nextCellPos && modifiedRangesMask.get(lastCellPos)) {
-			modifiedRangesMask.set(lastCellPos, nextCellPos);
+		RangesState prevState, nextState;
+		do {
+			prevState = rangesState();
+			final int
+				lastCellPos = prevState.size > 0 ? getRangeCount(prevState.size) - 1 : 0,
+				nextCellPos = getRangeCount(prevState.size + size);
+			long mask = prevState.mask;
+			if(lastCellPos < nextCellPos && (mask & (1L << lastCellPos)) != 0) {
+				mask |= cellsMask(lastCellPos, nextCellPos);
+			}
+			nextState = new RangesState(prevState.layer, mask, prevState.size + size);
+		} while(!RANGES_STATE_UPDATER.compareAndSet(this, prevState, nextState));
+	}
+	//
+	@Override
+	public final long size() {
+		final RangesState state = rangesState;
+		return state == null ? super.size() : state.size;
+	}
+	//
+	@Override
+	public final void size(final long size) {
+		RangesState prevState;
+		do {
+			prevState = rangesState();
+		} while(
+			!RANGES_STATE_UPDATER.compareAndSet(
+				this, prevState, new RangesState(prevState.layer, prevState.mask, size)
+			)
+		);
+	}
+	//
+	@Override
+	public final int layer() {
+		final RangesState state = rangesState;
+		return state == null ? super.layer() : state.layer;
+	}
+	//
+	@Override
+	public final void layer(final int layerNum) {
+		RangesState prevState;
+		do {
+			prevState = rangesState();
+		} while(
+			!RANGES_STATE_UPDATER.compareAndSet(
+				this, prevState, new RangesState(layerNum, prevState.mask, prevState.size)
+			)
+		);
+	}
+	//
+	@Override
+	public final boolean isUpdated() {
+		return getModifiedRangesMask() != 0;
+	}
+	//
+	@Override
+	public final boolean isRangeUpdated(final int rangeIdx) {
+		return rangeIdx < Long.SIZE && (getModifiedRangesMask() & (1L << rangeIdx)) != 0;
+	}
+	//
+	@Override
+	public final long getRangeSize(final int rangeIdx) {
+		return Math.min(getRangeOffset(rangeIdx + 1), size()) - getRangeOffset(rangeIdx);
+	}
+	//
+	@Override
+	public final <D extends DataItem> D slice(final long from, final long partSize) {
+		final D part = super.slice(from, partSize);
+		if(part != this) {
+			// the base item's slice has the initial layer
+			part.layer(layer());
+		}
+		return part;
+	}
+	//
+	@Override
+	public final String toString() {
+		final RangesState state = rangesState;
+		if(state == null) {
+			return super.toString();
+		}
+		// the snapshot's copy is formatted by the base item
+		return new BasicDataItemMock(name, offset(), state.size, state.layer, state.mask)
+			.toString();
+	}
+	//
+	@Override
+	public final long getModifiedRangesMask() {
+		final RangesState state = rangesState;
+		if(state != null) {
+			return state.mask;
 		}
-		this.size += size;
+		return modifiedRangesMask.isEmpty() ? 0 : modifiedRangesMask.toLongArray()[0];
 	}
 }
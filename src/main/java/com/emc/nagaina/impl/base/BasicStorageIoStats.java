@@ -3,6 +3,8 @@ package com.emc.nagaina.impl.base;
 import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
 
+import com.github.akurilov.commons.system.SizeInBytes;
+
 import com.emc.mongoose.api.common.Constants;
 import static com.emc.mongoose.api.common.Constants.LOCALE_DEFAULT;
 import com.emc.mongoose.api.metrics.CustomMeter;
@@ -22,35 +24,62 @@ public final class BasicStorageIoStats
 extends Thread
 implements StorageIoStats {
 
-	private final Counter countFailWrite, countFailRead, countFailDelete, countContainers;
+	private final Counter countFailWrite, countFailRead, countFailDelete, countContainers,
+		countExpired, countEvicted, countCursorHit, countCursorMiss, countJournalDropped;
 	private final CustomMeter tpWrite, tpRead, tpDelete, bwWrite, bwRead;
+	// the backend meters are marked with the nanoseconds, so their rates are the average counts
+	// of the waiting and the served requests (Little's law)
+	private final CustomMeter tpBackend, waitBackend, busyBackend;
+	private volatile int backendSlotCount = 0;
 	private final long updatePeriodSec;
 	private final StorageMock storage;
+	private final String objectEvictionPolicyName, containerEvictionPolicyName;
 
-	public BasicStorageIoStats(final StorageMock storage, final int metricsPeriodSec) {
+	/**
+	 @param objectEvictionPolicyName the policy actually used by the container type
+	 */
+	public BasicStorageIoStats(
+		final StorageMock storage, final int metricsPeriodSec,
+		final String objectEvictionPolicyName, final String containerEvictionPolicyName
+	) {
 		super(BasicStorageIoStats.class.getSimpleName());
 		setDaemon(true);
 		this.updatePeriodSec = metricsPeriodSec;
 		this.storage = storage;
+		this.objectEvictionPolicyName = objectEvictionPolicyName;
+		this.containerEvictionPolicyName = containerEvictionPolicyName;
 		final Clock clock = new ResumableUserTimeClock();
 		countFailWrite = new Counter();
 		countFailRead = new Counter();
 		countFailDelete = new Counter();
 		countContainers = new Counter();
+		countExpired = new Counter();
+		countEvicted = new Counter();
+		countCursorHit = new Counter();
+		countCursorMiss = new Counter();
+		countJournalDropped = new Counter();
 		tpWrite = new CustomMeter(clock, metricsPeriodSec);
 		tpRead = new CustomMeter(clock, metricsPeriodSec);
 		tpDelete = new CustomMeter(clock, metricsPeriodSec);
 		bwWrite = new CustomMeter(clock, metricsPeriodSec);
 		bwRead = new CustomMeter(clock, metricsPeriodSec);
+		tpBackend = new CustomMeter(clock, metricsPeriodSec);
+		waitBackend = new CustomMeter(clock, metricsPeriodSec);
+		busyBackend = new CustomMeter(clock, metricsPeriodSec);
 	}
 
 	private static final String
-		MSG_FMT_METRICS = "Capacity used: %d (%.1f%%), containers count: %d\n" +
+		MSG_FMT_METRICS =
+			"Capacity used: %d (%.1f%%), size: %s, containers count: %d, expired: %d, " +
+			"evicted (objects: %s, containers: %s): %d, listing cursor hits: %.1f%%\n" +
 		"\tOperation |Count       |Failed      |TP[op/s]avg |TP[op/s]last|BW[MB/s]avg |BW[MB/s]last\n" +
 		"\t----------|------------|------------|------------|------------|------------|------------\n" +
 		"\tWrite     |%12d|%12d|%12.3f|%12.3f|%12.3f|%12.3f\n" +
 		"\tRead      |%12d|%12d|%12.3f|%12.3f|%12.3f|%12.3f\n" +
-		"\tDelete    |%12d|%12d|%12.3f|%12.3f|            |";
+		"\tDelete    |%12d|%12d|%12.3f|%12.3f|            |",
+		MSG_FMT_BACKEND_METRICS =
+			"\n\tBackend slots: %d, queue depth: %.3f, utilization: %.1f%%, wait: %.3f[ms]",
+		MSG_FMT_JOURNAL_METRICS = "\n\tJournal records dropped: %d";
 
 	@Override
 	public synchronized void start() {
@@ -102,6 +131,42 @@ implements StorageIoStats {
 		}
 	}
 
+	@Override
+	public void markExpire() {
+		countExpired.inc();
+	}
+
+	@Override
+	public void markEvict() {
+		countEvicted.inc();
+	}
+
+	@Override
+	public void markListingCursor(final boolean hit) {
+		if(hit) {
+			countCursorHit.inc();
+		} else {
+			countCursorMiss.inc();
+		}
+	}
+
+	@Override
+	public void markJournalDrop() {
+		countJournalDropped.inc();
+	}
+
+	@Override
+	public void setBackendSlotCount(final int count) {
+		backendSlotCount = count;
+	}
+
+	@Override
+	public void markBackendIo(final long waitNanos, final long serviceNanos) {
+		tpBackend.mark();
+		waitBackend.mark(waitNanos);
+		busyBackend.mark(serviceNanos);
+	}
+
 	@Override
 	public void containerCreate() {
 		countContainers.inc();
@@ -137,6 +202,24 @@ implements StorageIoStats {
 		return tpDelete.getLastRate();
 	}
 
+	@Override
+	public double getBackendQueueDepth() {
+		return waitBackend.getLastRate() / TimeUnit.SECONDS.toNanos(1);
+	}
+
+	@Override
+	public double getBackendUtilization() {
+		final int slotCount = backendSlotCount;
+		return slotCount > 0 ?
+			busyBackend.getLastRate() / TimeUnit.SECONDS.toNanos(1) / slotCount : 0;
+	}
+
+	@Override
+	public double getBackendWaitTimeMillis() {
+		final double rate = tpBackend.getLastRate();
+		return rate > 0 ? waitBackend.getLastRate() / rate / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+	}
+
 	@Override
 	public void close()
 	throws IOException {
@@ -148,10 +231,16 @@ implements StorageIoStats {
 	@Override
 	public final String toString() {
 		long countTotal = storage.getSize();
-		return String.format(
+		final long countCursorHits = countCursorHit.getCount();
+		final long countCursorUses = countCursorHits + countCursorMiss.getCount();
+		final String metrics = String.format(
 			LOCALE_DEFAULT, MSG_FMT_METRICS,
 			//
-			countTotal, 100.0 * countTotal / storage.getCapacity(), countContainers.getCount(),
+			countTotal, 100.0 * countTotal / storage.getCapacity(),
+			SizeInBytes.formatFixedSize(storage.getSizeBytes()), countContainers.getCount(),
+			countExpired.getCount(), objectEvictionPolicyName, containerEvictionPolicyName,
+			countEvicted.getCount(),
+			countCursorUses > 0 ? 100.0 * countCursorHits / countCursorUses : 0.0,
 			//
 			tpWrite.getCount(), countFailWrite.getCount(),
 			tpWrite.getMeanRate(), tpWrite.getLastRate(),
@@ -164,5 +253,20 @@ implements StorageIoStats {
 			tpDelete.getCount(), countFailDelete.getCount(),
 			tpDelete.getMeanRate(), tpDelete.getLastRate()
 		);
+		final StringBuilder buff = new StringBuilder(metrics);
+		if(backendSlotCount > 0) {
+			buff.append(
+				String.format(
+					LOCALE_DEFAULT, MSG_FMT_BACKEND_METRICS, backendSlotCount,
+					getBackendQueueDepth(), 100 * getBackendUtilization(),
+					getBackendWaitTimeMillis()
+				)
+			);
+		}
+		final long countJournalDrops = countJournalDropped.getCount();
+		if(countJournalDrops > 0) {
+			buff.append(String.format(LOCALE_DEFAULT, MSG_FMT_JOURNAL_METRICS, countJournalDrops));
+		}
+		return buff.toString();
 	}
 }
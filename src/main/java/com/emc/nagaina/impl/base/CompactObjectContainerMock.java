@@ -0,0 +1,617 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ Created by agent on 17.10.26.
+ Container which keeps the object's state in the fixed width records of the open addressing (linear
+ probing) hash table. The key is the object id parsed using the configured prefix and radix, so an
+ object takes a few tens of bytes instead of the string key and the data item instance.
+ The data item instance is materialized on every read, the in place modifications should be
+ written back using the commit method. The objects with the ids which can't be parsed (or with the
+ offset which is not equal to the parsed id) are kept in the separate sorted map.
+ The table's listing order is the home slot order (the id order for the same home slot) which is
+ not changed by the deletions, followed by the sorted map order. So the paging is consistent only
+ while the table is not resized.
+ If the table factory fails to allocate the larger table the load factor is allowed to grow up to
+ 7/8, after that the inserts evict the objects walking the table with a hand. The hand doesn't
+ give the read objects the second chance (the reads don't write the table), so the objects are
+ evicted like fifo whatever eviction policy is configured.
+ The inserts and the removals hold the table's write lock. The reads and the commits hold the read
+ lock and the stripe lock of the slot: the slots don't move while the read lock is held, so the
+ commits of the different objects don't block each other.
+ */
+public final class CompactObjectContainerMock<T extends DataItemMock>
+implements ObjectContainerMock<T> {
+
+	public static final int MIN_TABLE_SIZE = 0x10;
+	private static final int MAX_TABLE_SIZE = 0x40000000;
+	private static final int SLOT_LOCK_STRIPE_COUNT = 0x40;
+
+	private final int capacity;
+	private final StorageMockUsage usage;
+	private final ObjectIdCodec idCodec;
+	private final ObjectTableFactory tableFactory;
+	private final Consumer<String> evictionListener;
+	private final NavigableMap<String, T> overflowMap = new TreeMap<>();
+	private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+	private final Lock readLock = tableLock.readLock();
+	private final Lock writeLock = tableLock.writeLock();
+	private final Object slotLocks[] = new Object[SLOT_LOCK_STRIPE_COUNT];
+
+	private ObjectTable table;
+	private int count = 0;
+	private int evictPos = 0;
+
+	/**
+	 @param tableFactory should not fail to allocate the table of the minimal size
+	 */
+	public CompactObjectContainerMock(
+		final int capacity, final StorageMockUsage usage, final String idPrefix, final int idRadix,
+		final ObjectTableFactory tableFactory, final Consumer<String> evictionListener
+	) {
+		this.capacity = capacity;
+		this.usage = usage;
+		this.idCodec = new ObjectIdCodec(idPrefix, idRadix);
+		this.tableFactory = tableFactory;
+		this.evictionListener = evictionListener;
+		this.table = tableFactory.newTable(MIN_TABLE_SIZE);
+		for(int i = 0; i < SLOT_LOCK_STRIPE_COUNT; i ++) {
+			slotLocks[i] = new Object();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Hash table
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private static int homeSlot(final long id, final int len, final int slotCount) {
+		long h = id * 31 + len;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h & (slotCount - 1);
+	}
+
+	/**
+	 @return the slot index if found, or (-1 - index) of the free slot where the id may be inserted
+	 */
+	private static int find(final ObjectTable table, final long id, final int len) {
+		final int m = table.slotCount() - 1;
+		int i = homeSlot(id, len, table.slotCount());
+		while(!table.isFree(i)) {
+			if(table.id(i) == id && table.idLength(i) == len) {
+				return i;
+			}
+			i = (i + 1) & m;
+		}
+		return -1 - i;
+	}
+
+	private Object slotLock(final int i) {
+		return slotLocks[i & (SLOT_LOCK_STRIPE_COUNT - 1)];
+	}
+
+	@SuppressWarnings("unchecked")
+	private T materialize(final int i) {
+		synchronized(slotLock(i)) {
+			final long id = table.id(i);
+			return (T) new BasicDataItemMock(
+				idCodec.format(id, table.idLength(i)), id, table.size(i), table.layer(i),
+				table.mask(i)
+			);
+		}
+	}
+
+	private boolean grow() {
+		final ObjectTable oldTable = table;
+		final int oldSlotCount = oldTable.slotCount();
+		if(oldSlotCount >= MAX_TABLE_SIZE) {
+			return false;
+		}
+		final ObjectTable newTable = tableFactory.newTable(oldSlotCount << 1);
+		if(newTable == null) {
+			return false;
+		}
+		long id;
+		int len;
+		for(int i = 0; i < oldSlotCount; i ++) {
+			if(!oldTable.isFree(i)) {
+				id = oldTable.id(i);
+				len = oldTable.idLength(i);
+				newTable.store(
+					-1 - find(newTable, id, len), id, len, oldTable.size(i), oldTable.layer(i),
+					oldTable.mask(i)
+				);
+			}
+		}
+		table = newTable;
+		oldTable.release();
+		evictPos = 0;
+		return true;
+	}
+
+	/**
+	 Backward shift deletion: moves the following entries of the probe sequence into the freed slot
+	 so the table doesn't need the tombstones
+	 */
+	private void removeSlot(int i) {
+		final int slotCount = table.slotCount();
+		final int m = slotCount - 1;
+		int j = i;
+		int home;
+		while(true) {
+			j = (j + 1) & m;
+			if(table.isFree(j)) {
+				break;
+			}
+			home = homeSlot(table.id(j), table.idLength(j), slotCount);
+			if(i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+				table.store(
+					i, table.id(j), table.idLength(j), table.size(j), table.layer(j), table.mask(j)
+				);
+				i = j;
+			}
+		}
+		table.free(i);
+		count --;
+	}
+
+	private void evict(final String insertedKey) {
+		if(count > 0) {
+			final int m = table.slotCount() - 1;
+			final int start = idCodec.start(insertedKey);
+			final long insertedId = idCodec.parse(insertedKey, start);
+			final int insertedLen = insertedKey.length() - start;
+			for(int n = 0; n <= m; n ++) {
+				evictPos = (evictPos + 1) & m;
+				if(table.isFree(evictPos)) {
+					continue;
+				}
+				if(table.id(evictPos) != insertedId || table.idLength(evictPos) != insertedLen) {
+					final String evictedKey = idCodec.format(
+						table.id(evictPos), table.idLength(evictPos)
+					);
+					usage.remove(table.size(evictPos));
+					removeSlot(evictPos);
+					evictionListener.accept(evictedKey);
+					return;
+				}
+			}
+		}
+		final Iterator<Map.Entry<String, T>> overflowIter = overflowMap.entrySet().iterator();
+		Map.Entry<String, T> entry;
+		while(overflowIter.hasNext()) {
+			entry = overflowIter.next();
+			if(!entry.getKey().equals(insertedKey)) {
+				usage.remove(entry.getValue().size());
+				overflowIter.remove();
+				evictionListener.accept(entry.getKey());
+				return;
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Container methods
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	@Override
+	public final int size() {
+		readLock.lock();
+		try {
+			return count + overflowMap.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public final T list(
+		final String afterObjectId, final Collection<T> outputBuffer, final int limit
+	) {
+		if(limit < 1) {
+			return null;
+		}
+		readLock.lock();
+		try {
+			return listPage(afterObjectId, outputBuffer, limit);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private T listPage(
+		final String afterObjectId, final Collection<T> outputBuffer, final int limit
+	) {
+		final List<T> page = new ArrayList<>(Math.min(limit, size()) + 1);
+		Iterator<T> overflowIter = null;
+		if(afterObjectId == null) {
+			listTable(-1, -1, page, limit + 1);
+		} else {
+			final int start = idCodec.start(afterObjectId);
+			final long id = idCodec.parse(afterObjectId, start);
+			if(id < 0 || overflowMap.containsKey(afterObjectId)) {
+				// the marker is not parsable or its offset doesn't match the id
+				overflowIter = overflowMap.tailMap(afterObjectId, false).values().iterator();
+			} else {
+				listTable(id, afterObjectId.length() - start, page, limit + 1);
+			}
+		}
+		if(overflowIter == null) {
+			overflowIter = overflowMap.values().iterator();
+		}
+		while(page.size() <= limit && overflowIter.hasNext()) {
+			page.add(overflowIter.next());
+		}
+		// one more object is taken to determine if there are the remaining objects
+		if(page.size() > limit) {
+			outputBuffer.addAll(page.subList(0, limit));
+			return page.get(limit - 1);
+		} else {
+			outputBuffer.addAll(page);
+			return null;
+		}
+	}
+
+	private static final class ListedSlot
+	implements Comparable<ListedSlot> {
+
+		private final int home;
+		private final long id;
+		private final int len;
+		private final int slot;
+
+		private ListedSlot(final int home, final long id, final int len, final int slot) {
+			this.home = home;
+			this.id = id;
+			this.len = len;
+			this.slot = slot;
+		}
+
+		private int compareTo(final int home, final long id, final int len) {
+			int d = Integer.compare(this.home, home);
+			if(d == 0) {
+				d = Long.compare(this.id, id);
+				if(d == 0) {
+					d = Integer.compare(this.len, len);
+				}
+			}
+			return d;
+		}
+
+		/**
+		 @param id the marker's id, -1 if there's no marker
+		 */
+		private boolean follows(final int home, final long id, final int len) {
+			return id < 0 || compareTo(home, id, len) > 0;
+		}
+
+		@Override
+		public final int compareTo(final ListedSlot other) {
+			return compareTo(other.home, other.id, other.len);
+		}
+	}
+
+	/**
+	 Lists the table entries following the marker (the marker itself may be already deleted) in
+	 the home slot order. An entry is never located before its home slot except the probe sequences
+	 wrapped to the table's beginning, so the scan starts from the marker's home slot and may stop
+	 at the first free slot after the enough entries are found: the entries after the free slot have
+	 the greater home slots.
+	 @param id the marker's id, -1 to list from the beginning
+	 */
+	private void listTable(final long id, final int len, final List<T> page, final int limit) {
+		final int slotCount = table.slotCount();
+		final int markerHome = id < 0 ? 0 : homeSlot(id, len, slotCount);
+		final List<ListedSlot> listedSlots = new ArrayList<>();
+		boolean tableEndReached = true;
+		ListedSlot listedSlot;
+		int i;
+		for(i = markerHome; i < slotCount; i ++) {
+			if(table.isFree(i)) {
+				if(listedSlots.size() >= limit) {
+					tableEndReached = false;
+					break;
+				}
+				continue;
+			}
+			listedSlot = listedSlot(i, slotCount);
+			// the wrapped probe sequences are listed after the table's end
+			if(listedSlot.home <= i && listedSlot.follows(markerHome, id, len)) {
+				listedSlots.add(listedSlot);
+			}
+		}
+		if(tableEndReached) {
+			for(i = 0; i < slotCount && !table.isFree(i); i ++) {
+				listedSlot = listedSlot(i, slotCount);
+				if(listedSlot.home > i && listedSlot.follows(markerHome, id, len)) {
+					listedSlots.add(listedSlot);
+				}
+			}
+		}
+		listedSlots.sort(null);
+		for(i = 0; i < listedSlots.size() && page.size() < limit; i ++) {
+			page.add(materialize(listedSlots.get(i).slot));
+		}
+	}
+
+	private ListedSlot listedSlot(final int i, final int slotCount) {
+		final long id = table.id(i);
+		final int len = table.idLength(i);
+		return new ListedSlot(homeSlot(id, len, slotCount), id, len, i);
+	}
+
+	/**
+	 @return the snapshot of the materialized objects
+	 */
+	@Override
+	public final Collection<T> values() {
+		readLock.lock();
+		try {
+			final List<T> values = new ArrayList<>(size());
+			for(int i = 0; i < table.slotCount(); i ++) {
+				if(!table.isFree(i)) {
+					values.add(materialize(i));
+				}
+			}
+			values.addAll(overflowMap.values());
+			return values;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public final T get(final String key) {
+		final long id = idCodec.parse(key, idCodec.start(key));
+		readLock.lock();
+		try {
+			if(id < 0) {
+				return overflowMap.get(key);
+			}
+			final int i = find(table, id, key.length() - idCodec.start(key));
+			// the object is in the overflow map if its offset doesn't match the id
+			return i < 0 ? overflowMap.get(key) : materialize(i);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public final T put(final String key, final T value) {
+		writeLock.lock();
+		try {
+			return putLocked(key, value, false, false);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public final T putReserved(final String key, final T value, final boolean countReserved) {
+		writeLock.lock();
+		try {
+			return putLocked(key, value, true, countReserved);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private T putLocked(
+		final String key, final T value, final boolean sizeReserved, final boolean countReserved
+	) {
+		final int start = idCodec.start(key);
+		final long id = idCodec.parse(key, start);
+		final long size = value.size();
+		final T prevValue;
+		if(id < 0 || id != value.offset()) {
+			prevValue = overflowMap.put(key, value);
+			final T removedValue = remove(key, id, start);
+			if(prevValue == null && removedValue == null) {
+				usage.put(size, -1, sizeReserved, countReserved);
+				if(size() > capacity) {
+					evict(key);
+				}
+				return null;
+			}
+			usage.put(
+				size, (prevValue == null ? removedValue : prevValue).size(), sizeReserved,
+				countReserved
+			);
+			return prevValue == null ? removedValue : prevValue;
+		}
+		final int len = key.length() - start;
+		final int pos = find(table, id, len);
+		if(pos < 0) {
+			table.store(-1 - pos, id, len, size, value.layer(), value.getModifiedRangesMask());
+			count ++;
+			prevValue = overflowMap.remove(key);
+			if(prevValue == null) {
+				usage.put(size, -1, sizeReserved, countReserved);
+				if(size() > capacity) {
+					evict(key);
+				}
+			} else {
+				usage.put(size, prevValue.size(), sizeReserved, countReserved);
+			}
+			final int slotCount = table.slotCount();
+			if(count > slotCount - (slotCount >> 2) && !grow()) {
+				if(count > slotCount - (slotCount >> 3)) {
+					evict(key);
+				}
+			}
+		} else {
+			prevValue = materialize(pos);
+			usage.put(size, table.size(pos), sizeReserved, countReserved);
+			table.store(pos, id, len, size, value.layer(), value.getModifiedRangesMask());
+		}
+		return prevValue;
+	}
+
+	@Override
+	public final T remove(final String key) {
+		final int start = idCodec.start(key);
+		final long id = idCodec.parse(key, start);
+		writeLock.lock();
+		try {
+			T prevValue = remove(key, id, start);
+			if(prevValue == null) {
+				prevValue = overflowMap.remove(key);
+			}
+			if(prevValue != null) {
+				usage.remove(prevValue.size());
+			}
+			return prevValue;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	// removes the table entry without the usage accounting
+	private T remove(final String key, final long id, final int start) {
+		if(id < 0) {
+			return null;
+		}
+		final int i = find(table, id, key.length() - start);
+		if(i < 0) {
+			return null;
+		}
+		final T prevValue = materialize(i);
+		removeSlot(i);
+		return prevValue;
+	}
+
+	@Override
+	public final boolean commit(
+		final String key, final T value, final Modification<T> modification
+	) {
+		final int start = idCodec.start(key);
+		final long id = idCodec.parse(key, start);
+		readLock.lock();
+		try {
+			final int i = id < 0 ? -1 : find(table, id, key.length() - start);
+			if(i >= 0) {
+				synchronized(slotLock(i)) {
+					final long prevSize = table.size(i);
+					modification.apply(value);
+					table.store(
+						i, id, table.idLength(i), value.size(), value.layer(),
+						value.getModifiedRangesMask()
+					);
+					usage.resize(value.size() - prevSize);
+				}
+				return true;
+			}
+			// the sorted map's objects are not materialized, they are removed with the write lock
+			if(overflowMap.get(key) == value) {
+				final long prevSize = value.size();
+				modification.apply(value);
+				usage.resize(value.size() - prevSize);
+				return true;
+			}
+			return false;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public final long sizeBytes() {
+		return usage.bytes();
+	}
+
+	@Override
+	public final boolean reserve(final long size) {
+		return usage.reserve(size);
+	}
+
+	@Override
+	public final void release(final long size) {
+		usage.release(size);
+	}
+
+	@Override
+	public final boolean reserveCount() {
+		return usage.reserveCount();
+	}
+
+	@Override
+	public final void releaseCount() {
+		usage.releaseCount();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Inventory support, the caller should hold the exclusive lock
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	final Lock exclusiveLock() {
+		return writeLock;
+	}
+
+	final ObjectIdCodec idCodec() {
+		return idCodec;
+	}
+
+	final ObjectTable table() {
+		return table;
+	}
+
+	final int tableCount() {
+		return count;
+	}
+
+	final Collection<T> overflowValues() {
+		return overflowMap.values();
+	}
+
+	/**
+	 Replaces the empty table with the one loaded from the inventory file
+	 @return false if the container is not empty
+	 */
+	final boolean loadTable(
+		final FileChannel channel, final long position, final int slotCount, final int count,
+		final long sizeBytes
+	) throws IOException {
+		if(size() > 0) {
+			return false;
+		}
+		final ObjectTable loadedTable = tableFactory.loadTable(channel, position, slotCount);
+		table.release();
+		table = loadedTable;
+		this.count = count;
+		evictPos = 0;
+		usage.add(count, sizeBytes);
+		return true;
+	}
+
+	@Override
+	public final void close()
+	throws IOException {
+		writeLock.lock();
+		try {
+			table.release();
+			table = tableFactory.newTable(MIN_TABLE_SIZE);
+			count = 0;
+			evictPos = 0;
+			overflowMap.clear();
+			usage.clear();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
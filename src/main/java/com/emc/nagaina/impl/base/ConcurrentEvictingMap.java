@@ -0,0 +1,159 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ Created by agent on 17.10.26.
+ Size bounded map with the wait-free reads. The entry to evict is chosen by the eviction policy,
+ see {@link EvictionQueue}. With the NONE policy the map is not bounded, the caller should reject
+ the new entries itself.
+ */
+public final class ConcurrentEvictingMap<K, V> {
+
+	private static final class Node<K, V>
+	extends EvictionQueue.Entry {
+
+		private final K key;
+		private final V value;
+		private final ToLongFunction<V> weigher;
+
+		private Node(final K key, final V value, final ToLongFunction<V> weigher) {
+			this.key = key;
+			this.value = value;
+			this.weigher = weigher;
+		}
+
+		@Override
+		protected final long weight() {
+			return weigher.applyAsLong(value);
+		}
+	}
+
+	private final ConcurrentMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+	private final EvictionQueue<Node<K, V>> evictionQueue;
+	private final int capacity;
+	private final ToLongFunction<V> weigher;
+	private final Consumer<V> evictionListener;
+
+	/**
+	 @param weigher the value's weight function for the size aware eviction
+	 */
+	public ConcurrentEvictingMap(
+		final int capacity, final EvictionPolicy evictionPolicy, final ToLongFunction<V> weigher,
+		final Consumer<V> evictionListener
+	) {
+		this.evictionQueue = new EvictionQueue<>(evictionPolicy, capacity);
+		this.capacity = capacity;
+		this.weigher = weigher;
+		this.evictionListener = evictionListener;
+	}
+
+	public final V get(final K key) {
+		final Node<K, V> node = map.get(key);
+		if(node == null) {
+			return null;
+		}
+		evictionQueue.accessed(node);
+		return node.value;
+	}
+
+	public final V put(final K key, final V value) {
+		final Node<K, V> node = new Node<>(key, value, weigher);
+		final Node<K, V> prevNode = map.put(key, node);
+		evictionQueue.added(node);
+		if(prevNode == null) {
+			if(map.size() > capacity) {
+				evict();
+			}
+			return null;
+		} else {
+			evictionQueue.removed(prevNode);
+			return prevNode.value;
+		}
+	}
+
+	public final V putIfAbsent(final K key, final V value) {
+		final Node<K, V> node = new Node<>(key, value, weigher);
+		final Node<K, V> prevNode = map.putIfAbsent(key, node);
+		if(prevNode == null) {
+			evictionQueue.added(node);
+			if(map.size() > capacity) {
+				evict();
+			}
+			return null;
+		} else {
+			evictionQueue.accessed(prevNode);
+			return prevNode.value;
+		}
+	}
+
+	public final V remove(final K key) {
+		final Node<K, V> node = map.remove(key);
+		if(node == null) {
+			return null;
+		}
+		evictionQueue.removed(node);
+		return node.value;
+	}
+
+	public final int size() {
+		return map.size();
+	}
+
+	public final Collection<V> values() {
+		final Collection<Node<K, V>> nodes = map.values();
+		return new AbstractCollection<V>() {
+			@Override
+			public final Iterator<V> iterator() {
+				final Iterator<Node<K, V>> nodesIter = nodes.iterator();
+				return new Iterator<V>() {
+					@Override
+					public final boolean hasNext() {
+						return nodesIter.hasNext();
+					}
+					@Override
+					public final V next() {
+						return nodesIter.next().value;
+					}
+				};
+			}
+			@Override
+			public final int size() {
+				return nodes.size();
+			}
+		};
+	}
+
+	/**
+	 Iterates the entries without the access flags update
+	 */
+	public final void forEach(final BiConsumer<K, V> action) {
+		map.forEach((key, node) -> action.accept(key, node.value));
+	}
+
+	public final void clear() {
+		map.clear();
+		evictionQueue.clear();
+	}
+
+	private void evict() {
+		evictionQueue.evict(
+			node -> {
+				if(map.remove(node.key, node)) {
+					evictionListener.accept(node.value);
+					return true;
+				}
+				return false;
+			}
+		);
+	}
+}
@@ -0,0 +1,232 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ Created by agent on 17.10.26.
+ Sorted container without the global monitor: the listing from the marker is a tail map iteration.
+ The capacity is enforced by evicting the object chosen by the eviction policy.
+ */
+public final class ConcurrentObjectContainerMock<T extends DataItemMock>
+implements ObjectContainerMock<T> {
+
+	private static final class Node<T extends DataItemMock>
+	extends EvictionQueue.Entry {
+
+		private final String key;
+		private final T value;
+
+		private Node(final String key, final T value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		protected final long weight() {
+			return value.size();
+		}
+	}
+
+	private final ConcurrentNavigableMap<String, Node<T>> containerMap =
+		new ConcurrentSkipListMap<>();
+	// the skip list size() method is O(n), so the count is tracked explicitly
+	private final AtomicInteger count = new AtomicInteger(0);
+	private final int capacity;
+	private final StorageMockUsage usage;
+	private final EvictionQueue<Node<T>> evictionQueue;
+	private final Consumer<String> evictionListener;
+
+	public ConcurrentObjectContainerMock(
+		final int capacity, final StorageMockUsage usage, final EvictionPolicy evictionPolicy,
+		final Consumer<String> evictionListener
+	) {
+		this.capacity = capacity;
+		this.usage = usage;
+		this.evictionQueue = new EvictionQueue<>(evictionPolicy, capacity);
+		this.evictionListener = evictionListener;
+	}
+
+	@Override
+	public final int size() {
+		return count.get();
+	}
+
+	@Override
+	public final T list(
+		final String afterObjectId, final Collection<T> outputBuffer, final int limit
+	) {
+		final ConcurrentNavigableMap<String, Node<T>> tailMap = afterObjectId == null ?
+			containerMap : containerMap.tailMap(afterObjectId, false);
+		final Iterator<Node<T>> nodesIter = tailMap.values().iterator();
+		T lastObject = null;
+		for(int i = 0; i < limit && nodesIter.hasNext(); i ++) {
+			lastObject = nodesIter.next().value;
+			outputBuffer.add(lastObject);
+		}
+		return nodesIter.hasNext() ? lastObject : null;
+	}
+
+	@Override
+	public final Collection<T> values() {
+		final Collection<Node<T>> nodes = containerMap.values();
+		return new AbstractCollection<T>() {
+			@Override
+			public final Iterator<T> iterator() {
+				final Iterator<Node<T>> nodesIter = nodes.iterator();
+				return new Iterator<T>() {
+					@Override
+					public final boolean hasNext() {
+						return nodesIter.hasNext();
+					}
+					@Override
+					public final T next() {
+						return nodesIter.next().value;
+					}
+				};
+			}
+			@Override
+			public final int size() {
+				return count.get();
+			}
+		};
+	}
+
+	@Override
+	public final T get(final String key) {
+		final Node<T> node = containerMap.get(key);
+		if(node == null) {
+			return null;
+		}
+		evictionQueue.accessed(node);
+		return node.value;
+	}
+
+	@Override
+	public final T put(final String key, final T value) {
+		return put(key, value, false, false);
+	}
+
+	@Override
+	public final T putReserved(final String key, final T value, final boolean countReserved) {
+		return put(key, value, true, countReserved);
+	}
+
+	private T put(
+		final String key, final T value, final boolean sizeReserved, final boolean countReserved
+	) {
+		final Node<T> node = new Node<>(key, value);
+		final Node<T> prevNode = containerMap.put(key, node);
+		evictionQueue.added(node);
+		if(prevNode == null) {
+			usage.put(value.size(), -1, sizeReserved, countReserved);
+			if(count.incrementAndGet() > capacity) {
+				evict();
+			}
+			return null;
+		} else {
+			evictionQueue.removed(prevNode);
+			synchronized(prevNode) {
+				usage.put(value.size(), prevNode.value.size(), sizeReserved, countReserved);
+			}
+			return prevNode.value;
+		}
+	}
+
+	@Override
+	public final T remove(final String key) {
+		final Node<T> prevNode = containerMap.remove(key);
+		if(prevNode == null) {
+			return null;
+		}
+		evictionQueue.removed(prevNode);
+		count.decrementAndGet();
+		synchronized(prevNode) {
+			usage.remove(prevNode.value.size());
+		}
+		return prevNode.value;
+	}
+
+	/**
+	 The node's monitor orders the modification with the node's removal accounting: the node is
+	 either modified while it's in the map or removed before the modification
+	 */
+	@Override
+	public final boolean commit(
+		final String key, final T value, final Modification<T> modification
+	) {
+		final Node<T> node = containerMap.get(key);
+		if(node == null || node.value != value) {
+			return false;
+		}
+		synchronized(node) {
+			if(containerMap.get(key) != node) {
+				return false;
+			}
+			final long prevSize = value.size();
+			modification.apply(value);
+			usage.resize(value.size() - prevSize);
+		}
+		return true;
+	}
+
+	@Override
+	public final long sizeBytes() {
+		return usage.bytes();
+	}
+
+	@Override
+	public final boolean reserve(final long size) {
+		return usage.reserve(size);
+	}
+
+	@Override
+	public final void release(final long size) {
+		usage.release(size);
+	}
+
+	@Override
+	public final boolean reserveCount() {
+		return usage.reserveCount();
+	}
+
+	@Override
+	public final void releaseCount() {
+		usage.releaseCount();
+	}
+
+	private void evict() {
+		evictionQueue.evict(
+			node -> {
+				if(containerMap.remove(node.key, node)) {
+					count.decrementAndGet();
+					synchronized(node) {
+						usage.remove(node.value.size());
+					}
+					evictionListener.accept(node.key);
+					return true;
+				}
+				return false;
+			}
+		);
+	}
+
+	@Override
+	public void close()
+	throws IOException {
+		containerMap.clear();
+		evictionQueue.clear();
+		count.set(0);
+		usage.clear();
+	}
+}
@@ -0,0 +1,126 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.StorageMock;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ Created by agent on 17.10.26.
+ Writes the containers contents to the CSV file in the Mongoose items format, the objects of the
+ non-default containers are prefixed with "/container/" so the file may be used as the item input
+ file both for Mongoose and for the storage mock. The containers are iterated page by page so the
+ request processing is blocked for the page listing time only.
+ */
+public final class CsvItemExporter {
+
+	private static final int LIST_PAGE_SIZE = 0x1000;
+	private static final int OUTPUT_BUFF_SIZE = 0x400000;
+
+	private CsvItemExporter() {
+	}
+
+	/**
+	 Writes the items to the temporary file and replaces the given file with it
+	 @param containerName the name of the only container to export, null to export all the
+	 containers
+	 @return the count of the items written
+	 */
+	public static <I extends DataItemMock> long export(
+		final Path file, final ConcurrentEvictingMap<String, ObjectContainerMock<I>> containers,
+		final String containerName
+	) throws IOException {
+		final List<Map.Entry<String, ObjectContainerMock<I>>> containerEntries = new ArrayList<>();
+		containers.forEach(
+			(name, container) -> {
+				if(containerName == null || containerName.equals(name)) {
+					containerEntries.add(new SimpleImmutableEntry<>(name, container));
+				}
+			}
+		);
+		final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		long count = 0;
+		try(
+			final FileChannel channel = FileChannel.open(
+				tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING
+			)
+		) {
+			final ByteBuffer outBuff = ByteBuffer.allocateDirect(OUTPUT_BUFF_SIZE);
+			final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+			final StringBuilder line = new StringBuilder();
+			final List<I> page = new ArrayList<>(LIST_PAGE_SIZE);
+			String namePrefix;
+			ObjectContainerMock<I> container;
+			I lastItem;
+			for(final Map.Entry<String, ObjectContainerMock<I>> containerEntry : containerEntries) {
+				namePrefix = StorageMock.DEFAULT_CONTAINER_NAME.equals(containerEntry.getKey()) ?
+					"" : '/' + containerEntry.getKey() + '/';
+				container = containerEntry.getValue();
+				lastItem = null;
+				do {
+					lastItem = container.list(
+						lastItem == null ? null : lastItem.getName(), page, LIST_PAGE_SIZE
+					);
+					for(final I item : page) {
+						line.setLength(0);
+						line.append(namePrefix).append(item.toString()).append('\n');
+						write(channel, outBuff, encoder, line);
+					}
+					count += page.size();
+					if(page.isEmpty()) {
+						break;
+					}
+					page.clear();
+				} while(lastItem != null);
+			}
+			flush(channel, outBuff);
+			channel.force(false);
+		}
+		Files.move(
+			tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+		);
+		return count;
+	}
+
+	private static void write(
+		final FileChannel channel, final ByteBuffer outBuff, final CharsetEncoder encoder,
+		final CharSequence line
+	) throws IOException {
+		final CharBuffer chars = CharBuffer.wrap(line);
+		CoderResult result;
+		do {
+			result = encoder.encode(chars, outBuff, true);
+			if(result.isOverflow()) {
+				flush(channel, outBuff);
+			} else if(result.isError()) {
+				result.throwException();
+			}
+		} while(result.isOverflow());
+		encoder.reset();
+	}
+
+	private static void flush(final FileChannel channel, final ByteBuffer outBuff)
+	throws IOException {
+		outBuff.flip();
+		while(outBuff.hasRemaining()) {
+			channel.write(outBuff);
+		}
+		outBuff.clear();
+	}
+}
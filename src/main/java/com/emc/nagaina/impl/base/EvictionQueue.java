@@ -0,0 +1,172 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ Created by agent on 17.10.26.
+ The eviction candidates of a size bounded map in the insertion order. The victim is chosen by the
+ policy:
+ FIFO - the oldest entry;
+ CLOCK - the oldest entry not accessed since the last pass, the accessed ones are requeued with
+ the access flag cleared ("second chance");
+ RANDOM - the random one of the few oldest entries, the others are requeued;
+ SIZE - the largest one of the few oldest entries, the others are requeued.
+ Only the CLOCK policy marks the entries on access, so the reads don't write the shared memory with
+ the other policies. The entries are not queued at all with the NONE policy.
+ */
+public final class EvictionQueue<E extends EvictionQueue.Entry> {
+
+	public abstract static class Entry {
+
+		volatile boolean accessed = false;
+		volatile boolean removed = false;
+
+		/**
+		 @return the entry's weight for the size aware eviction
+		 */
+		protected abstract long weight();
+	}
+
+	private static final int SAMPLE_SIZE = 5;
+
+	private final EvictionPolicy policy;
+	private final int capacity;
+	private final Queue<E> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queueSize = new AtomicInteger(0);
+	private final AtomicBoolean purgeFlag = new AtomicBoolean(false);
+
+	public EvictionQueue(final EvictionPolicy policy, final int capacity) {
+		this.policy = policy;
+		this.capacity = capacity;
+	}
+
+	public final void added(final E entry) {
+		if(policy != EvictionPolicy.NONE) {
+			enqueue(entry);
+		}
+	}
+
+	public final void accessed(final E entry) {
+		// don't write the shared memory if the flag is already set
+		if(policy == EvictionPolicy.CLOCK && !entry.accessed) {
+			entry.accessed = true;
+		}
+	}
+
+	public final void removed(final E entry) {
+		if(policy != EvictionPolicy.NONE) {
+			entry.removed = true;
+		}
+	}
+
+	/**
+	 Chooses the victims until one is removed successfully
+	 @param remover should try to remove the victim, returns false if the victim was already
+	 removed or replaced concurrently
+	 @return false if there's nothing to evict
+	 */
+	public final boolean evict(final Predicate<E> remover) {
+		E victim;
+		while(null != (victim = victim())) {
+			if(remover.test(victim)) {
+				victim.removed = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public final void clear() {
+		queue.clear();
+		queueSize.set(0);
+	}
+
+	private void enqueue(final E entry) {
+		queue.add(entry);
+		// the removed entries are left in the queue, purge them if they are too many
+		if(queueSize.incrementAndGet() > 3L * capacity) {
+			if(purgeFlag.compareAndSet(false, true)) {
+				try {
+					final Iterator<E> queueIter = queue.iterator();
+					while(queueIter.hasNext()) {
+						if(queueIter.next().removed) {
+							queueIter.remove();
+							queueSize.decrementAndGet();
+						}
+					}
+				} finally {
+					purgeFlag.set(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 @return the oldest not removed entry, null if none
+	 */
+	private E poll() {
+		E entry;
+		while(null != (entry = queue.poll())) {
+			queueSize.decrementAndGet();
+			if(!entry.removed) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private E victim() {
+		E entry;
+		switch(policy) {
+			case FIFO:
+				return poll();
+			case CLOCK:
+				while(null != (entry = poll())) {
+					if(entry.accessed) { // give the second chance
+						entry.accessed = false;
+						enqueue(entry);
+					} else {
+						return entry;
+					}
+				}
+				return null;
+			case RANDOM:
+			case SIZE:
+				final Entry sample[] = new Entry[SAMPLE_SIZE];
+				int n = 0;
+				while(n < SAMPLE_SIZE && null != (entry = poll())) {
+					sample[n ++] = entry;
+				}
+				if(n == 0) {
+					return null;
+				}
+				int k = 0;
+				if(policy == EvictionPolicy.RANDOM) {
+					k = ThreadLocalRandom.current().nextInt(n);
+				} else {
+					for(int i = 1; i < n; i ++) {
+						if(sample[i].weight() > sample[k].weight()) {
+							k = i;
+						}
+					}
+				}
+				for(int i = 0; i < n; i ++) {
+					if(i != k) {
+						enqueue((E) sample[i]);
+					}
+				}
+				return (E) sample[k];
+			default:
+				return null;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.emc.nagaina.impl.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ Created by agent on 17.10.26.
+ Hashed timer wheel. An entry is appended to the slot of its deadline tick, the entries which
+ deadline is beyond the wheel revolution stay in the slot for the next rounds. All the due entries
+ of a slot are handed over at once, so the expiration costs neither a scheduled task nor a priority
+ queue operation per entry. The slots are the lock free queues so the entries may be added
+ concurrently without blocking each other or the advancing, the wheel should be advanced by a
+ single thread. The current tick is moved before its slot is drained, so the entry added to the
+ slot which may be drained already is added to the next slot too: the entry may be handed over
+ twice and the consumer should tolerate that.
+ */
+public final class ExpirationWheel<E> {
+
+	private final long tickMillis;
+	private final List<Queue<Node<E>>> slots;
+	private final int mask;
+	private volatile long currentTick;
+
+	private static final class Node<E> {
+
+		private final E entry;
+		private final long deadlineTick;
+
+		private Node(final E entry, final long deadlineTick) {
+			this.entry = entry;
+			this.deadlineTick = deadlineTick;
+		}
+	}
+
+	/**
+	 @param slotCount should be a power of 2
+	 */
+	public ExpirationWheel(final long tickMillis, final int slotCount) {
+		this.tickMillis = tickMillis;
+		this.slots = new ArrayList<>(slotCount);
+		this.mask = slotCount - 1;
+		this.currentTick = System.currentTimeMillis() / tickMillis;
+		for(int i = 0; i < slotCount; i ++) {
+			slots.add(new ConcurrentLinkedQueue<>());
+		}
+	}
+
+	public final void add(final E entry, final long deadlineMillis) {
+		final long deadlineTick = (deadlineMillis + tickMillis - 1) / tickMillis;
+		final Node<E> node = new Node<>(entry, deadlineTick);
+		long tick = Math.max(deadlineTick, currentTick + 1);
+		long t;
+		while(true) {
+			slots.get((int) tick & mask).add(node);
+			t = currentTick;
+			if(t < tick) {
+				// the slot will be drained after the addition
+				return;
+			}
+			// the slot is being drained or drained already, try the next one
+			tick = t + 1;
+		}
+	}
+
+	/**
+	 Processes the slots of all the ticks elapsed till the given time
+	 @param expiredEntryConsumer invoked for every due entry
+	 */
+	public final void advance(final long nowMillis, final Consumer<E> expiredEntryConsumer) {
+		final long nowTick = nowMillis / tickMillis;
+		final List<Node<E>> pendingNodes = new ArrayList<>();
+		long tick;
+		Queue<Node<E>> slot;
+		Node<E> node;
+		while(currentTick < nowTick) {
+			tick = currentTick + 1;
+			currentTick = tick;
+			slot = slots.get((int) tick & mask);
+			while(null != (node = slot.poll())) {
+				if(node.deadlineTick <= tick) {
+					expiredEntryConsumer.accept(node.entry);
+				} else {
+					// the deadline is beyond the wheel revolution
+					pendingNodes.add(node);
+				}
+			}
+			slot.addAll(pendingNodes);
+			pendingNodes.clear();
+		}
+	}
+}
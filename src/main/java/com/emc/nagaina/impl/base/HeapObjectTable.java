@@ -0,0 +1,149 @@
+package com.emc.nagaina.impl.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.BYTE_ORDER;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.OFFSET_ID;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.OFFSET_ID_LENGTH;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.OFFSET_LAYER;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.OFFSET_MASK;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.OFFSET_SIZE;
+import static com.emc.nagaina.impl.base.OffHeapObjectTable.RECORD_SIZE;
+
+/**
+ Created by agent on 17.10.26.
+ Object table backed by the primitive arrays
+ */
+public final class HeapObjectTable
+implements ObjectTable {
+
+	private static final long FREE = -1;
+	private static final int WRITE_BUFF_SLOT_COUNT = 0x1000;
+
+	public static final ObjectTableFactory FACTORY = new ObjectTableFactory() {
+		@Override
+		public final ObjectTable newTable(final int slotCount) {
+			return new HeapObjectTable(slotCount);
+		}
+		@Override
+		public final ObjectTable loadTable(
+			final FileChannel channel, final long position, final int slotCount
+		) throws IOException {
+			final ObjectTable srcTable = OffHeapObjectTable.map(channel, position, slotCount, null);
+			final ObjectTable table = new HeapObjectTable(slotCount);
+			for(int i = 0; i < slotCount; i ++) {
+				if(!srcTable.isFree(i)) {
+					table.store(
+						i, srcTable.id(i), srcTable.idLength(i), srcTable.size(i), srcTable.layer(i),
+						srcTable.mask(i)
+					);
+				}
+			}
+			return table;
+		}
+	};
+
+	private final long ids[];
+	private final long sizes[]; // FREE value marks the free slot
+	private final long masks[];
+	private final int layers[];
+	private final byte idLengths[];
+
+	public HeapObjectTable(final int slotCount) {
+		ids = new long[slotCount];
+		sizes = new long[slotCount];
+		Arrays.fill(sizes, FREE);
+		masks = new long[slotCount];
+		layers = new int[slotCount];
+		idLengths = new byte[slotCount];
+	}
+
+	@Override
+	public final int slotCount() {
+		return sizes.length;
+	}
+
+	@Override
+	public final boolean isFree(final int i) {
+		return sizes[i] == FREE;
+	}
+
+	@Override
+	public final long id(final int i) {
+		return ids[i];
+	}
+
+	@Override
+	public final int idLength(final int i) {
+		return idLengths[i];
+	}
+
+	@Override
+	public final long size(final int i) {
+		return sizes[i];
+	}
+
+	@Override
+	public final int layer(final int i) {
+		return layers[i];
+	}
+
+	@Override
+	public final long mask(final int i) {
+		return masks[i];
+	}
+
+	@Override
+	public final void store(
+		final int i, final long id, final int idLength, final long size, final int layer,
+		final long mask
+	) {
+		ids[i] = id;
+		idLengths[i] = (byte) idLength;
+		sizes[i] = size;
+		layers[i] = layer;
+		masks[i] = mask;
+	}
+
+	@Override
+	public final void free(final int i) {
+		sizes[i] = FREE;
+	}
+
+	@Override
+	public final void write(final WritableByteChannel channel)
+	throws IOException {
+		final ByteBuffer buff = ByteBuffer
+			.allocate(WRITE_BUFF_SLOT_COUNT * RECORD_SIZE)
+			.order(BYTE_ORDER);
+		int pos;
+		for(int i = 0; i < sizes.length; i ++) {
+			pos = buff.position();
+			if(sizes[i] != FREE) {
+				buff.putLong(pos + OFFSET_ID, ids[i]);
+				buff.putLong(pos + OFFSET_SIZE, sizes[i] + 1);
+				buff.putLong(pos + OFFSET_MASK, masks[i]);
+				buff.putInt(pos + OFFSET_LAYER, layers[i]);
+				buff.put(pos + OFFSET_ID_LENGTH, idLengths[i]);
+			}
+			buff.position(pos + RECORD_SIZE);
+			if(!buff.hasRemaining() || i == sizes.length - 1) {
+				buff.flip();
+				while(buff.hasRemaining()) {
+					channel.write(buff);
+				}
+				buff.clear();
+				// the free slot record should be all zeros
+				Arrays.fill(buff.array(), (byte) 0);
+			}
+		}
+	}
+
+	@Override
+	public final void release() {
+	}
+}
@@ -0,0 +1,116 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ The bounded cache of the listing cursors by the continuation tokens. The token is the URL safe
+ Base64 encoded unique id followed by the common prefix flag and the last listed name, so the
+ listing may be continued by the name lookup if the cursor is expired or evicted. A cursor is
+ taken out of the cache on use and is put back under the new token after the page is listed, so it
+ is never used concurrently.
+ */
+public final class ListingCursorCache {
+
+	// the unique id and the common prefix flag
+	private static final int HEADER_SIZE = Long.BYTES + 1;
+
+	private static final class Entry {
+
+		private final ObjectNameIndex.Cursor cursor;
+		private final long deadline;
+
+		private Entry(final ObjectNameIndex.Cursor cursor, final long deadline) {
+			this.cursor = cursor;
+			this.deadline = deadline;
+		}
+	}
+
+	private final ConcurrentEvictingMap<String, Entry> entries;
+	private final long ttlMillis;
+	private final AtomicLong lastId = new AtomicLong(System.nanoTime());
+
+	/**
+	 @param capacity the max count of the cached cursors, 0 means no caching
+	 */
+	public ListingCursorCache(final int capacity, final long ttlMillis) {
+		this.entries = capacity > 0 ?
+			new ConcurrentEvictingMap<>(capacity, EvictionPolicy.CLOCK, entry -> 0, entry -> {}) :
+			null;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 @return the cursor, null if there's no such cursor in the cache or it is expired
+	 */
+	public final ObjectNameIndex.Cursor take(final String token) {
+		if(entries == null) {
+			return null;
+		}
+		final Entry entry = entries.remove(token);
+		if(entry == null || entry.deadline < System.currentTimeMillis()) {
+			return null;
+		}
+		return entry.cursor;
+	}
+
+	/**
+	 @return the continuation token for the cursor
+	 */
+	public final String put(final ObjectNameIndex.Cursor cursor) {
+		final String token = token(cursor.lastListed(), cursor.isLastListedCommonPrefix());
+		if(entries != null) {
+			entries.put(token, new Entry(cursor, System.currentTimeMillis() + ttlMillis));
+		}
+		return token;
+	}
+
+	/**
+	 @param commonPrefix true if the last listed is the common prefix
+	 @return the continuation token which is not backed by a cursor, the listing is continued by the
+	 lookup of the last listed name
+	 */
+	public final String token(final String lastListed, final boolean commonPrefix) {
+		final byte nameBytes[] = lastListed.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer tokenBytes = ByteBuffer.allocate(HEADER_SIZE + nameBytes.length);
+		tokenBytes
+			.putLong(lastId.incrementAndGet()).put(commonPrefix ? (byte) 1 : (byte) 0)
+			.put(nameBytes);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes.array());
+	}
+
+	/**
+	 @return the last name or common prefix listed before the token was issued
+	 @throws IllegalArgumentException if the token is not valid
+	 */
+	public static String lastListed(final String token)
+	throws IllegalArgumentException {
+		final byte tokenBytes[] = decode(token);
+		return new String(
+			tokenBytes, HEADER_SIZE, tokenBytes.length - HEADER_SIZE, StandardCharsets.UTF_8
+		);
+	}
+
+	/**
+	 @return true if the common prefix was listed last before the token was issued
+	 @throws IllegalArgumentException if the token is not valid
+	 */
+	public static boolean isLastListedCommonPrefix(final String token)
+	throws IllegalArgumentException {
+		return decode(token)[Long.BYTES] != 0;
+	}
+
+	private static byte[] decode(final String token)
+	throws IllegalArgumentException {
+		final byte tokenBytes[] = Base64.getUrlDecoder().decode(token);
+		if(tokenBytes.length <= HEADER_SIZE) {
+			throw new IllegalArgumentException("Invalid continuation token: \"" + token + "\"");
+		}
+		return tokenBytes;
+	}
+}
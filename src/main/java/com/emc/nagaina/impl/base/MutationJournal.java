@@ -0,0 +1,642 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.mongoose.ui.log.LogUtil;
+import com.emc.mongoose.ui.log.Loggers;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.LifecycleAware;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutHandler;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import org.apache.logging.log4j.Level;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ Created by agent on 17.10.26.
+ Append only journal of the storage mutations. The mutations are published to the ring buffer and
+ written by the single writer thread, so the request processing threads don't wait for the disk.
+ The records of a batch are written at once, and if the sync period is set the file is forced at
+ most once per the period (group commit), otherwise the records are left in the OS buffers.
+ The publishing never blocks: if the ring buffer is full the record is dropped and counted, so the
+ slow disk degrades the journal instead of stalling the event loops.
+ Every object record contains the resulting object state, so the replay is idempotent and the
+ journal may be replayed over the inventory saved at any moment after the journal rotation.
+ The record layout:
+ <pre>
+ payload length (4 bytes), payload CRC32 (4 bytes), payload:
+   type (1 byte), container name,
+   [object name, offset (8 bytes), size (8 bytes), layer (4 bytes), modified ranges mask (8 bytes)]
+ </pre>
+ The names are written as the length (2 bytes) followed by the UTF-8 bytes.
+ */
+public final class MutationJournal
+implements Closeable {
+
+	private static final int OUTPUT_BUFF_SIZE = 0x100000;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int REPLAY_BATCH_SIZE = 0x10000;
+	private static final int IO_BUFF_SIZE = 0x10000;
+
+	/**
+	 Receives the replayed mutations
+	 */
+	public interface Target {
+
+		void put(
+			final String containerName, final String name, final long offset, final long size,
+			final int layer, final long mask
+		);
+
+		void remove(final String containerName, final String name);
+
+		void createContainer(final String name);
+
+		void deleteContainer(final String name);
+	}
+
+	private enum Type {
+		PUT, REMOVE, CONTAINER_CREATE, CONTAINER_DELETE, ROTATE
+	}
+
+	private static final class Mutation {
+
+		private Type type;
+		private String containerName;
+		private String name;
+		private long offset;
+		private long size;
+		private int layer;
+		private long mask;
+		private CountDownLatch rotateLatch;
+
+		private void apply(final Target target) {
+			switch(type) {
+				case PUT:
+					target.put(containerName, name, offset, size, layer, mask);
+					break;
+				case REMOVE:
+					target.remove(containerName, name);
+					break;
+				case CONTAINER_CREATE:
+					target.createContainer(containerName);
+					break;
+				case CONTAINER_DELETE:
+					target.deleteContainer(containerName);
+					break;
+			}
+		}
+	}
+
+	private final Path file;
+	private final long syncPeriodMillis;
+	private final Disruptor<Mutation> disruptor;
+	private final CountDownLatch startLatch = new CountDownLatch(1);
+	private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+	private final Runnable dropListener;
+	private final AtomicLong droppedCount = new AtomicLong(0);
+	private volatile RingBuffer<Mutation> ringBuffer = null;
+	private int rotationSeq = 0;
+
+	/**
+	 @param syncPeriodMillis the max time between the file syncs, 0 means no explicit sync
+	 @param ringSize the count of the records which may wait for the writer, rounded up to the
+	 power of 2
+	 @param dropListener invoked on the publishing thread for each dropped record, may be null
+	 */
+	public MutationJournal(
+		final Path file, final int syncPeriodMillis, final int ringSize,
+		final Runnable dropListener
+	) {
+		this.file = file;
+		this.syncPeriodMillis = syncPeriodMillis;
+		this.dropListener = dropListener;
+		disruptor = new Disruptor<>(
+			Mutation::new, ringSize > 1 ? Integer.highestOneBit(ringSize - 1) << 1 : 1,
+			task -> {
+				final Thread writerThread = new Thread(task, "journalWriter");
+				writerThread.setDaemon(true);
+				return writerThread;
+			},
+			ProducerType.MULTI,
+			syncPeriodMillis > 0 ?
+				new TimeoutBlockingWaitStrategy(syncPeriodMillis, TimeUnit.MILLISECONDS) :
+				new BlockingWaitStrategy()
+		);
+	}
+
+	/**
+	 Replays the rotated journal files and the journal file, then starts the writer
+	 @return the count of the replayed records
+	 */
+	public final long start(final Target target, final int parallelism)
+	throws IOException {
+		long count = 0;
+		final TreeMap<Integer, Path> rotatedFiles = rotatedFiles();
+		for(final Path rotatedFile : rotatedFiles.values()) {
+			count += replay(rotatedFile, target, parallelism);
+		}
+		rotationSeq = rotatedFiles.isEmpty() ? 0 : rotatedFiles.lastKey();
+		if(Files.exists(file)) {
+			count += replay(file, target, parallelism);
+		}
+		disruptor.handleEventsWith(new Writer());
+		ringBuffer = disruptor.start();
+		// the writer halted before its start would miss the shutdown
+		try {
+			startLatch.await();
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return count;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Publishing, should be invoked after the mutation is applied
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	public final void put(
+		final String containerName, final String name, final long offset, final long size,
+		final int layer, final long mask
+	) {
+		final RingBuffer<Mutation> ringBuffer = this.ringBuffer;
+		if(ringBuffer != null) {
+			final long seq;
+			try {
+				seq = ringBuffer.tryNext();
+			} catch(final InsufficientCapacityException e) {
+				dropped();
+				return;
+			}
+			final Mutation mutation = ringBuffer.get(seq);
+			mutation.type = Type.PUT;
+			mutation.containerName = containerName;
+			mutation.name = name;
+			mutation.offset = offset;
+			mutation.size = size;
+			mutation.layer = layer;
+			mutation.mask = mask;
+			ringBuffer.publish(seq);
+		}
+	}
+
+	public final void remove(final String containerName, final String name) {
+		publish(Type.REMOVE, containerName, name, null);
+	}
+
+	public final void createContainer(final String name) {
+		publish(Type.CONTAINER_CREATE, name, null, null);
+	}
+
+	public final void deleteContainer(final String name) {
+		publish(Type.CONTAINER_DELETE, name, null, null);
+	}
+
+	/**
+	 @return the count of the records dropped because the ring buffer was full
+	 */
+	public final long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 Makes the writer to close the journal file, rename it to the next rotated file and continue
+	 with the new file. The inventory saved after this call contains all the rotated records.
+	 Unlike the mutation records the rotation waits for the free ring buffer slot.
+	 @return false if the journal is not started
+	 */
+	public final boolean rotate()
+	throws InterruptedException {
+		final CountDownLatch rotateLatch = new CountDownLatch(1);
+		if(publish(Type.ROTATE, null, null, rotateLatch)) {
+			rotateLatch.await();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 Deletes the rotated files, should be invoked after the inventory is saved
+	 */
+	public final void deleteRotated()
+	throws IOException {
+		for(final Path rotatedFile : rotatedFiles().values()) {
+			Files.delete(rotatedFile);
+		}
+	}
+
+	private boolean publish(
+		final Type type, final String containerName, final String name,
+		final CountDownLatch rotateLatch
+	) {
+		final RingBuffer<Mutation> ringBuffer = this.ringBuffer;
+		if(ringBuffer == null) {
+			return false;
+		}
+		final long seq;
+		if(Type.ROTATE == type) {
+			seq = ringBuffer.next();
+		} else {
+			try {
+				seq = ringBuffer.tryNext();
+			} catch(final InsufficientCapacityException e) {
+				dropped();
+				return false;
+			}
+		}
+		final Mutation mutation = ringBuffer.get(seq);
+		mutation.type = type;
+		mutation.containerName = containerName;
+		mutation.name = name;
+		mutation.rotateLatch = rotateLatch;
+		ringBuffer.publish(seq);
+		return true;
+	}
+
+	private void dropped() {
+		if(droppedCount.getAndIncrement() == 0) {
+			Loggers.ERR.warn(
+				"The journal writer can't keep up, the records are being dropped, the journal " +
+					"file \"{}\" is not consistent anymore", file
+			);
+		}
+		if(dropListener != null) {
+			dropListener.run();
+		}
+	}
+
+	/**
+	 Waits for the published records to be written and closes the journal file
+	 */
+	@Override
+	public final void close()
+	throws IOException {
+		if(ringBuffer != null) {
+			ringBuffer = null;
+			disruptor.shutdown();
+			try {
+				shutdownLatch.await();
+			} catch(final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Writing
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	private final class Writer
+	implements EventHandler<Mutation>, TimeoutHandler, LifecycleAware {
+
+		private final ByteBuffer outBuff = ByteBuffer.allocateDirect(OUTPUT_BUFF_SIZE);
+		private final CRC32 crc = new CRC32();
+		private FileChannel channel = null;
+		private boolean syncPending = false;
+		private long lastSyncTime = System.currentTimeMillis();
+
+		@Override
+		public final void onStart() {
+			try {
+				openChannel();
+			} catch(final IOException e) {
+				LogUtil.exception(Level.ERROR, e, "Failed to open the journal file \"{}\"", file);
+			} finally {
+				startLatch.countDown();
+			}
+		}
+
+		@Override
+		public final void onEvent(
+			final Mutation mutation, final long seq, final boolean endOfBatch
+		) {
+			if(channel == null) {
+				releaseRotateLatch(mutation);
+				return;
+			}
+			try {
+				if(Type.ROTATE == mutation.type) {
+					rotateFile();
+				} else {
+					append(mutation);
+				}
+				if(endOfBatch) {
+					flush();
+					syncPending = true;
+					if(syncPeriodMillis > 0) {
+						final long t = System.currentTimeMillis();
+						if(t - lastSyncTime >= syncPeriodMillis) {
+							sync(t);
+						}
+					}
+				}
+			} catch(final IOException e) {
+				LogUtil.exception(
+					Level.ERROR, e,
+					"Failed to write the journal file \"{}\", journaling is disabled", file
+				);
+				closeChannel();
+			} finally {
+				releaseRotateLatch(mutation);
+				mutation.containerName = null;
+				mutation.name = null;
+			}
+		}
+
+		@Override
+		public final void onTimeout(final long seq) {
+			if(channel != null && syncPending) {
+				try {
+					sync(System.currentTimeMillis());
+				} catch(final IOException e) {
+					LogUtil.exception(
+						Level.WARN, e, "Failed to sync the journal file \"{}\"", file
+					);
+				}
+			}
+		}
+
+		@Override
+		public final void onShutdown() {
+			try {
+				if(channel != null) {
+					flush();
+					channel.force(false);
+				}
+			} catch(final IOException e) {
+				LogUtil.exception(Level.WARN, e, "Failed to flush the journal file \"{}\"", file);
+			} finally {
+				closeChannel();
+				shutdownLatch.countDown();
+			}
+		}
+
+		private void releaseRotateLatch(final Mutation mutation) {
+			if(mutation.rotateLatch != null) {
+				mutation.rotateLatch.countDown();
+				mutation.rotateLatch = null;
+			}
+		}
+
+		private void append(final Mutation mutation)
+		throws IOException {
+			final byte containerName[] = mutation.containerName.getBytes(StandardCharsets.UTF_8);
+			final byte name[] = mutation.name == null ?
+				null : mutation.name.getBytes(StandardCharsets.UTF_8);
+			final int payloadSize = 3 + containerName.length +
+				(name == null ? 0 : 30 + name.length);
+			if(outBuff.remaining() < RECORD_HEADER_SIZE + payloadSize) {
+				flush();
+			}
+			final int recordStart = outBuff.position();
+			outBuff.position(recordStart + RECORD_HEADER_SIZE);
+			outBuff.put((byte) mutation.type.ordinal());
+			outBuff.putShort((short) containerName.length).put(containerName);
+			if(name != null) {
+				outBuff.putShort((short) name.length).put(name);
+				outBuff.putLong(mutation.offset);
+				outBuff.putLong(mutation.size);
+				outBuff.putInt(mutation.layer);
+				outBuff.putLong(mutation.mask);
+			}
+			final ByteBuffer payload = outBuff.duplicate();
+			payload.position(recordStart + RECORD_HEADER_SIZE).limit(outBuff.position());
+			crc.reset();
+			crc.update(payload);
+			outBuff.putInt(recordStart, payloadSize);
+			outBuff.putInt(recordStart + 4, (int) crc.getValue());
+		}
+
+		private void flush()
+		throws IOException {
+			outBuff.flip();
+			while(outBuff.hasRemaining()) {
+				channel.write(outBuff);
+			}
+			outBuff.clear();
+		}
+
+		private void sync(final long t)
+		throws IOException {
+			channel.force(false);
+			syncPending = false;
+			lastSyncTime = t;
+		}
+
+		private void rotateFile()
+		throws IOException {
+			flush();
+			channel.force(false);
+			channel.close();
+			rotationSeq ++;
+			Files.move(file, rotatedFile(rotationSeq));
+			openChannel();
+		}
+
+		private void openChannel()
+		throws IOException {
+			channel = FileChannel.open(
+				file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+			);
+			syncPending = false;
+		}
+
+		private void closeChannel() {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(final IOException ignored) {
+				}
+				channel = null;
+			}
+		}
+	}
+
+	private Path rotatedFile(final int seq) {
+		return file.resolveSibling(file.getFileName() + "." + seq);
+	}
+
+	/**
+	 @return the rotated files sorted by the rotation sequence number
+	 */
+	private TreeMap<Integer, Path> rotatedFiles()
+	throws IOException {
+		final TreeMap<Integer, Path> rotatedFiles = new TreeMap<>();
+		final Path dir = file.toAbsolutePath().getParent();
+		final String prefix = file.getFileName() + ".";
+		try(final DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir, prefix + "*")) {
+			String suffix;
+			for(final Path f : dirStream) {
+				suffix = f.getFileName().toString().substring(prefix.length());
+				if(!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+					rotatedFiles.put(
+						Integer.parseInt(suffix), file.resolveSibling(f.getFileName())
+					);
+				}
+			}
+		}
+		return rotatedFiles;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////////
+	// Replay
+	////////////////////////////////////////////////////////////////////////////////////////////////
+
+	/**
+	 Reads the records in batches, the object records of a batch are partitioned by the container
+	 and object name, so the records of the same object are applied in the original order. The
+	 container records are applied after all the preceding records. The torn tail is truncated.
+	 */
+	private static long replay(final Path file, final Target target, final int parallelism)
+	throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		final List<List<Mutation>> partitions = new ArrayList<>(parallelism);
+		for(int i = 0; i < parallelism; i ++) {
+			partitions.add(new ArrayList<>());
+		}
+		long count = 0;
+		long validSize = 0;
+		try(
+			final DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(file), IO_BUFF_SIZE)
+			)
+		) {
+			final CRC32 crc = new CRC32();
+			byte payload[] = new byte[0x100];
+			int payloadSize, batchSize = 0;
+			Mutation mutation;
+			while(true) {
+				try {
+					payloadSize = in.readInt();
+					final int checksum = in.readInt();
+					if(payloadSize < 3 || payloadSize > OUTPUT_BUFF_SIZE) {
+						break;
+					}
+					if(payload.length < payloadSize) {
+						payload = new byte[payloadSize];
+					}
+					in.readFully(payload, 0, payloadSize);
+					crc.reset();
+					crc.update(payload, 0, payloadSize);
+					if(checksum != (int) crc.getValue()) {
+						break;
+					}
+				} catch(final EOFException e) {
+					break;
+				}
+				mutation = decode(ByteBuffer.wrap(payload, 0, payloadSize));
+				validSize += RECORD_HEADER_SIZE + payloadSize;
+				count ++;
+				if(mutation.name == null) {
+					applyBatch(pool, partitions, target);
+					batchSize = 0;
+					mutation.apply(target);
+				} else {
+					partitions
+						.get(((mutation.containerName.hashCode() * 31 + mutation.name.hashCode()) &
+							Integer.MAX_VALUE) % parallelism)
+						.add(mutation);
+					if(++ batchSize == REPLAY_BATCH_SIZE) {
+						applyBatch(pool, partitions, target);
+						batchSize = 0;
+					}
+				}
+			}
+			applyBatch(pool, partitions, target);
+		} finally {
+			pool.shutdown();
+		}
+		if(validSize < Files.size(file)) {
+			Loggers.ERR.warn(
+				"Journal file \"{}\" is truncated to {} bytes after the invalid record", file,
+				validSize
+			);
+			try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				channel.truncate(validSize);
+			}
+		}
+		Loggers.MSG.info("Replayed {} records from the journal file {}", count, file);
+		return count;
+	}
+
+	private static Mutation decode(final ByteBuffer payload) {
+		final Mutation mutation = new Mutation();
+		mutation.type = Type.values()[payload.get()];
+		mutation.containerName = decodeString(payload);
+		if(payload.hasRemaining()) {
+			mutation.name = decodeString(payload);
+			mutation.offset = payload.getLong();
+			mutation.size = payload.getLong();
+			mutation.layer = payload.getInt();
+			mutation.mask = payload.getLong();
+		}
+		return mutation;
+	}
+
+	private static String decodeString(final ByteBuffer buff) {
+		final int len = buff.getShort() & 0xFFFF;
+		final String s = new String(
+			buff.array(), buff.arrayOffset() + buff.position(), len, StandardCharsets.UTF_8
+		);
+		buff.position(buff.position() + len);
+		return s;
+	}
+
+	private static void applyBatch(
+		final ForkJoinPool pool, final List<List<Mutation>> partitions, final Target target
+	) throws IOException {
+		final List<Callable<Void>> tasks = new ArrayList<>(partitions.size());
+		for(final List<Mutation> partition : partitions) {
+			if(!partition.isEmpty()) {
+				tasks.add(
+					() -> {
+						for(final Mutation mutation : partition) {
+							mutation.apply(target);
+						}
+						return null;
+					}
+				);
+			}
+		}
+		try {
+			for(final Future<Void> result : pool.invokeAll(tasks)) {
+				result.get();
+			}
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch(final ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		for(final List<Mutation> partition : partitions) {
+			partition.clear();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.emc.nagaina.impl.base;
+
+/**
+ Created by agent on 17.10.26.
+ Converts the object ids like "[prefix/]digits" to the numeric values and back using the item
+ naming prefix and radix. The digits count is kept by the caller to restore the leading zeros.
+ */
+public final class ObjectIdCodec {
+
+	private final String prefix;
+	private final String idPrefix;
+	private final int radix;
+
+	public ObjectIdCodec(final String prefix, final int radix) {
+		this.prefix = prefix == null || prefix.isEmpty() ? null : prefix;
+		this.idPrefix = this.prefix == null ? null : this.prefix + '/';
+		this.radix = radix;
+	}
+
+	public final String getPrefix() {
+		return prefix;
+	}
+
+	public final int getRadix() {
+		return radix;
+	}
+
+	/**
+	 @return the digits start position in the key or -1 if the key doesn't have the prefix
+	 */
+	public final int start(final String key) {
+		if(idPrefix == null) {
+			return 0;
+		} else if(key.startsWith(idPrefix)) {
+			return idPrefix.length();
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 @return the parsed id or -1 if the key can't be restored exactly from the parsed id
+	 */
+	public final long parse(final String key, final int start) {
+		final int len = key.length() - start;
+		if(start < 0 || len < 1 || len > Byte.MAX_VALUE) {
+			return -1;
+		}
+		final long limit = Long.MAX_VALUE / radix;
+		long id = 0;
+		int digit;
+		for(int i = start; i < key.length(); i ++) {
+			digit = digit(key.charAt(i));
+			if(digit < 0 || digit >= radix || id > limit) {
+				return -1;
+			}
+			id = id * radix + digit;
+			if(id < 0) {
+				return -1;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 Accepts only the characters which may be produced by {@link Long#toString(long, int)}, so the
+	 other (upper case, non-ASCII) digits are not parsed into the same id
+	 */
+	private static int digit(final char c) {
+		if(c >= '0' && c <= '9') {
+			return c - '0';
+		} else if(c >= 'a' && c <= 'z') {
+			return c - 'a' + 10;
+		} else {
+			return -1;
+		}
+	}
+
+	public final String format(final long id, final int len) {
+		final String digits = Long.toString(id, radix);
+		final StringBuilder sb = new StringBuilder(
+			(idPrefix == null ? 0 : idPrefix.length()) + Math.max(len, digits.length())
+		);
+		if(idPrefix != null) {
+			sb.append(idPrefix);
+		}
+		for(int i = digits.length(); i < len; i ++) {
+			sb.append('0');
+		}
+		return sb.append(digits).toString();
+	}
+
+	@Override
+	public final boolean equals(final Object o) {
+		if(!(o instanceof ObjectIdCodec)) {
+			return false;
+		}
+		final ObjectIdCodec other = (ObjectIdCodec) o;
+		if(radix != other.radix) {
+			return false;
+		}
+		return prefix == null ? other.prefix == null : prefix.equals(other.prefix);
+	}
+
+	@Override
+	public final int hashCode() {
+		return 31 * radix + (prefix == null ? 0 : prefix.hashCode());
+	}
+}
@@ -0,0 +1,266 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ Created by agent on 17.10.26.
+ The sorted index of the container's object names for the prefix and delimiter listing. The index
+ is built on the first use by the container scan and then is updated on the objects creation,
+ deletion and eviction. The names of the objects removed concurrently with the index build are
+ dropped lazily when met during the listing. A listing page costs the lookup of the start name
+ and a lookup per common prefix rolled up instead of the scan of the names under that prefix,
+ the cursor allows to continue the listing from the previous page's position without the lookup.
+ */
+public final class ObjectNameIndex<I extends DataItemMock> {
+
+	private static final int SCAN_PAGE_SIZE = 0x1000;
+
+	private final ObjectContainerMock<I> container;
+	private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+	private volatile boolean built = false;
+
+	public ObjectNameIndex(final ObjectContainerMock<I> container) {
+		this.container = container;
+	}
+
+	public final boolean isIndexOf(final ObjectContainerMock<I> container) {
+		return this.container == container;
+	}
+
+	public final void add(final String name) {
+		names.add(name);
+	}
+
+	public final void remove(final String name) {
+		names.remove(name);
+	}
+
+	/**
+	 Should be invoked after the object is evicted by the container. The name is added back if the
+	 object with the same name is created concurrently, as its creation may be indexed before.
+	 */
+	public final void evicted(final String name) {
+		if(names.remove(name) && container.get(name) != null) {
+			names.add(name);
+		}
+	}
+
+	/**
+	 @return the count of the indexed names, takes the time proportional to the count
+	 */
+	public final int size() {
+		return names.size();
+	}
+
+	private void build() {
+		final List<I> page = new ArrayList<>(SCAN_PAGE_SIZE);
+		I lastItem = null;
+		do {
+			lastItem = container.list(
+				lastItem == null ? null : lastItem.getName(), page, SCAN_PAGE_SIZE
+			);
+			for(final I item : page) {
+				names.add(item.getName());
+			}
+			if(page.isEmpty()) {
+				break;
+			}
+			page.clear();
+		} while(lastItem != null);
+	}
+
+	/**
+	 The listing position which may be continued by the next page listing without the lookup
+	 */
+	public static final class Cursor {
+
+		private final ObjectNameIndex<?> index;
+		private final String prefix;
+		private final String delimiter;
+		private Iterator<String> namesIter;
+		// the name taken from the iterator but not listed yet
+		private String pendingName = null;
+		private String lastListed = null;
+		private boolean lastListedCommonPrefix = false;
+
+		private Cursor(
+			final ObjectNameIndex<?> index, final String prefix, final String delimiter,
+			final Iterator<String> namesIter
+		) {
+			this.index = index;
+			this.prefix = prefix;
+			this.delimiter = delimiter;
+			this.namesIter = namesIter;
+		}
+
+		/**
+		 @return true if the cursor may be used to continue the listing with the same parameters
+		 */
+		public final boolean matches(
+			final ObjectNameIndex<?> index, final String prefix, final String delimiter
+		) {
+			return this.index == index && this.prefix.equals(prefix) &&
+				(this.delimiter == null ? delimiter == null : this.delimiter.equals(delimiter));
+		}
+
+		/**
+		 @return the last listed name or common prefix
+		 */
+		public final String lastListed() {
+			return lastListed;
+		}
+
+		/**
+		 @return true if the last listed is the common prefix, false if it's the object name
+		 */
+		public final boolean isLastListedCommonPrefix() {
+			return lastListedCommonPrefix;
+		}
+	}
+
+	/**
+	 Lists the objects in the lexicographical order of their names
+	 @param prefix the names prefix, may be empty
+	 @param delimiter the names with the delimiter after the prefix are rolled up into the common
+	 prefixes, null means no roll up
+	 @param marker the name or the common prefix to list after, null to list from the beginning
+	 @param outputBuffer the listed objects
+	 @param commonPrefixes the listed common prefixes
+	 @param maxCount the max count of the objects and the common prefixes in total to list
+	 @return the marker for the next page, null if there are no more objects
+	 */
+	public final String list(
+		final String prefix, final String delimiter, final String marker,
+		final Collection<I> outputBuffer, final Collection<String> commonPrefixes,
+		final int maxCount
+	) {
+		final Cursor cursor;
+		final int delimiterPos = marker != null && marker.startsWith(prefix) ?
+			rollUpPos(marker, prefix, delimiter) : -1;
+		if(delimiterPos < 0) {
+			cursor = cursor(prefix, delimiter, marker, false);
+		} else {
+			// the marker which would be rolled up was listed as the common prefix (or is the
+			// name under it which is listed as that common prefix)
+			cursor = cursor(
+				prefix, delimiter, marker.substring(0, delimiterPos + delimiter.length()), true
+			);
+		}
+		return list(cursor, outputBuffer, commonPrefixes, maxCount) ? cursor.lastListed : null;
+	}
+
+	/**
+	 @return the position of the delimiter after the prefix in the name, -1 if the name is not
+	 rolled up into a common prefix
+	 */
+	private static int rollUpPos(final String name, final String prefix, final String delimiter) {
+		if(delimiter == null || delimiter.isEmpty()) {
+			return -1;
+		}
+		return name.indexOf(delimiter, prefix.length());
+	}
+
+	/**
+	 @param marker the name or the common prefix to list after, null to list from the beginning
+	 @param commonPrefixMarker true if the marker is the common prefix, so all the names starting
+	 with it are skipped, false if the marker is the name
+	 @return the new cursor positioned after the marker
+	 */
+	public final Cursor cursor(
+		final String prefix, final String delimiter, final String marker,
+		final boolean commonPrefixMarker
+	) {
+		if(!built) {
+			synchronized(this) {
+				if(!built) {
+					build();
+					built = true;
+				}
+			}
+		}
+		final Iterator<String> namesIter;
+		if(marker == null || marker.compareTo(prefix) < 0) {
+			namesIter = names.tailSet(prefix, true).iterator();
+		} else if(commonPrefixMarker) {
+			namesIter = names.tailSet(successor(marker), true).iterator();
+		} else {
+			namesIter = names.tailSet(marker, false).iterator();
+		}
+		return new Cursor(this, prefix, delimiter, namesIter);
+	}
+
+	/**
+	 Lists the next page from the cursor's position, the cursor should not be used concurrently
+	 @return true if there are more objects to list
+	 */
+	public final boolean list(
+		final Cursor cursor, final Collection<I> outputBuffer,
+		final Collection<String> commonPrefixes, final int maxCount
+	) {
+		final String prefix = cursor.prefix;
+		final String delimiter = cursor.delimiter;
+		int count = 0;
+		String name, commonPrefix;
+		int delimiterPos;
+		I obj;
+		while(true) {
+			if(cursor.pendingName == null) {
+				if(!cursor.namesIter.hasNext()) {
+					return false;
+				}
+				name = cursor.namesIter.next();
+			} else {
+				name = cursor.pendingName;
+				cursor.pendingName = null;
+			}
+			if(!name.startsWith(prefix)) {
+				return false;
+			}
+			if(count == maxCount) {
+				cursor.pendingName = name;
+				return true;
+			}
+			delimiterPos = rollUpPos(name, prefix, delimiter);
+			if(delimiterPos < 0) {
+				obj = container.get(name);
+				if(obj == null) {
+					names.remove(name);
+					continue;
+				}
+				outputBuffer.add(obj);
+				cursor.lastListed = name;
+				cursor.lastListedCommonPrefix = false;
+			} else {
+				commonPrefix = name.substring(0, delimiterPos + delimiter.length());
+				commonPrefixes.add(commonPrefix);
+				cursor.lastListed = commonPrefix;
+				cursor.lastListedCommonPrefix = true;
+				// skip all the names having the same common prefix
+				cursor.namesIter = names.tailSet(successor(commonPrefix), true).iterator();
+			}
+			count ++;
+		}
+	}
+
+	/**
+	 @return the least string which is greater than any string starting with the given prefix
+	 */
+	private static String successor(final String prefix) {
+		int i = prefix.length() - 1;
+		while(i >= 0 && prefix.charAt(i) == Character.MAX_VALUE) {
+			i --;
+		}
+		if(i < 0) {
+			return prefix + Character.MAX_VALUE;
+		}
+		return prefix.substring(0, i) + (char) (prefix.charAt(i) + 1);
+	}
+}
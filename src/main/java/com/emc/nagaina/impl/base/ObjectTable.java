@@ -0,0 +1,44 @@
+package com.emc.nagaina.impl.base;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ Created by agent on 17.10.26.
+ Fixed width object records storage of the compact container. The slot is addressed by its index,
+ the hash indexing is done by the container.
+ */
+public interface ObjectTable {
+
+	int slotCount();
+
+	boolean isFree(final int i);
+
+	long id(final int i);
+
+	int idLength(final int i);
+
+	long size(final int i);
+
+	int layer(final int i);
+
+	long mask(final int i);
+
+	void store(
+		final int i, final long id, final int idLength, final long size, final int layer,
+		final long mask
+	);
+
+	void free(final int i);
+
+	/**
+	 Writes all the slots using the off-heap table record layout
+	 */
+	void write(final WritableByteChannel channel)
+	throws IOException;
+
+	/**
+	 Frees the resources, the table should not be used after this
+	 */
+	void release();
+}
@@ -0,0 +1,22 @@
+package com.emc.nagaina.impl.base;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public interface ObjectTableFactory {
+
+	/**
+	 @return the new empty table or null if it can't be allocated
+	 */
+	ObjectTable newTable(final int slotCount);
+
+	/**
+	 Loads the table written by ObjectTable.write method
+	 @param position the records start position in the file
+	 */
+	ObjectTable loadTable(final FileChannel channel, final long position, final int slotCount)
+	throws IOException;
+}
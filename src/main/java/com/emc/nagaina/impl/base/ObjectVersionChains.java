@@ -0,0 +1,177 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.DataItemMockVersion;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Created by agent on 17.10.26.
+ The non-current versions of the objects of a container. A chain is allocated only for the object
+ which was overwritten at least once, every version takes 3 longs in the chain's array: the version
+ number packed together with the layer, the size and the modified ranges mask. The offset is kept
+ once per chain as it is derived from the object's name and doesn't change between the versions.
+ The caller should hold the storage's object lock while changing both the container and the chain.
+ */
+public final class ObjectVersionChains {
+
+	private static final int RECORD_LEN = 3;
+	private static final int INIT_VERSION = 1;
+
+	private static final class Chain {
+
+		private final long offset;
+		private int currentVersion = INIT_VERSION;
+		// the removed versions numbers are not reused
+		private int lastVersion = INIT_VERSION;
+		private long records[] = new long[RECORD_LEN * 2];
+		private int count = 0;
+
+		private Chain(final long offset) {
+			this.offset = offset;
+		}
+
+		private void add(final int version, final long size, final int layer, final long mask) {
+			final int i = count * RECORD_LEN;
+			if(i == records.length) {
+				final long newRecords[] = new long[records.length << 1];
+				System.arraycopy(records, 0, newRecords, 0, i);
+				records = newRecords;
+			}
+			records[i] = ((long) version << 32) | (layer & 0xFFFFFFFFL);
+			records[i + 1] = size;
+			records[i + 2] = mask;
+			count ++;
+		}
+
+		private int indexOf(final long version) {
+			for(int i = 0; i < count; i ++) {
+				if(version(i) == version) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private int version(final int i) {
+			return (int) (records[i * RECORD_LEN] >>> 32);
+		}
+
+		private BasicDataItemMock item(final String name, final int i) {
+			final int j = i * RECORD_LEN;
+			return new BasicDataItemMock(
+				name, offset, records[j + 1], (int) records[j], records[j + 2]
+			);
+		}
+
+		private void remove(final int i) {
+			final int j = i * RECORD_LEN;
+			System.arraycopy(records, j + RECORD_LEN, records, j, (count - i - 1) * RECORD_LEN);
+			count --;
+		}
+	}
+
+	private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+
+	/**
+	 Should be invoked after the new object is put into the container
+	 @param prevObj the replaced object, null if there was no object with such name
+	 @return the version of the new object
+	 */
+	public final long created(final String name, final long offset, final DataItemMock prevObj) {
+		if(prevObj == null) {
+			// drop the chain left by the object removed from the container by the eviction
+			chains.remove(name);
+			return INIT_VERSION;
+		}
+		Chain chain = chains.get(name);
+		if(chain == null) {
+			chain = new Chain(offset);
+			chains.put(name, chain);
+		}
+		chain.add(
+			chain.currentVersion, prevObj.size(), prevObj.layer(), prevObj.getModifiedRangesMask()
+		);
+		chain.currentVersion = ++ chain.lastVersion;
+		return chain.currentVersion;
+	}
+
+	public final long currentVersion(final String name) {
+		final Chain chain = chains.get(name);
+		return chain == null ? INIT_VERSION : chain.currentVersion;
+	}
+
+	/**
+	 @return the non-current version of the object, null if there's no such version
+	 */
+	public final BasicDataItemMock get(final String name, final long version) {
+		final Chain chain = chains.get(name);
+		if(chain != null) {
+			final int i = chain.indexOf(version);
+			if(i > -1) {
+				return chain.item(name, i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 Removes the non-current version of the object
+	 @return true if the version existed
+	 */
+	public final boolean remove(final String name, final long version) {
+		final Chain chain = chains.get(name);
+		if(chain != null) {
+			final int i = chain.indexOf(version);
+			if(i > -1) {
+				chain.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 Should be invoked after the current version of the object is removed from the container
+	 @return the latest of the remaining versions which becomes the current one, null if none
+	 */
+	public final BasicDataItemMock promoteLatest(final String name) {
+		final Chain chain = chains.get(name);
+		if(chain == null || chain.count == 0) {
+			chains.remove(name);
+			return null;
+		}
+		final int i = chain.count - 1;
+		final BasicDataItemMock item = chain.item(name, i);
+		chain.currentVersion = chain.version(i);
+		chain.remove(i);
+		return item;
+	}
+
+	public final void removeAll(final String name) {
+		chains.remove(name);
+	}
+
+	/**
+	 Adds the current version and then the non-current versions from the newest to the oldest
+	 */
+	@SuppressWarnings("unchecked")
+	public final <I extends DataItemMock> void list(
+		final I current, final Collection<DataItemMockVersion<I>> outputBuffer
+	) {
+		final String name = current.getName();
+		final Chain chain = chains.get(name);
+		if(chain == null) {
+			outputBuffer.add(new DataItemMockVersion<>(current, INIT_VERSION, true));
+		} else {
+			outputBuffer.add(new DataItemMockVersion<>(current, chain.currentVersion, true));
+			for(int i = chain.count - 1; i >= 0; i --) {
+				outputBuffer.add(
+					new DataItemMockVersion<>((I) chain.item(name, i), chain.version(i), false)
+				);
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.emc.nagaina.impl.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ Object table backed by the direct memory slabs. The record layout (32 bytes, little endian):
+ <pre>
+ 0  id (8 bytes)
+ 8  size + 1 (8 bytes), zero marks the free slot so the new slab doesn't need the initialization
+ 16 modified ranges mask (8 bytes)
+ 24 layer (4 bytes)
+ 28 id length (1 byte)
+ </pre>
+ The same layout is used for the inventory file so the table may be mapped from the file directly.
+ The allocated memory is accounted by the budget shared among all the tables of the storage.
+ */
+public final class OffHeapObjectTable
+implements ObjectTable {
+
+	public static final int RECORD_SIZE = 32;
+	static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	static final int OFFSET_ID = 0;
+	static final int OFFSET_SIZE = 8;
+	static final int OFFSET_MASK = 16;
+	static final int OFFSET_LAYER = 24;
+	static final int OFFSET_ID_LENGTH = 28;
+
+	private static final int RECORD_SHIFT = 5;
+	private static final int SLAB_SHIFT = 16;
+	private static final int SLAB_SLOT_COUNT = 1 << SLAB_SHIFT;
+	private static final int SLAB_SLOT_MASK = SLAB_SLOT_COUNT - 1;
+	private static final int MAP_CHUNK_SLAB_COUNT = 0x200; // 1GB
+
+	private final int slotCount;
+	private final ByteBuffer slabs[];
+	private final AtomicLong budget;
+
+	private OffHeapObjectTable(final int slotCount, final ByteBuffer slabs[], final AtomicLong budget) {
+		this.slotCount = slotCount;
+		this.slabs = slabs;
+		this.budget = budget;
+	}
+
+	private static int slabCount(final int slotCount) {
+		return (slotCount + SLAB_SLOT_MASK) >>> SLAB_SHIFT;
+	}
+
+	private static int slabSize(final int slotCount) {
+		return Math.min(slotCount, SLAB_SLOT_COUNT) << RECORD_SHIFT;
+	}
+
+	/**
+	 @param budget the remaining off-heap memory budget in bytes
+	 @param force allocate even if the budget is exhausted
+	 @return the new table or null if the budget is exhausted
+	 */
+	public static OffHeapObjectTable allocate(
+		final int slotCount, final AtomicLong budget, final boolean force
+	) {
+		final long memSize = (long) slotCount << RECORD_SHIFT;
+		if(force) {
+			budget.addAndGet(-memSize);
+		} else {
+			long remaining;
+			do {
+				remaining = budget.get();
+				if(remaining < memSize) {
+					return null;
+				}
+			} while(!budget.compareAndSet(remaining, remaining - memSize));
+		}
+		final ByteBuffer slabs[] = new ByteBuffer[slabCount(slotCount)];
+		for(int i = 0; i < slabs.length; i ++) {
+			slabs[i] = ByteBuffer.allocateDirect(slabSize(slotCount)).order(BYTE_ORDER);
+		}
+		return new OffHeapObjectTable(slotCount, slabs, budget);
+	}
+
+	/**
+	 Maps the table records from the file. The mapping is private (copy on write) so the changes are
+	 not written to the file and the pages are loaded on demand.
+	 @param budget the budget to account the mapped memory, may be null
+	 */
+	public static OffHeapObjectTable map(
+		final FileChannel channel, final long position, final int slotCount, final AtomicLong budget
+	) throws IOException {
+		final int slabSize = slabSize(slotCount);
+		final ByteBuffer slabs[] = new ByteBuffer[slabCount(slotCount)];
+		MappedByteBuffer chunk = null;
+		ByteBuffer slab;
+		for(int i = 0; i < slabs.length; i ++) {
+			if(i % MAP_CHUNK_SLAB_COUNT == 0) {
+				chunk = channel.map(
+					FileChannel.MapMode.PRIVATE, position + (long) i * slabSize,
+					(long) Math.min(slabs.length - i, MAP_CHUNK_SLAB_COUNT) * slabSize
+				);
+			}
+			slab = chunk.duplicate();
+			slab.position((i % MAP_CHUNK_SLAB_COUNT) * slabSize);
+			slab.limit(slab.position() + slabSize);
+			slabs[i] = slab.slice().order(BYTE_ORDER);
+		}
+		if(budget != null) {
+			budget.addAndGet(-((long) slotCount << RECORD_SHIFT));
+		}
+		return new OffHeapObjectTable(slotCount, slabs, budget);
+	}
+
+	/**
+	 @return the factory allocating the tables from the budget, the minimal tables are allocated
+	 regardless of the budget
+	 */
+	public static ObjectTableFactory factory(final AtomicLong budget) {
+		return new ObjectTableFactory() {
+			@Override
+			public final ObjectTable newTable(final int slotCount) {
+				return allocate(
+					slotCount, budget, slotCount <= CompactObjectContainerMock.MIN_TABLE_SIZE
+				);
+			}
+			@Override
+			public final ObjectTable loadTable(
+				final FileChannel channel, final long position, final int slotCount
+			) throws IOException {
+				return map(channel, position, slotCount, budget);
+			}
+		};
+	}
+
+	private ByteBuffer slab(final int i) {
+		return slabs[i >>> SLAB_SHIFT];
+	}
+
+	private static int pos(final int i) {
+		return (i & SLAB_SLOT_MASK) << RECORD_SHIFT;
+	}
+
+	@Override
+	public final int slotCount() {
+		return slotCount;
+	}
+
+	@Override
+	public final boolean isFree(final int i) {
+		return slab(i).getLong(pos(i) + OFFSET_SIZE) == 0;
+	}
+
+	@Override
+	public final long id(final int i) {
+		return slab(i).getLong(pos(i) + OFFSET_ID);
+	}
+
+	@Override
+	public final int idLength(final int i) {
+		return slab(i).get(pos(i) + OFFSET_ID_LENGTH);
+	}
+
+	@Override
+	public final long size(final int i) {
+		return slab(i).getLong(pos(i) + OFFSET_SIZE) - 1;
+	}
+
+	@Override
+	public final int layer(final int i) {
+		return slab(i).getInt(pos(i) + OFFSET_LAYER);
+	}
+
+	@Override
+	public final long mask(final int i) {
+		return slab(i).getLong(pos(i) + OFFSET_MASK);
+	}
+
+	@Override
+	public final void store(
+		final int i, final long id, final int idLength, final long size, final int layer,
+		final long mask
+	) {
+		final ByteBuffer slab = slab(i);
+		final int pos = pos(i);
+		slab.putLong(pos + OFFSET_ID, id);
+		slab.putLong(pos + OFFSET_SIZE, size + 1);
+		slab.putLong(pos + OFFSET_MASK, mask);
+		slab.putInt(pos + OFFSET_LAYER, layer);
+		slab.put(pos + OFFSET_ID_LENGTH, (byte) idLength);
+	}
+
+	@Override
+	public final void free(final int i) {
+		slab(i).putLong(pos(i) + OFFSET_SIZE, 0);
+	}
+
+	@Override
+	public final void write(final WritableByteChannel channel)
+	throws IOException {
+		ByteBuffer buff;
+		for(final ByteBuffer slab : slabs) {
+			buff = slab.duplicate();
+			buff.clear();
+			while(buff.hasRemaining()) {
+				channel.write(buff);
+			}
+		}
+	}
+
+	/**
+	 Returns the memory to the budget, the buffers are freed by the garbage collector
+	 */
+	@Override
+	public final void release() {
+		if(budget != null) {
+			budget.addAndGet((long) slotCount << RECORD_SHIFT);
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.mongoose.api.model.item.ItemFactory;
+import com.emc.mongoose.ui.log.Loggers;
+
+import com.emc.nagaina.api.DataItemMock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ Created by agent on 17.10.26.
+ Loads the items from the CSV file in parallel. The file is split into the byte ranges which are
+ processed by the fork join pool tasks. Every task maps its range and processes the lines which
+ start in the range: the first line is skipped if it is started in the preceding range, the last
+ line is read beyond the range end.
+ */
+public final class ParallelCsvItemLoader<I extends DataItemMock> {
+
+	private static final int CHUNK_SIZE = 0x1000000; // 16MB
+	private static final int MAX_LINE_LEN = 0x10000;
+
+	private final Path file;
+	private final ItemFactory<I> itemFactory;
+	private final Consumer<I> itemConsumer;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder invalidCount = new LongAdder();
+
+	public ParallelCsvItemLoader(
+		final Path file, final ItemFactory<I> itemFactory, final Consumer<I> itemConsumer
+	) {
+		this.file = file;
+		this.itemFactory = itemFactory;
+		this.itemConsumer = itemConsumer;
+	}
+
+	/**
+	 @return the count of the loaded items so far
+	 */
+	public final long getCount() {
+		return count.sum();
+	}
+
+	public final long getInvalidCount() {
+		return invalidCount.sum();
+	}
+
+	/**
+	 @return the count of the loaded items
+	 */
+	public final long load(final int parallelism)
+	throws IOException {
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			pool.invoke(new RangeTask(channel, 0, channel.size()));
+		} catch(final UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+		}
+		return count.sum();
+	}
+
+	private final class RangeTask
+	extends RecursiveAction {
+
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+
+		private RangeTask(final FileChannel channel, final long start, final long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected final void compute() {
+			if(end - start > CHUNK_SIZE) {
+				final long middle = start + (end - start) / 2;
+				invokeAll(
+					new RangeTask(channel, start, middle), new RangeTask(channel, middle, end)
+				);
+			} else {
+				try {
+					loadRange();
+				} catch(final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		private void loadRange()
+		throws IOException {
+			final long fileSize = channel.size();
+			// map from the previous byte to determine if the range starts with a new line
+			final long mapStart = start > 0 ? start - 1 : 0;
+			final long mapEnd = Math.min(end + MAX_LINE_LEN, fileSize);
+			final MappedByteBuffer buff = channel.map(
+				FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart
+			);
+			final int rangeEnd = (int) (end - mapStart);
+			final int limit = buff.limit();
+			int lineStart = 0;
+			if(start > 0) {
+				while(lineStart < limit && buff.get(lineStart) != '\n') {
+					lineStart ++;
+				}
+				lineStart ++;
+			}
+			byte lineBuff[] = new byte[0x100];
+			int lineEnd, lineLen;
+			while(lineStart < rangeEnd && lineStart < limit) {
+				lineEnd = lineStart;
+				while(lineEnd < limit && buff.get(lineEnd) != '\n') {
+					lineEnd ++;
+				}
+				if(lineEnd == limit && mapEnd < fileSize) {
+					throw new IOException(
+						"The line at the position " + (mapStart + lineStart) + " is too long"
+					);
+				}
+				lineLen = lineEnd - lineStart;
+				if(lineLen > 0 && buff.get(lineEnd - 1) == '\r') {
+					lineLen --;
+				}
+				if(lineLen > 0) {
+					if(lineBuff.length < lineLen) {
+						lineBuff = new byte[Integer.highestOneBit(lineLen) << 1];
+					}
+					buff.position(lineStart);
+					buff.get(lineBuff, 0, lineLen);
+					loadLine(new String(lineBuff, 0, lineLen, StandardCharsets.UTF_8));
+				}
+				lineStart = lineEnd + 1;
+			}
+		}
+
+		private void loadLine(final String line) {
+			final I item;
+			try {
+				item = itemFactory.getItem(line);
+			} catch(final RuntimeException e) {
+				invalidCount.increment();
+				if(Loggers.ERR.isDebugEnabled()) {
+					Loggers.ERR.debug("Invalid item line: \"{}\"", line);
+				}
+				return;
+			}
+			itemConsumer.accept(item);
+			count.increment();
+		}
+	}
+}
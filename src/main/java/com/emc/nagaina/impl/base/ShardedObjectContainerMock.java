@@ -0,0 +1,267 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ Created by agent on 17.10.26.
+ Container which consists of the independent shards, the object's shard is chosen by the object
+ name's hash. If the storage is sharded the object requests are executed by the shard's owner event
+ loop, so a shard's objects are modified by a single thread. The container level requests (listing,
+ deletion) access the shards from any event loop, so the shards are the lock free concurrent
+ containers. Otherwise the shards are just the independent partitions of a heavily used container.
+ The shard's capacity is the container's capacity divided by the shards count. The shards share
+ the container's usage counters, so the object reserved with the container is accounted by its
+ shard at the same level and the size limit is enforced for the whole container.
+ If the shards list the objects in the name order the listing merges their output, so the listing
+ order is the same as the unsharded container's one. Otherwise the shards are listed one by one and
+ the listing from the marker starts from the marker's shard.
+ */
+public final class ShardedObjectContainerMock<T extends DataItemMock>
+implements ObjectContainerMock<T> {
+
+	private final ObjectContainerMock<T> shards[];
+	private final StorageMockUsage usage;
+	private final boolean sorted;
+
+	/**
+	 @param shards the shards sharing the given usage counters
+	 @param sorted true if the shards list the objects in the name order
+	 */
+	public ShardedObjectContainerMock(
+		final ObjectContainerMock<T> shards[], final StorageMockUsage usage, final boolean sorted
+	) {
+		this.shards = shards;
+		this.usage = usage;
+		this.sorted = sorted;
+	}
+
+	/**
+	 @return the shard index for the object name, the same for the storage and the request routing
+	 */
+	public static int shardIndex(final String name, final int shardCount) {
+		int h = name.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return (h & Integer.MAX_VALUE) % shardCount;
+	}
+
+	private ObjectContainerMock<T> shard(final String key) {
+		return shards[shardIndex(key, shards.length)];
+	}
+
+	@Override
+	public final T get(final String key) {
+		return shard(key).get(key);
+	}
+
+	@Override
+	public final T put(final String key, final T value) {
+		return shard(key).put(key, value);
+	}
+
+	@Override
+	public final T putReserved(final String key, final T value, final boolean countReserved) {
+		return shard(key).putReserved(key, value, countReserved);
+	}
+
+	@Override
+	public final T remove(final String key) {
+		return shard(key).remove(key);
+	}
+
+	@Override
+	public final boolean commit(
+		final String key, final T value, final Modification<T> modification
+	) {
+		return shard(key).commit(key, value, modification);
+	}
+
+	@Override
+	public final boolean reserve(final long size) {
+		return usage.reserve(size);
+	}
+
+	@Override
+	public final void release(final long size) {
+		usage.release(size);
+	}
+
+	@Override
+	public final boolean reserveCount() {
+		return usage.reserveCount();
+	}
+
+	@Override
+	public final void releaseCount() {
+		usage.releaseCount();
+	}
+
+	@Override
+	public final int size() {
+		int size = 0;
+		for(final ObjectContainerMock<T> shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	@Override
+	public final long sizeBytes() {
+		return usage.bytes();
+	}
+
+	@Override
+	public final T list(
+		final String afterObjectId, final Collection<T> outputBuffer, final int limit
+	) {
+		if(sorted) {
+			return listMerged(afterObjectId, outputBuffer, limit);
+		}
+		int i = afterObjectId == null ? 0 : shardIndex(afterObjectId, shards.length);
+		String marker = afterObjectId;
+		T lastObject;
+		int n = 0;
+		for(; i < shards.length; i ++) {
+			final int prevSize = outputBuffer.size();
+			lastObject = shards[i].list(marker, outputBuffer, limit - n);
+			n += outputBuffer.size() - prevSize;
+			if(lastObject != null) {
+				// the shard has more objects
+				return lastObject;
+			}
+			if(n == limit) {
+				return i < shards.length - 1 ? lastListed(outputBuffer) : null;
+			}
+			marker = null;
+		}
+		return null;
+	}
+
+	/**
+	 The shard's listing position, the shards are ordered by the next object's name
+	 */
+	private static final class ShardCursor<T extends DataItemMock>
+	implements Comparable<ShardCursor<T>> {
+
+		private final ObjectContainerMock<T> shard;
+		private final Deque<T> batch = new ArrayDeque<>();
+		private String marker;
+		private boolean hasMore = true;
+
+		private ShardCursor(final ObjectContainerMock<T> shard, final String marker) {
+			this.shard = shard;
+			this.marker = marker;
+		}
+
+		/**
+		 @return false if the shard has no more objects
+		 */
+		private boolean fetch(final int batchSize) {
+			if(batch.isEmpty() && hasMore) {
+				hasMore = null != shard.list(marker, batch, batchSize);
+				if(!batch.isEmpty()) {
+					marker = batch.peekLast().getName();
+				}
+			}
+			return !batch.isEmpty();
+		}
+
+		@Override
+		public final int compareTo(final ShardCursor<T> other) {
+			return batch.peekFirst().getName().compareTo(other.batch.peekFirst().getName());
+		}
+	}
+
+	/**
+	 K-way merge of the shards' listings, every shard is listed by the small batches
+	 */
+	private T listMerged(
+		final String afterObjectId, final Collection<T> outputBuffer, final int limit
+	) {
+		final int batchSize = limit / shards.length + 1;
+		final Queue<ShardCursor<T>> cursors = new PriorityQueue<>(shards.length);
+		ShardCursor<T> cursor;
+		for(final ObjectContainerMock<T> shard : shards) {
+			cursor = new ShardCursor<>(shard, afterObjectId);
+			if(cursor.fetch(batchSize)) {
+				cursors.add(cursor);
+			}
+		}
+		T lastObject = null;
+		for(int n = 0; n < limit && null != (cursor = cursors.poll()); n ++) {
+			lastObject = cursor.batch.pollFirst();
+			outputBuffer.add(lastObject);
+			if(cursor.fetch(batchSize)) {
+				cursors.add(cursor);
+			}
+		}
+		return cursors.isEmpty() ? null : lastObject;
+	}
+
+	private static <T> T lastListed(final Collection<T> outputBuffer) {
+		T lastObject = null;
+		for(final T object : outputBuffer) {
+			lastObject = object;
+		}
+		return lastObject;
+	}
+
+	@Override
+	public final Collection<T> values() {
+		return new AbstractCollection<T>() {
+			@Override
+			public final Iterator<T> iterator() {
+				return new Iterator<T>() {
+
+					private int i = 0;
+					private Iterator<T> shardValuesIter = shards[0].values().iterator();
+
+					@Override
+					public final boolean hasNext() {
+						while(!shardValuesIter.hasNext()) {
+							if(++ i == shards.length) {
+								return false;
+							}
+							shardValuesIter = shards[i].values().iterator();
+						}
+						return true;
+					}
+
+					@Override
+					public final T next() {
+						if(!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return shardValuesIter.next();
+					}
+				};
+			}
+
+			@Override
+			public final int size() {
+				return ShardedObjectContainerMock.this.size();
+			}
+		};
+	}
+
+	@Override
+	public final void close()
+	throws IOException {
+		for(final ObjectContainerMock<T> shard : shards) {
+			shard.close();
+		}
+		usage.clear();
+	}
+}
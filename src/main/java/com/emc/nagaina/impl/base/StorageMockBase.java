@@ -1,16 +1,15 @@
 package com.emc.nagaina.impl.base;
 
 import com.github.akurilov.commons.collection.Range;
-import com.github.akurilov.commons.collection.ListingLRUMap;
+import com.github.akurilov.commons.concurrent.ThreadUtil;
 
 import com.emc.mongoose.api.model.concurrent.DaemonBase;
 import com.emc.mongoose.api.model.data.DataInput;
-import com.emc.mongoose.api.model.item.ItemFactory;
-import com.emc.mongoose.api.model.item.CsvFileItemInput;
 import com.emc.mongoose.ui.log.LogUtil;
 import com.emc.mongoose.ui.log.Loggers;
 
 import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.DataItemMockVersion;
 import com.emc.nagaina.api.ObjectContainerMock;
 import com.emc.nagaina.api.StorageIoStats;
 import com.emc.nagaina.api.StorageMock;
@@ -18,21 +17,33 @@ import com.emc.nagaina.api.exception.ContainerMockException;
 import com.emc.nagaina.api.exception.ContainerMockNotFoundException;
 import com.emc.nagaina.api.exception.ObjectMockNotFoundException;
 import com.emc.nagaina.api.exception.StorageMockCapacityLimitReachedException;
+import com.emc.nagaina.ui.config.Config.ItemConfig;
+import com.emc.nagaina.ui.config.Config.ItemConfig.NamingConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig.LifecycleConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig.ListingConfig;
+import com.emc.nagaina.ui.config.Config.TestConfig.StepConfig;
 
 import org.apache.logging.log4j.Level;
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.ConcurrentModificationException;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 /**
  Created on 19.07.16.
@@ -40,36 +51,164 @@ import java.util.concurrent.atomic.LongAdder;
 public abstract class StorageMockBase<I extends DataItemMock>
 extends DaemonBase
 implements StorageMock<I> {
+
+	private static final int OBJECT_LOCK_STRIPE_COUNT = 0x100;
 	
 	private final String itemInputFile;
+	private final String itemOutputFile;
+	private final String itemOutputContainer;
+	private final String inventoryFile;
+	private final MutationJournal journal;
+	private final StorageMockLifecycle<I> lifecycle;
+	private final Thread persistThread;
 	private final StorageIoStats ioStats;
 	protected final DataInput dataInput;
-	private final int storageCapacity, containerCapacity;
+	private final int storageCapacity, shardCount, containerCapacity, containerCountLimit;
+	private final int defaultContainerPartitions;
+	private final long containerSizeLimit;
+	private final ObjectContainerMock.Type containerType;
+	private final ObjectContainerMock.EvictionPolicy evictionPolicy;
+	private final String idPrefix;
+	private final int idRadix;
+	private final AtomicLong offHeapBudget;
 	private final long dropEveryConnection, missEveryResponse;
 
-	private final ListingLRUMap<String, ObjectContainerMock<I>> storageMap;
+	private final ConcurrentEvictingMap<String, ObjectContainerMock<I>> storageMap;
+	private final Map<String, ObjectVersionChains> versionChains;
+	// serialize the changes of the same object: the read-modify-commit sequence of the append
+	// and the update, the version chain changes
+	private final Object objectLocks[] = new Object[OBJECT_LOCK_STRIPE_COUNT];
+	// the container and the object names of the evicted objects which version chains should be
+	// removed, the eviction is done by the put holding the other object's lock
+	private final Queue<Map.Entry<String, String>> evictedVersionedObjects =
+		new ConcurrentLinkedQueue<>();
+	private final Map<String, ObjectNameIndex<I>> nameIndices = new ConcurrentHashMap<>();
+	private final ListingCursorCache listingCursorCache;
 	private final ObjectContainerMock<I> defaultContainer;
 	private final AtomicLong connCounter = new AtomicLong();
 	private final AtomicLong respCounter = new AtomicLong(0);
-
-	private volatile boolean isCapacityExhausted = false;
+	private final StorageMockUsage usage;
 
 	@SuppressWarnings("unchecked")
 	public StorageMockBase(
-		final String itemInputFile, final int storageCapacity, final int containerCapacity,
-		final int containerCountLimit, final int metricsPeriodSec, final long dropEveryConnection,
-		final long missEveryResponse, final DataInput dataInput
+		final ItemConfig itemConfig, final StorageConfig storageConfig,
+		final StepConfig stepConfig, final DataInput dataInput
 	) {
 		super();
-		storageMap = new ListingLRUMap<>(containerCountLimit);
-		this.itemInputFile = itemInputFile;
+		final MockConfig mockConfig = storageConfig.getMockConfig();
+		final ContainerConfig containerConfig = mockConfig.getContainerConfig();
+		final LifecycleConfig lifecycleConfig = containerConfig.getLifecycleConfig();
+		final ListingConfig listingConfig = containerConfig.getListingConfig();
+		final NamingConfig namingConfig = itemConfig.getNamingConfig();
+		this.evictionPolicy = ObjectContainerMock.EvictionPolicy.valueOf(
+			containerConfig.getEviction().toUpperCase()
+		);
+		this.containerType = ObjectContainerMock.Type.valueOf(
+			containerConfig.getType().toUpperCase()
+		);
+		final String objectEvictionPolicyName = objectEvictionPolicyName(
+			containerType, evictionPolicy
+		);
+		if(!objectEvictionPolicyName.equals(evictionPolicy.name().toLowerCase())) {
+			Loggers.ERR.warn(
+				"The \"{}\" container type doesn't support the \"{}\" eviction policy, the " +
+					"objects are evicted using the \"{}\" policy, the containers are evicted " +
+					"using the configured one",
+				containerType.name().toLowerCase(), evictionPolicy.name().toLowerCase(),
+				objectEvictionPolicyName
+			);
+		}
+		this.containerCountLimit = containerConfig.getCountLimit();
+		storageMap = new ConcurrentEvictingMap<>(
+			containerCountLimit, evictionPolicy, ObjectContainerMock::sizeBytes,
+			this::evictContainer
+		);
+		this.itemInputFile = itemConfig.getInputConfig().getFile();
+		final String itemOutputFile = itemConfig.getOutputConfig().getFile();
+		this.itemOutputFile = itemOutputFile == null || itemOutputFile.isEmpty() ?
+			null : itemOutputFile;
+		this.itemOutputContainer = containerName(itemConfig.getOutputConfig().getPath());
+		final String inventoryFile = mockConfig.getInventoryConfig().getFile();
+		this.inventoryFile = inventoryFile == null || inventoryFile.isEmpty() ?
+			null : inventoryFile;
+		final long persistPeriodSec = mockConfig.getInventoryConfig().getPeriod();
+		if((this.inventoryFile != null || this.itemOutputFile != null) && persistPeriodSec > 0) {
+			persistThread = new Thread(
+				() -> {
+					try {
+						while(true) {
+							TimeUnit.SECONDS.sleep(persistPeriodSec);
+							persist();
+						}
+					} catch(final InterruptedException ignored) {
+					}
+				},
+				"persistThread"
+			);
+			persistThread.setDaemon(true);
+		} else {
+			persistThread = null;
+		}
 		this.dataInput = dataInput;
-		this.ioStats = new BasicStorageIoStats(this, metricsPeriodSec);
-		this.storageCapacity = storageCapacity;
-		this.containerCapacity = containerCapacity;
-		this.dropEveryConnection = dropEveryConnection;
-		this.missEveryResponse = missEveryResponse;
-		this.defaultContainer = new WeightlessObjectContainerMock<>(containerCapacity);
+		this.ioStats = new BasicStorageIoStats(
+			this, (int) stepConfig.getMetricsConfig().getPeriod(), objectEvictionPolicyName,
+			evictionPolicy.name().toLowerCase()
+		);
+		final String journalFile = mockConfig.getJournalConfig().getFile();
+		this.journal = journalFile == null || journalFile.isEmpty() ?
+			null :
+			new MutationJournal(
+				Paths.get(journalFile), mockConfig.getJournalConfig().getSyncPeriodMilliSec(),
+				mockConfig.getJournalConfig().getRingSize(), ioStats::markJournalDrop
+			);
+		final long lifecycleAgeSec = lifecycleConfig.getAge();
+		final long lifecycleSize = lifecycleConfig.getSize().get();
+		this.lifecycle = lifecycleAgeSec > 0 || lifecycleSize > 0 ?
+			new StorageMockLifecycle<>(lifecycleAgeSec, lifecycleSize, this::expireObject) : null;
+		this.storageCapacity = mockConfig.getCapacity();
+		if(mockConfig.getShards() > 1 && containerType != ObjectContainerMock.Type.CONCURRENT) {
+			// the shard is accessed by the container level requests concurrently with its owner
+			Loggers.ERR.warn(
+				"The shards are supported by the \"concurrent\" container type only, the storage " +
+					"is not sharded"
+			);
+			this.shardCount = 0;
+		} else {
+			this.shardCount = mockConfig.getShards();
+		}
+		this.containerCapacity = containerConfig.getCapacity();
+		this.usage = new StorageMockUsage(
+			null, mockConfig.getSizeLimit().get(), storageCapacity
+		);
+		this.containerSizeLimit = containerConfig.getSizeLimit().get();
+		if(
+			containerConfig.getDefaultPartitions() > 1 &&
+				containerType != ObjectContainerMock.Type.CONCURRENT
+		) {
+			// the other containers' partitions would be listed and evicted in the partition order
+			Loggers.ERR.warn(
+				"The default container partitions are supported by the \"concurrent\" container " +
+					"type only, the default container is not partitioned"
+			);
+			this.defaultContainerPartitions = 1;
+		} else {
+			this.defaultContainerPartitions = containerConfig.getDefaultPartitions();
+		}
+		this.versionChains = storageConfig.getNetConfig().getHttpConfig().getVersioning() ?
+			new ConcurrentHashMap<>() : null;
+		for(int i = 0; i < OBJECT_LOCK_STRIPE_COUNT; i ++) {
+			objectLocks[i] = new Object();
+		}
+		this.listingCursorCache = new ListingCursorCache(
+			listingConfig.getCursorCacheSize(),
+			TimeUnit.SECONDS.toMillis(listingConfig.getCursorTtl())
+		);
+		this.idPrefix = namingConfig.getPrefix();
+		this.idRadix = namingConfig.getRadix();
+		this.offHeapBudget = new AtomicLong(containerConfig.getOffHeapBudget().get());
+		this.dropEveryConnection = mockConfig.getFailConfig().getConnections();
+		this.missEveryResponse = mockConfig.getFailConfig().getResponses();
+		this.defaultContainer = newContainer(DEFAULT_CONTAINER_NAME);
 		storageMap.put(DEFAULT_CONTAINER_NAME, defaultContainer);
 	}
 
@@ -77,29 +216,161 @@ implements StorageMock<I> {
 	// Container methods
 	////////////////////////////////////////////////////////////////////////////////////////////////
 
+	private ObjectContainerMock<I> newContainer(final String name) {
+		final Consumer<String> evictionListener = id -> objectEvicted(name, id);
+		if(shardCount < 2 && DEFAULT_CONTAINER_NAME.equals(name)) {
+			// the default container is used by all the Atmos object requests
+			return newContainer(defaultContainerPartitions, evictionListener);
+		}
+		return newContainer(shardCount, evictionListener);
+	}
+
+	/**
+	 @return the name of the policy which the container type actually uses to evict the objects:
+	 the lru container evicts the least recently used object and the compact containers' hand
+	 evicts the next occupied slot without the second chance for the read objects (fifo like), only
+	 the concurrent container supports all the policies.
+	 The capacity check of the "none" policy is done before the put, so any type supports it.
+	 */
+	public static String objectEvictionPolicyName(
+		final ObjectContainerMock.Type containerType,
+		final ObjectContainerMock.EvictionPolicy evictionPolicy
+	) {
+		if(
+			evictionPolicy == ObjectContainerMock.EvictionPolicy.NONE ||
+				containerType == ObjectContainerMock.Type.CONCURRENT
+		) {
+			return evictionPolicy.name().toLowerCase();
+		}
+		if(containerType == ObjectContainerMock.Type.LRU) {
+			return "lru";
+		}
+		return ObjectContainerMock.EvictionPolicy.FIFO.name().toLowerCase();
+	}
+
+	/**
+	 @param partitionCount the count of the independent partitions, not partitioned if less than 2
+	 */
+	@SuppressWarnings("unchecked")
+	private ObjectContainerMock<I> newContainer(
+		final int partitionCount, final Consumer<String> evictionListener
+	) {
+		final StorageMockUsage containerUsage = new StorageMockUsage(usage, containerSizeLimit);
+		if(partitionCount > 1) {
+			// the remainder is spread so the partitions' capacities sum up to the container's one
+			final int partitionCapacity = containerCapacity / partitionCount;
+			final int remainder = containerCapacity % partitionCount;
+			final ObjectContainerMock<I> partitions[] = new ObjectContainerMock[partitionCount];
+			for(int i = 0; i < partitionCount; i ++) {
+				partitions[i] = newContainer(
+					i < remainder ? partitionCapacity + 1 : partitionCapacity,
+					containerUsage, evictionListener
+				);
+			}
+			return new ShardedObjectContainerMock<>(
+				partitions, containerUsage, containerType == ObjectContainerMock.Type.CONCURRENT
+			);
+		}
+		return newContainer(containerCapacity, containerUsage, evictionListener);
+	}
+
+	private ObjectContainerMock<I> newContainer(
+		final int capacity, final StorageMockUsage containerUsage,
+		final Consumer<String> evictionListener
+	) {
+		switch(containerType) {
+			case CONCURRENT:
+				return new ConcurrentObjectContainerMock<>(
+					capacity, containerUsage, evictionPolicy, evictionListener
+				);
+			case COMPACT:
+				return new CompactObjectContainerMock<>(
+					capacity, containerUsage, idPrefix, idRadix, HeapObjectTable.FACTORY,
+					evictionListener
+				);
+			case OFFHEAP:
+				return new CompactObjectContainerMock<>(
+					capacity, containerUsage, idPrefix, idRadix,
+					OffHeapObjectTable.factory(offHeapBudget), evictionListener
+				);
+			default:
+				return new WeightlessObjectContainerMock<>(
+					capacity, containerUsage, evictionListener
+				);
+		}
+	}
+
+	private void evictContainer(final ObjectContainerMock<I> container) {
+		ioStats.markEvict();
+		closeContainer(container);
+	}
+
+	private void closeContainer(final ObjectContainerMock<I> container) {
+		try {
+			container.close();
+		} catch(final IOException e) {
+			LogUtil.exception(Level.WARN, e, "Failed to close the container");
+		}
+	}
+
 	@Override
 	public final ObjectContainerMock<I> createContainer(final String name) {
-		final ObjectContainerMock<I> container = new WeightlessObjectContainerMock<>(containerCapacity);
-		synchronized(storageMap) {
-			storageMap.put(name, container);
+		if(
+			evictionPolicy == ObjectContainerMock.EvictionPolicy.NONE &&
+				storageMap.size() >= containerCountLimit && storageMap.get(name) == null
+		) {
+			return null;
 		}
+		final ObjectContainerMock<I> container = replaceContainer(name);
 		ioStats.containerCreate();
+		if(journal != null) {
+			journal.createContainer(name);
+		}
+		return container;
+	}
+
+	private ObjectContainerMock<I> replaceContainer(final String name) {
+		final ObjectContainerMock<I> container = newContainer(name);
+		final ObjectContainerMock<I> prevContainer = storageMap.put(name, container);
+		if(lifecycle != null) {
+			lifecycle.containerRemoved(name);
+		}
+		nameIndices.remove(name);
+		if(versionChains != null) {
+			versionChains.remove(name);
+		}
+		if(prevContainer != null) {
+			closeContainer(prevContainer);
+		}
 		return container;
 	}
 
 	@Override
 	public final ObjectContainerMock<I> getContainer(final String name) {
-		synchronized(storageMap) {
-			return storageMap.get(name);
-		}
+		return storageMap.get(name);
 	}
 
 	@Override
 	public final void deleteContainer(final String name) {
-		synchronized(storageMap) {
-			storageMap.remove(name);
-		}
+		removeContainer(name);
 		ioStats.containerDelete();
+		if(journal != null) {
+			journal.deleteContainer(name);
+		}
+	}
+
+	private void removeContainer(final String name) {
+		final ObjectContainerMock<I> container = storageMap.remove(name);
+		if(lifecycle != null) {
+			lifecycle.containerRemoved(name);
+		}
+		nameIndices.remove(name);
+		if(versionChains != null) {
+			versionChains.remove(name);
+		}
+		if(container != null) {
+			closeContainer(container);
+		}
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////////
@@ -109,63 +380,134 @@ implements StorageMock<I> {
 	protected abstract I newDataObject(final String id, final long offset, final long size);
 
 	@Override
-	public final void createObject(
+	public final long createObject(
 		final String containerName, final String id, final long offset, final long size
 	) throws ContainerMockNotFoundException, StorageMockCapacityLimitReachedException {
-		if(isCapacityExhausted) {
-			throw new StorageMockCapacityLimitReachedException();
-		}
 		final ObjectContainerMock<I> c = getContainer(containerName);
-		if(c != null) {
-			c.put(id, newDataObject(id, offset, size));
-		} else {
+		if(c == null) {
 			throw new ContainerMockNotFoundException(containerName);
 		}
+		final I obj = newDataObject(id, offset, size);
+		// the overwrite doesn't change the object count so it's not limited by the capacity
+		final boolean countReserved = c.get(id) == null;
+		if(countReserved) {
+			if(
+				evictionPolicy == ObjectContainerMock.EvictionPolicy.NONE &&
+					c.size() >= containerCapacity
+			) {
+				throw new StorageMockCapacityLimitReachedException();
+			}
+			if(!c.reserveCount()) {
+				throw new StorageMockCapacityLimitReachedException();
+			}
+		}
+		if(!c.reserve(size)) {
+			if(countReserved) {
+				c.releaseCount();
+			}
+			throw new StorageMockCapacityLimitReachedException();
+		}
+		// the reservations become the object's accounting when the object is put
+		final I prevObj;
+		long version = 0;
+		final ObjectVersionChains chains = versionChains(containerName);
+		synchronized(objectLock(id)) {
+			prevObj = c.putReserved(id, obj, countReserved);
+			if(chains != null) {
+				version = chains.created(id, offset, prevObj);
+			}
+			if(journal != null) {
+				journal.put(
+					containerName, id, offset, size, obj.layer(), obj.getModifiedRangesMask()
+				);
+			}
+			// the overwritten object expires by the time of the overwrite
+			if(lifecycle != null) {
+				lifecycle.created(containerName, c, id);
+			}
+		}
+		if(prevObj == null) {
+			objectAdded(containerName, id);
+		}
+		removeEvictedVersions();
+		if(lifecycle != null) {
+			lifecycle.applySizeLimit(containerName);
+		}
+		return version;
 	}
 	
 	@Override
 	public final void updateObject(
 		final String containerName, final String id, final long size, final Range byteRange
-	) throws ContainerMockException, ObjectMockNotFoundException {
+	) throws ContainerMockException, ObjectMockNotFoundException,
+		StorageMockCapacityLimitReachedException {
 		final ObjectContainerMock<I> c = getContainer(containerName);
-		if(c != null) {
+		if(c == null) {
+			throw new ContainerMockNotFoundException(containerName);
+		}
+		// the compact containers return the copy of the object, so the concurrent modifications
+		// of the same object would overwrite each other without the lock
+		synchronized(objectLock(id)) {
 			final I obj = c.get(id);
-			if(obj != null) {
-				final long rangeBeg = byteRange.getBeg();
-				final long rangeEnd = byteRange.getEnd();
-				final long rangeSize = byteRange.getSize();
-				try {
-					final long baseObjSize = obj.size();
-					if(rangeSize > -1) {
-						obj.append(rangeSize);
-					} else {
-						if(rangeBeg > -1) {
-							if(rangeEnd > -1) {
-								if(rangeEnd >= rangeBeg) {
-									obj.update(rangeBeg, rangeEnd - rangeBeg + 1);
+			if(obj == null) {
+				throw new ObjectMockNotFoundException(id);
+			}
+			final long rangeBeg = byteRange.getBeg();
+			final long rangeEnd = byteRange.getEnd();
+			final long rangeSize = byteRange.getSize();
+			long appendSize = 0;
+			try {
+				final long baseObjSize = obj.size();
+				if(rangeSize > -1) {
+					appendSize = rangeSize;
+				} else if(rangeBeg > -1 && rangeEnd < 0 && rangeBeg == baseObjSize) {
+					appendSize = size;
+				}
+				if(!c.reserve(appendSize)) {
+					appendSize = 0; // nothing is reserved so nothing to release
+					throw new StorageMockCapacityLimitReachedException();
+				}
+				// the object may be evicted concurrently, then it's not modified and its size
+				// change is not accounted
+				final boolean committed = c.commit(
+					id, obj,
+					o -> {
+						if(rangeSize > -1) {
+							o.append(rangeSize);
+						} else {
+							if(rangeBeg > -1) {
+								if(rangeEnd > -1) {
+									if(rangeEnd >= rangeBeg) {
+										o.update(rangeBeg, rangeEnd - rangeBeg + 1);
+									} else {
+										throw new AssertionError();
+									}
+								} else if(rangeBeg == baseObjSize) {
+									o.append(size);
 								} else {
-									throw new AssertionError();
+									// rewrite the range with same data
+									// so do nothing here
 								}
-							} else if(rangeBeg == baseObjSize) {
-								obj.append(size);
+							} else if(rangeEnd > -1) {
+								o.update(baseObjSize - rangeEnd, baseObjSize);
 							} else {
-								// rewrite the range with same data
-								// so do nothing here
+								throw new AssertionError();
 							}
-						} else if(rangeEnd > -1) {
-							obj.update(baseObjSize - rangeEnd, baseObjSize);
-						} else {
-							throw new AssertionError();
 						}
 					}
-				} catch(final IOException e) {
-					throw new AssertionError(e);
+				);
+				if(!committed) {
+					throw new ObjectMockNotFoundException(id);
 				}
-			} else {
-				throw new ObjectMockNotFoundException(id);
+				if(journal != null) {
+					journal.put(
+						containerName, id, obj.offset(), obj.size(), obj.layer(),
+						obj.getModifiedRangesMask()
+					);
+				}
+			} finally {
+				c.release(appendSize);
 			}
-		} else {
-			throw new ContainerMockNotFoundException(containerName);
 		}
 	}
 
@@ -192,10 +534,292 @@ implements StorageMock<I> {
 	) throws ContainerMockNotFoundException {
 		final ObjectContainerMock<I> c = getContainer(containerName);
 		if(c != null) {
-			c.remove(id);
+			removeObject(containerName, c, id);
+		} else {
+			throw new ContainerMockNotFoundException(containerName);
+		}
+	}
+
+	private void expireObject(
+		final String containerName, final ObjectContainerMock<I> container, final String id,
+		final BooleanSupplier expiredCheck
+	) {
+		synchronized(objectLock(id)) {
+			if(expiredCheck.getAsBoolean() && removeObject(containerName, container, id) != null) {
+				ioStats.markExpire();
+			}
+		}
+	}
+
+	/**
+	 Removes the object together with all its versions
+	 */
+	private I removeObject(
+		final String containerName, final ObjectContainerMock<I> container, final String id
+	) {
+		final I removedObj;
+		final ObjectVersionChains chains = versionChains(containerName);
+		synchronized(objectLock(id)) {
+			removedObj = container.remove(id);
+			if(chains != null) {
+				chains.removeAll(id);
+			}
+		}
+		if(removedObj != null) {
+			objectRemoved(containerName, id);
+		}
+		return removedObj;
+	}
+
+	private void objectAdded(final String containerName, final String id) {
+		final ObjectNameIndex<I> nameIndex = nameIndices.get(containerName);
+		if(nameIndex != null) {
+			nameIndex.add(id);
+		}
+	}
+
+	/**
+	 Accounts the object restored on the storage start
+	 */
+	private void objectRestored(
+		final String containerName, final ObjectContainerMock<I> container, final String id
+	) {
+		objectAdded(containerName, id);
+		if(lifecycle != null) {
+			lifecycle.restored(containerName, container, id);
+		}
+	}
+
+	/**
+	 Removes the version chains of the evicted objects, should be invoked without holding any
+	 object's lock: the eviction listener can't take the evicted object's lock as it's invoked
+	 holding the lock of the object being put, so the concurrent puts could deadlock
+	 */
+	private void removeEvictedVersions() {
+		Map.Entry<String, String> evicted;
+		String containerName, id;
+		ObjectContainerMock<I> container;
+		ObjectVersionChains chains;
+		while(null != (evicted = evictedVersionedObjects.poll())) {
+			containerName = evicted.getKey();
+			id = evicted.getValue();
+			container = storageMap.get(containerName);
+			chains = versionChains.get(containerName);
+			if(container != null && chains != null) {
+				synchronized(objectLock(id)) {
+					// the object created again has the new chain already
+					if(container.get(id) == null) {
+						chains.removeAll(id);
+					}
+				}
+			}
+		}
+	}
+
+	private void objectEvicted(final String containerName, final String id) {
+		ioStats.markEvict();
+		if(versionChains != null) {
+			evictedVersionedObjects.add(new SimpleImmutableEntry<>(containerName, id));
+		}
+		final ObjectNameIndex<I> nameIndex = nameIndices.get(containerName);
+		if(nameIndex != null) {
+			nameIndex.evicted(id);
+		}
+		if(journal != null) {
+			journal.remove(containerName, id);
+		}
+	}
+
+	private void objectRemoved(final String containerName, final String id) {
+		final ObjectNameIndex<I> nameIndex = nameIndices.get(containerName);
+		if(nameIndex != null) {
+			nameIndex.remove(id);
+		}
+		if(journal != null) {
+			journal.remove(containerName, id);
+		}
+	}
+
+	private Object objectLock(final String id) {
+		return objectLocks[id.hashCode() & (OBJECT_LOCK_STRIPE_COUNT - 1)];
+	}
+
+	private ObjectVersionChains versionChains(final String containerName) {
+		return versionChains == null ?
+			null : versionChains.computeIfAbsent(containerName, n -> new ObjectVersionChains());
+	}
+
+	@Override
+	public final String listObjects(
+		final String containerName, final String prefix, final String delimiter,
+		final String marker, final Collection<I> outputBuffer,
+		final Collection<String> commonPrefixes, final int maxCount
+	) throws ContainerMockException {
+		if(isEmpty(prefix) && isEmpty(delimiter)) {
+			final I lastObject = listObjects(containerName, marker, outputBuffer, maxCount);
+			return lastObject == null ? null : lastObject.getName();
+		}
+		return nameIndex(containerName).list(
+			prefix == null ? "" : prefix, delimiter, marker, outputBuffer, commonPrefixes, maxCount
+		);
+	}
+
+	@Override
+	public final String listObjectsPage(
+		final String containerName, final String prefix, final String delimiter,
+		final String continuationToken, final String startAfter, final Collection<I> outputBuffer,
+		final Collection<String> commonPrefixes, final int maxCount
+	) throws ContainerMockException, IllegalArgumentException {
+		// the other containers' order is not the name order, so their start after name and their
+		// continuation token's last listed name can't be resolved by the container itself
+		if(
+			containerType == ObjectContainerMock.Type.CONCURRENT && isEmpty(prefix) &&
+				isEmpty(delimiter)
+		) {
+			final I lastObject = listObjects(
+				containerName,
+				continuationToken == null ?
+					startAfter : ListingCursorCache.lastListed(continuationToken),
+				outputBuffer, maxCount
+			);
+			return lastObject == null ?
+				null : listingCursorCache.token(lastObject.getName(), false);
+		}
+		final ObjectNameIndex<I> nameIndex = nameIndex(containerName);
+		final String namesPrefix = prefix == null ? "" : prefix;
+		ObjectNameIndex.Cursor cursor;
+		if(continuationToken == null) {
+			// the start after name is not rolled up, the names after it are
+			cursor = nameIndex.cursor(namesPrefix, delimiter, startAfter, false);
+		} else {
+			cursor = listingCursorCache.take(continuationToken);
+			if(cursor != null && !cursor.matches(nameIndex, namesPrefix, delimiter)) {
+				cursor = null;
+			}
+			ioStats.markListingCursor(cursor != null);
+			if(cursor == null) {
+				cursor = nameIndex.cursor(
+					namesPrefix, delimiter, ListingCursorCache.lastListed(continuationToken),
+					ListingCursorCache.isLastListedCommonPrefix(continuationToken)
+				);
+			}
+		}
+		if(nameIndex.list(cursor, outputBuffer, commonPrefixes, maxCount)) {
+			return listingCursorCache.put(cursor);
+		}
+		return null;
+	}
+
+	private static boolean isEmpty(final String s) {
+		return s == null || s.isEmpty();
+	}
+
+	private ObjectNameIndex<I> nameIndex(final String containerName)
+	throws ContainerMockNotFoundException {
+		final ObjectContainerMock<I> c = getContainer(containerName);
+		if(c == null) {
+			throw new ContainerMockNotFoundException(containerName);
+		}
+		ObjectNameIndex<I> nameIndex = nameIndices.get(containerName);
+		if(nameIndex == null || !nameIndex.isIndexOf(c)) {
+			nameIndex = nameIndices.compute(
+				containerName, (n, i) -> i == null || !i.isIndexOf(c) ? new ObjectNameIndex<>(c) : i
+			);
+		}
+		return nameIndex;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public final I getObjectVersion(
+		final String containerName, final String id, final long version
+	) throws ContainerMockException {
+		final ObjectContainerMock<I> c = getContainer(containerName);
+		if(c == null) {
+			throw new ContainerMockNotFoundException(containerName);
+		}
+		I obj;
+		final ObjectVersionChains chains = versionChains(containerName);
+		if(chains == null) {
+			obj = version == 0 ? c.get(id) : null;
 		} else {
+			synchronized(objectLock(id)) {
+				obj = c.get(id);
+				if(obj != null && chains.currentVersion(id) != version) {
+					obj = (I) chains.get(id, version);
+				}
+			}
+		}
+		if(obj != null) {
+			obj.setDataInput(dataInput);
+		}
+		return obj;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public final boolean deleteObjectVersion(
+		final String containerName, final String id, final long version
+	) throws ContainerMockNotFoundException {
+		final ObjectContainerMock<I> c = getContainer(containerName);
+		if(c == null) {
+			throw new ContainerMockNotFoundException(containerName);
+		}
+		final ObjectVersionChains chains = versionChains(containerName);
+		if(chains == null) {
+			return version == 0 && removeObject(containerName, c, id) != null;
+		}
+		try {
+			synchronized(objectLock(id)) {
+				if(c.get(id) == null) {
+					return false;
+				}
+				if(chains.currentVersion(id) != version) {
+					return chains.remove(id, version);
+				}
+				c.remove(id);
+				final I promotedObj = (I) chains.promoteLatest(id);
+				if(promotedObj != null) {
+					c.put(id, promotedObj);
+				}
+				if(promotedObj == null) {
+					objectRemoved(containerName, id);
+				} else if(journal != null) {
+					journal.put(
+						containerName, id, promotedObj.offset(), promotedObj.size(),
+						promotedObj.layer(), promotedObj.getModifiedRangesMask()
+					);
+				}
+				return true;
+			}
+		} finally {
+			// the put of the promoted object may evict the other object
+			removeEvictedVersions();
+		}
+	}
+
+	@Override
+	public final I listObjectVersions(
+		final String containerName, final String marker,
+		final Collection<DataItemMockVersion<I>> outputBuffer, final int maxCount
+	) throws ContainerMockException {
+		final ObjectContainerMock<I> c = getContainer(containerName);
+		if(c == null) {
 			throw new ContainerMockNotFoundException(containerName);
 		}
+		final List<I> objects = new ArrayList<>(maxCount);
+		final I lastObject = c.list(marker, objects, maxCount);
+		final ObjectVersionChains chains = versionChains(containerName);
+		for(final I obj : objects) {
+			if(chains == null) {
+				outputBuffer.add(new DataItemMockVersion<>(obj, 0, true));
+			} else {
+				synchronized(objectLock(obj.getName())) {
+					chains.list(obj, outputBuffer);
+				}
+			}
+		}
+		return lastObject;
 	}
 
 	@Override
@@ -211,34 +835,28 @@ implements StorageMock<I> {
 		}
 	}
 
-	private final Thread storageCapacityMonitorThread = new Thread("storageMockCapacityMonitor") {
-		{
-			setDaemon(true);
-		}
-		@SuppressWarnings("InfiniteLoopStatement")
-		@Override
-		public final void run() {
-			long currObjCount;
-			try {
-				while(true) {
-					TimeUnit.SECONDS.sleep(1);
-					currObjCount = getSize();
-					if(!isCapacityExhausted && currObjCount > storageCapacity) {
-						isCapacityExhausted = true;
-					} else if(isCapacityExhausted && currObjCount <= storageCapacity) {
-						isCapacityExhausted = false;
-					}
-				}
-			} catch(final InterruptedException ignored) {
-			}
-		}
-	};
-
 	@Override
 	protected void doStart() {
-		loadPersistedDataItems();
+		// the inventory is newer than the item input file, the objects deleted or changed since the
+		// item input file was written shouldn't be restored from it
+		if(loadInventory()) {
+			if(itemInputFile != null && !itemInputFile.isEmpty()) {
+				Loggers.MSG.info(
+					"The item input file \"{}\" is ignored, the inventory is loaded instead",
+					itemInputFile
+				);
+			}
+		} else {
+			loadPersistedDataItems();
+		}
+		startJournal();
+		if(lifecycle != null) {
+			lifecycle.start();
+		}
+		if(persistThread != null) {
+			persistThread.start();
+		}
 		ioStats.start();
-		storageCapacityMonitorThread.start();
 	}
 	
 	@Override
@@ -249,18 +867,19 @@ implements StorageMock<I> {
 	@Override
 	protected void doInterrupt()
 	throws IllegalStateException {
-		storageCapacityMonitorThread.interrupt();
+		if(persistThread != null) {
+			persistThread.interrupt();
+		}
 	}
 	
 	@Override
 	public long getSize() {
-		long size = 0;
-		synchronized(storageMap) {
-			for(final ObjectContainerMock<I> container : storageMap.values()) {
-				size += container.size();
-			}
-		}
-		return size;
+		return usage.count();
+	}
+
+	@Override
+	public long getSizeBytes() {
+		return usage.bytes();
 	}
 
 	@Override
@@ -268,6 +887,11 @@ implements StorageMock<I> {
 		return storageCapacity;
 	}
 
+	@Override
+	public int getShardCount() {
+		return shardCount;
+	}
+
 	@Override
 	public final boolean dropConnection() {
 		if(dropEveryConnection > 0) {
@@ -290,29 +914,34 @@ implements StorageMock<I> {
 
 	@Override
 	public final void put(final List<I> dataItems) {
-		String objNameParts[];
-		ObjectContainerMock<I> container;
 		for(final I object : dataItems) {
-			objNameParts = object.getName().split("/");
-			if(objNameParts.length == 1) {
-				defaultContainer.put(objNameParts[0], object);
-			} else if(objNameParts.length == 2) {
-				container = getContainer(objNameParts[0]);
-				if(container == null) {
-					container = createContainer(objNameParts[0]);
-				}
-				object.setName(objNameParts[1]);
-				container.put(objNameParts[1], object);
-			} else if(objNameParts.length == 3) {
-				if(objNameParts[0].isEmpty()) {
-					container = getContainer(objNameParts[1]);
-					if(container == null) {
-						container = createContainer(objNameParts[1]);
-					}
-					object.setName(objNameParts[2]);
-					container.put(objNameParts[2], object);
-				}
+			putItem(object);
+		}
+	}
+
+	/**
+	 Puts the object into the container specified by the object's name: "name", "container/name" or
+	 "/container/name"
+	 */
+	private void putItem(final I object) {
+		final String name = object.getName();
+		final int containerNameStart = name.startsWith("/") ? 1 : 0;
+		final int containerNameEnd = name.indexOf('/', containerNameStart);
+		if(containerNameEnd < 0) {
+			if(containerNameStart == 0) {
+				defaultContainer.put(name, object);
+				objectRestored(DEFAULT_CONTAINER_NAME, defaultContainer, name);
 			}
+		} else if(
+			containerNameEnd > containerNameStart && containerNameEnd < name.length() - 1
+				&& name.indexOf('/', containerNameEnd + 1) < 0
+		) {
+			final String objName = name.substring(containerNameEnd + 1);
+			final String containerName = name.substring(containerNameStart, containerNameEnd);
+			object.setName(objName);
+			final ObjectContainerMock<I> container = getOrCreateContainer(containerName);
+			container.put(objName, object);
+			objectRestored(containerName, container, objName);
 		}
 	}
 
@@ -321,7 +950,174 @@ implements StorageMock<I> {
 		return ioStats;
 	}
 
-	@SuppressWarnings({"InfiniteLoopStatement", "unchecked"})
+	private ObjectContainerMock<I> getOrCreateContainer(final String name) {
+		final ObjectContainerMock<I> container = getContainer(name);
+		if(container != null) {
+			return container;
+		}
+		final ObjectContainerMock<I> newContainer = newContainer(name);
+		final ObjectContainerMock<I> prevContainer = storageMap.putIfAbsent(name, newContainer);
+		if(prevContainer == null) {
+			ioStats.containerCreate();
+			return newContainer;
+		} else { // created concurrently
+			closeContainer(newContainer);
+			return prevContainer;
+		}
+	}
+
+	/**
+	 @return true if the inventory file is loaded
+	 */
+	private boolean loadInventory() {
+		if(inventoryFile != null) {
+			final Path inventoryFile = Paths.get(this.inventoryFile);
+			if(!Files.exists(inventoryFile)) {
+				Loggers.MSG.info("Inventory file @ \"{}\" doesn't exist yet", inventoryFile);
+				return false;
+			}
+			try {
+				final long count = StorageMockInventory.load(
+					inventoryFile, this::getOrCreateContainer
+				);
+				Loggers.MSG.info(
+					"Loaded {} objects from the inventory file {}", count, inventoryFile
+				);
+				if(lifecycle != null) {
+					storageMap.forEach(
+						(containerName, container) -> container.values().forEach(
+							object -> lifecycle.restored(containerName, container, object.getName())
+						)
+					);
+				}
+				return true;
+			} catch(final IOException e) {
+				LogUtil.exception(
+					Level.WARN, e, "Failed to load the inventory file \"{}\"", inventoryFile
+				);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 @return true if the inventory file is saved
+	 */
+	private boolean saveInventory() {
+		if(inventoryFile != null) {
+			final Path inventoryFile = Paths.get(this.inventoryFile);
+			try {
+				final long count = StorageMockInventory.save(inventoryFile, storageMap);
+				Loggers.MSG.info("Saved {} objects to the inventory file {}", count, inventoryFile);
+				return true;
+			} catch(final IOException e) {
+				LogUtil.exception(
+					Level.WARN, e, "Failed to save the inventory file \"{}\"", inventoryFile
+				);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 Saves the inventory and exports the items. The journal is rotated before the inventory is
+	 saved, so the rotated journal files are not needed anymore after that.
+	 */
+	private void persist()
+	throws InterruptedException {
+		if(journal != null && inventoryFile != null && journal.rotate()) {
+			if(saveInventory()) {
+				try {
+					journal.deleteRotated();
+				} catch(final IOException e) {
+					LogUtil.exception(Level.WARN, e, "Failed to delete the rotated journal files");
+				}
+			}
+		} else {
+			saveInventory();
+		}
+		exportItems();
+	}
+
+	private void startJournal() {
+		if(journal != null) {
+			try {
+				journal.start(
+					new MutationJournal.Target() {
+						@Override @SuppressWarnings("unchecked")
+						public final void put(
+							final String containerName, final String name, final long offset,
+							final long size, final int layer, final long mask
+						) {
+							final ObjectContainerMock<I> container = getOrCreateContainer(
+								containerName
+							);
+							final I prevObj = container.put(
+								name, (I) new BasicDataItemMock(name, offset, size, layer, mask)
+							);
+							if(prevObj == null) {
+								objectRestored(containerName, container, name);
+							}
+						}
+						@Override
+						public final void remove(final String containerName, final String name) {
+							final ObjectContainerMock<I> container = getContainer(containerName);
+							if(container != null) {
+								container.remove(name);
+							}
+						}
+						@Override
+						public final void createContainer(final String name) {
+							replaceContainer(name);
+						}
+						@Override
+						public final void deleteContainer(final String name) {
+							removeContainer(name);
+						}
+					},
+					ThreadUtil.getHardwareThreadCount()
+				);
+			} catch(final IOException e) {
+				LogUtil.exception(Level.WARN, e, "Failed to replay the journal");
+			}
+		}
+	}
+
+	/**
+	 @param path the item output path, "container" or "/container/"
+	 @return the container name or null if the path is not specified
+	 */
+	private static String containerName(final String path) {
+		if(path == null) {
+			return null;
+		}
+		int start = 0, end = path.length();
+		while(start < end && path.charAt(start) == '/') {
+			start ++;
+		}
+		while(end > start && path.charAt(end - 1) == '/') {
+			end --;
+		}
+		return start < end ? path.substring(start, end) : null;
+	}
+
+	private void exportItems() {
+		if(itemOutputFile != null) {
+			final Path itemOutputFile = Paths.get(this.itemOutputFile);
+			try {
+				final long count = CsvItemExporter.export(
+					itemOutputFile, storageMap, itemOutputContainer
+				);
+				Loggers.MSG.info("Exported {} data items to file {}", count, itemOutputFile);
+			} catch(final IOException e) {
+				LogUtil.exception(
+					Level.WARN, e, "Failed to export the data items to file \"{}\"", itemOutputFile
+				);
+			}
+		}
+	}
+
+	@SuppressWarnings("InfiniteLoopStatement")
 	private void loadPersistedDataItems() {
 		if(itemInputFile != null && !itemInputFile.isEmpty()) {
 			final Path itemInputFile = Paths.get(this.itemInputFile);
@@ -333,38 +1129,35 @@ implements StorageMock<I> {
 				Loggers.ERR.warn("Item input file @ \"{}\" is a directory", itemInputFile);
 				return;
 			}
-			
-			final LongAdder count = new LongAdder();
-			List<I> buff;
-			int n;
+
+			final ParallelCsvItemLoader<I> loader = new ParallelCsvItemLoader<>(
+				itemInputFile, new BasicDataItemMockFactory<>(), this::putItem
+			);
 			final Thread displayProgressThread = new Thread(
 				() -> {
 					try {
 						while(true) {
-							Loggers.MSG.info("{} items loaded...", count.sum());
+							Loggers.MSG.info("{} items loaded...", loader.getCount());
 							TimeUnit.SECONDS.sleep(10);
 						}
 					} catch(final InterruptedException e) {
 					}
 				}
 			);
-			
-			final ItemFactory<I> itemFactory = new BasicDataItemMockFactory<>();
-			try(final CsvFileItemInput<I> csvFileItemInput = new CsvFileItemInput<>(itemInputFile, itemFactory)) {
+
+			try {
 				displayProgressThread.start();
-				do {
-					buff = new ArrayList<>(4096);
-					n = csvFileItemInput.get(buff, 4096);
-					if(n > 0) {
-						put(buff);
-						count.add(n);
-					} else {
-						break;
-					}
-				} while(true);
-			} catch(final EOFException e) {
-				Loggers.MSG.info("Loaded {} data items from file {}", count.sum(), itemInputFile);
-			} catch(final IOException | NoSuchMethodException e) {
+				loader.load(ThreadUtil.getHardwareThreadCount());
+				Loggers.MSG.info(
+					"Loaded {} data items from file {}", loader.getCount(), itemInputFile
+				);
+				if(loader.getInvalidCount() > 0) {
+					Loggers.ERR.warn(
+						"Skipped {} invalid lines of the file {}", loader.getInvalidCount(),
+						itemInputFile
+					);
+				}
+			} catch(final IOException e) {
 				LogUtil.exception(
 					Level.WARN, e, "Failed to load the data items from file \"{}\"", itemInputFile
 				);
@@ -379,17 +1172,28 @@ implements StorageMock<I> {
 	throws IOException {
 		ioStats.close();
 		dataInput.close();
-		try {
-			storageMap.clear();
-		} catch(final ConcurrentModificationException e) {
-			LogUtil.exception(Level.DEBUG, e, "Failed to clean up the storage mock");
+		if(lifecycle != null) {
+			lifecycle.close();
 		}
-		try {
-			for(final ObjectContainerMock<I> containerMock : storageMap.values()) {
-				containerMock.close();
+		if(persistThread != null) {
+			persistThread.interrupt();
+			try {
+				persistThread.join();
+			} catch(final InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
-		} catch(final ConcurrentModificationException e) {
-			LogUtil.exception(Level.DEBUG, e, "Failed to clean up the containers");
 		}
+		try {
+			persist();
+		} catch(final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(journal != null) {
+			journal.close();
+		}
+		for(final ObjectContainerMock<I> containerMock : storageMap.values()) {
+			containerMock.close();
+		}
+		storageMap.clear();
 	}
 }
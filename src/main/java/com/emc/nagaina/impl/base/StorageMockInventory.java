@@ -0,0 +1,328 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+
+/**
+ Created by agent on 17.10.26.
+ Binary inventory file of the storage mock. The file layout:
+ <pre>
+ header: magic (8 bytes), version (4 bytes), directory position (8 bytes)
+ compact containers tables: the off-heap table records, page aligned
+ item records: name (modified UTF-8), offset, size, layer, modified ranges mask
+ directory: container count, then for each container:
+   name, table flag,
+   [id prefix, id radix, table slot count, table object count, table size in bytes, table position],
+   item record count, item records position
+ </pre>
+ The compact container tables are written as is, so the off-heap container maps its table from
+ the file instead of the objects reinsertion and the loading time doesn't depend on the object
+ count. Other containers are written/loaded as the item records.
+ */
+public final class StorageMockInventory {
+
+	private static final long MAGIC = 0x6e6167696e760000L; // "naginv\0\0"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int TABLE_ALIGNMENT = 0x1000;
+	private static final int LIST_PAGE_SIZE = 0x1000;
+	private static final int IO_BUFF_SIZE = 0x10000;
+
+	private StorageMockInventory() {
+	}
+
+	private static final class DirectoryEntry {
+
+		private String name;
+		private boolean tableFlag;
+		private ObjectIdCodec idCodec;
+		private int slotCount;
+		private int tableCount;
+		private long tableSizeBytes;
+		private long tablePosition;
+		private int itemCount;
+		private long itemsPosition;
+
+		private void write(final DataOutputStream out)
+		throws IOException {
+			out.writeUTF(name);
+			out.writeBoolean(tableFlag);
+			if(tableFlag) {
+				out.writeUTF(idCodec.getPrefix() == null ? "" : idCodec.getPrefix());
+				out.writeInt(idCodec.getRadix());
+				out.writeInt(slotCount);
+				out.writeInt(tableCount);
+				out.writeLong(tableSizeBytes);
+				out.writeLong(tablePosition);
+			}
+			out.writeInt(itemCount);
+			out.writeLong(itemsPosition);
+		}
+
+		private static DirectoryEntry read(final DataInputStream in)
+		throws IOException {
+			final DirectoryEntry entry = new DirectoryEntry();
+			entry.name = in.readUTF();
+			entry.tableFlag = in.readBoolean();
+			if(entry.tableFlag) {
+				final String idPrefix = in.readUTF();
+				entry.idCodec = new ObjectIdCodec(idPrefix, in.readInt());
+				entry.slotCount = in.readInt();
+				entry.tableCount = in.readInt();
+				entry.tableSizeBytes = in.readLong();
+				entry.tablePosition = in.readLong();
+			}
+			entry.itemCount = in.readInt();
+			entry.itemsPosition = in.readLong();
+			return entry;
+		}
+	}
+
+	/**
+	 Writes the inventory to the temporary file and replaces the given file with it
+	 @return the count of the objects written
+	 */
+	public static <I extends DataItemMock> long save(
+		final Path file, final ConcurrentEvictingMap<String, ObjectContainerMock<I>> containers
+	) throws IOException {
+		final List<Map.Entry<String, ObjectContainerMock<I>>> containerEntries = new ArrayList<>();
+		containers.forEach(
+			(name, container) -> containerEntries.add(new SimpleImmutableEntry<>(name, container))
+		);
+		final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		final List<DirectoryEntry> directory = new ArrayList<>(containerEntries.size());
+		long objCount = 0;
+		try(
+			final FileChannel channel = FileChannel.open(
+				tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING
+			)
+		) {
+			final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFF_SIZE)
+			);
+			channel.position(HEADER_SIZE);
+			for(final Map.Entry<String, ObjectContainerMock<I>> containerEntry : containerEntries) {
+				final DirectoryEntry entry = new DirectoryEntry();
+				entry.name = containerEntry.getKey();
+				final ObjectContainerMock<I> container = containerEntry.getValue();
+				if(container instanceof CompactObjectContainerMock) {
+					final CompactObjectContainerMock<I> compactContainer =
+						(CompactObjectContainerMock<I>) container;
+					final Lock lock = compactContainer.exclusiveLock();
+					lock.lock();
+					try {
+						entry.tableFlag = true;
+						entry.idCodec = compactContainer.idCodec();
+						final ObjectTable table = compactContainer.table();
+						entry.slotCount = table.slotCount();
+						entry.tableCount = compactContainer.tableCount();
+						long tableSizeBytes = 0;
+						for(int i = 0; i < table.slotCount(); i ++) {
+							if(!table.isFree(i)) {
+								tableSizeBytes += table.size(i);
+							}
+						}
+						entry.tableSizeBytes = tableSizeBytes;
+						entry.tablePosition = align(channel.position());
+						channel.position(entry.tablePosition);
+						table.write(channel);
+						entry.itemsPosition = channel.position();
+						for(final I item : compactContainer.overflowValues()) {
+							writeItem(out, item);
+							entry.itemCount ++;
+						}
+						out.flush();
+					} finally {
+						lock.unlock();
+					}
+				} else {
+					entry.itemsPosition = channel.position();
+					final List<I> buff = new ArrayList<>(LIST_PAGE_SIZE);
+					I lastItem = null;
+					do {
+						lastItem = container.list(
+							lastItem == null ? null : lastItem.getName(), buff, LIST_PAGE_SIZE
+						);
+						if(buff.isEmpty()) {
+							break;
+						}
+						for(final I item : buff) {
+							writeItem(out, item);
+						}
+						entry.itemCount += buff.size();
+						buff.clear();
+					} while(lastItem != null);
+					out.flush();
+				}
+				objCount += entry.tableCount + entry.itemCount;
+				directory.add(entry);
+			}
+			final long directoryPosition = channel.position();
+			out.writeInt(directory.size());
+			for(final DirectoryEntry entry : directory) {
+				entry.write(out);
+			}
+			out.flush();
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putLong(MAGIC).putInt(VERSION).putLong(directoryPosition).flip();
+			channel.position(0);
+			while(header.hasRemaining()) {
+				channel.write(header);
+			}
+			channel.force(true);
+		}
+		Files.move(
+			tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+		);
+		return objCount;
+	}
+
+	/**
+	 @param containerFunc returns the container to load the objects into by the container name
+	 @return the count of the objects loaded
+	 */
+	public static <I extends DataItemMock> long load(
+		final Path file, final Function<String, ObjectContainerMock<I>> containerFunc
+	) throws IOException {
+		long objCount = 0;
+		// the private (copy on write) mapping requires the channel opened for writing too
+		try(
+			final FileChannel channel = FileChannel.open(
+				file, StandardOpenOption.READ, StandardOpenOption.WRITE
+			)
+		) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while(header.hasRemaining()) {
+				if(channel.read(header) < 0) {
+					throw new IOException("Unexpected end of the inventory file");
+				}
+			}
+			header.flip();
+			if(header.getLong() != MAGIC) {
+				throw new IOException("Not an inventory file");
+			}
+			final int version = header.getInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported inventory file version: " + version);
+			}
+			final List<DirectoryEntry> directory = new ArrayList<>();
+			try(final DataInputStream in = newInputStream(file, header.getLong())) {
+				final int containerCount = in.readInt();
+				for(int i = 0; i < containerCount; i ++) {
+					directory.add(DirectoryEntry.read(in));
+				}
+			}
+			for(final DirectoryEntry entry : directory) {
+				final ObjectContainerMock<I> container = containerFunc.apply(entry.name);
+				if(entry.tableFlag) {
+					if(!loadTable(channel, entry, container)) {
+						putTableItems(channel, entry, container);
+					}
+					objCount += entry.tableCount;
+				}
+				if(entry.itemCount > 0) {
+					try(final DataInputStream in = newInputStream(file, entry.itemsPosition)) {
+						I item;
+						for(int i = 0; i < entry.itemCount; i ++) {
+							item = readItem(in);
+							container.put(item.getName(), item);
+						}
+					}
+					objCount += entry.itemCount;
+				}
+			}
+		}
+		return objCount;
+	}
+
+	private static <I extends DataItemMock> boolean loadTable(
+		final FileChannel channel, final DirectoryEntry entry, final ObjectContainerMock<I> container
+	) throws IOException {
+		if(container instanceof CompactObjectContainerMock) {
+			final CompactObjectContainerMock<I> compactContainer =
+				(CompactObjectContainerMock<I>) container;
+			final Lock lock = compactContainer.exclusiveLock();
+			lock.lock();
+			try {
+				return compactContainer.idCodec().equals(entry.idCodec) && compactContainer.loadTable(
+					channel, entry.tablePosition, entry.slotCount, entry.tableCount,
+					entry.tableSizeBytes
+				);
+			} finally {
+				lock.unlock();
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <I extends DataItemMock> void putTableItems(
+		final FileChannel channel, final DirectoryEntry entry, final ObjectContainerMock<I> container
+	) throws IOException {
+		final ObjectTable table = OffHeapObjectTable.map(
+			channel, entry.tablePosition, entry.slotCount, null
+		);
+		long id;
+		String name;
+		for(int i = 0; i < table.slotCount(); i ++) {
+			if(!table.isFree(i)) {
+				id = table.id(i);
+				name = entry.idCodec.format(id, table.idLength(i));
+				container.put(
+					name,
+					(I) new BasicDataItemMock(name, id, table.size(i), table.layer(i), table.mask(i))
+				);
+			}
+		}
+	}
+
+	private static long align(final long position) {
+		return (position + TABLE_ALIGNMENT - 1) & -TABLE_ALIGNMENT;
+	}
+
+	private static DataInputStream newInputStream(final Path file, final long position)
+	throws IOException {
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		channel.position(position);
+		return new DataInputStream(
+			new BufferedInputStream(Channels.newInputStream(channel), IO_BUFF_SIZE)
+		);
+	}
+
+	private static void writeItem(final DataOutputStream out, final DataItemMock item)
+	throws IOException {
+		out.writeUTF(item.getName());
+		out.writeLong(item.offset());
+		out.writeLong(item.size());
+		out.writeInt(item.layer());
+		out.writeLong(item.getModifiedRangesMask());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <I extends DataItemMock> I readItem(final DataInputStream in)
+	throws IOException {
+		return (I) new BasicDataItemMock(
+			in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readLong()
+		);
+	}
+}
@@ -0,0 +1,256 @@
+package com.emc.nagaina.impl.base;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ Created by agent on 17.10.26.
+ Container lifecycle rules: the objects expire after the given age and/or the oldest objects expire
+ while the container's logical size exceeds the given limit. The age expiration is driven by the
+ timer wheel with one second ticks, the size expiration uses the per container queue of the object
+ names in the creation order and is done synchronously after the object creation. The queue is
+ not locked: the names of the objects deleted by the other means are left in the queue and skipped
+ lazily (expiring the missing object does nothing), and purged when they are too many.
+ Every creation (the overwrite too) registers the new entry of the object and replaces the
+ previous one, the replaced entries are skipped, so the overwritten or the re-created object
+ expires by the time of its latest creation.
+ The objects restored from the inventory, the item input file or the journal are registered in
+ the restoration order as if they were created at the storage start, the size limit is applied to
+ them on the next object creation.
+ */
+public final class StorageMockLifecycle<I extends DataItemMock>
+implements Closeable {
+
+	private static final long TICK_MILLIS = 1000;
+	private static final int WHEEL_SIZE = 0x1000;
+	private static final int QUEUE_COMPACT_THRESHOLD = 0x1000;
+
+	public interface ExpireAction<I extends DataItemMock> {
+		/**
+		 @param expiredCheck should be invoked holding the object's lock, returns false if the
+		 object is created again since the entry registration so it shouldn't be removed
+		 */
+		void expire(
+			final String containerName, final ObjectContainerMock<I> container, final String name,
+			final BooleanSupplier expiredCheck
+		);
+	}
+
+	private static final class ContainerState<I extends DataItemMock> {
+
+		private final String containerName;
+		private final ObjectContainerMock<I> container;
+		// the latest entry of every registered object
+		private final Map<String, Entry<I>> entries = new ConcurrentHashMap<>();
+		private final Queue<Entry<I>> creationQueue;
+		private final AtomicInteger queueSize;
+		private final AtomicBoolean purgeFlag;
+		private volatile boolean removed = false;
+
+		private ContainerState(
+			final String containerName, final ObjectContainerMock<I> container,
+			final boolean queueFlag
+		) {
+			this.containerName = containerName;
+			this.container = container;
+			this.creationQueue = queueFlag ? new ConcurrentLinkedQueue<>() : null;
+			this.queueSize = queueFlag ? new AtomicInteger(0) : null;
+			this.purgeFlag = queueFlag ? new AtomicBoolean(false) : null;
+		}
+	}
+
+	private static final class Entry<I extends DataItemMock> {
+
+		private final ContainerState<I> state;
+		private final String name;
+
+		private Entry(final ContainerState<I> state, final String name) {
+			this.state = state;
+			this.name = name;
+		}
+	}
+
+	private final long ageMillis;
+	private final long sizeLimit;
+	private final ExpireAction<I> expireAction;
+	private final ExpirationWheel<Entry<I>> wheel;
+	private final Map<String, ContainerState<I>> containerStates = new ConcurrentHashMap<>();
+	private final Thread expirationThread;
+
+	/**
+	 @param ageSec the object's age to expire, 0 means no limit
+	 @param sizeLimit the container's logical size to start the expiration, 0 means no limit
+	 */
+	public StorageMockLifecycle(
+		final long ageSec, final long sizeLimit, final ExpireAction<I> expireAction
+	) {
+		this.ageMillis = TimeUnit.SECONDS.toMillis(ageSec);
+		this.sizeLimit = sizeLimit;
+		this.expireAction = expireAction;
+		if(ageMillis > 0) {
+			wheel = new ExpirationWheel<>(TICK_MILLIS, WHEEL_SIZE);
+			expirationThread = new Thread(
+				() -> {
+					try {
+						while(true) {
+							TimeUnit.MILLISECONDS.sleep(TICK_MILLIS);
+							wheel.advance(
+								System.currentTimeMillis(), StorageMockLifecycle.this::expire
+							);
+						}
+					} catch(final InterruptedException ignored) {
+					}
+				},
+				"expirationThread"
+			);
+			expirationThread.setDaemon(true);
+		} else {
+			wheel = null;
+			expirationThread = null;
+		}
+	}
+
+	public final void start() {
+		if(expirationThread != null) {
+			expirationThread.start();
+		}
+	}
+
+	/**
+	 Should be invoked after the object is put into the container (both the new object and the
+	 overwrite) holding the object's lock
+	 */
+	public final void created(
+		final String containerName, final ObjectContainerMock<I> container, final String name
+	) {
+		register(containerName, container, name);
+	}
+
+	/**
+	 Expires the oldest objects while the container's size exceeds the limit, should be invoked
+	 after the object creation without holding any object's lock
+	 */
+	public final void applySizeLimit(final String containerName) {
+		if(sizeLimit > 0) {
+			final ContainerState<I> state = containerStates.get(containerName);
+			if(state != null) {
+				expireOldest(state);
+			}
+		}
+	}
+
+	/**
+	 Should be invoked after the object is restored into the container on the storage start
+	 */
+	public final void restored(
+		final String containerName, final ObjectContainerMock<I> container, final String name
+	) {
+		register(containerName, container, name);
+	}
+
+	private void register(
+		final String containerName, final ObjectContainerMock<I> container, final String name
+	) {
+		ContainerState<I> state = containerStates.get(containerName);
+		if(state == null || state.container != container) {
+			state = containerStates.compute(
+				containerName,
+				(k, s) -> s == null || s.container != container ?
+					new ContainerState<>(containerName, container, sizeLimit > 0) : s
+			);
+		}
+		final Entry<I> entry = new Entry<>(state, name);
+		state.entries.put(name, entry);
+		if(wheel != null) {
+			wheel.add(entry, System.currentTimeMillis() + ageMillis);
+		}
+		if(sizeLimit > 0) {
+			state.creationQueue.add(entry);
+			if(state.queueSize.incrementAndGet() > 2 * container.size() + QUEUE_COMPACT_THRESHOLD) {
+				purge(state);
+			}
+		}
+	}
+
+	public final void containerRemoved(final String containerName) {
+		final ContainerState<I> state = containerStates.remove(containerName);
+		if(state != null) {
+			state.removed = true;
+		}
+	}
+
+	private void expireOldest(final ContainerState<I> state) {
+		final ObjectContainerMock<I> container = state.container;
+		final Queue<Entry<I>> creationQueue = state.creationQueue;
+		Entry<I> entry;
+		while(container.sizeBytes() > sizeLimit) {
+			entry = creationQueue.poll();
+			if(entry == null) {
+				break;
+			}
+			state.queueSize.decrementAndGet();
+			// does nothing if the object is already deleted by the other means or replaced
+			expire(entry);
+		}
+	}
+
+	/**
+	 Drops the replaced entries and the entries of the objects deleted by the other means, the only
+	 purging thread doesn't block the others
+	 */
+	private static <I extends DataItemMock> void purge(final ContainerState<I> state) {
+		if(state.purgeFlag.compareAndSet(false, true)) {
+			try {
+				final ObjectContainerMock<I> container = state.container;
+				final Iterator<Entry<I>> queueIter = state.creationQueue.iterator();
+				Entry<I> entry;
+				while(queueIter.hasNext()) {
+					entry = queueIter.next();
+					if(state.entries.get(entry.name) != entry) {
+						queueIter.remove();
+						state.queueSize.decrementAndGet();
+					} else if(container.get(entry.name) == null) {
+						queueIter.remove();
+						state.queueSize.decrementAndGet();
+						state.entries.remove(entry.name, entry);
+					}
+				}
+			} finally {
+				state.purgeFlag.set(false);
+			}
+		}
+	}
+
+	/**
+	 The entry may be handed over more than once, only the first expiration of the latest entry of
+	 the object passes the check
+	 */
+	private void expire(final Entry<I> entry) {
+		final ContainerState<I> state = entry.state;
+		if(!state.removed && state.entries.get(entry.name) == entry) {
+			expireAction.expire(
+				state.containerName, state.container, entry.name,
+				() -> state.entries.remove(entry.name, entry)
+			);
+		}
+	}
+
+	@Override
+	public final void close() {
+		if(expirationThread != null) {
+			expirationThread.interrupt();
+		}
+		containerStates.clear();
+	}
+}
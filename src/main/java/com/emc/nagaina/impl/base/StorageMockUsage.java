@@ -0,0 +1,221 @@
+package com.emc.nagaina.impl.base;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ Created by agent on 17.10.26.
+ Striped object count and logical size counters. The container's counters propagate the changes to
+ the parent (storage) counters so the storage totals are available without the containers scan.
+ If the size (count) limit is set the logical size (object count) is counted by the atomic counter
+ instead, so the writes may be admitted exactly using the compare and set.
+ */
+public final class StorageMockUsage {
+
+	private final StorageMockUsage parent;
+	private final long sizeLimit;
+	private final long countLimit;
+	private final LongAdder count;
+	private final AtomicLong limitedCount;
+	private final LongAdder bytes;
+	private final AtomicLong limitedBytes;
+
+	public StorageMockUsage(final StorageMockUsage parent) {
+		this(parent, 0);
+	}
+
+	/**
+	 @param sizeLimit the logical size limit in bytes, 0 means no limit
+	 */
+	public StorageMockUsage(final StorageMockUsage parent, final long sizeLimit) {
+		this(parent, sizeLimit, -1);
+	}
+
+	/**
+	 @param sizeLimit the logical size limit in bytes, 0 means no limit
+	 @param countLimit the object count limit, negative means no limit
+	 */
+	public StorageMockUsage(
+		final StorageMockUsage parent, final long sizeLimit, final long countLimit
+	) {
+		this.parent = parent;
+		this.sizeLimit = sizeLimit;
+		this.countLimit = countLimit;
+		if(sizeLimit > 0) {
+			bytes = null;
+			limitedBytes = new AtomicLong();
+		} else {
+			bytes = new LongAdder();
+			limitedBytes = null;
+		}
+		if(countLimit >= 0) {
+			count = null;
+			limitedCount = new AtomicLong();
+		} else {
+			count = new LongAdder();
+			limitedCount = null;
+		}
+	}
+
+	private void addCount(final long delta) {
+		if(limitedCount == null) {
+			count.add(delta);
+		} else {
+			limitedCount.addAndGet(delta);
+		}
+	}
+
+	private void addBytes(final long delta) {
+		if(limitedBytes == null) {
+			bytes.add(delta);
+		} else {
+			limitedBytes.addAndGet(delta);
+		}
+	}
+
+	public final void add(final long size) {
+		addCount(1);
+		addBytes(size);
+		if(parent != null) {
+			parent.add(size);
+		}
+	}
+
+	public final void add(final long count, final long bytes) {
+		addCount(count);
+		addBytes(bytes);
+		if(parent != null) {
+			parent.add(count, bytes);
+		}
+	}
+
+	/**
+	 Accounts the object put into the container
+	 @param prevSize the replaced object's size, negative if no object is replaced
+	 @param sizeReserved true if the object's size is reserved with reserve(), the reservation
+	 becomes the object's accounting and shouldn't be released
+	 @param countReserved true if the object's count is reserved with reserveCount(), the
+	 reservation becomes the object's accounting or is released if the object replaces the other
+	 one
+	 */
+	public final void put(
+		final long size, final long prevSize, final boolean sizeReserved, final boolean countReserved
+	) {
+		final long countDelta = prevSize < 0 ? (countReserved ? 0 : 1) : (countReserved ? -1 : 0);
+		final long bytesDelta = (sizeReserved ? 0 : size) - (prevSize < 0 ? 0 : prevSize);
+		if(countDelta != 0 || bytesDelta != 0) {
+			add(countDelta, bytesDelta);
+		}
+	}
+
+	public final void remove(final long size) {
+		addCount(-1);
+		addBytes(-size);
+		if(parent != null) {
+			parent.remove(size);
+		}
+	}
+
+	public final void resize(final long sizeDelta) {
+		if(sizeDelta != 0) {
+			addBytes(sizeDelta);
+			if(parent != null) {
+				parent.resize(sizeDelta);
+			}
+		}
+	}
+
+	/**
+	 Adds the size to this and to the parent counters if none of the size limits is exceeded. The
+	 write should be done while the size is reserved, so the concurrent writes can't exceed the
+	 limits. The reserved size becomes the object's accounting if the object is put with the
+	 reservation, otherwise it should be released after the write is accounted.
+	 @return false if the size limit of this or of the parent counter would be exceeded
+	 */
+	public final boolean reserve(final long size) {
+		if(size <= 0) {
+			return true;
+		}
+		if(limitedBytes == null) {
+			bytes.add(size);
+		} else {
+			long prevBytes;
+			do {
+				prevBytes = limitedBytes.get();
+				if(prevBytes + size > sizeLimit) {
+					return false;
+				}
+			} while(!limitedBytes.compareAndSet(prevBytes, prevBytes + size));
+		}
+		if(parent != null && !parent.reserve(size)) {
+			addBytes(-size);
+			return false;
+		}
+		return true;
+	}
+
+	public final void release(final long size) {
+		if(size > 0) {
+			resize(-size);
+		}
+	}
+
+	/**
+	 Adds the new object to this and to the parent counts if none of the count limits is exceeded.
+	 The reservation becomes the new object's accounting if the object is put with the reservation,
+	 otherwise it should be released, the same way as the size reservation.
+	 @return false if the count limit of this or of the parent counter would be exceeded
+	 */
+	public final boolean reserveCount() {
+		if(limitedCount == null) {
+			count.increment();
+		} else {
+			long prevCount;
+			do {
+				prevCount = limitedCount.get();
+				if(prevCount >= countLimit) {
+					return false;
+				}
+			} while(!limitedCount.compareAndSet(prevCount, prevCount + 1));
+		}
+		if(parent != null && !parent.reserveCount()) {
+			addCount(-1);
+			return false;
+		}
+		return true;
+	}
+
+	public final void releaseCount() {
+		addCount(-1);
+		if(parent != null) {
+			parent.releaseCount();
+		}
+	}
+
+	/**
+	 Resets the counters and subtracts the values from the parent counters
+	 */
+	public final void clear() {
+		final long c = limitedCount == null ? count.sumThenReset() : limitedCount.getAndSet(0);
+		final long b = limitedBytes == null ? bytes.sumThenReset() : limitedBytes.getAndSet(0);
+		if(parent != null) {
+			parent.subtract(c, b);
+		}
+	}
+
+	private void subtract(final long c, final long b) {
+		addCount(-c);
+		addBytes(-b);
+		if(parent != null) {
+			parent.subtract(c, b);
+		}
+	}
+
+	public final long count() {
+		return limitedCount == null ? count.sum() : limitedCount.get();
+	}
+
+	public final long bytes() {
+		return limitedBytes == null ? bytes.sum() : limitedBytes.get();
+	}
+}
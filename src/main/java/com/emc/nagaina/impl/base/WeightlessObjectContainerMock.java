@@ -6,6 +6,7 @@ import com.emc.nagaina.api.ObjectContainerMock;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  Created on 20.07.16.
@@ -14,13 +15,19 @@ public final class WeightlessObjectContainerMock<T extends DataItemMock>
 implements ObjectContainerMock<T> {
 
 	private final ListingLRUMap<String, T> containerMap;
+	private final StorageMockUsage usage;
 
-	public WeightlessObjectContainerMock(final int capacity) {
+	public WeightlessObjectContainerMock(
+		final int capacity, final StorageMockUsage usage, final Consumer<String> evictionListener
+	) {
+		this.usage = usage;
 		this.containerMap = new ListingLRUMap<String, T>(capacity) {
 			@Override @SuppressWarnings("unchecked")
 			protected final boolean removeLRU(final LinkEntry entry) {
 				if(super.removeLRU(entry)) {
 					decrementSize();
+					usage.remove(((T) entry.getValue()).size());
+					evictionListener.accept((String) entry.getKey());
 					return true;
 				} else {
 					return false;
@@ -52,18 +59,76 @@ implements ObjectContainerMock<T> {
 	}
 
 	@Override
-	public synchronized T put(final String key, final T value) {
-		return containerMap.put(key, value);
+	public T put(final String key, final T value) {
+		return put(key, value, false, false);
+	}
+
+	@Override
+	public T putReserved(final String key, final T value, final boolean countReserved) {
+		return put(key, value, true, countReserved);
+	}
+
+	private synchronized T put(
+		final String key, final T value, final boolean sizeReserved, final boolean countReserved
+	) {
+		final T prevValue = containerMap.put(key, value);
+		usage.put(
+			value.size(), prevValue == null ? -1 : prevValue.size(), sizeReserved, countReserved
+		);
+		return prevValue;
 	}
 
 	@Override
 	public synchronized T remove(final String key) {
-		return containerMap.remove(key);
+		final T prevValue = containerMap.remove(key);
+		if(prevValue != null) {
+			usage.remove(prevValue.size());
+		}
+		return prevValue;
+	}
+
+	@Override
+	public synchronized boolean commit(
+		final String key, final T value, final Modification<T> modification
+	) {
+		if(containerMap.get(key) != value) {
+			return false;
+		}
+		final long prevSize = value.size();
+		modification.apply(value);
+		usage.resize(value.size() - prevSize);
+		return true;
+	}
+
+	@Override
+	public long sizeBytes() {
+		return usage.bytes();
+	}
+
+	@Override
+	public boolean reserve(final long size) {
+		return usage.reserve(size);
+	}
+
+	@Override
+	public void release(final long size) {
+		usage.release(size);
+	}
+
+	@Override
+	public boolean reserveCount() {
+		return usage.reserveCount();
+	}
+
+	@Override
+	public void releaseCount() {
+		usage.releaseCount();
 	}
 	
 	@Override
-	public void close()
+	public synchronized void close()
 	throws IOException {
 		containerMap.clear();
+		usage.clear();
 	}
 }
@@ -7,8 +7,18 @@ import com.emc.nagaina.api.StorageMock;
 import com.emc.nagaina.api.StorageMockClient;
 import com.emc.nagaina.api.StorageMockNode;
 import com.emc.nagaina.impl.http.request.AtmosRequestHandler;
+import com.emc.nagaina.impl.http.request.BackendQueueModel;
+import com.emc.nagaina.impl.http.request.ContainerTrafficShaper;
+import com.emc.nagaina.impl.http.request.LatencyProfile;
 import com.emc.nagaina.impl.http.request.S3RequestHandler;
 import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+import com.emc.nagaina.impl.http.request.TokenBucketRateLimiter;
+import com.emc.nagaina.ui.config.Config.ItemConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.BackendConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.LatencyConfig;
+import com.emc.nagaina.ui.config.Config.TestConfig.StepConfig;
 
 import io.netty.channel.ChannelInboundHandler;
 
@@ -22,60 +32,85 @@ import java.util.List;
  */
 public class StorageMockFactory {
 
-	private final String itemInputFile;
-	private final int storageCapacity;
-	private final int containerCapacity;
-	private final int containerCountLimit;
-	private final int metricsPeriodSec;
-	private final long dropEveryConnection;
-	private final long missEveryResponse;
+	private final ItemConfig itemConfig;
+	private final StorageConfig storageConfig;
+	private final StepConfig stepConfig;
 	private final DataInput dataInput;
-	private final int port;
-	private final boolean sslFlag;
 	private final float rateLimit;
+	private final float apiRateLimit;
+	private final LatencyProfile latencyProfile;
+	private final BackendConfig backendConfig;
+	private final long containerBandwidthLimit;
 	private final String idPrefix;
 	private final int idRadix;
 
+	/**
+	 @throws IllegalArgumentException if the latency distribution is invalid
+	 */
 	public StorageMockFactory(
-		final String itemInputFile, final int storageCapacity, final int containerCapacity,
-		final int containerCountLimit, final int metricsPeriodSec, final long dropEveryConnection,
-		final long missEveryResponse, final DataInput dataInput, final int port, final boolean sslFlag,
-		final float rateLimit, final String idPrefix, final int idRadix
-	) {
-		this.itemInputFile = itemInputFile;
-		this.storageCapacity = storageCapacity;
-		this.containerCapacity = containerCapacity;
-		this.containerCountLimit = containerCountLimit;
-		this.metricsPeriodSec = metricsPeriodSec;
-		this.dropEveryConnection = dropEveryConnection;
-		this.missEveryResponse = missEveryResponse;
+		final ItemConfig itemConfig, final StorageConfig storageConfig,
+		final StepConfig stepConfig, final DataInput dataInput
+	) throws IllegalArgumentException {
+		this.itemConfig = itemConfig;
+		this.storageConfig = storageConfig;
+		this.stepConfig = stepConfig;
 		this.dataInput = dataInput;
-		this.port = port;
-		this.sslFlag = sslFlag;
-		this.rateLimit = rateLimit;
-		this.idPrefix = idPrefix;
-		this.idRadix = idRadix;
+		this.rateLimit = (float) stepConfig.getLimitConfig().getRate();
+		this.apiRateLimit = (float) storageConfig.getNetConfig().getHttpConfig().getApiRateLimit();
+		final MockConfig mockConfig = storageConfig.getMockConfig();
+		final LatencyConfig latencyConfig = mockConfig.getLatencyConfig();
+		final LatencyProfile latencyProfile = new LatencyProfile(
+			latencyConfig.getCreate(), latencyConfig.getRead(), latencyConfig.getUpdate(),
+			latencyConfig.getDelete(), latencyConfig.getList()
+		);
+		this.latencyProfile = latencyProfile.isEmpty() ? null : latencyProfile;
+		this.backendConfig = mockConfig.getBackendConfig();
+		this.containerBandwidthLimit = storageConfig
+			.getNetConfig()
+			.getBandwidthConfig()
+			.getContainer()
+			.get();
+		this.idPrefix = itemConfig.getNamingConfig().getPrefix();
+		this.idRadix = itemConfig.getNamingConfig().getRadix();
+	}
+
+	private boolean responseDelayEnabled() {
+		return latencyProfile != null || backendConfig.getSlots() > 0 ||
+			containerBandwidthLimit > 0;
 	}
 
 	public StorageMockNode newStorageNodeMock()
 	throws IOException {
 		final List<ChannelInboundHandler> handlers = new ArrayList<>();
 		final StorageMock<DataItemMock> storageMock = new WeightlessHttpStorageMock(
-			itemInputFile, storageCapacity, containerCapacity, containerCountLimit, metricsPeriodSec,
-			dropEveryConnection, missEveryResponse, dataInput, port, sslFlag, handlers
+			itemConfig, storageConfig, stepConfig, dataInput, responseDelayEnabled(), handlers
 		);
 		final StorageMockNode<DataItemMock> storageMockNode = new BasicStorageMockNode(
 			storageMock, dataInput
 		);
 		final StorageMockClient<DataItemMock> client = storageMockNode.client();
+		// the global limit is shared by all the APIs
+		final TokenBucketRateLimiter rateLimiter = newRateLimiter(rateLimit);
+		// the backend is shared by all the APIs too
+		final BackendQueueModel backendModel = newBackendModel(storageMock);
+		final ContainerTrafficShaper containerTrafficShaper = newContainerTrafficShaper();
 		handlers.add(
-			new SwiftRequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, client)
+			new SwiftRequestHandler<>(
+				rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+				containerTrafficShaper, idPrefix, idRadix, storageMock, client
+			)
 		);
 		handlers.add(
-			new AtmosRequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, client)
+			new AtmosRequestHandler<>(
+				rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+				containerTrafficShaper, idPrefix, idRadix, storageMock, client
+			)
 		);
 		handlers.add(
-			new S3RequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, client)
+			new S3RequestHandler<>(
+				rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+				containerTrafficShaper, idPrefix, idRadix, storageMock, client
+			)
 		);
 		return storageMockNode;
 	}
@@ -84,21 +119,51 @@ public class StorageMockFactory {
 	throws IOException {
 		final List<ChannelInboundHandler> handlers = new ArrayList<>();
 		final StorageMock<DataItemMock> storageMock = new WeightlessHttpStorageMock(
-			itemInputFile, storageCapacity, containerCapacity, containerCountLimit, metricsPeriodSec,
-			dropEveryConnection, missEveryResponse, dataInput, port, sslFlag, handlers
+			itemConfig, storageConfig, stepConfig, dataInput, responseDelayEnabled(), handlers
 		);
+		final TokenBucketRateLimiter rateLimiter = newRateLimiter(rateLimit);
+		// the backend is shared by all the APIs
+		final BackendQueueModel backendModel = newBackendModel(storageMock);
+		final ContainerTrafficShaper containerTrafficShaper = newContainerTrafficShaper();
 		try {
 			handlers.add(
-				new SwiftRequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, null)
+				new SwiftRequestHandler<>(
+					rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+					containerTrafficShaper, idPrefix, idRadix, storageMock, null
+				)
 			);
 			handlers.add(
-				new AtmosRequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, null)
+				new AtmosRequestHandler<>(
+					rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+					containerTrafficShaper, idPrefix, idRadix, storageMock, null
+				)
 			);
 			handlers.add(
-				new S3RequestHandler<>(rateLimit, idPrefix, idRadix, storageMock, null)
+				new S3RequestHandler<>(
+					rateLimiter, newRateLimiter(apiRateLimit), latencyProfile, backendModel,
+					containerTrafficShaper, idPrefix, idRadix, storageMock, null
+				)
 			);
 		} catch(final RemoteException ignore) {
 		}
 		return storageMock;
 	}
+
+	private static TokenBucketRateLimiter newRateLimiter(final float rate) {
+		return rate > 0 ? new TokenBucketRateLimiter(rate) : null;
+	}
+
+	private BackendQueueModel newBackendModel(final StorageMock<DataItemMock> storageMock) {
+		return backendConfig.getSlots() > 0 ?
+			new BackendQueueModel(
+				backendConfig.getSlots(), backendConfig.getSeekMilliSec(),
+				backendConfig.getBandwidth().get(), storageMock.getStats()
+			) :
+			null;
+	}
+
+	private ContainerTrafficShaper newContainerTrafficShaper() {
+		return containerBandwidthLimit > 0 ?
+			new ContainerTrafficShaper(containerBandwidthLimit) : null;
+	}
 }
@@ -8,17 +8,26 @@ import com.emc.mongoose.ui.log.Loggers;
 import com.emc.nagaina.api.DataItemMock;
 import com.emc.nagaina.impl.base.BasicDataItemMock;
 import com.emc.nagaina.impl.base.StorageMockBase;
+import com.emc.nagaina.impl.http.request.ResponseDelayHandler;
+import com.emc.nagaina.ui.config.Config.ItemConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.NetConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.NetConfig.BandwidthConfig;
+import com.emc.nagaina.ui.config.Config.TestConfig.StepConfig;
 
 import com.github.akurilov.commons.concurrent.ThreadUtil;
+import com.github.akurilov.commons.system.SizeInBytes;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInboundHandler;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.kqueue.KQueue;
@@ -32,12 +41,16 @@ import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
 
 import org.apache.commons.lang.SystemUtils;
 
 import org.apache.logging.log4j.Level;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -51,32 +64,54 @@ extends StorageMockBase<DataItemMock>{
 
 	private EventLoopGroup dispatcherGroup;
 	private EventLoopGroup workerGroup;
-	private Channel channel;
+	private final List<Channel> channels = new ArrayList<>();
 	private final List<ChannelInboundHandler> handlers;
 	private final int port;
 	private final boolean sslFlag;
+	private final boolean responseDelayFlag;
+	private final long connBandwidthLimit;
+	private GlobalTrafficShapingHandler globalTrafficShapingHandler = null;
 
 	@SuppressWarnings("ConstantConditions")
 	public WeightlessHttpStorageMock(
-		final String itemInputFile, final int storageCapacity, final int containerCapacity,
-		final int containerCountLimit, final int metricsPeriodSec, final long dropEveryConnection,
-		final long missEveryResponse, final DataInput dataInput, final int port, final boolean sslFlag,
+		final ItemConfig itemConfig, final StorageConfig storageConfig,
+		final StepConfig stepConfig, final DataInput dataInput, final boolean responseDelayFlag,
 		final List<ChannelInboundHandler> handlers
 	) {
-		super(
-			itemInputFile, storageCapacity, containerCapacity, containerCountLimit, metricsPeriodSec,
-			dropEveryConnection, missEveryResponse, dataInput
-		);
-		this.port = port;
-		this.sslFlag = sslFlag;
-		final int workerCount = ThreadUtil.getHardwareThreadCount();
+		super(itemConfig, storageConfig, stepConfig, dataInput);
+		final NetConfig netConfig = storageConfig.getNetConfig();
+		final BandwidthConfig bandwidthConfig = netConfig.getBandwidthConfig();
+		this.port = netConfig.getNodeConfig().getPort();
+		this.sslFlag = netConfig.getSsl();
+		this.responseDelayFlag = responseDelayFlag;
+		this.connBandwidthLimit = bandwidthConfig.getConnection().get();
+		final long bandwidthLimit = bandwidthConfig.getGlobal().get();
+		final int rcvBuf = socketBufferSize("receive", netConfig.getRcvBuf());
+		final int sndBuf = socketBufferSize("send", netConfig.getSndBuf());
+		final int bindBacklogSize = netConfig.getBindBackLogSize();
+		final int linger = netConfig.getLinger();
+		final int timeoutMillis = netConfig.getTimeoutMilliSec();
+		final int acceptorCount = netConfig.getAcceptors();
+		// every shard is owned by its own worker event loop
+		final int shardCount = getShardCount();
+		final int workerCount = shardCount > 0 ? shardCount : ThreadUtil.getHardwareThreadCount();
 
 		this.handlers = handlers;
+		// the kernel balances the connections among the listeners bound with SO_REUSEPORT
+		final boolean reusePortFlag = acceptorCount > 1 && Epoll.isAvailable();
+		if(acceptorCount > 1 && !reusePortFlag) {
+			Loggers.ERR.warn(
+				"SO_REUSEPORT requires the epoll transport, using the single acceptor for the " +
+					"port #{}", port
+			);
+		}
+		final int listenerCount = reusePortFlag ? acceptorCount : 1;
 
 		try {
 			if(SystemUtils.IS_OS_LINUX) {
 				dispatcherGroup = new EpollEventLoopGroup(
-					1, new LogContextThreadFactory("dispatcher@port#" + port + "-", true)
+					listenerCount,
+					new LogContextThreadFactory("dispatcher@port#" + port + "-", true)
 				);
 				workerGroup = new EpollEventLoopGroup(
 					workerCount, new LogContextThreadFactory("ioworker@port#" + port + "-", true)
@@ -89,6 +124,12 @@ extends StorageMockBase<DataItemMock>{
 					workerCount, new LogContextThreadFactory("ioworker@port#" + port + "-", true)
 				);
 			}
+			if(bandwidthLimit > 0) {
+				// the same limit for both directions
+				globalTrafficShapingHandler = new GlobalTrafficShapingHandler(
+					workerGroup, bandwidthLimit, bandwidthLimit
+				);
+			}
 			final ServerBootstrap serverBootstrap = new ServerBootstrap();
 			serverBootstrap.group(dispatcherGroup, workerGroup)
 				.channel(
@@ -98,12 +139,55 @@ extends StorageMockBase<DataItemMock>{
 							KQueueServerSocketChannel.class :
 							NioServerSocketChannel.class
 				)
+				.option(ChannelOption.SO_REUSEADDR, netConfig.getReuseAddr())
+				.childOption(ChannelOption.TCP_NODELAY, netConfig.getTcpNoDelay())
+				.childOption(ChannelOption.SO_KEEPALIVE, netConfig.getKeepAlive());
+			if(reusePortFlag) {
+				serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+			}
+			if(bindBacklogSize > 0) {
+				serverBootstrap.option(ChannelOption.SO_BACKLOG, bindBacklogSize);
+			}
+			if(rcvBuf > 0) {
+				// the accepted sockets inherit the listener's receive buffer size which should be
+				// set before the listen call to take effect on the TCP window scaling
+				serverBootstrap.option(ChannelOption.SO_RCVBUF, rcvBuf);
+				serverBootstrap.childOption(ChannelOption.SO_RCVBUF, rcvBuf);
+			}
+			if(sndBuf > 0) {
+				serverBootstrap.childOption(ChannelOption.SO_SNDBUF, sndBuf);
+			}
+			if(linger > 0) {
+				// the zero linger means the connection reset on close, so it's not applied
+				serverBootstrap.childOption(ChannelOption.SO_LINGER, linger);
+			}
+			serverBootstrap
 				.childHandler(
 					new ChannelInitializer<SocketChannel>() {
 						@Override
 						protected final void initChannel(final SocketChannel socketChannel)
 						throws Exception {
 							final ChannelPipeline pipeline = socketChannel.pipeline();
+							if(timeoutMillis > 0) {
+								// the idle connection is closed by the request handler unless its
+								// response is pending
+								pipeline.addLast(
+									new IdleStateHandler(
+										0, 0, timeoutMillis, TimeUnit.MILLISECONDS
+									)
+								);
+							}
+							// the shaping handlers account the bytes actually transferred
+							if(globalTrafficShapingHandler != null) {
+								pipeline.addLast(globalTrafficShapingHandler);
+							}
+							if(connBandwidthLimit > 0) {
+								pipeline.addLast(
+									new ChannelTrafficShapingHandler(
+										connBandwidthLimit, connBandwidthLimit
+									)
+								);
+							}
 							if(sslFlag) {
 								final SelfSignedCertificate ssc = new SelfSignedCertificate();
 								final SslContext sslCtx = SslContextBuilder
@@ -114,20 +198,41 @@ extends StorageMockBase<DataItemMock>{
 							}
 							pipeline.addLast(new HttpServerCodec());
 							pipeline.addLast(new ChunkedWriteHandler());
+							if(responseDelayFlag) {
+								// holds the responses written by the request handlers
+								pipeline.addLast(new ResponseDelayHandler());
+							}
 							for(final ChannelInboundHandler handler: handlers) {
 								pipeline.addLast(handler);
 							}
 						}
 					}
 				);
-			final ChannelFuture bind = serverBootstrap.bind(port);
-			bind.sync();
-			channel = bind.sync().channel();
+			ChannelFuture bind;
+			for(int i = 0; i < listenerCount; i ++) {
+				// every listener is registered with the next dispatcher event loop
+				bind = serverBootstrap.bind(port);
+				channels.add(bind.sync().channel());
+			}
 		} catch(final Exception e) {
 			LogUtil.exception(Level.ERROR, e, "Failed to start the service at port #{}", port);
 			throw new IllegalStateException();
 		}
-		Loggers.MSG.info("Listening the port #{}", port);
+		Loggers.MSG.info("Listening the port #{} by {} acceptor(s)", port, listenerCount);
+	}
+
+	/**
+	 @throws IllegalArgumentException if the configured size doesn't fit the socket option value
+	 */
+	private static int socketBufferSize(final String name, final SizeInBytes size)
+	throws IllegalArgumentException {
+		final long value = size.get();
+		if(value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException(
+				"The socket " + name + " buffer size " + value + " exceeds " + Integer.MAX_VALUE
+			);
+		}
+		return (int) value;
 	}
 
 	@Override
@@ -140,11 +245,17 @@ extends StorageMockBase<DataItemMock>{
 		return sslFlag;
 	}
 
+	@Override
+	public final boolean chunkedContentEnabled() {
+		// the shaping handlers can't pace the file region's transfer
+		return sslFlag || globalTrafficShapingHandler != null || connBandwidthLimit > 0;
+	}
+
 	@Override
 	public final boolean await(final long timeout, final TimeUnit timeUnit)
 	throws InterruptedException {
 		try {
-			channel.closeFuture().await(timeout, timeUnit); // one channel is enough
+			channels.get(0).closeFuture().await(timeout, timeUnit); // one channel is enough
 		} catch(final InterruptedException e) {
 			Loggers.MSG.info("Interrupting the Nagaina");
 		}
@@ -155,8 +266,13 @@ extends StorageMockBase<DataItemMock>{
 	@Override
 	protected final void doClose()
 	throws IOException {
+		for(final Channel channel : channels) {
+			channel.close();
+		}
 		super.doClose();
-		channel.close();
+		if(globalTrafficShapingHandler != null) {
+			globalTrafficShapingHandler.release();
+		}
 		dispatcherGroup.shutdownGracefully(1, 1, TimeUnit.SECONDS);
 		workerGroup.shutdownGracefully(1, 1, TimeUnit.SECONDS);
 		handlers.clear();
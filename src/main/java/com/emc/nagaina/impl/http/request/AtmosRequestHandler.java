@@ -8,46 +8,29 @@ import com.emc.nagaina.api.StorageMock;
 import com.emc.nagaina.api.StorageMockClient;
 import com.emc.nagaina.api.exception.ContainerMockException;
 import com.emc.nagaina.api.exception.ContainerMockNotFoundException;
-import static com.emc.nagaina.impl.http.request.XmlShortcuts.appendElement;
 
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import io.netty.handler.codec.http.HttpUtil;
 import io.netty.util.Attribute;
-import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpHeaderNames.LOCATION;
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpMethod.POST;
 import static io.netty.handler.codec.http.HttpMethod.PUT;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
-import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_IMPLEMENTED;
-import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 
 import org.apache.logging.log4j.Level;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import java.io.ByteArrayOutputStream;
 import java.rmi.RemoteException;
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -65,22 +48,18 @@ extends RequestHandlerBase<T> {
 			AT_PATH = URI_BASE_PATH + "/accesstokens",
 			ST_PATH = URI_BASE_PATH + "/subtenant",
 			STS_PATH = ST_PATH + "s/";
-	private static final DocumentBuilder DOM_BUILDER;
-	private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
-
-	static {
-		try {
-			DOM_BUILDER = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		} catch (final ParserConfigurationException e) {
-			throw new RuntimeException(e);
-		}
-	}
 
 	public AtmosRequestHandler(
-		final float rateLimit, final String prefix, final int idRadix, final StorageMock<T> localStorage,
+		final TokenBucketRateLimiter rateLimiter, final TokenBucketRateLimiter apiRateLimiter,
+		final LatencyProfile latencyProfile, final BackendQueueModel backendModel,
+		final ContainerTrafficShaper containerTrafficShaper, final String prefix,
+		final int idRadix, final StorageMock<T> localStorage,
 		final StorageMockClient<T> remoteStorage
 	) throws RemoteException {
-		super(rateLimit, prefix, idRadix, localStorage, remoteStorage);
+		super(
+			rateLimiter, apiRateLimiter, latencyProfile, backendModel, containerTrafficShaper,
+			prefix, idRadix, localStorage, remoteStorage
+		);
 	}
 
 	@Override
@@ -134,6 +113,7 @@ extends RequestHandlerBase<T> {
 					if(requestHeaders.contains(KEY_EMC_TOKEN)) {
 						objectId = requestHeaders.get(KEY_EMC_TOKEN);
 					}
+					setResponseLatency(ctx, LatencyProfile.Operation.LIST);
 					handleContainerList(StorageMock.DEFAULT_CONTAINER_NAME, objectId, ctx);
 				}
 			} else {
@@ -171,6 +151,18 @@ extends RequestHandlerBase<T> {
 			}
 		}
 	}
+
+	@Override
+	protected final String shardKey(final String uriPath) {
+		final String uriPathParts[] = uriPath.split("/");
+		if(uriPath.startsWith(OBJ_PATH)) {
+			// the id of the created object is generated by the handler
+			return uriPathParts.length > 3 ? uriPathParts[3] : null;
+		} else if(uriPath.startsWith(NS_PATH)) {
+			return uriPathParts.length > 4 ? uriPathParts[uriPathParts.length - 1] : null;
+		}
+		return null;
+	}
 	
 	private static final String KEY_EMC_UID = "x-emc-uid";
 	private static final String UID_DELIMITER = "/";
@@ -238,43 +230,28 @@ extends RequestHandlerBase<T> {
 			LogUtil.exception(Level.WARN, e, "Subtenant \"{}\" failure", name);
 			return;
 		}
-		Map.Entry<String, String> header = null;
-		if(lastObject != null) {
-			header = new AbstractMap.SimpleEntry<>(KEY_EMC_TOKEN, lastObject.getName());
-		}
-		final Document xml = DOM_BUILDER.newDocument();
-		final Element rootElem = xml.createElement("ListObjectsResponse");
-		xml.appendChild(rootElem);
-		for(final T object: buffer) {
-			final Element elem = xml.createElement("Object");
-			appendElement(xml, elem, "ObjectID", object.getName());
-			appendElement(rootElem, elem);
+		final HttpHeaders respHeaders;
+		if(lastObject == null) {
+			respHeaders = null;
+		} else {
+			respHeaders = new DefaultHttpHeaders();
+			respHeaders.set(KEY_EMC_TOKEN, lastObject.getName());
 		}
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		final StreamResult streamResult = new StreamResult(stream);
-		try {
-			TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(xml), streamResult);
-		} catch (final TransformerException e) {
-			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
-			LogUtil.exception(Level.ERROR, e, "Failed to build subtenant XML listing");
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, respHeaders);
+		if(xml == null) {
 			return;
 		}
-		if(Loggers.MSG.isTraceEnabled()) {
-			Loggers.MSG.trace(
-				"Responding the subtenant \"{}\" listing content:\n{}", name,
-				new String(stream.toByteArray())
-			);
-		}
-		final byte[] content = stream.toByteArray();
-		ctx.channel().attr(ATTR_KEY_CTX_WRITE_FLAG).set(false);
-		final FullHttpResponse response = new DefaultFullHttpResponse(
-			HTTP_1_1, OK, Unpooled.copiedBuffer(content)
-		);
-		response.headers().set(CONTENT_TYPE, "application/xml");
-		if(header != null) {
-			response.headers().set(header.getKey(), header.getValue());
+		try {
+			xml.startElement("ListObjectsResponse");
+			for(final T object: buffer) {
+				xml.startElement("Object");
+				xml.element("ObjectID", object.getName());
+				xml.endElement("Object");
+			}
+			xml.endElement("ListObjectsResponse");
+			xml.finish();
+		} finally {
+			xml.release();
 		}
-		HttpUtil.setContentLength(response, content.length);
-		ctx.write(response);
 	}
 }
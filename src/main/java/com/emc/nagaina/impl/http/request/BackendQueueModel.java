@@ -0,0 +1,76 @@
+package com.emc.nagaina.impl.http.request;
+
+import com.emc.nagaina.api.StorageIoStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ Created by agent on 17.10.26.
+ Emulates the storage backend as the fixed count of the service slots ("disks"), every object read
+ or write occupies a slot for the service time which is the seek time plus the transfer time at the
+ slot's bandwidth. A request takes the slot which becomes free first and waits until that time if
+ all the slots are busy, so the latency grows as the offered load approaches the backend capacity.
+ The slot is represented by the time when it becomes free, the request reserves its service period
+ in the future and its response is delayed until the end of that period, so nothing blocks.
+ */
+public final class BackendQueueModel {
+
+	private final long seekNanos;
+	private final double nanosPerByte;
+	private final AtomicLongArray slotFreeNanos;
+	private final StorageIoStats ioStats;
+
+	/**
+	 @param slotCount the count of the requests served concurrently, should be positive
+	 @param seekMillis the constant part of the service time in milliseconds
+	 @param bandwidth the slot's bandwidth in bytes per second, 0 means the unlimited one
+	 @param ioStats the stats to report the queueing to
+	 */
+	public BackendQueueModel(
+		final int slotCount, final double seekMillis, final long bandwidth,
+		final StorageIoStats ioStats
+	) {
+		if(slotCount <= 0) {
+			throw new IllegalArgumentException("Slot count should be positive: " + slotCount);
+		}
+		this.seekNanos = Math.max(0, (long) (seekMillis * TimeUnit.MILLISECONDS.toNanos(1)));
+		this.nanosPerByte = bandwidth > 0 ? (double) TimeUnit.SECONDS.toNanos(1) / bandwidth : 0;
+		this.slotFreeNanos = new AtomicLongArray(slotCount);
+		final long now = System.nanoTime();
+		for(int i = 0; i < slotCount; i ++) {
+			slotFreeNanos.set(i, now);
+		}
+		this.ioStats = ioStats;
+		ioStats.setBackendSlotCount(slotCount);
+	}
+
+	/**
+	 Reserves the slot for the data transfer
+	 @param size the transferred data size in bytes
+	 @return the time in nanoseconds until the transfer is done, including the queueing time
+	 */
+	public final long reserve(final long size) {
+		final long serviceNanos = seekNanos + (long) (nanosPerByte * size);
+		final long now = System.nanoTime();
+		final int slotCount = slotFreeNanos.length();
+		int slot;
+		long freeNanos, nextFreeNanos, startNanos;
+		do {
+			slot = 0;
+			freeNanos = slotFreeNanos.get(0);
+			for(int i = 1; i < slotCount; i ++) {
+				nextFreeNanos = slotFreeNanos.get(i);
+				if(nextFreeNanos - freeNanos < 0) {
+					slot = i;
+					freeNanos = nextFreeNanos;
+				}
+			}
+			// the idle slot starts the service immediately
+			startNanos = freeNanos - now > 0 ? freeNanos : now;
+		} while(!slotFreeNanos.compareAndSet(slot, freeNanos, startNanos + serviceNanos));
+		final long waitNanos = startNanos - now;
+		ioStats.markBackendIo(waitNanos, serviceNanos);
+		return waitNanos + serviceNanos;
+	}
+}
@@ -0,0 +1,44 @@
+package com.emc.nagaina.impl.http.request;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Created by agent on 17.10.26.
+ Limits the data transfer rate of every container independently. The object's content size is
+ taken from the container's token bucket of bytes, the response is delayed if the container's
+ bandwidth is exhausted by the preceding transfers. The transfer itself is not paced, so the limit
+ is met on average over the multiple requests.
+ */
+public final class ContainerTrafficShaper {
+
+	private final double bandwidth;
+	private final Map<String, TokenBucketRateLimiter> limiters = new ConcurrentHashMap<>();
+
+	/**
+	 @param bandwidth the container's bandwidth in bytes per second, should be positive
+	 */
+	public ContainerTrafficShaper(final double bandwidth) {
+		if(bandwidth <= 0) {
+			throw new IllegalArgumentException("Bandwidth should be positive: " + bandwidth);
+		}
+		this.bandwidth = bandwidth;
+	}
+
+	/**
+	 @return the delay in nanoseconds until the transfer may be done
+	 */
+	public final long acquire(final String containerName, final long size) {
+		TokenBucketRateLimiter limiter = limiters.get(containerName);
+		if(limiter == null) {
+			limiter = limiters.computeIfAbsent(
+				containerName, name -> new TokenBucketRateLimiter(bandwidth)
+			);
+		}
+		return limiter.acquire(size);
+	}
+
+	public final void remove(final String containerName) {
+		limiters.remove(containerName);
+	}
+}
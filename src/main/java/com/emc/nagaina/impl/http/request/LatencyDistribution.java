@@ -0,0 +1,201 @@
+package com.emc.nagaina.impl.http.request;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ Created by agent on 17.10.26.
+ The response latency distribution. The distribution is specified as "type:arg1,arg2", the time
+ values are in milliseconds:
+ fixed:L - the constant latency L;
+ uniform:A,B - uniformly distributed between A and B;
+ normal:M,S - normally distributed with the mean M and the standard deviation S;
+ lognormal:M,S - log-normally distributed with the median M and the shape S;
+ pareto:X,A - Pareto distributed with the minimum X and the tail index A;
+ histogram:FILE - the empirical distribution, the file lines are "latency weight" pairs.
+ The negative samples are truncated to 0, the samples are limited by 1 minute.
+ */
+public final class LatencyDistribution {
+
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private final String spec;
+	private final ToDoubleFunction<ThreadLocalRandom> sampler;
+
+	private LatencyDistribution(
+		final String spec, final ToDoubleFunction<ThreadLocalRandom> sampler
+	) {
+		this.spec = spec;
+		this.sampler = sampler;
+	}
+
+	/**
+	 @return the distribution, null if the spec is null or empty
+	 @throws IllegalArgumentException if the spec is invalid or the histogram file can't be read
+	 */
+	public static LatencyDistribution parse(final String spec)
+	throws IllegalArgumentException {
+		if(spec == null || spec.isEmpty()) {
+			return null;
+		}
+		final int typeEnd = spec.indexOf(':');
+		if(typeEnd < 0) {
+			throw new IllegalArgumentException("Invalid latency distribution: \"" + spec + "\"");
+		}
+		final String type = spec.substring(0, typeEnd).trim().toLowerCase();
+		final String args = spec.substring(typeEnd + 1).trim();
+		switch(type) {
+			case "fixed": {
+				final double latency = args(spec, args, 1)[0];
+				return new LatencyDistribution(spec, rnd -> latency);
+			}
+			case "uniform": {
+				final double bounds[] = args(spec, args, 2);
+				final double min = Math.min(bounds[0], bounds[1]);
+				final double range = Math.abs(bounds[1] - bounds[0]);
+				return new LatencyDistribution(spec, rnd -> min + range * rnd.nextDouble());
+			}
+			case "normal": {
+				final double params[] = args(spec, args, 2);
+				return new LatencyDistribution(
+					spec, rnd -> params[0] + params[1] * rnd.nextGaussian()
+				);
+			}
+			case "lognormal": {
+				final double params[] = args(spec, args, 2);
+				return new LatencyDistribution(
+					spec, rnd -> params[0] * Math.exp(params[1] * rnd.nextGaussian())
+				);
+			}
+			case "pareto": {
+				final double params[] = args(spec, args, 2);
+				if(params[1] <= 0) {
+					throw new IllegalArgumentException(
+						"The Pareto tail index should be positive: \"" + spec + "\""
+					);
+				}
+				final double exponent = -1 / params[1];
+				// 1 - u is in (0, 1], so the sample is finite
+				return new LatencyDistribution(
+					spec, rnd -> params[0] * Math.pow(1 - rnd.nextDouble(), exponent)
+				);
+			}
+			case "histogram":
+				return histogram(spec, args);
+			default:
+				throw new IllegalArgumentException(
+					"Unknown latency distribution type: \"" + spec + "\""
+				);
+		}
+	}
+
+	private static double[] args(final String spec, final String args, final int count) {
+		final String values[] = args.split(",");
+		if(values.length != count) {
+			throw new IllegalArgumentException(
+				"Latency distribution \"" + spec + "\" expects " + count + " argument(s)"
+			);
+		}
+		final double result[] = new double[count];
+		for(int i = 0; i < count; i ++) {
+			try {
+				result[i] = Double.parseDouble(values[i].trim());
+			} catch(final NumberFormatException e) {
+				throw new IllegalArgumentException(
+					"Invalid latency distribution argument: \"" + spec + "\"", e
+				);
+			}
+		}
+		return result;
+	}
+
+	private static LatencyDistribution histogram(final String spec, final String file) {
+		final List<double[]> bins = new ArrayList<>();
+		try(
+			final BufferedReader reader = Files.newBufferedReader(
+				Paths.get(file), StandardCharsets.UTF_8
+			)
+		) {
+			String line;
+			String values[];
+			while(null != (line = reader.readLine())) {
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				values = line.split("[\\s,;]+");
+				if(values.length != 2) {
+					throw new IllegalArgumentException(
+						"Invalid latency histogram line \"" + line + "\" in the file \"" + file +
+							"\""
+					);
+				}
+				bins.add(
+					new double[] { Double.parseDouble(values[0]), Double.parseDouble(values[1]) }
+				);
+			}
+		} catch(final IOException e) {
+			throw new IllegalArgumentException(
+				"Failed to read the latency histogram file \"" + file + "\"", e
+			);
+		} catch(final NumberFormatException e) {
+			throw new IllegalArgumentException(
+				"Invalid latency histogram value in the file \"" + file + "\"", e
+			);
+		}
+		final int n = bins.size();
+		final double latencies[] = new double[n];
+		final double cumulativeWeights[] = new double[n];
+		double totalWeight = 0;
+		for(int i = 0; i < n; i ++) {
+			latencies[i] = bins.get(i)[0];
+			totalWeight += Math.max(0, bins.get(i)[1]);
+			cumulativeWeights[i] = totalWeight;
+		}
+		if(totalWeight <= 0) {
+			throw new IllegalArgumentException(
+				"The latency histogram file \"" + file + "\" has no positive weights"
+			);
+		}
+		final double weightsSum = totalWeight;
+		return new LatencyDistribution(
+			spec,
+			rnd -> {
+				int i = Arrays.binarySearch(cumulativeWeights, weightsSum * rnd.nextDouble());
+				if(i < 0) {
+					i = -i - 1;
+				} else {
+					// the exact match is the upper bound of the bin, take the next one
+					i ++;
+				}
+				return latencies[Math.min(i, n - 1)];
+			}
+		);
+	}
+
+	/**
+	 @return the next latency sample in nanoseconds
+	 */
+	public final long nextNanos() {
+		final double sample = sampler.applyAsDouble(ThreadLocalRandom.current()) * NANOS_PER_MILLI;
+		if(sample <= 0 || Double.isNaN(sample)) {
+			return 0;
+		}
+		return sample < MAX_NANOS ? (long) sample : MAX_NANOS;
+	}
+
+	@Override
+	public final String toString() {
+		return spec;
+	}
+}
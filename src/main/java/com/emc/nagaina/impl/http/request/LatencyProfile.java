@@ -0,0 +1,49 @@
+package com.emc.nagaina.impl.http.request;
+
+/**
+ Created by agent on 17.10.26.
+ The response latency distributions by the operation type. The operation without the configured
+ distribution is answered without any additional latency.
+ */
+public final class LatencyProfile {
+
+	public enum Operation {
+		CREATE, READ, UPDATE, DELETE, LIST
+	}
+
+	private final LatencyDistribution distributions[] =
+		new LatencyDistribution[Operation.values().length];
+	private final boolean empty;
+
+	/**
+	 @param specs the distribution specs ordered as the {@link Operation} values, see
+	 {@link LatencyDistribution#parse(String)}, null means no latency
+	 @throws IllegalArgumentException if any spec is invalid
+	 */
+	public LatencyProfile(final String... specs)
+	throws IllegalArgumentException {
+		boolean empty = true;
+		for(int i = 0; i < distributions.length && i < specs.length; i ++) {
+			distributions[i] = LatencyDistribution.parse(specs[i]);
+			if(distributions[i] != null) {
+				empty = false;
+			}
+		}
+		this.empty = empty;
+	}
+
+	/**
+	 @return true if no latency is configured for any operation
+	 */
+	public final boolean isEmpty() {
+		return empty;
+	}
+
+	/**
+	 @return the next latency sample in nanoseconds for the operation, 0 if not configured
+	 */
+	public final long nextNanos(final Operation op) {
+		final LatencyDistribution distribution = distributions[op.ordinal()];
+		return distribution == null ? 0 : distribution.nextNanos();
+	}
+}
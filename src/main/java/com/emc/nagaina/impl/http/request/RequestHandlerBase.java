@@ -18,6 +18,8 @@ import com.emc.nagaina.api.exception.ObjectMockNotFoundException;
 import com.emc.nagaina.api.exception.StorageMockCapacityLimitReachedException;
 import com.emc.nagaina.impl.base.DataItemFileRegion;
 import com.emc.nagaina.impl.base.SeekableByteChannelChunkedNioStream;
+import com.emc.nagaina.impl.base.ShardedObjectContainerMock;
+import com.emc.nagaina.impl.http.request.LatencyProfile.Operation;
 
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -37,8 +39,11 @@ import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpHeaderNames.RANGE;
 import static io.netty.handler.codec.http.HttpMethod.DELETE;
@@ -61,13 +66,15 @@ import org.apache.logging.log4j.Level;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 /**
  Created on 12.07.16.
@@ -77,8 +84,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 public abstract class RequestHandlerBase<T extends DataItemMock>
 extends ChannelInboundHandlerAdapter {
 
-	private final double rateLimit;
-	private final AtomicInteger lastMilliDelay = new AtomicInteger(1);
+	private final TokenBucketRateLimiter rateLimiter;
+	private final TokenBucketRateLimiter apiRateLimiter;
+	private final LatencyProfile latencyProfile;
+	private final BackendQueueModel backendModel;
+	private final ContainerTrafficShaper containerTrafficShaper;
 
 	private final StorageMockClient<T> remoteStorage;
 	protected final StorageMock<T> localStorage;
@@ -86,6 +96,7 @@ extends ChannelInboundHandlerAdapter {
 	private final String apiClsName;
 
 	private final int prefixLength, idRadix;
+	private volatile EventExecutor shardOwners[] = null;
 
 	protected static final AttributeKey<HttpRequest> ATTR_KEY_REQUEST = AttributeKey
 		.newInstance("requestKey");
@@ -97,15 +108,31 @@ extends ChannelInboundHandlerAdapter {
 		.newInstance("ctxWriteFlagKey");
 	protected static final AttributeKey<String> ATTR_KEY_HANDLER = AttributeKey
 		.newInstance("handlerKey");
+	protected static final AttributeKey<Long> ATTR_KEY_OBJECT_VERSION = AttributeKey
+		.newInstance("objectVersionKey");
+	private static final AttributeKey<RequestQueue> ATTR_KEY_REQUEST_QUEUE = AttributeKey
+		.newInstance("requestQueueKey");
 
 	protected static final int DEFAULT_PAGE_SIZE = 0x1000;
+	/**
+	 The count of the channel's requests waiting for the deferred one above which the channel
+	 reading is paused until the half of them are processed
+	 */
+	public static final int MAX_WAITING_REQUEST_COUNT = 0x40;
 	protected static final String MARKER_KEY = "marker";
 
 	protected RequestHandlerBase(
-		final float rateLimit, final String prefix, final int idRadix, final StorageMock<T> localStorage,
-	    final StorageMockClient<T> remoteStorage
+		final TokenBucketRateLimiter rateLimiter, final TokenBucketRateLimiter apiRateLimiter,
+		final LatencyProfile latencyProfile, final BackendQueueModel backendModel,
+		final ContainerTrafficShaper containerTrafficShaper, final String prefix,
+		final int idRadix, final StorageMock<T> localStorage,
+		final StorageMockClient<T> remoteStorage
 	) throws RemoteException {
-		this.rateLimit = rateLimit;
+		this.rateLimiter = rateLimiter;
+		this.apiRateLimiter = apiRateLimiter;
+		this.latencyProfile = latencyProfile;
+		this.backendModel = backendModel;
+		this.containerTrafficShaper = containerTrafficShaper;
 		this.prefixLength = prefix == null ? 0 : prefix.length();
 		this.idRadix = idRadix;
 		this.remoteStorage = remoteStorage;
@@ -129,15 +156,51 @@ extends ChannelInboundHandlerAdapter {
 		ctx.flush();
 	}
 
-	private void processHttpRequest(final ChannelHandlerContext ctx, final HttpRequest request) {
-		final Channel channel = ctx.channel();
-		final HttpHeaders headers = request.headers();
-		channel.attr(ATTR_KEY_REQUEST).set(request);
-		if(headers.contains(CONTENT_LENGTH)) {
-			channel
-				.attr(ATTR_KEY_CONTENT_LENGTH)
-				.set(Long.parseLong(headers.get(CONTENT_LENGTH)));
+	/**
+	 The request's own state received by the channel, set as the channel's request attributes when
+	 the request processing starts
+	 */
+	private static final class ReceivedRequest {
+
+		private final RequestHandlerBase<?> handler;
+		private final ChannelHandlerContext ctx;
+		private final HttpRequest request;
+		private final long contentLength;
+
+		private ReceivedRequest(
+			final RequestHandlerBase<?> handler, final ChannelHandlerContext ctx,
+			final HttpRequest request
+		) {
+			this.handler = handler;
+			this.ctx = ctx;
+			this.request = request;
+			final String contentLength = request.headers().get(CONTENT_LENGTH);
+			this.contentLength = contentLength == null ? 0 : Long.parseLong(contentLength);
+		}
+	}
+
+	/**
+	 The channel's requests are processed one by one: the next request is processed after the
+	 previous one's response is written, so the request attributes are not shared by the requests
+	 processed concurrently and the pipelined responses are not reordered. Accessed by the channel's
+	 event loop only.
+	 */
+	private static final class RequestQueue {
+
+		private final Queue<ReceivedRequest> waiting = new ArrayDeque<>();
+		private ReceivedRequest incoming = null;
+		private boolean busy = false;
+		private boolean readPaused = false;
+	}
+
+	private static RequestQueue requestQueue(final Channel channel) {
+		final Attribute<RequestQueue> queueAttr = channel.attr(ATTR_KEY_REQUEST_QUEUE);
+		RequestQueue queue = queueAttr.get();
+		if(queue == null) {
+			queue = new RequestQueue();
+			queueAttr.set(queue);
 		}
+		return queue;
 	}
 
 	@Override
@@ -150,7 +213,7 @@ extends ChannelInboundHandlerAdapter {
 				return;
 			}
 			channel.attr(ATTR_KEY_HANDLER).set(apiClsName);
-			processHttpRequest(ctx, (HttpRequest) msg);
+			requestQueue(channel).incoming = new ReceivedRequest(this, ctx, (HttpRequest) msg);
 			ReferenceCountUtil.release(msg);
 			return;
 		}
@@ -159,41 +222,114 @@ extends ChannelInboundHandlerAdapter {
 			return;
 		}
 		if(msg instanceof LastHttpContent) {
-			handle(ctx);
+			final RequestQueue queue = requestQueue(channel);
+			final ReceivedRequest request = queue.incoming;
+			queue.incoming = null;
+			if(queue.busy) {
+				queue.waiting.add(request);
+				if(
+					queue.waiting.size() >= MAX_WAITING_REQUEST_COUNT &&
+						channel.config().isAutoRead()
+				) {
+					// the client pipelines the requests faster than they're processed, don't
+					// queue them without a bound
+					channel.config().setAutoRead(false);
+					queue.readPaused = true;
+				}
+			} else {
+				queue.busy = !handle(request);
+			}
 		}
 		ReferenceCountUtil.release(msg);
 	}
 
-	private void handle(final ChannelHandlerContext ctx) {
-
-		if(rateLimit > 0) {
-			if(ioStats.getWriteRate() + ioStats.getReadRate() + ioStats.getDeleteRate() > rateLimit) {
-				try {
-					Thread.sleep(lastMilliDelay.incrementAndGet());
-				} catch (InterruptedException e) {
-					return;
-				}
-			} else if(lastMilliDelay.get() > 0) {
-				lastMilliDelay.decrementAndGet();
+	/**
+	 Invoked by the channel's event loop when the response of the request which was completed
+	 asynchronously is written, processes the requests received meanwhile
+	 */
+	private static void completed(final ChannelHandlerContext ctx) {
+		ctx.flush();
+		final Channel channel = ctx.channel();
+		final RequestQueue queue = requestQueue(channel);
+		ReceivedRequest request;
+		while(null != (request = queue.waiting.poll())) {
+			if(!channel.isActive()) {
+				queue.waiting.clear();
+				break;
 			}
+			if(queue.waiting.size() <= MAX_WAITING_REQUEST_COUNT / 2) {
+				resumeRead(channel, queue);
+			}
+			if(!request.handler.handle(request)) {
+				return;
+			}
+			request.ctx.flush();
+		}
+		resumeRead(channel, queue);
+		queue.busy = false;
+	}
+
+	/**
+	 Resumes the channel reading only if it was paused by the request queue, so the traffic
+	 shaping handlers' pausing is not overridden
+	 */
+	private static void resumeRead(final Channel channel, final RequestQueue queue) {
+		if(queue.readPaused) {
+			queue.readPaused = false;
+			channel.config().setAutoRead(true);
 		}
+	}
+
+	/**
+	 @return true if the request is processed, false if the request is completed asynchronously
+	 */
+	private boolean handle(final ReceivedRequest request) {
+		final ChannelHandlerContext ctx = request.ctx;
+		long delayNanos = 0;
+		if(apiRateLimiter != null) {
+			delayNanos = apiRateLimiter.acquire();
+		}
+		if(rateLimiter != null) {
+			delayNanos = Math.max(delayNanos, rateLimiter.acquire());
+		}
+		if(delayNanos > 0) {
+			// defer the request instead of blocking the event loop, the channel's next requests
+			// are queued meanwhile
+			ctx.channel().eventLoop().schedule(
+				() -> {
+					if(process(request)) {
+						completed(ctx);
+					}
+				},
+				delayNanos, TimeUnit.NANOSECONDS
+			);
+			return false;
+		}
+		return process(request);
+	}
+
+	/**
+	 @return true if the request is processed, false if the request is completed asynchronously
+	 */
+	private boolean process(final ReceivedRequest request) {
+
+		final ChannelHandlerContext ctx = request.ctx;
 		final Channel channel = ctx.channel();
 
 		if(localStorage.dropConnection()) {
 			Loggers.MSG.warn("Dropped the connection \"{}\"", channel);
 			channel.close();
-			return;
+			return true;
 		}
 
-		final String uri = channel.attr(ATTR_KEY_REQUEST).get().uri();
-		final HttpMethod method = channel.attr(ATTR_KEY_REQUEST).get().method();
-		final long size;
-		if(channel.hasAttr(ATTR_KEY_CONTENT_LENGTH)) {
-			size = channel.attr(ATTR_KEY_CONTENT_LENGTH).get();
-		} else {
-			size = 0;
-		}
+		final String uri = request.request.uri();
+		final HttpMethod method = request.request.method();
+		final long size = request.contentLength;
+		channel.attr(ATTR_KEY_REQUEST).set(request.request);
+		channel.attr(ATTR_KEY_CONTENT_LENGTH).set(size);
 		setHttpResponseStatusInContext(ctx, OK); // OK response assumption
+		channel.attr(ATTR_KEY_OBJECT_VERSION).set(null);
+		channel.attr(ResponseDelayHandler.ATTR_KEY_RESPONSE_LATENCY).set(null);
 		final int uriPathEnd = uri.indexOf('?', 0);
 		final String uriPath;
 		final Map<String, String> queryParams;
@@ -216,7 +352,48 @@ extends ChannelInboundHandlerAdapter {
 			queryParams = null;
 		}
 
+		final int shardCount = localStorage.getShardCount();
+		// the object's shard is accessed by the owner event loop, the container level requests
+		// are processed by any event loop
+		final String shardKey = shardCount > 1 ? shardKey(uriPath) : null;
+		if(shardKey != null) {
+			final EventExecutor owner = shardOwner(
+				channel, ShardedObjectContainerMock.shardIndex(shardKey, shardCount)
+			);
+			if(owner != null && !owner.inEventLoop()) {
+				// the channel's next request is processed after this one's response is written
+				owner.execute(
+					() -> {
+						try {
+							doHandle(uriPath, queryParams, method, size, ctx);
+						} finally {
+							channel.eventLoop().execute(() -> completed(ctx));
+						}
+					}
+				);
+				return false;
+			}
+		}
+
 		doHandle(uriPath, queryParams, method, size, ctx);
+		return true;
+	}
+
+	/**
+	 @return the worker event loop owning the shard, null if the worker group is smaller than the
+	 shards count
+	 */
+	private EventExecutor shardOwner(final Channel channel, final int shardIndex) {
+		EventExecutor shardOwners[] = this.shardOwners;
+		if(shardOwners == null) {
+			final List<EventExecutor> workers = new ArrayList<>();
+			for(final EventExecutor worker : channel.eventLoop().parent()) {
+				workers.add(worker);
+			}
+			shardOwners = workers.toArray(new EventExecutor[workers.size()]);
+			this.shardOwners = shardOwners;
+		}
+		return shardIndex < shardOwners.length ? shardOwners[shardIndex] : null;
 	}
 
 	protected final void handleItemRequest(
@@ -246,6 +423,12 @@ extends ChannelInboundHandlerAdapter {
 		final long size, final ChannelHandlerContext ctx
 	);
 
+	/**
+	 @return the name of the object addressed by the request the same way as doHandle parses it,
+	 null for the container level requests
+	 */
+	protected abstract String shardKey(final String uriPath);
+
 	protected FullHttpResponse newEmptyResponse(final HttpResponseStatus status) {
 		final DefaultFullHttpResponse
 			response = new DefaultFullHttpResponse(HTTP_1_1, status, Unpooled.EMPTY_BUFFER, false);
@@ -271,18 +454,53 @@ extends ChannelInboundHandlerAdapter {
 		ctx.write(response);
 	}
 
+	/**
+	 @param headers the additional response headers, may be null
+	 @return the response content stream, null if the response should be missed
+	 */
+	protected final ResponseContentStream newResponseContentStream(
+		final ChannelHandlerContext ctx, final HttpHeaders headers, final String contentType
+	) {
+		if(localStorage.missResponse()) {
+			return null;
+		}
+		ctx.channel().attr(ATTR_KEY_CTX_WRITE_FLAG).set(false);
+		return new ResponseContentStream(ctx, headers, contentType);
+	}
+
+	/**
+	 @param headers the additional response headers, may be null
+	 @return the writer of the XML response content, null if the response should be missed
+	 */
+	protected final XmlResponseWriter newXmlResponseWriter(
+		final ChannelHandlerContext ctx, final HttpHeaders headers
+	) {
+		final ResponseContentStream out = newResponseContentStream(
+			ctx, headers, "application/xml; charset=utf-8"
+		);
+		return out == null ? null : new XmlResponseWriter(out);
+	}
+
 	protected final void handleObjectRequest(
 		final HttpMethod httpMethod, final String containerName, final String id, final long offset,
 		final long size, final ChannelHandlerContext ctx
 	) {
 		if(containerName != null) {
 			if(httpMethod.equals(POST) || httpMethod.equals(PUT)) {
+				setResponseLatency(
+					ctx,
+					ctx.channel().attr(ATTR_KEY_REQUEST).get().headers().contains(RANGE) ?
+						Operation.UPDATE : Operation.CREATE
+				);
 				handleObjectWrite(containerName, id, offset, size, ctx);
 			} else if(httpMethod.equals(GET)) {
+				setResponseLatency(ctx, Operation.READ);
 				handleObjectRead(containerName, id, offset, ctx);
 			} else if(httpMethod.equals(HEAD)) {
 //				setHttpResponseStatusInContext(ctx, OK); by default
+				setResponseLatency(ctx, Operation.READ);
 			} else if(httpMethod.equals(DELETE)) {
+				setResponseLatency(ctx, Operation.DELETE);
 				handleObjectDelete(containerName, id, offset, ctx);
 			}
 		} else {
@@ -298,13 +516,20 @@ extends ChannelInboundHandlerAdapter {
 		final List<String> rangeHeadersValues = reqHeaders.getAll(RANGE);
 		try {
 			if(rangeHeadersValues.size() == 0) {
-				localStorage.createObject(containerName, id, offset, size);
+				final long version = localStorage.createObject(containerName, id, offset, size);
+				if(version > 0) {
+					ctx.channel().attr(ATTR_KEY_OBJECT_VERSION).set(version);
+				}
 				ioStats.markWrite(true, size);
+				queueDataTransfer(ctx, containerName, size);
 			} else {
 				final boolean success = handlePartialWrite(
 					containerName, id, size, rangeHeadersValues
 				);
 				ioStats.markWrite(success, size);
+				if(success) {
+					queueDataTransfer(ctx, containerName, size);
+				}
 			}
 		} catch(final StorageMockCapacityLimitReachedException e) {
 			setHttpResponseStatusInContext(ctx, INSUFFICIENT_STORAGE);
@@ -332,7 +557,8 @@ extends ChannelInboundHandlerAdapter {
 	private boolean handlePartialWrite(
 		final String containerName, final String id, final long size,
 		final List<String> rangeHeadersValues
-	) throws ContainerMockException, ObjectMockNotFoundException, NumberFormatException {
+	) throws ContainerMockException, ObjectMockNotFoundException,
+		StorageMockCapacityLimitReachedException, NumberFormatException {
 		String ranges[];
 		Range byteRange;
 		for(final String rangeValues: rangeHeadersValues) {
@@ -357,12 +583,6 @@ extends ChannelInboundHandlerAdapter {
 		final String containerName, final String id, final long offset,
 		final ChannelHandlerContext ctx
 	) {
-		final List<String> rangeHeadersValues = ctx
-			.channel()
-			.attr(ATTR_KEY_REQUEST)
-			.get()
-			.headers()
-			.getAll(RANGE);
 		try {
 			T object = localStorage.getObject(containerName, id, offset, 0);
 			if(object == null) {
@@ -377,11 +597,7 @@ extends ChannelInboundHandlerAdapter {
 				}
 				ioStats.markRead(false, 0);
 			} else {
-				if(rangeHeadersValues == null || rangeHeadersValues.isEmpty()) {
-					handleObjectReadSuccess(object, ctx);
-				} else {
-					handlePartialObjectRead(object, ctx, rangeHeadersValues);
-				}
+				handleObjectReadSuccess(containerName, object, ctx);
 			}
 		} catch(final ContainerMockNotFoundException e) {
 			setHttpResponseStatusInContext(ctx, NOT_FOUND);
@@ -395,18 +611,75 @@ extends ChannelInboundHandlerAdapter {
 		}
 	}
 
-	private void handleObjectReadSuccess(final T object, final ChannelHandlerContext ctx)
-	throws IOException {
+	protected final void handleObjectVersionRequest(
+		final HttpMethod httpMethod, final String containerName, final String id,
+		final long version, final ChannelHandlerContext ctx
+	) {
+		if(httpMethod.equals(GET) || httpMethod.equals(HEAD)) {
+			try {
+				final T object = localStorage.getObjectVersion(containerName, id, version);
+				if(object == null) {
+					setHttpResponseStatusInContext(ctx, NOT_FOUND);
+					if(httpMethod.equals(GET)) {
+						ioStats.markRead(false, 0);
+					}
+				} else if(httpMethod.equals(GET)) {
+					handleObjectReadSuccess(containerName, object, ctx);
+				} else {
+					ctx.channel().attr(ATTR_KEY_OBJECT_VERSION).set(version);
+				}
+			} catch(final ContainerMockNotFoundException e) {
+				setHttpResponseStatusInContext(ctx, NOT_FOUND);
+				ioStats.markRead(false, 0);
+			} catch(final IOException | ContainerMockException e) {
+				setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
+				LogUtil.exception(Level.WARN, e, "Container \"{}\" failure", containerName);
+				ioStats.markRead(false, 0);
+			}
+		} else if(httpMethod.equals(DELETE)) {
+			try {
+				localStorage.deleteObjectVersion(containerName, id, version);
+				ctx.channel().attr(ATTR_KEY_OBJECT_VERSION).set(version);
+				ioStats.markDelete(true);
+			} catch(final ContainerMockNotFoundException e) {
+				setHttpResponseStatusInContext(ctx, NOT_FOUND);
+				ioStats.markDelete(false);
+			}
+		} else {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+		}
+	}
+
+	private void handleObjectReadSuccess(
+		final String containerName, final T object, final ChannelHandlerContext ctx
+	) throws IOException {
+		final List<String> rangeHeadersValues = ctx
+			.channel()
+			.attr(ATTR_KEY_REQUEST)
+			.get()
+			.headers()
+			.getAll(RANGE);
+		if(rangeHeadersValues == null || rangeHeadersValues.isEmpty()) {
+			handleFullObjectRead(containerName, object, ctx);
+		} else {
+			handlePartialObjectRead(containerName, object, ctx, rangeHeadersValues);
+		}
+	}
+
+	private void handleFullObjectRead(
+		final String containerName, final T object, final ChannelHandlerContext ctx
+	) throws IOException {
 		if(localStorage.missResponse()) {
 			return;
 		}
 		final HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, OK);
 		final long size = object.size();
 		HttpUtil.setContentLength(response, size);
+		queueDataTransfer(ctx, containerName, size);
 		ctx.write(response);
 		if(size > 0) {
 			if(object.isUpdated()) {
-				if(localStorage.sslEnabled()) {
+				if(localStorage.chunkedContentEnabled()) {
 					DataItem nextRange;
 					for(int i = 0; i < DataItem.getRangeCount(object.size()); i ++) {
 						nextRange = object.slice(DataItem.getRangeOffset(i), object.getRangeSize(i));
@@ -426,10 +699,12 @@ extends ChannelInboundHandlerAdapter {
 					}
 				}
 			} else {
-				if(localStorage.sslEnabled()) {
-					ctx.write(new SeekableByteChannelChunkedNioStream(object));
+				// the object's size may be changed concurrently, the content is read by the slice
+				final DataItem content = object.slice(0, size);
+				if(localStorage.chunkedContentEnabled()) {
+					ctx.write(new SeekableByteChannelChunkedNioStream(content));
 				} else {
-					ctx.write(new DataItemFileRegion(object));
+					ctx.write(new DataItemFileRegion(content));
 				}
 			}
 		}
@@ -442,7 +717,8 @@ extends ChannelInboundHandlerAdapter {
 	}
 
 	private void handlePartialObjectRead(
-		final T object, final ChannelHandlerContext ctx, final List<String> rangeHeadersValues
+		final String containerName, final T object, final ChannelHandlerContext ctx,
+		final List<String> rangeHeadersValues
 	) throws IOException {
 
 		String ranges[];
@@ -454,7 +730,7 @@ extends ChannelInboundHandlerAdapter {
 		final long objSize = object.size();
 		final HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, OK);
 		
-		if(localStorage.sslEnabled()) {
+		if(localStorage.chunkedContentEnabled()) {
 			
 			final List<ChunkedInput> rangesContent = new ArrayList<>(rangeHeadersValues.size());
 			
@@ -527,6 +803,7 @@ extends ChannelInboundHandlerAdapter {
 			}
 			
 			HttpUtil.setContentLength(response, sumSize);
+			queueDataTransfer(ctx, containerName, sumSize);
 			ctx.write(response);
 			rangesContent.forEach(ctx::write);
 			
@@ -599,6 +876,7 @@ extends ChannelInboundHandlerAdapter {
 			}
 			
 			HttpUtil.setContentLength(response, sumSize);
+			queueDataTransfer(ctx, containerName, sumSize);
 			ctx.write(response);
 			rangesContent.forEach(ctx::write);
 		}
@@ -630,6 +908,38 @@ extends ChannelInboundHandlerAdapter {
 		}
 	}
 
+	/**
+	 Chooses the latency of the current response if the response latency is configured
+	 */
+	protected final void setResponseLatency(final ChannelHandlerContext ctx, final Operation op) {
+		if(latencyProfile != null) {
+			addResponseLatency(ctx, latencyProfile.nextNanos(op));
+		}
+	}
+
+	/**
+	 Takes the container's bandwidth and queues the data transfer for the emulated backend if
+	 configured, the response is delayed until the transfer is done
+	 */
+	private void queueDataTransfer(
+		final ChannelHandlerContext ctx, final String containerName, final long size
+	) {
+		if(containerTrafficShaper != null) {
+			addResponseLatency(ctx, containerTrafficShaper.acquire(containerName, size));
+		}
+		if(backendModel != null) {
+			addResponseLatency(ctx, backendModel.reserve(size));
+		}
+	}
+
+	private static void addResponseLatency(final ChannelHandlerContext ctx, final long nanos) {
+		final Attribute<Long> latencyAttr = ctx
+			.channel()
+			.attr(ResponseDelayHandler.ATTR_KEY_RESPONSE_LATENCY);
+		final Long latency = latencyAttr.get();
+		latencyAttr.set(latency == null ? nanos : latency + nanos);
+	}
+
 	protected void setHttpResponseStatusInContext(
 		final ChannelHandlerContext ctx, final HttpResponseStatus status
 	) {
@@ -641,8 +951,9 @@ extends ChannelInboundHandlerAdapter {
 		final ChannelHandlerContext ctx
 	) {
 		if(method.equals(PUT)) {
-			handleContainerCreate(name);
+			handleContainerCreate(name, ctx);
 		} else if(method.equals(GET)) {
+			setResponseLatency(ctx, Operation.LIST);
 			handleContainerList(name, queryParams, ctx);
 		} else if(method.equals(HEAD)) {
 			handleContainerExist(name, ctx);
@@ -651,8 +962,10 @@ extends ChannelInboundHandlerAdapter {
 		}
 	}
 
-	protected void handleContainerCreate(final String name) {
-		localStorage.createContainer(name);
+	protected void handleContainerCreate(final String name, final ChannelHandlerContext ctx) {
+		if(localStorage.createContainer(name) == null) {
+			setHttpResponseStatusInContext(ctx, INSUFFICIENT_STORAGE);
+		}
 	}
 
 	protected abstract void handleContainerList(
@@ -680,6 +993,41 @@ extends ChannelInboundHandlerAdapter {
 
 	private void handleContainerDelete(final String name) {
 		localStorage.deleteContainer(name);
+		if(containerTrafficShaper != null) {
+			containerTrafficShaper.remove(name);
+		}
+	}
+
+	@Override
+	public void userEventTriggered(final ChannelHandlerContext ctx, final Object evt)
+	throws Exception {
+		if(evt instanceof IdleStateEvent) {
+			if(isResponsePending(ctx)) {
+				// the delayed response is not an idle connection, checked again on the next event
+				Loggers.MSG.debug(
+					"The connection \"{}\" is not closed while its response is pending",
+					ctx.channel()
+				);
+			} else {
+				Loggers.MSG.debug("Closing the idle connection \"{}\"", ctx.channel());
+				ctx.close();
+			}
+		} else {
+			ctx.fireUserEventTriggered(evt);
+		}
+	}
+
+	/**
+	 @return true if the channel's request is being processed or queued, or if its response is held
+	 by the response delay handler
+	 */
+	private static boolean isResponsePending(final ChannelHandlerContext ctx) {
+		final RequestQueue queue = ctx.channel().attr(ATTR_KEY_REQUEST_QUEUE).get();
+		if(queue != null && queue.busy) {
+			return true;
+		}
+		final ResponseDelayHandler delayHandler = ctx.pipeline().get(ResponseDelayHandler.class);
+		return delayHandler != null && delayHandler.isPending();
 	}
 
 	@Override
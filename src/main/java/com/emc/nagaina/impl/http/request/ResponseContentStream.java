@@ -0,0 +1,128 @@
+package com.emc.nagaina.impl.http.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import java.io.OutputStream;
+
+/**
+ Created by agent on 17.10.26.
+ The generated response content output into the pooled direct buffers. The response is sent with
+ the content length if the content fits the chunk size, otherwise the response head is sent with
+ the chunked transfer encoding and every filled buffer is sent as a chunk. Closing the stream sends
+ the rest of the content. The chunks are flushed as soon as the channel is not writable. The stream
+ is not thread safe and should be used by the channel's event loop.
+ */
+public final class ResponseContentStream
+extends OutputStream {
+
+	private static final int CHUNK_SIZE = 0x100000;
+	private static final int INIT_BUFF_SIZE = 0x1000;
+
+	private final ChannelHandlerContext ctx;
+	private final HttpHeaders headers;
+	private final String contentType;
+	private ByteBuf buff;
+	private boolean headSent = false;
+
+	/**
+	 @param headers the additional response headers, may be null
+	 */
+	public ResponseContentStream(
+		final ChannelHandlerContext ctx, final HttpHeaders headers, final String contentType
+	) {
+		this.ctx = ctx;
+		this.headers = headers;
+		this.contentType = contentType;
+		this.buff = ctx.alloc().directBuffer(INIT_BUFF_SIZE);
+	}
+
+	/**
+	 @return the current buffer to write the content into directly, the caller should invoke
+	 {@link #sendChunkIfFull()} after the direct write
+	 */
+	public final ByteBuf buffer() {
+		return buff;
+	}
+
+	@Override
+	public final void write(final int b) {
+		buff.writeByte(b);
+		sendChunkIfFull();
+	}
+
+	@Override
+	public final void write(final byte[] b, final int off, final int len) {
+		buff.writeBytes(b, off, len);
+		sendChunkIfFull();
+	}
+
+	public final void sendChunkIfFull() {
+		if(buff.readableBytes() < CHUNK_SIZE) {
+			return;
+		}
+		if(!headSent) {
+			final HttpResponse response = new DefaultHttpResponse(HTTP_1_1, OK, newHeaders());
+			HttpUtil.setTransferEncodingChunked(response, true);
+			ctx.write(response);
+			headSent = true;
+		}
+		ctx.write(new DefaultHttpContent(buff));
+		buff = ctx.alloc().directBuffer(INIT_BUFF_SIZE);
+		if(!ctx.channel().isWritable()) {
+			// move the written chunks to the socket instead of holding them all until the read
+			// completion flush
+			ctx.flush();
+		}
+	}
+
+	@Override
+	public final void close() {
+		if(buff == null) {
+			return;
+		}
+		if(headSent) {
+			ctx.write(new DefaultLastHttpContent(buff));
+		} else {
+			final FullHttpResponse response = new DefaultFullHttpResponse(
+				HTTP_1_1, OK, buff, newHeaders(), EmptyHttpHeaders.INSTANCE
+			);
+			HttpUtil.setContentLength(response, buff.readableBytes());
+			ctx.write(response);
+		}
+		buff = null;
+	}
+
+	/**
+	 Releases the content buffer if the stream is not closed, should be invoked in the finally
+	 block so the buffer is not leaked if the content generation fails
+	 */
+	public final void release() {
+		if(buff != null) {
+			buff.release();
+			buff = null;
+		}
+	}
+
+	private HttpHeaders newHeaders() {
+		final HttpHeaders responseHeaders = new DefaultHttpHeaders();
+		if(headers != null) {
+			responseHeaders.set(headers);
+		}
+		responseHeaders.set(CONTENT_TYPE, contentType);
+		return responseHeaders;
+	}
+}
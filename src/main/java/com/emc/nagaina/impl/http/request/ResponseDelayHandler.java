@@ -0,0 +1,131 @@
+package com.emc.nagaina.impl.http.request;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ Delays the responses by the latency chosen by the request handler. The request handler sets the
+ latency before writing the response, the response's head and content writes are held until the
+ due time and then written by the event loop's timer, so neither the event loop nor the other
+ channels are blocked. The held writes and flushes are released in the order, so the pipelined
+ responses are never reordered and the response is never due before the previous one.
+ The handler instance is per channel.
+ */
+public final class ResponseDelayHandler
+extends ChannelDuplexHandler {
+
+	static final AttributeKey<Long> ATTR_KEY_RESPONSE_LATENCY = AttributeKey
+		.newInstance("responseLatencyKey");
+
+	private static final class PendingWrite {
+
+		private final Object msg; // null means flush
+		private final ChannelPromise promise;
+		private final long dueNanos;
+
+		private PendingWrite(final Object msg, final ChannelPromise promise, final long dueNanos) {
+			this.msg = msg;
+			this.promise = promise;
+			this.dueNanos = dueNanos;
+		}
+	}
+
+	private final Queue<PendingWrite> pendingWrites = new ArrayDeque<>();
+	private long dueNanos = System.nanoTime();
+	private boolean releaseScheduled = false;
+
+	@Override
+	public final void write(
+		final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise
+	) throws Exception {
+		if(msg instanceof HttpResponse) {
+			final Long latency = ctx.channel().attr(ATTR_KEY_RESPONSE_LATENCY).getAndSet(null);
+			if(latency != null && latency > 0) {
+				dueNanos = Math.max(dueNanos, System.nanoTime() + latency);
+			}
+		}
+		if(pendingWrites.isEmpty() && dueNanos - System.nanoTime() <= 0) {
+			ctx.write(msg, promise);
+		} else {
+			pendingWrites.add(new PendingWrite(msg, promise, dueNanos));
+			scheduleRelease(ctx);
+		}
+	}
+
+	/**
+	 @return true if any write is held, should be invoked by the channel's event loop
+	 */
+	public final boolean isPending() {
+		return !pendingWrites.isEmpty();
+	}
+
+	@Override
+	public final void flush(final ChannelHandlerContext ctx)
+	throws Exception {
+		if(pendingWrites.isEmpty()) {
+			ctx.flush();
+		} else {
+			pendingWrites.add(new PendingWrite(null, null, dueNanos));
+		}
+	}
+
+	private void scheduleRelease(final ChannelHandlerContext ctx) {
+		if(!releaseScheduled) {
+			releaseScheduled = true;
+			ctx.executor().schedule(
+				() -> releaseDue(ctx),
+				pendingWrites.peek().dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS
+			);
+		}
+	}
+
+	private void releaseDue(final ChannelHandlerContext ctx) {
+		releaseScheduled = false;
+		PendingWrite pendingWrite;
+		while(null != (pendingWrite = pendingWrites.peek())) {
+			if(pendingWrite.dueNanos - System.nanoTime() > 0) {
+				scheduleRelease(ctx);
+				break;
+			}
+			pendingWrites.poll();
+			if(pendingWrite.msg == null) {
+				ctx.flush();
+			} else {
+				ctx.write(pendingWrite.msg, pendingWrite.promise);
+			}
+		}
+	}
+
+	@Override
+	public final void channelInactive(final ChannelHandlerContext ctx)
+	throws Exception {
+		discardPending();
+		super.channelInactive(ctx);
+	}
+
+	@Override
+	public final void handlerRemoved(final ChannelHandlerContext ctx)
+	throws Exception {
+		discardPending();
+	}
+
+	private void discardPending() {
+		PendingWrite pendingWrite;
+		while(null != (pendingWrite = pendingWrites.poll())) {
+			if(pendingWrite.msg != null) {
+				ReferenceCountUtil.release(pendingWrite.msg);
+				pendingWrite.promise.tryFailure(new ClosedChannelException());
+			}
+		}
+	}
+}
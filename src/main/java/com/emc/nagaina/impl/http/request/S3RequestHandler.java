@@ -1,14 +1,13 @@
 package com.emc.nagaina.impl.http.request;
 
-import com.emc.mongoose.ui.log.LogUtil;
 import com.emc.mongoose.ui.log.Loggers;
 
 import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.DataItemMockVersion;
 import com.emc.nagaina.api.StorageMock;
 import com.emc.nagaina.api.StorageMockClient;
 import com.emc.nagaina.api.exception.ContainerMockException;
 import com.emc.nagaina.api.exception.ContainerMockNotFoundException;
-import static com.emc.nagaina.impl.http.request.XmlShortcuts.appendElement;
 
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
@@ -20,26 +19,13 @@ import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
-import io.netty.handler.codec.http.HttpUtil;
-import org.apache.logging.log4j.Level;
-import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
+import io.netty.handler.codec.http.QueryStringDecoder;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.List;
@@ -51,23 +37,32 @@ import java.util.Map;
 public class S3RequestHandler<T extends DataItemMock>
 extends RequestHandlerBase<T> {
 
-	private static final DocumentBuilder DOM_BUILDER;
-	private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
 	private static final String S3_NAMESPACE_URI = "http://s3.amazonaws.com/doc/2006-03-01/";
-
-	static {
-		try {
-			DOM_BUILDER = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		} catch (final ParserConfigurationException e) {
-			throw new RuntimeException(e);
-		}
-	}
+	private static final String VERSION_ID_KEY = "versionId";
+	private static final String VERSIONS_KEY = "versions";
+	private static final String KEY_MARKER_KEY = "key-marker";
+	private static final String NULL_VERSION_ID = "null";
+	private static final String KEY_X_AMZ_VERSION_ID = "x-amz-version-id";
+	private static final String PREFIX_KEY = "prefix";
+	private static final String DELIMITER_KEY = "delimiter";
+	private static final String LIST_TYPE_KEY = "list-type";
+	private static final String CONTINUATION_TOKEN_KEY = "continuation-token";
+	private static final String START_AFTER_KEY = "start-after";
+	private static final String FETCH_OWNER_KEY = "fetch-owner";
+	private static final String AUTH_PREFIX_V2 = "AWS ";
+	private static final String AUTH_CREDENTIAL_V4 = "Credential=";
 
 	public S3RequestHandler(
-		final float rateLimit, final String prefix, final int idRadix, final StorageMock<T> localStorage,
+		final TokenBucketRateLimiter rateLimiter, final TokenBucketRateLimiter apiRateLimiter,
+		final LatencyProfile latencyProfile, final BackendQueueModel backendModel,
+		final ContainerTrafficShaper containerTrafficShaper, final String prefix,
+		final int idRadix, final StorageMock<T> localStorage,
 		final StorageMockClient<T> remoteStorage
 	) throws RemoteException {
-		super(rateLimit, prefix, idRadix, localStorage, remoteStorage);
+		super(
+			rateLimiter, apiRateLimiter, latencyProfile, backendModel, containerTrafficShaper,
+			prefix, idRadix, localStorage, remoteStorage
+		);
 	}
 
 	@Override
@@ -75,9 +70,11 @@ extends RequestHandlerBase<T> {
 		final String uriPath, final Map<String, String> queryParams, final HttpMethod method,
 		final long size, final ChannelHandlerContext ctx
 	) {
-		final String uriPathParts[] = uriPath.split("/");
-		final String containerName = uriPathParts[1];
-		final String objectId = uriPathParts.length > 2 ? uriPathParts[2] : null;
+		// the object name may contain the slashes
+		final String uriPathParts[] = uriPath.split("/", 3);
+		final String containerName = uriPathParts.length > 1 && !uriPathParts[1].isEmpty() ?
+			uriPathParts[1] : null;
+		final String objectId = objectId(uriPathParts);
 		final Channel channel = ctx.channel();
 		channel.attr(ATTR_KEY_CTX_WRITE_FLAG).set(true);
 		if(containerName != null) {
@@ -89,6 +86,10 @@ extends RequestHandlerBase<T> {
 						queryParams.containsKey("uploadId") && queryParams.containsKey("partNumber")
 					) {
 						handlePartRequest(queryParams, containerName, objectId, size, ctx);
+					} else if(queryParams.containsKey(VERSION_ID_KEY)) {
+						handleVersionRequest(
+							method, containerName, objectId, queryParams.get(VERSION_ID_KEY), ctx
+						);
 					} else {
 						handleItemRequest(method, queryParams, containerName, objectId, size, ctx);
 					}
@@ -106,43 +107,61 @@ extends RequestHandlerBase<T> {
 			return;
 		}
 		if(channel.attr(ATTR_KEY_CTX_WRITE_FLAG).get()) {
-			writeEmptyResponse(ctx);
+			final Long version = channel.attr(ATTR_KEY_OBJECT_VERSION).get();
+			if(version == null) {
+				writeEmptyResponse(ctx);
+			} else {
+				final FullHttpResponse response = newEmptyResponse();
+				response.headers().set(KEY_X_AMZ_VERSION_ID, versionId(version));
+				writeResponse(ctx, response);
+			}
 		}
 	}
-	
-	private void handleMpuInitRequest(
-		final String containerName, final String objectId, final ChannelHandlerContext ctx
+
+	@Override
+	protected final String shardKey(final String uriPath) {
+		return objectId(uriPath.split("/", 3));
+	}
+
+	private static String objectId(final String uriPathParts[]) {
+		return uriPathParts.length > 2 && !uriPathParts[2].isEmpty() ? uriPathParts[2] : null;
+	}
+
+	private void handleVersionRequest(
+		final HttpMethod method, final String containerName, final String objectId,
+		final String versionId, final ChannelHandlerContext ctx
 	) {
-		final Document xml = DOM_BUILDER.newDocument();
-		final Element rootElem = xml.createElementNS(
-			S3_NAMESPACE_URI, "InitiateMultipartUploadResult"
-		);
-		xml.appendChild(rootElem);
-		appendElement(xml, rootElem, "Bucket", containerName);
-		appendElement(xml, rootElem, "Key", objectId);
-		appendElement(xml, rootElem, "UploadId", generateBase64Id(0x10));
-		
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		final StreamResult streamResult = new StreamResult(stream);
+		final long version;
 		try {
-			TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(xml), streamResult);
-		} catch (final TransformerException e) {
-			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
-			LogUtil.exception(Level.ERROR, e, "Failed to build bucket XML listing");
+			version = NULL_VERSION_ID.equals(versionId) ? 0 : Long.parseLong(versionId);
+		} catch(final NumberFormatException e) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
 			return;
 		}
-		final byte[] content = stream.toByteArray();
+		handleObjectVersionRequest(method, containerName, objectId, version, ctx);
+	}
 
-		if(localStorage.missResponse()) {
+	private static String versionId(final long version) {
+		return version == 0 ? NULL_VERSION_ID : Long.toString(version);
+	}
+	
+	private void handleMpuInitRequest(
+		final String containerName, final String objectId, final ChannelHandlerContext ctx
+	) {
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
 			return;
 		}
-		ctx.channel().attr(ATTR_KEY_CTX_WRITE_FLAG).set(false);
-		final FullHttpResponse response = new DefaultFullHttpResponse(
-			HTTP_1_1, OK, Unpooled.copiedBuffer(content)
-		);
-		response.headers().set(CONTENT_TYPE, "application/xml");
-		HttpUtil.setContentLength(response, content.length);
-		ctx.write(response);
+		try {
+			xml.startElement("InitiateMultipartUploadResult", "xmlns", S3_NAMESPACE_URI);
+			xml.element("Bucket", containerName);
+			xml.element("Key", objectId);
+			xml.element("UploadId", generateBase64Id(0x10));
+			xml.endElement("InitiateMultipartUploadResult");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
 	}
 	
 	private void handlePartRequest(
@@ -168,17 +187,32 @@ extends RequestHandlerBase<T> {
 	protected final void handleContainerList(
 		final String name, final Map<String, String> queryParams, final ChannelHandlerContext ctx
 	) {
-		int maxCount = DEFAULT_PAGE_SIZE;
-		String marker = null;
 		if(queryParams != null) {
-			if(queryParams.containsKey(MAX_COUNT_KEY)) {
-				maxCount = Integer.parseInt(queryParams.get(MAX_COUNT_KEY));
+			if(queryParams.containsKey(VERSIONS_KEY)) {
+				handleContainerVersionsList(name, queryParams, ctx);
+				return;
+			}
+			if("2".equals(queryParams.get(LIST_TYPE_KEY))) {
+				handleContainerListV2(name, queryParams, ctx);
+				return;
 			}
+			if(queryParams.containsKey(PREFIX_KEY) || queryParams.containsKey(DELIMITER_KEY)) {
+				handleContainerPrefixList(name, queryParams, ctx);
+				return;
+			}
+		}
+		final int maxCount = maxCount(queryParams);
+		if(maxCount < 0) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+			return;
+		}
+		String marker = null;
+		if(queryParams != null) {
 			if(queryParams.containsKey(MARKER_KEY)) {
 				marker = queryParams.get(MARKER_KEY);
 			}
 		}
-		final List<T> buffer = new ArrayList<>(maxCount);
+		final List<T> buffer = new ArrayList<>(Math.min(maxCount, DEFAULT_PAGE_SIZE));
 		T lastObject;
 		try {
 			lastObject = listContainer(name, marker, buffer, maxCount);
@@ -193,42 +227,268 @@ extends RequestHandlerBase<T> {
 			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
 			return;
 		}
-		final Document xml = DOM_BUILDER.newDocument();
-		final Element rootElem = xml.createElementNS(S3_NAMESPACE_URI, "ListBucketResult");
-		xml.appendChild(rootElem);
-		appendElement(xml, rootElem, "Name", name);
-		appendElement(xml, rootElem, "IsTruncated", Boolean.toString(lastObject != null));
-		appendElement(xml, rootElem, "Prefix");
-		appendElement(xml, rootElem, "MaxKeys", Integer.toString(buffer.size()));
-		for(final T object: buffer) {
-			final Element elem = xml.createElement("Contents");
-			appendElement(xml, elem, "Key", object.getName());
-			try {
-				appendElement(xml, elem, "Size", Long.toString(object.size()));
-			} catch(final IOException ignored) {
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
+			return;
+		}
+		try {
+			xml.startElement("ListBucketResult", "xmlns", S3_NAMESPACE_URI);
+			xml.element("Name", name);
+			xml.element("IsTruncated", lastObject != null);
+			xml.emptyElement("Prefix");
+			xml.element("MaxKeys", buffer.size());
+			writeContents(xml, buffer, null);
+			xml.endElement("ListBucketResult");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
+	}
+
+	private void handleContainerPrefixList(
+		final String name, final Map<String, String> queryParams, final ChannelHandlerContext ctx
+	) {
+		final int maxCount = maxCount(queryParams);
+		if(maxCount < 0) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+			return;
+		}
+		final String prefix = decodeQueryParam(queryParams, PREFIX_KEY);
+		final String delimiter = decodeQueryParam(queryParams, DELIMITER_KEY);
+		final String marker = decodeQueryParam(queryParams, MARKER_KEY);
+		final List<T> buffer = new ArrayList<>(Math.min(maxCount, DEFAULT_PAGE_SIZE));
+		final List<String> commonPrefixes = new ArrayList<>();
+		final String nextMarker;
+		try {
+			nextMarker = localStorage.listObjects(
+				name, prefix, delimiter, marker, buffer, commonPrefixes, maxCount
+			);
+		} catch(final ContainerMockNotFoundException e) {
+			setHttpResponseStatusInContext(ctx, NOT_FOUND);
+			return;
+		} catch(final ContainerMockException e) {
+			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
+			return;
+		}
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
+			return;
+		}
+		try {
+			xml.startElement("ListBucketResult", "xmlns", S3_NAMESPACE_URI);
+			xml.element("Name", name);
+			xml.element("Prefix", prefix == null ? "" : prefix);
+			xml.element("Marker", marker == null ? "" : marker);
+			if(delimiter != null) {
+				xml.element("Delimiter", delimiter);
 			}
-			appendElement(rootElem, elem);
+			xml.element("MaxKeys", maxCount);
+			xml.element("IsTruncated", nextMarker != null);
+			if(nextMarker != null) {
+				xml.element("NextMarker", nextMarker);
+			}
+			writeContents(xml, buffer, null);
+			writeCommonPrefixes(xml, commonPrefixes);
+			xml.endElement("ListBucketResult");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
+	}
+
+	private void handleContainerListV2(
+		final String name, final Map<String, String> queryParams, final ChannelHandlerContext ctx
+	) {
+		final int maxCount = maxCount(queryParams);
+		if(maxCount < 0) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+			return;
 		}
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		final StreamResult streamResult = new StreamResult(stream);
+		final String prefix = decodeQueryParam(queryParams, PREFIX_KEY);
+		final String delimiter = decodeQueryParam(queryParams, DELIMITER_KEY);
+		final String continuationToken = decodeQueryParam(queryParams, CONTINUATION_TOKEN_KEY);
+		final String startAfter = decodeQueryParam(queryParams, START_AFTER_KEY);
+		final String ownerId = "true".equals(queryParams.get(FETCH_OWNER_KEY)) ?
+			ownerId(ctx.channel().attr(ATTR_KEY_REQUEST).get().headers()) : null;
+		final List<T> buffer = new ArrayList<>(Math.min(maxCount, DEFAULT_PAGE_SIZE));
+		final List<String> commonPrefixes = new ArrayList<>();
+		final String nextContinuationToken;
 		try {
-			TRANSFORMER_FACTORY.newTransformer().transform(new DOMSource(xml), streamResult);
-		} catch (final TransformerException e) {
+			nextContinuationToken = localStorage.listObjectsPage(
+				name, prefix, delimiter, continuationToken, startAfter, buffer, commonPrefixes,
+				maxCount
+			);
+		} catch(final ContainerMockNotFoundException e) {
+			setHttpResponseStatusInContext(ctx, NOT_FOUND);
+			return;
+		} catch(final IllegalArgumentException e) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+			return;
+		} catch(final ContainerMockException e) {
 			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
-			LogUtil.exception(Level.ERROR, e, "Failed to build bucket XML listing");
 			return;
 		}
-		final byte[] content = stream.toByteArray();
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
+			return;
+		}
+		try {
+			xml.startElement("ListBucketResult", "xmlns", S3_NAMESPACE_URI);
+			xml.element("Name", name);
+			xml.element("Prefix", prefix == null ? "" : prefix);
+			if(delimiter != null) {
+				xml.element("Delimiter", delimiter);
+			}
+			xml.element("MaxKeys", maxCount);
+			xml.element("KeyCount", buffer.size() + commonPrefixes.size());
+			xml.element("IsTruncated", nextContinuationToken != null);
+			if(continuationToken != null) {
+				xml.element("ContinuationToken", continuationToken);
+			}
+			if(nextContinuationToken != null) {
+				xml.element("NextContinuationToken", nextContinuationToken);
+			}
+			if(startAfter != null) {
+				xml.element("StartAfter", startAfter);
+			}
+			writeContents(xml, buffer, ownerId);
+			writeCommonPrefixes(xml, commonPrefixes);
+			xml.endElement("ListBucketResult");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
+	}
 
-		if(localStorage.missResponse()) {
+	/**
+	 @param ownerId the owner id to list with every object, null to omit the owners
+	 */
+	private void writeContents(
+		final XmlResponseWriter xml, final List<T> buffer, final String ownerId
+	) {
+		for(final T object: buffer) {
+			xml.startElement("Contents");
+			xml.element("Key", object.getName());
+			xml.element("Size", object.size());
+			if(ownerId != null) {
+				xml.startElement("Owner");
+				xml.element("ID", ownerId);
+				xml.element("DisplayName", ownerId);
+				xml.endElement("Owner");
+			}
+			xml.endElement("Contents");
+		}
+	}
+
+	private static void writeCommonPrefixes(
+		final XmlResponseWriter xml, final List<String> commonPrefixes
+	) {
+		for(final String commonPrefix : commonPrefixes) {
+			xml.startElement("CommonPrefixes");
+			xml.element("Prefix", commonPrefix);
+			xml.endElement("CommonPrefixes");
+		}
+	}
+
+	/**
+	 @return the access key id from the request's authorization header, empty if there's none
+	 */
+	private static String ownerId(final HttpHeaders reqHeaders) {
+		final String auth = reqHeaders.get(HttpHeaderNames.AUTHORIZATION);
+		if(auth != null) {
+			if(auth.startsWith(AUTH_PREFIX_V2)) {
+				final int end = auth.indexOf(':', AUTH_PREFIX_V2.length());
+				if(end > 0) {
+					return auth.substring(AUTH_PREFIX_V2.length(), end);
+				}
+			} else {
+				final int start = auth.indexOf(AUTH_CREDENTIAL_V4);
+				if(start > 0) {
+					final int end = auth.indexOf('/', start);
+					if(end > 0) {
+						return auth.substring(start + AUTH_CREDENTIAL_V4.length(), end);
+					}
+				}
+			}
+		}
+		return "";
+	}
+
+	/**
+	 @return the max-keys parameter value, the default page size if it's not given, -1 if it's
+	 not a valid non negative integer (InvalidArgument)
+	 */
+	private static int maxCount(final Map<String, String> queryParams) {
+		final String value = queryParams == null ? null : queryParams.get(MAX_COUNT_KEY);
+		if(value == null) {
+			return DEFAULT_PAGE_SIZE;
+		}
+		try {
+			final int maxCount = Integer.parseInt(value);
+			return maxCount < 0 ? -1 : maxCount;
+		} catch(final NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static String decodeQueryParam(
+		final Map<String, String> queryParams, final String key
+	) {
+		final String value = queryParams.get(key);
+		return value == null ? null : QueryStringDecoder.decodeComponent(value);
+	}
+
+	private void handleContainerVersionsList(
+		final String name, final Map<String, String> queryParams, final ChannelHandlerContext ctx
+	) {
+		final int maxCount = maxCount(queryParams);
+		if(maxCount < 0) {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
 			return;
 		}
-		ctx.channel().attr(ATTR_KEY_CTX_WRITE_FLAG).set(false);
-		final FullHttpResponse response = new DefaultFullHttpResponse(
-			HTTP_1_1, OK, Unpooled.copiedBuffer(content)
+		String marker = null;
+		if(queryParams.containsKey(KEY_MARKER_KEY)) {
+			marker = queryParams.get(KEY_MARKER_KEY);
+		}
+		final List<DataItemMockVersion<T>> buffer = new ArrayList<>(
+			Math.min(maxCount, DEFAULT_PAGE_SIZE)
 		);
-		response.headers().set(CONTENT_TYPE, "application/xml");
-		HttpUtil.setContentLength(response, content.length);
-		ctx.write(response);
+		final T lastObject;
+		try {
+			lastObject = localStorage.listObjectVersions(name, marker, buffer, maxCount);
+		} catch(final ContainerMockNotFoundException e) {
+			setHttpResponseStatusInContext(ctx, NOT_FOUND);
+			return;
+		} catch(final ContainerMockException e) {
+			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
+			return;
+		}
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
+			return;
+		}
+		try {
+			xml.startElement("ListVersionsResult", "xmlns", S3_NAMESPACE_URI);
+			xml.element("Name", name);
+			xml.emptyElement("Prefix");
+			xml.element("KeyMarker", marker == null ? "" : marker);
+			xml.element("MaxKeys", maxCount);
+			xml.element("IsTruncated", lastObject != null);
+			if(lastObject != null) {
+				xml.element("NextKeyMarker", lastObject.getName());
+			}
+			for(final DataItemMockVersion<T> version : buffer) {
+				xml.startElement("Version");
+				xml.element("Key", version.getItem().getName());
+				xml.element("VersionId", versionId(version.getVersion()));
+				xml.element("IsLatest", version.isLatest());
+				xml.element("Size", version.getItem().size());
+				xml.endElement("Version");
+			}
+			xml.endElement("ListVersionsResult");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
 	}
 }
@@ -9,30 +9,23 @@ import com.emc.nagaina.api.StorageMockClient;
 import com.emc.nagaina.api.exception.ContainerMockException;
 import com.emc.nagaina.api.exception.ContainerMockNotFoundException;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.HttpUtil;
-import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_TYPE;
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
-import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_IMPLEMENTED;
 import static io.netty.handler.codec.http.HttpResponseStatus.CREATED;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NO_CONTENT;
-import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import org.apache.commons.codec.binary.Hex;
 
@@ -51,14 +44,20 @@ import java.util.concurrent.ThreadLocalRandom;
 public class SwiftRequestHandler<T extends DataItemMock>
 extends RequestHandlerBase<T> {
 
-	private static final ObjectMapper OBJ_MAPPER = new ObjectMapper();
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
 	private static final String AUTH = "auth", API_BASE_PATH_SWIFT = "v1";
 	
 	public SwiftRequestHandler(
-		final float rateLimit, final String prefix, final int idRadix, final StorageMock<T> localStorage,
+		final TokenBucketRateLimiter rateLimiter, final TokenBucketRateLimiter apiRateLimiter,
+		final LatencyProfile latencyProfile, final BackendQueueModel backendModel,
+		final ContainerTrafficShaper containerTrafficShaper, final String prefix,
+		final int idRadix, final StorageMock<T> localStorage,
 		final StorageMockClient<T> remoteStorage
 	) throws RemoteException {
-		super(rateLimit, prefix, idRadix, localStorage, remoteStorage);
+		super(
+			rateLimiter, apiRateLimiter, latencyProfile, backendModel, containerTrafficShaper,
+			prefix, idRadix, localStorage, remoteStorage
+		);
 	}
 
 	@Override
@@ -93,10 +92,12 @@ extends RequestHandlerBase<T> {
 				setHttpResponseStatusInContext(ctx, NOT_IMPLEMENTED);
 			}
 		} else {
-			final String uriPathParts[] = uriPath.split("/");
+			// the object name may contain the slashes
+			final String uriPathParts[] = uriPath.split("/", 5);
 			final String account = uriPathParts.length > 2 ? uriPathParts[2] : null;
-			final String containerName = uriPathParts.length > 3 ? uriPathParts[3] : null;
-			final String objectId = uriPathParts.length > 4 ? uriPathParts[4] : null;
+			final String containerName = uriPathParts.length > 3 && !uriPathParts[3].isEmpty() ?
+				uriPathParts[3] : null;
+			final String objectId = objectId(uriPathParts);
 			if(containerName != null) {
 				handleItemRequest(method, queryParams, containerName, objectId, size, ctx);
 			} else if(account != null) {
@@ -114,6 +115,18 @@ extends RequestHandlerBase<T> {
 	    }
 	}
 
+	@Override
+	protected final String shardKey(final String uriPath) {
+		if(uriPath.startsWith(AUTH, 1)) {
+			return null;
+		}
+		return objectId(uriPath.split("/", 5));
+	}
+
+	private static String objectId(final String uriPathParts[]) {
+		return uriPathParts.length > 4 && !uriPathParts[4].isEmpty() ? uriPathParts[4] : null;
+	}
+
 	private static String randomString(final int len) {
 		final byte buff[] = new byte[len];
 		ThreadLocalRandom.current().nextBytes(buff);
@@ -121,14 +134,15 @@ extends RequestHandlerBase<T> {
 	}
 
 	private static final String LIMIT_KEY = "limit";
+	private static final String FORMAT_KEY = "format";
+	private static final String FORMAT_JSON = "json";
+	private static final String FORMAT_XML = "xml";
+	private static final String FORMAT_PLAIN = "plain";
 
 	@Override
 	protected void handleContainerList(
 		final String name, final Map<String, String> queryParams, final ChannelHandlerContext ctx
 	) {
-		if(localStorage.missResponse()) {
-			return;
-		}
 		int maxCount = DEFAULT_PAGE_SIZE;
 		String marker = null;
 		if(queryParams != null) {
@@ -156,33 +170,83 @@ extends RequestHandlerBase<T> {
 			setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
 			return;
 		}
-		if(buffer.size() > 0) {
-			final JsonNode nodeRoot = OBJ_MAPPER.createArrayNode();
-			ObjectNode node;
+		if(buffer.isEmpty()) {
+			setHttpResponseStatusInContext(ctx, NO_CONTENT);
+			return;
+		}
+		final String format = queryParams == null ? null : queryParams.get(FORMAT_KEY);
+		if(format == null || FORMAT_JSON.equals(format)) {
+			writeJsonList(buffer, ctx);
+		} else if(FORMAT_XML.equals(format)) {
+			writeXmlList(name, buffer, ctx);
+		} else if(FORMAT_PLAIN.equals(format)) {
+			writePlainList(buffer, ctx);
+		} else {
+			setHttpResponseStatusInContext(ctx, BAD_REQUEST);
+		}
+	}
+
+	private void writeJsonList(final List<T> buffer, final ChannelHandlerContext ctx) {
+		final ResponseContentStream out = newResponseContentStream(
+			ctx, null, "application/json; charset=utf-8"
+		);
+		if(out == null) {
+			return;
+		}
+		try(final JsonGenerator jsonGen = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			jsonGen.writeStartArray();
 			for(final T object : buffer) {
-				node = OBJ_MAPPER.createObjectNode();
-				node.put("name", object.getName());
-				try {
-					node.put("bytes", object.size());
-				} catch(final IOException ignored) {
-				}
-				((ArrayNode) nodeRoot).add(node);
+				jsonGen.writeStartObject();
+				jsonGen.writeStringField("name", object.getName());
+				jsonGen.writeNumberField("bytes", object.size());
+				jsonGen.writeEndObject();
 			}
-			try {
-				final byte[] content = OBJ_MAPPER.writeValueAsBytes(nodeRoot);
-				ctx.channel().attr(ATTR_KEY_CTX_WRITE_FLAG).set(false);
-				final FullHttpResponse response = new DefaultFullHttpResponse(
-					HTTP_1_1, OK, Unpooled.copiedBuffer(content)
-				);
-				response.headers().set(CONTENT_TYPE, "application/json");
-				HttpUtil.setContentLength(response, content.length);
-				ctx.write(response);
-			} catch (final JsonProcessingException e) {
-				setHttpResponseStatusInContext(ctx, INTERNAL_SERVER_ERROR);
-				LogUtil.exception(Level.WARN, e, "Failed to write the json response content");
+			jsonGen.writeEndArray();
+		} catch(final IOException e) {
+			LogUtil.exception(Level.WARN, e, "Failed to write the json response content");
+		} finally {
+			out.release();
+		}
+	}
+
+	private void writeXmlList(
+		final String name, final List<T> buffer, final ChannelHandlerContext ctx
+	) {
+		final XmlResponseWriter xml = newXmlResponseWriter(ctx, null);
+		if(xml == null) {
+			return;
+		}
+		try {
+			xml.startElement("container", "name", name);
+			for(final T object : buffer) {
+				xml.startElement("object");
+				xml.element("name", object.getName());
+				xml.element("bytes", object.size());
+				xml.endElement("object");
 			}
-		} else {
-			setHttpResponseStatusInContext(ctx, NO_CONTENT);
+			xml.endElement("container");
+			xml.finish();
+		} finally {
+			xml.release();
+		}
+	}
+
+	private void writePlainList(final List<T> buffer, final ChannelHandlerContext ctx) {
+		final ResponseContentStream out = newResponseContentStream(
+			ctx, null, "text/plain; charset=utf-8"
+		);
+		if(out == null) {
+			return;
+		}
+		try {
+			for(final T object : buffer) {
+				ByteBufUtil.writeUtf8(out.buffer(), object.getName());
+				out.buffer().writeByte('\n');
+				out.sendChunkIfFull();
+			}
+			out.close();
+		} finally {
+			out.release();
 		}
 	}
 }
@@ -0,0 +1,60 @@
+package com.emc.nagaina.impl.http.request;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ Lock-free token bucket. The bucket is represented by the time when the next token is available,
+ every request takes the next token advancing this time by the token interval. The request which
+ takes the token from the future should be delayed until that time, so the callers never block and
+ the achieved rate doesn't depend on the measured one. The bucket holds up to the burst period
+ worth of tokens if the requests are rare.
+ */
+public final class TokenBucketRateLimiter {
+
+	private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final double intervalNanos;
+	private final long burstNanos;
+	private final AtomicLong nextTokenNanos;
+
+	/**
+	 @param rate the tokens per second, should be positive
+	 */
+	public TokenBucketRateLimiter(final double rate) {
+		if(rate <= 0) {
+			throw new IllegalArgumentException("Rate should be positive: " + rate);
+		}
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		// at least one token may be taken without the delay
+		this.burstNanos = Math.max((long) Math.ceil(intervalNanos), BURST_NANOS);
+		this.nextTokenNanos = new AtomicLong(System.nanoTime() - burstNanos);
+	}
+
+	/**
+	 Takes the next token
+	 @return the delay in nanoseconds until the taken token is available, 0 if it's available now
+	 */
+	public final long acquire() {
+		return acquire(1);
+	}
+
+	/**
+	 Takes the given count of the tokens at once, e.g. the bytes count if the rate is the bandwidth.
+	 The next caller is delayed until the taken tokens are refilled.
+	 @return the delay in nanoseconds until the caller may proceed, 0 if it may proceed now
+	 */
+	public final long acquire(final long count) {
+		final long takenNanos = Math.max(1, Math.round(count * intervalNanos));
+		final long now = System.nanoTime();
+		long nextToken;
+		long token;
+		do {
+			nextToken = nextTokenNanos.get();
+			// the unused tokens are accumulated up to the burst size
+			token = Math.max(nextToken, now - burstNanos);
+		} while(!nextTokenNanos.compareAndSet(nextToken, token + takenNanos));
+		return token > now ? token - now : 0;
+	}
+}
@@ -0,0 +1,130 @@
+package com.emc.nagaina.impl.http.request;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ Created by agent on 17.10.26.
+ Streaming XML response writer. The markup is encoded as UTF-8 directly into the response content
+ stream's buffer, no document tree is built. The writer is not thread safe and should be used by
+ the channel's event loop.
+ */
+public final class XmlResponseWriter {
+
+	private static final String XML_DECLARATION =
+		"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+	private final ResponseContentStream out;
+	private ByteBuf buff;
+
+	public XmlResponseWriter(final ResponseContentStream out) {
+		this.out = out;
+		this.buff = out.buffer();
+		ByteBufUtil.writeAscii(buff, XML_DECLARATION);
+	}
+
+	public final void startElement(final String name) {
+		buff.writeByte('<');
+		ByteBufUtil.writeAscii(buff, name);
+		buff.writeByte('>');
+	}
+
+	public final void startElement(
+		final String name, final String attrName, final String attrValue
+	) {
+		buff.writeByte('<');
+		ByteBufUtil.writeAscii(buff, name);
+		buff.writeByte(' ');
+		ByteBufUtil.writeAscii(buff, attrName);
+		buff.writeByte('=').writeByte('"');
+		writeEscaped(attrValue);
+		buff.writeByte('"').writeByte('>');
+	}
+
+	public final void endElement(final String name) {
+		buff.writeByte('<').writeByte('/');
+		ByteBufUtil.writeAscii(buff, name);
+		buff.writeByte('>');
+		out.sendChunkIfFull();
+		buff = out.buffer();
+	}
+
+	public final void emptyElement(final String name) {
+		buff.writeByte('<');
+		ByteBufUtil.writeAscii(buff, name);
+		buff.writeByte('/').writeByte('>');
+	}
+
+	public final void element(final String name, final String text) {
+		startElement(name);
+		writeEscaped(text);
+		endElement(name);
+	}
+
+	public final void element(final String name, final long value) {
+		startElement(name);
+		ByteBufUtil.writeAscii(buff, Long.toString(value));
+		endElement(name);
+	}
+
+	public final void element(final String name, final boolean value) {
+		startElement(name);
+		ByteBufUtil.writeAscii(buff, value ? "true" : "false");
+		endElement(name);
+	}
+
+	/**
+	 Sends the rest of the content, the writer should not be used after this
+	 */
+	public final void finish() {
+		out.close();
+		buff = null;
+	}
+
+	/**
+	 Releases the content not sent if the writer is not finished
+	 */
+	public final void release() {
+		out.release();
+		buff = null;
+	}
+
+	private void writeEscaped(final String text) {
+		final int len = text.length();
+		int start = 0;
+		char c;
+		String escaped;
+		for(int i = 0; i < len; i ++) {
+			c = text.charAt(i);
+			switch(c) {
+				case '&':
+					escaped = "&amp;";
+					break;
+				case '<':
+					escaped = "&lt;";
+					break;
+				case '>':
+					escaped = "&gt;";
+					break;
+				case '"':
+					escaped = "&quot;";
+					break;
+				case '\'':
+					escaped = "&apos;";
+					break;
+				default:
+					continue;
+			}
+			if(i > start) {
+				ByteBufUtil.writeUtf8(buff, text.subSequence(start, i));
+			}
+			ByteBufUtil.writeAscii(buff, escaped);
+			start = i + 1;
+		}
+		if(start == 0) {
+			ByteBufUtil.writeUtf8(buff, text);
+		} else if(start < len) {
+			ByteBufUtil.writeUtf8(buff, text.subSequence(start, len));
+		}
+	}
+}
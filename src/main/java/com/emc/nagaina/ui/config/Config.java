@@ -613,9 +613,66 @@ implements Serializable {
 		public static final class NetConfig
 		implements Serializable {
 			
+			public static final class BandwidthConfig
+			implements Serializable {
+
+				public static final String KEY_GLOBAL = "global";
+				public static final String KEY_CONTAINER = "container";
+				public static final String KEY_CONNECTION = "connection";
+
+				@JsonProperty(KEY_GLOBAL)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes global;
+
+				@JsonProperty(KEY_CONTAINER)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes container;
+
+				@JsonProperty(KEY_CONNECTION)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes connection;
+
+				public BandwidthConfig() {
+				}
+
+				public BandwidthConfig(final BandwidthConfig other) {
+					this.global = new SizeInBytes(other.getGlobal());
+					this.container = new SizeInBytes(other.getContainer());
+					this.connection = new SizeInBytes(other.getConnection());
+				}
+
+				public final SizeInBytes getGlobal() {
+					return global;
+				}
+
+				public final void setGlobal(final SizeInBytes global) {
+					this.global = global;
+				}
+
+				public final SizeInBytes getContainer() {
+					return container;
+				}
+
+				public final void setContainer(final SizeInBytes container) {
+					this.container = container;
+				}
+
+				public final SizeInBytes getConnection() {
+					return connection;
+				}
+
+				public final void setConnection(final SizeInBytes connection) {
+					this.connection = connection;
+				}
+			}
+
 			public static final class HttpConfig
 			implements Serializable {
 				
+				public static final String KEY_API_RATE_LIMIT = "apiRateLimit";
 				public static final String KEY_FS_ACCESS = "fsAccess";
 				public static final String KEY_HEADERS = "headers";
 				public static final String KEY_HEADER_CONNECTION = "Connection";
@@ -623,6 +680,10 @@ implements Serializable {
 				public static final String KEY_NAMESPACE = "namespace";
 				public static final String KEY_VERSIONING = "versioning";
 				
+				public final void setApiRateLimit(final double apiRateLimit) {
+					this.apiRateLimit = apiRateLimit;
+				}
+
 				public final void setFsAccess(final boolean fsAccess) {
 					this.fsAccess = fsAccess;
 				}
@@ -639,6 +700,7 @@ implements Serializable {
 					this.headersConfig = headers;
 				}
 				
+				@JsonProperty(KEY_API_RATE_LIMIT) private double apiRateLimit;
 				@JsonProperty(KEY_FS_ACCESS) private boolean fsAccess;
 				@JsonProperty(KEY_NAMESPACE) private String namespace;
 				@JsonProperty(KEY_VERSIONING) private boolean versioning;
@@ -648,12 +710,17 @@ implements Serializable {
 				}
 				
 				public HttpConfig(final HttpConfig other) {
+					this.apiRateLimit = other.getApiRateLimit();
 					this.fsAccess = other.getFsAccess();
 					this.namespace = other.getNamespace();
 					this.versioning = other.getVersioning();
 					this.headersConfig = new HashMap<>(other.getHeadersConfig());
 				}
 				
+				public double getApiRateLimit() {
+					return apiRateLimit;
+				}
+
 				public boolean getFsAccess() {
 					return fsAccess;
 				}
@@ -694,6 +761,8 @@ implements Serializable {
 				}
 			}
 			
+			public static final String KEY_ACCEPTORS = "acceptors";
+			public static final String KEY_BANDWIDTH = "bandwidth";
 			public static final String KEY_TIMEOUT_MILLISEC = "timeoutMilliSec";
 			public static final String KEY_REUSE_ADDR = "reuseAddr";
 			public static final String KEY_KEEP_ALIVE = "keepAlive";
@@ -707,6 +776,14 @@ implements Serializable {
 			public static final String KEY_HTTP = "http";
 			public static final String KEY_NODE = "node";
 			
+			public final int getAcceptors() {
+				return acceptors;
+			}
+
+			public final BandwidthConfig getBandwidthConfig() {
+				return bandwidthConfig;
+			}
+
 			public final int getTimeoutMilliSec() {
 				return timeoutMilliSec;
 			}
@@ -755,6 +832,14 @@ implements Serializable {
 				return nodeConfig;
 			}
 			
+			public final void setAcceptors(final int acceptors) {
+				this.acceptors = acceptors;
+			}
+
+			public final void setBandwidthConfig(final BandwidthConfig bandwidthConfig) {
+				this.bandwidthConfig = bandwidthConfig;
+			}
+
 			public final void setTimeoutMilliSec(final int timeoutMilliSec) {
 				this.timeoutMilliSec = timeoutMilliSec;
 			}
@@ -803,6 +888,8 @@ implements Serializable {
 				this.nodeConfig = nodeConfig;
 			}
 			
+			@JsonProperty(KEY_ACCEPTORS) private int acceptors;
+			@JsonProperty(KEY_BANDWIDTH) private BandwidthConfig bandwidthConfig;
 			@JsonProperty(KEY_TIMEOUT_MILLISEC) private int timeoutMilliSec;
 			
 			@JsonProperty(KEY_REUSE_ADDR) private boolean reuseAddr;
@@ -835,6 +922,8 @@ implements Serializable {
 			}
 			
 			public NetConfig(final NetConfig other) {
+				this.acceptors = other.getAcceptors();
+				this.bandwidthConfig = new BandwidthConfig(other.getBandwidthConfig());
 				this.timeoutMilliSec = other.getTimeoutMilliSec();
 				this.reuseAddr = other.getReuseAddr();
 				this.keepAlive = other.getKeepAlive();
@@ -853,10 +942,20 @@ implements Serializable {
 		public static final class MockConfig
 		implements Serializable {
 
+			public static final String KEY_BACKEND = "backend";
 			public static final String KEY_CAPACITY = "capacity";
 			public static final String KEY_CONTAINER = "container";
 			public static final String KEY_FAIL = "fail";
+			public static final String KEY_INVENTORY = "inventory";
+			public static final String KEY_JOURNAL = "journal";
+			public static final String KEY_LATENCY = "latency";
 			public static final String KEY_NODE = "node";
+			public static final String KEY_SHARDS = "shards";
+			public static final String KEY_SIZE_LIMIT = "sizeLimit";
+
+			public final void setBackendConfig(final BackendConfig backendConfig) {
+				this.backendConfig = backendConfig;
+			}
 
 			public final void setCapacity(final int capacity) {
 				this.capacity = capacity;
@@ -870,23 +969,63 @@ implements Serializable {
 				this.failConfig = failConfig;
 			}
 
+			public final void setInventoryConfig(final InventoryConfig inventoryConfig) {
+				this.inventoryConfig = inventoryConfig;
+			}
+
+			public final void setJournalConfig(final JournalConfig journalConfig) {
+				this.journalConfig = journalConfig;
+			}
+
+			public final void setLatencyConfig(final LatencyConfig latencyConfig) {
+				this.latencyConfig = latencyConfig;
+			}
+
 			public final void setNode(final boolean node) {
 				this.node = node;
 			}
 
+			public final void setShards(final int shards) {
+				this.shards = shards;
+			}
+
+			public final void setSizeLimit(final SizeInBytes sizeLimit) {
+				this.sizeLimit = sizeLimit;
+			}
+
+			@JsonProperty(KEY_BACKEND) private BackendConfig backendConfig;
 			@JsonProperty(KEY_CAPACITY) private int capacity;
 			@JsonProperty(KEY_CONTAINER) private ContainerConfig containerConfig;
 			@JsonProperty(KEY_FAIL) private FailConfig failConfig;
+			@JsonProperty(KEY_INVENTORY) private InventoryConfig inventoryConfig;
+			@JsonProperty(KEY_JOURNAL) private JournalConfig journalConfig;
+			@JsonProperty(KEY_LATENCY) private LatencyConfig latencyConfig;
 			@JsonProperty(KEY_NODE) private boolean node;
+			@JsonProperty(KEY_SHARDS) private int shards;
+
+			@JsonProperty(KEY_SIZE_LIMIT)
+			@JsonDeserialize(using = SizeInBytesDeserializer.class)
+			@JsonSerialize(using = SizeInBytesSerializer.class)
+			private SizeInBytes sizeLimit;
 
 			public MockConfig() {
 			}
 
 			public MockConfig(final MockConfig other) {
+				this.backendConfig = new BackendConfig(other.getBackendConfig());
 				this.capacity = other.getCapacity();
 				this.containerConfig = new ContainerConfig(other.getContainerConfig());
 				this.failConfig = new FailConfig(other.getFailConfig());
+				this.inventoryConfig = new InventoryConfig(other.getInventoryConfig());
+				this.journalConfig = new JournalConfig(other.getJournalConfig());
+				this.latencyConfig = new LatencyConfig(other.getLatencyConfig());
 				this.node = other.getNode();
+				this.shards = other.getShards();
+				this.sizeLimit = new SizeInBytes(other.getSizeLimit());
+			}
+
+			public BackendConfig getBackendConfig() {
+				return backendConfig;
 			}
 
 			public int getCapacity() {
@@ -901,15 +1040,91 @@ implements Serializable {
 				return failConfig;
 			}
 
+			public InventoryConfig getInventoryConfig() {
+				return inventoryConfig;
+			}
+
+			public JournalConfig getJournalConfig() {
+				return journalConfig;
+			}
+
+			public LatencyConfig getLatencyConfig() {
+				return latencyConfig;
+			}
+
 			public boolean getNode() {
 				return node;
 			}
 
+			public int getShards() {
+				return shards;
+			}
+
+			public SizeInBytes getSizeLimit() {
+				return sizeLimit;
+			}
+
+			public static final class BackendConfig
+			implements Serializable {
+
+				public static final String KEY_BANDWIDTH = "bandwidth";
+				public static final String KEY_SEEK_MILLI_SEC = "seekMilliSec";
+				public static final String KEY_SLOTS = "slots";
+
+				@JsonProperty(KEY_BANDWIDTH)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes bandwidth;
+
+				@JsonProperty(KEY_SEEK_MILLI_SEC) private double seekMilliSec;
+				@JsonProperty(KEY_SLOTS) private int slots;
+
+				public BackendConfig() {
+				}
+
+				public BackendConfig(final BackendConfig other) {
+					this.bandwidth = new SizeInBytes(other.getBandwidth());
+					this.seekMilliSec = other.getSeekMilliSec();
+					this.slots = other.getSlots();
+				}
+
+				public final SizeInBytes getBandwidth() {
+					return bandwidth;
+				}
+
+				public final void setBandwidth(final SizeInBytes bandwidth) {
+					this.bandwidth = bandwidth;
+				}
+
+				public final double getSeekMilliSec() {
+					return seekMilliSec;
+				}
+
+				public final void setSeekMilliSec(final double seekMilliSec) {
+					this.seekMilliSec = seekMilliSec;
+				}
+
+				public final int getSlots() {
+					return slots;
+				}
+
+				public final void setSlots(final int slots) {
+					this.slots = slots;
+				}
+			}
+
 			public static final class ContainerConfig
 			implements Serializable {
 
 				public static final String KEY_CAPACITY = "capacity";
 				public static final String KEY_COUNT_LIMIT = "countLimit";
+				public static final String KEY_DEFAULT_PARTITIONS = "defaultPartitions";
+				public static final String KEY_EVICTION = "eviction";
+				public static final String KEY_LIFECYCLE = "lifecycle";
+				public static final String KEY_LISTING = "listing";
+				public static final String KEY_TYPE = "type";
+				public static final String KEY_OFF_HEAP_BUDGET = "offHeapBudget";
+				public static final String KEY_SIZE_LIMIT = "sizeLimit";
 				
 				public final void setCapacity(final int capacity) {
 					this.capacity = capacity;
@@ -918,9 +1133,52 @@ implements Serializable {
 				public final void setCountLimit(final int countLimit) {
 					this.countLimit = countLimit;
 				}
+
+				public final void setDefaultPartitions(final int defaultPartitions) {
+					this.defaultPartitions = defaultPartitions;
+				}
+
+				public final void setEviction(final String eviction) {
+					this.eviction = eviction;
+				}
+
+				public final void setLifecycleConfig(final LifecycleConfig lifecycleConfig) {
+					this.lifecycleConfig = lifecycleConfig;
+				}
+
+				public final void setListingConfig(final ListingConfig listingConfig) {
+					this.listingConfig = listingConfig;
+				}
+
+				public final void setType(final String type) {
+					this.type = type;
+				}
+
+				public final void setOffHeapBudget(final SizeInBytes offHeapBudget) {
+					this.offHeapBudget = offHeapBudget;
+				}
+
+				public final void setSizeLimit(final SizeInBytes sizeLimit) {
+					this.sizeLimit = sizeLimit;
+				}
 				
 				@JsonProperty(KEY_CAPACITY) private int capacity;
 				@JsonProperty(KEY_COUNT_LIMIT) private int countLimit;
+				@JsonProperty(KEY_DEFAULT_PARTITIONS) private int defaultPartitions;
+				@JsonProperty(KEY_EVICTION) private String eviction;
+				@JsonProperty(KEY_LIFECYCLE) private LifecycleConfig lifecycleConfig;
+				@JsonProperty(KEY_LISTING) private ListingConfig listingConfig;
+				@JsonProperty(KEY_TYPE) private String type;
+
+				@JsonProperty(KEY_OFF_HEAP_BUDGET)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes offHeapBudget;
+
+				@JsonProperty(KEY_SIZE_LIMIT)
+				@JsonDeserialize(using = SizeInBytesDeserializer.class)
+				@JsonSerialize(using = SizeInBytesSerializer.class)
+				private SizeInBytes sizeLimit;
 
 				public ContainerConfig() {
 				}
@@ -928,6 +1186,13 @@ implements Serializable {
 				public ContainerConfig(final ContainerConfig other) {
 					this.capacity = other.getCapacity();
 					this.countLimit = other.getCountLimit();
+					this.defaultPartitions = other.getDefaultPartitions();
+					this.eviction = other.getEviction();
+					this.lifecycleConfig = new LifecycleConfig(other.getLifecycleConfig());
+					this.listingConfig = new ListingConfig(other.getListingConfig());
+					this.type = other.getType();
+					this.offHeapBudget = new SizeInBytes(other.getOffHeapBudget());
+					this.sizeLimit = new SizeInBytes(other.getSizeLimit());
 				}
 
 				public int getCapacity() {
@@ -937,6 +1202,110 @@ implements Serializable {
 				public int getCountLimit() {
 					return countLimit;
 				}
+
+				public int getDefaultPartitions() {
+					return defaultPartitions;
+				}
+
+				public String getEviction() {
+					return eviction;
+				}
+
+				public LifecycleConfig getLifecycleConfig() {
+					return lifecycleConfig;
+				}
+
+				public ListingConfig getListingConfig() {
+					return listingConfig;
+				}
+
+				public String getType() {
+					return type;
+				}
+
+				public SizeInBytes getOffHeapBudget() {
+					return offHeapBudget;
+				}
+
+				public SizeInBytes getSizeLimit() {
+					return sizeLimit;
+				}
+
+				public static final class LifecycleConfig
+				implements Serializable {
+
+					public static final String KEY_AGE = "age";
+					public static final String KEY_SIZE = "size";
+
+					@JsonDeserialize(using = TimeStrToLongDeserializer.class) @JsonProperty(KEY_AGE)
+					private long age;
+
+					@JsonProperty(KEY_SIZE)
+					@JsonDeserialize(using = SizeInBytesDeserializer.class)
+					@JsonSerialize(using = SizeInBytesSerializer.class)
+					private SizeInBytes size;
+
+					public LifecycleConfig() {
+					}
+
+					public LifecycleConfig(final LifecycleConfig other) {
+						this.age = other.getAge();
+						this.size = new SizeInBytes(other.getSize());
+					}
+
+					public final long getAge() {
+						return age;
+					}
+
+					public final void setAge(final long age) {
+						this.age = age;
+					}
+
+					public final SizeInBytes getSize() {
+						return size;
+					}
+
+					public final void setSize(final SizeInBytes size) {
+						this.size = size;
+					}
+				}
+
+				public static final class ListingConfig
+				implements Serializable {
+
+					public static final String KEY_CURSOR_CACHE_SIZE = "cursorCacheSize";
+					public static final String KEY_CURSOR_TTL = "cursorTtl";
+
+					@JsonProperty(KEY_CURSOR_CACHE_SIZE) private int cursorCacheSize;
+
+					@JsonDeserialize(using = TimeStrToLongDeserializer.class)
+					@JsonProperty(KEY_CURSOR_TTL)
+					private long cursorTtl;
+
+					public ListingConfig() {
+					}
+
+					public ListingConfig(final ListingConfig other) {
+						this.cursorCacheSize = other.getCursorCacheSize();
+						this.cursorTtl = other.getCursorTtl();
+					}
+
+					public final int getCursorCacheSize() {
+						return cursorCacheSize;
+					}
+
+					public final void setCursorCacheSize(final int cursorCacheSize) {
+						this.cursorCacheSize = cursorCacheSize;
+					}
+
+					public final long getCursorTtl() {
+						return cursorTtl;
+					}
+
+					public final void setCursorTtl(final long cursorTtl) {
+						this.cursorTtl = cursorTtl;
+					}
+				}
 			}
 
 			public static final class FailConfig
@@ -971,6 +1340,154 @@ implements Serializable {
 					this.responses = responses;
 				}
 			}
+
+			public static final class InventoryConfig
+			implements Serializable {
+
+				public static final String KEY_FILE = "file";
+				public static final String KEY_PERIOD = "period";
+
+				@JsonProperty(KEY_FILE) private String file;
+
+				@JsonDeserialize(using = TimeStrToLongDeserializer.class) @JsonProperty(KEY_PERIOD)
+				private long period;
+
+				public InventoryConfig() {
+				}
+
+				public InventoryConfig(final InventoryConfig other) {
+					this.file = other.getFile();
+					this.period = other.getPeriod();
+				}
+
+				public final String getFile() {
+					return file;
+				}
+
+				public final void setFile(final String file) {
+					this.file = file;
+				}
+
+				public final long getPeriod() {
+					return period;
+				}
+
+				public final void setPeriod(final long period) {
+					this.period = period;
+				}
+			}
+
+			public static final class JournalConfig
+			implements Serializable {
+
+				public static final String KEY_FILE = "file";
+				public static final String KEY_SYNC_PERIOD_MILLI_SEC = "syncPeriodMilliSec";
+				public static final String KEY_RING_SIZE = "ringSize";
+
+				@JsonProperty(KEY_FILE) private String file;
+				@JsonProperty(KEY_SYNC_PERIOD_MILLI_SEC) private int syncPeriodMilliSec;
+				@JsonProperty(KEY_RING_SIZE) private int ringSize;
+
+				public JournalConfig() {
+				}
+
+				public JournalConfig(final JournalConfig other) {
+					this.file = other.getFile();
+					this.syncPeriodMilliSec = other.getSyncPeriodMilliSec();
+					this.ringSize = other.getRingSize();
+				}
+
+				public final String getFile() {
+					return file;
+				}
+
+				public final void setFile(final String file) {
+					this.file = file;
+				}
+
+				public final int getSyncPeriodMilliSec() {
+					return syncPeriodMilliSec;
+				}
+
+				public final void setSyncPeriodMilliSec(final int syncPeriodMilliSec) {
+					this.syncPeriodMilliSec = syncPeriodMilliSec;
+				}
+
+				public final int getRingSize() {
+					return ringSize;
+				}
+
+				public final void setRingSize(final int ringSize) {
+					this.ringSize = ringSize;
+				}
+			}
+
+			public static final class LatencyConfig
+			implements Serializable {
+
+				public static final String KEY_CREATE = "create";
+				public static final String KEY_READ = "read";
+				public static final String KEY_UPDATE = "update";
+				public static final String KEY_DELETE = "delete";
+				public static final String KEY_LIST = "list";
+
+				@JsonProperty(KEY_CREATE) private String create;
+				@JsonProperty(KEY_READ) private String read;
+				@JsonProperty(KEY_UPDATE) private String update;
+				@JsonProperty(KEY_DELETE) private String delete;
+				@JsonProperty(KEY_LIST) private String list;
+
+				public LatencyConfig() {
+				}
+
+				public LatencyConfig(final LatencyConfig other) {
+					this.create = other.getCreate();
+					this.read = other.getRead();
+					this.update = other.getUpdate();
+					this.delete = other.getDelete();
+					this.list = other.getList();
+				}
+
+				public final String getCreate() {
+					return create;
+				}
+
+				public final void setCreate(final String create) {
+					this.create = create;
+				}
+
+				public final String getRead() {
+					return read;
+				}
+
+				public final void setRead(final String read) {
+					this.read = read;
+				}
+
+				public final String getUpdate() {
+					return update;
+				}
+
+				public final void setUpdate(final String update) {
+					this.update = update;
+				}
+
+				public final String getDelete() {
+					return delete;
+				}
+
+				public final void setDelete(final String delete) {
+					this.delete = delete;
+				}
+
+				public final String getList() {
+					return list;
+				}
+
+				public final void setList(final String list) {
+					this.list = list;
+				}
+			}
 		}
 	}
 
@@ -0,0 +1,141 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.StorageIoStats;
+import com.emc.nagaina.impl.http.request.BackendQueueModel;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class BackendQueueModelTest {
+
+	private static final long MILLI_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	// the tolerance for the time passed between the reservations
+	private static final long EPSILON_NANOS = 5 * MILLI_NANOS;
+
+	/**
+	 The stats recording the backend I/O marks only
+	 */
+	private static final class BackendStats {
+
+		private final AtomicInteger slotCount = new AtomicInteger(0);
+		private final Queue<long[]> marks = new ConcurrentLinkedQueue<>();
+		private final StorageIoStats ioStats = (StorageIoStats) Proxy.newProxyInstance(
+			StorageIoStats.class.getClassLoader(), new Class[] { StorageIoStats.class },
+			(proxy, method, args) -> {
+				if("setBackendSlotCount".equals(method.getName())) {
+					slotCount.set((Integer) args[0]);
+				} else if("markBackendIo".equals(method.getName())) {
+					marks.add(new long[] { (Long) args[0], (Long) args[1] });
+				}
+				return null;
+			}
+		);
+	}
+
+	private static void assertNanos(final long expected, final long actual) {
+		assertTrue(actual + " < " + expected, actual >= expected - EPSILON_NANOS);
+		assertTrue(actual + " > " + expected, actual <= expected + EPSILON_NANOS);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testInvalidSlotCount()
+	throws Exception {
+		new BackendQueueModel(0, 1, 0, new BackendStats().ioStats);
+	}
+
+	@Test
+	public final void testSingleSlotQueue()
+	throws Exception {
+		final BackendStats stats = new BackendStats();
+		final BackendQueueModel model = new BackendQueueModel(1, 10, 0, stats.ioStats);
+		assertEquals(1, stats.slotCount.get());
+		for(int i = 1; i <= 3; i ++) {
+			assertNanos(i * 10 * MILLI_NANOS, model.reserve(1024));
+		}
+		int i = 0;
+		for(final long mark[] : stats.marks) {
+			assertNanos(i * 10 * MILLI_NANOS, mark[0]);
+			assertEquals(10 * MILLI_NANOS, mark[1]);
+			i ++;
+		}
+		assertEquals(3, i);
+	}
+
+	@Test
+	public final void testTransferTime()
+	throws Exception {
+		final BackendStats stats = new BackendStats();
+		// 1MB/s, so 100KB are transferred in 100ms
+		final BackendQueueModel model = new BackendQueueModel(1, 0, 1_000_000, stats.ioStats);
+		assertNanos(100 * MILLI_NANOS, model.reserve(100_000));
+		assertEquals(100 * MILLI_NANOS, stats.marks.peek()[1]);
+	}
+
+	@Test
+	public final void testFreeSlotsDontQueue()
+	throws Exception {
+		final BackendStats stats = new BackendStats();
+		final BackendQueueModel model = new BackendQueueModel(4, 10, 0, stats.ioStats);
+		for(int i = 0; i < 4; i ++) {
+			assertNanos(10 * MILLI_NANOS, model.reserve(0));
+		}
+		// all the slots are busy
+		assertNanos(20 * MILLI_NANOS, model.reserve(0));
+	}
+
+	@Test
+	public final void testIdleSlotStartsNow()
+	throws Exception {
+		final BackendStats stats = new BackendStats();
+		final BackendQueueModel model = new BackendQueueModel(1, 10, 0, stats.ioStats);
+		model.reserve(0);
+		Thread.sleep(30);
+		// the idle time is not accumulated
+		assertNanos(10 * MILLI_NANOS, model.reserve(0));
+		assertNanos(20 * MILLI_NANOS, model.reserve(0));
+	}
+
+	@Test
+	public final void testConcurrentReservationsDontOverlap()
+	throws Exception {
+		final int threadCount = 8;
+		final int reservationCount = 1000;
+		final int slotCount = 2;
+		final BackendStats stats = new BackendStats();
+		final BackendQueueModel model = new BackendQueueModel(slotCount, 1, 0, stats.ioStats);
+		final long startNanos = System.nanoTime();
+		final AtomicLong lastDueNanos = new AtomicLong(startNanos);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					for(int j = 0; j < reservationCount / threadCount; j ++) {
+						final long dueNanos = System.nanoTime() + model.reserve(0);
+						lastDueNanos.accumulateAndGet(dueNanos, Math::max);
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		assertEquals(reservationCount, stats.marks.size());
+		// every reservation takes its own slot period
+		final long busyNanos = reservationCount / slotCount * MILLI_NANOS;
+		assertTrue(lastDueNanos.get() - startNanos >= busyNanos);
+		assertTrue(lastDueNanos.get() - startNanos <= busyNanos + elapsedNanos + EPSILON_NANOS);
+	}
+}
@@ -0,0 +1,143 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.mongoose.api.model.item.DataItem;
+
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class BasicDataItemMockTest {
+
+	@Test
+	public final void testUpdatedStateIsRead()
+	throws Exception {
+		final long size = DataItem.getRangeOffset(4);
+		final BasicDataItemMock item = new BasicDataItemMock("a", 0, size, 1);
+		assertFalse(item.isUpdated());
+		final String initialLine = item.toString();
+		item.update(DataItem.getRangeOffset(1), item.getRangeSize(1));
+		assertTrue(item.isUpdated());
+		assertTrue(item.isRangeUpdated(1));
+		assertFalse(item.isRangeUpdated(0));
+		assertEquals(1, item.layer());
+		assertEquals(size, item.size());
+		// the exported line is parsed back to the same state
+		final BasicDataItemMock parsedItem = new BasicDataItemMock(item.toString());
+		assertEquals(2, parsedItem.getModifiedRangesMask());
+		assertEquals(1, parsedItem.layer());
+		assertFalse(initialLine.equals(item.toString()));
+	}
+
+	@Test
+	public final void testFullMaskSwitchesTheLayer()
+	throws Exception {
+		final long size = DataItem.getRangeOffset(3);
+		final BasicDataItemMock item = new BasicDataItemMock("a", 0, size, 0);
+		item.update(0, size);
+		assertEquals(0, item.layer());
+		assertEquals(7, item.getModifiedRangesMask());
+		item.update(0, item.getRangeSize(0));
+		assertEquals(1, item.layer());
+		assertEquals(1, item.getModifiedRangesMask());
+		assertTrue(item.isRangeUpdated(0));
+		assertFalse(item.isRangeUpdated(1));
+		assertEquals(1, new BasicDataItemMock(item.toString()).layer());
+	}
+
+	@Test
+	public final void testAppendedSizeIsRead()
+	throws Exception {
+		final BasicDataItemMock item = new BasicDataItemMock("a", 0, 10, 0);
+		item.append(15);
+		assertEquals(25, item.size());
+		assertEquals(
+			DataItem.getRangeOffset(2) - DataItem.getRangeOffset(1), item.getRangeSize(1)
+		);
+		assertEquals(25 - DataItem.getRangeOffset(4), item.getRangeSize(4));
+		assertEquals(25, new BasicDataItemMock(item.toString()).size());
+		item.size(5);
+		item.layer(3);
+		assertEquals(5, item.size());
+		assertEquals(3, item.layer());
+	}
+
+	@Test
+	public final void testConcurrentReadersSeeTheConsistentState()
+	throws Exception {
+		final int rangeCount = 20;
+		final BasicDataItemMock item = new BasicDataItemMock(
+			"a", 0, DataItem.getRangeOffset(rangeCount), 0
+		);
+		final AtomicBoolean doneFlag = new AtomicBoolean(false);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<?>> readerFutures = new ArrayList<>();
+		for(int i = 0; i < 2; i ++) {
+			readerFutures.add(
+				executor.submit(
+					() -> {
+						while(!doneFlag.get()) {
+							final BasicDataItemMock snapshot = new BasicDataItemMock(
+								item.toString()
+							);
+							final long mask = snapshot.getModifiedRangesMask();
+							// the ranges are updated one by one from the first
+							assertEquals(0, mask & (mask + 1));
+							assertTrue(item.isUpdated() || !item.isRangeUpdated(0));
+						}
+					}
+				)
+			);
+		}
+		for(int i = 0; i < rangeCount; i ++) {
+			item.update(DataItem.getRangeOffset(i), item.getRangeSize(i));
+		}
+		doneFlag.set(true);
+		for(final Future<?> readerFuture : readerFutures) {
+			readerFuture.get();
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals((1L << rangeCount) - 1, item.getModifiedRangesMask());
+		for(int i = 0; i < rangeCount; i ++) {
+			assertTrue(item.isRangeUpdated(i));
+		}
+	}
+
+	@Test
+	public final void testConcurrentAppendsAreCounted()
+	throws Exception {
+		final int threadCount = 8;
+		final int appendCount = 10_000;
+		final BasicDataItemMock item = new BasicDataItemMock("a", 0, 0, 0);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					for(int j = 0; j < appendCount; j ++) {
+						item.append(1);
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(threadCount * appendCount, item.size());
+		assertEquals(
+			threadCount * appendCount, new BasicDataItemMock(item.toString()).size()
+		);
+	}
+}
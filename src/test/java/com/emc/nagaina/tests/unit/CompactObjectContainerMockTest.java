@@ -0,0 +1,245 @@
+package com.emc.nagaina.tests.unit;
+
+import com.github.akurilov.commons.collection.Range;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.CompactObjectContainerMock;
+import com.emc.nagaina.impl.base.HeapObjectTable;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+import com.emc.nagaina.ui.config.Config;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class CompactObjectContainerMockTest {
+
+	private static final int RADIX = Character.MAX_RADIX;
+
+	private static CompactObjectContainerMock<DataItemMock> newContainer(
+		final int capacity, final StorageMockUsage usage, final Consumer<String> evictionListener
+	) {
+		return new CompactObjectContainerMock<>(
+			capacity, usage, null, RADIX, HeapObjectTable.FACTORY, evictionListener
+		);
+	}
+
+	private static String name(final long id) {
+		final String digits = Long.toString(id, RADIX);
+		return "0000000000".substring(digits.length()) + digits;
+	}
+
+	private static DataItemMock newObject(final String name, final long offset, final long size) {
+		return new BasicDataItemMock(name, offset, size, 0);
+	}
+
+	@Test
+	public final void testPutGetRemove()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final CompactObjectContainerMock<DataItemMock> container = newContainer(
+			10, usage, name -> {}
+		);
+		final String a = name(1);
+		assertNull(container.put(a, newObject(a, 1, 10)));
+		// the offset doesn't match the id so the object goes to the overflow map
+		final String b = name(2);
+		assertNull(container.put(b, newObject(b, 3, 20)));
+		// the id is not parsable
+		assertNull(container.put("X", newObject("X", 0, 30)));
+		assertEquals(3, container.size());
+		assertEquals(3, usage.count());
+		assertEquals(60, usage.bytes());
+		assertEquals(a, container.get(a).getName());
+		assertEquals(1, container.get(a).offset());
+		assertEquals(3, container.get(b).offset());
+		assertEquals(30, container.get("X").size());
+		// move the overflow object to the table
+		assertEquals(20, container.put(b, newObject(b, 2, 25)).size());
+		assertEquals(3, container.size());
+		assertEquals(65, usage.bytes());
+		assertEquals(10, container.remove(a).size());
+		assertNull(container.get(a));
+		assertEquals(30, container.remove("X").size());
+		assertEquals(1, container.size());
+		assertEquals(1, usage.count());
+		assertEquals(25, usage.bytes());
+	}
+
+	@Test
+	public final void testListsAllObjectsOnce()
+	throws Exception {
+		final CompactObjectContainerMock<DataItemMock> container = newContainer(
+			10000, new StorageMockUsage(null), name -> {}
+		);
+		final Set<String> names = new HashSet<>();
+		String name;
+		for(long id = 0; id < 1000; id ++) {
+			name = name(id);
+			container.put(name, newObject(name, id, 1));
+			names.add(name);
+		}
+		for(int i = 0; i < 10; i ++) {
+			name = "overflow" + i;
+			container.put(name, newObject(name, 0, 1));
+			names.add(name);
+		}
+		final List<String> listedNames = listAll(container, 7, null);
+		assertEquals(names.size(), listedNames.size());
+		assertEquals(names, new HashSet<>(listedNames));
+		// the overflow objects go after the table ones
+		for(int i = 0; i < 10; i ++) {
+			assertEquals("overflow" + i, listedNames.get(1000 + i));
+		}
+	}
+
+	@Test
+	public final void testPagingIsStableAfterDeletes()
+	throws Exception {
+		final CompactObjectContainerMock<DataItemMock> container = newContainer(
+			10000, new StorageMockUsage(null), name -> {}
+		);
+		final List<String> names = new ArrayList<>();
+		String name;
+		for(long id = 0; id < 2000; id ++) {
+			name = name(id);
+			container.put(name, newObject(name, id, 1));
+			names.add(name);
+		}
+		final Set<String> deletedNames = new HashSet<>();
+		final Random rnd = new Random(1);
+		final List<String> listedNames = listAll(
+			container, 10,
+			listedName -> {
+				// delete the marker itself and some of the other objects, this shifts the probe
+				// sequences backward
+				deletedNames.add(listedName);
+				container.remove(listedName);
+				for(int i = 0; i < 5; i ++) {
+					final String deletedName = names.get(rnd.nextInt(names.size()));
+					deletedNames.add(deletedName);
+					container.remove(deletedName);
+				}
+			}
+		);
+		final Set<String> uniqueListedNames = new HashSet<>(listedNames);
+		assertEquals("duplicates listed", listedNames.size(), uniqueListedNames.size());
+		for(final String n : names) {
+			if(!deletedNames.contains(n)) {
+				assertTrue(n + " is not listed", uniqueListedNames.contains(n));
+			}
+		}
+	}
+
+	@Test
+	public final void testEvictsAboveCapacity()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final List<String> evictedNames = new ArrayList<>();
+		final CompactObjectContainerMock<DataItemMock> container = newContainer(
+			100, usage, evictedNames::add
+		);
+		String name;
+		for(long id = 0; id < 140; id ++) {
+			name = name(id);
+			container.put(name, newObject(name, id, 1));
+		}
+		// the overflow map objects are evicted too
+		for(long id = 0; id < 10; id ++) {
+			name = "X" + id;
+			container.put(name, newObject(name, 0, 1));
+		}
+		assertEquals(100, container.size());
+		assertEquals(100, usage.count());
+		assertEquals(50, evictedNames.size());
+		assertEquals(50, new HashSet<>(evictedNames).size());
+		for(final String evictedName : evictedNames) {
+			assertNull(container.get(evictedName));
+		}
+		final List<DataItemMock> listed = new ArrayList<>();
+		container.list(null, listed, 1000);
+		assertEquals(100, listed.size());
+		for(final DataItemMock obj : listed) {
+			assertFalse(evictedNames.contains(obj.getName()));
+		}
+		// the last inserted object should survive
+		assertEquals("X9", container.get("X9").getName());
+	}
+
+	private interface PageListener {
+		void pageListed(final String marker);
+	}
+
+	private static List<String> listAll(
+		final CompactObjectContainerMock<DataItemMock> container, final int limit,
+		final PageListener pageListener
+	) {
+		final List<String> listedNames = new ArrayList<>();
+		final List<DataItemMock> page = new ArrayList<>();
+		String marker = null;
+		DataItemMock lastObject;
+		do {
+			lastObject = container.list(marker, page, limit);
+			for(final DataItemMock obj : page) {
+				listedNames.add(obj.getName());
+			}
+			page.clear();
+			marker = lastObject == null ? null : lastObject.getName();
+			if(marker != null && pageListener != null) {
+				pageListener.pageListed(marker);
+			}
+		} while(marker != null);
+		return listedNames;
+	}
+
+	@Test
+	public final void testConcurrentAppendsToSameObject()
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		config.getStorageConfig().getMockConfig().getContainerConfig().setType("compact");
+		final int threadCount = 8;
+		final int appendCount = 1000;
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.createContainer("c");
+			final String name = name(1);
+			storageMock.createObject("c", name, 1, 0);
+			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+			final List<Future<?>> results = new ArrayList<>(threadCount);
+			for(int i = 0; i < threadCount; i ++) {
+				results.add(
+					executor.submit(
+						() -> {
+							for(int j = 0; j < appendCount; j ++) {
+								storageMock.updateObject("c", name, 0, new Range(-1, -1, 1));
+							}
+							return null;
+						}
+					)
+				);
+			}
+			executor.shutdown();
+			for(final Future<?> result : results) {
+				result.get();
+			}
+			// none of the appends is lost and the usage matches the object
+			assertEquals(threadCount * appendCount, storageMock.getObject("c", name, 0, 0).size());
+			assertEquals(threadCount * appendCount, storageMock.getContainer("c").sizeBytes());
+		}
+	}
+}
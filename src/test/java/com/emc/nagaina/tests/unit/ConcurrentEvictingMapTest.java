@@ -0,0 +1,155 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.ConcurrentEvictingMap;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ConcurrentEvictingMapTest {
+
+	@Test
+	public final void testPutGetRemove()
+	throws Exception {
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			10, EvictionPolicy.FIFO, v -> v, v -> {}
+		);
+		assertNull(map.put("a", 1L));
+		assertNull(map.putIfAbsent("b", 2L));
+		assertEquals(2L, (long) map.putIfAbsent("b", 3L));
+		assertEquals(1L, (long) map.put("a", 4L));
+		assertEquals(4L, (long) map.get("a"));
+		assertEquals(2L, (long) map.get("b"));
+		assertEquals(2, map.size());
+		assertEquals(2L, (long) map.remove("b"));
+		assertNull(map.remove("b"));
+		assertNull(map.get("b"));
+		assertEquals(1, map.size());
+		final Map<String, Long> entries = new HashMap<>();
+		map.forEach(entries::put);
+		assertEquals(1, entries.size());
+		assertEquals(4L, (long) entries.get("a"));
+	}
+
+	@Test
+	public final void testFifoEvictsTheOldest()
+	throws Exception {
+		final List<Long> evicted = new ArrayList<>();
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			2, EvictionPolicy.FIFO, v -> v, evicted::add
+		);
+		map.put("a", 1L);
+		map.put("b", 2L);
+		map.get("a");
+		map.put("c", 3L);
+		assertEquals(2, map.size());
+		assertEquals(1, evicted.size());
+		assertEquals(1L, (long) evicted.get(0));
+		assertNull(map.get("a"));
+	}
+
+	@Test
+	public final void testOverwriteDoesNotEvict()
+	throws Exception {
+		final List<Long> evicted = new ArrayList<>();
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			2, EvictionPolicy.FIFO, v -> v, evicted::add
+		);
+		map.put("a", 1L);
+		map.put("b", 2L);
+		map.put("a", 3L);
+		map.put("b", 4L);
+		assertEquals(2, map.size());
+		assertTrue(evicted.isEmpty());
+		// the replaced entries should be skipped by the eviction
+		map.put("c", 5L);
+		assertEquals(1, evicted.size());
+		assertEquals(3L, (long) evicted.get(0));
+	}
+
+	@Test
+	public final void testClockGivesTheSecondChance()
+	throws Exception {
+		final List<Long> evicted = new ArrayList<>();
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			2, EvictionPolicy.CLOCK, v -> v, evicted::add
+		);
+		map.put("a", 1L);
+		map.put("b", 2L);
+		map.get("a");
+		map.put("c", 3L);
+		assertEquals(1, evicted.size());
+		assertEquals(2L, (long) evicted.get(0));
+		assertNotNull(map.get("a"));
+		assertNull(map.get("b"));
+	}
+
+	@Test
+	public final void testSizeEvictsTheLargest()
+	throws Exception {
+		final List<Long> evicted = new ArrayList<>();
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			3, EvictionPolicy.SIZE, v -> v, evicted::add
+		);
+		map.put("a", 10L);
+		map.put("b", 1000L);
+		map.put("c", 100L);
+		map.put("d", 1L);
+		assertEquals(3, map.size());
+		assertEquals(1, evicted.size());
+		assertEquals(1000L, (long) evicted.get(0));
+	}
+
+	@Test
+	public final void testNonePolicyIsNotBounded()
+	throws Exception {
+		final List<Long> evicted = new ArrayList<>();
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			2, EvictionPolicy.NONE, v -> v, evicted::add
+		);
+		for(long i = 0; i < 10; i ++) {
+			map.put(Long.toString(i), i);
+		}
+		assertEquals(10, map.size());
+		assertTrue(evicted.isEmpty());
+	}
+
+	@Test
+	public final void testConcurrentPutsStayBounded()
+	throws Exception {
+		final int capacity = 1000;
+		final int threadCount = 8;
+		final int countPerThread = 10000;
+		final ConcurrentEvictingMap<String, Long> map = new ConcurrentEvictingMap<>(
+			capacity, EvictionPolicy.RANDOM, v -> v, v -> {}
+		);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			executor.submit(
+				() -> {
+					for(long j = 0; j < countPerThread; j ++) {
+						map.put(threadIndex + "-" + j, j);
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertTrue(map.size() <= capacity);
+	}
+}
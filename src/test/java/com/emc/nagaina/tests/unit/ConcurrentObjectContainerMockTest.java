@@ -0,0 +1,131 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ConcurrentObjectContainerMockTest {
+
+	private static DataItemMock newObject(final String name, final long size) {
+		return new BasicDataItemMock(name, 0, size, 0);
+	}
+
+	@Test
+	public final void testPutGetRemove()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final ConcurrentObjectContainerMock<DataItemMock> container =
+			new ConcurrentObjectContainerMock<>(10, usage, EvictionPolicy.FIFO, name -> {});
+		assertNull(container.put("a", newObject("a", 10)));
+		assertNull(container.put("b", newObject("b", 20)));
+		assertEquals(2, container.size());
+		assertEquals(2, usage.count());
+		assertEquals(30, usage.bytes());
+		// the overwrite replaces the size only
+		assertEquals(10, container.put("a", newObject("a", 15)).size());
+		assertEquals(2, container.size());
+		assertEquals(35, usage.bytes());
+		assertEquals(15, container.get("a").size());
+		assertEquals(20, container.remove("b").size());
+		assertNull(container.remove("b"));
+		assertNull(container.get("b"));
+		assertEquals(1, container.size());
+		assertEquals(1, usage.count());
+		assertEquals(15, usage.bytes());
+	}
+
+	@Test
+	public final void testListIsSortedAndPagedByMarker()
+	throws Exception {
+		final ConcurrentObjectContainerMock<DataItemMock> container =
+			new ConcurrentObjectContainerMock<>(
+				100, new StorageMockUsage(null), EvictionPolicy.FIFO, name -> {}
+			);
+		final List<String> names = new ArrayList<>();
+		for(int i = 0; i < 10; i ++) {
+			names.add("obj" + i);
+		}
+		Collections.shuffle(names);
+		for(final String name : names) {
+			container.put(name, newObject(name, 1));
+		}
+		Collections.sort(names);
+		final List<String> listedNames = new ArrayList<>();
+		final List<DataItemMock> page = new ArrayList<>();
+		String marker = null;
+		DataItemMock lastObject;
+		do {
+			lastObject = container.list(marker, page, 3);
+			for(final DataItemMock obj : page) {
+				listedNames.add(obj.getName());
+			}
+			page.clear();
+			marker = lastObject == null ? null : lastObject.getName();
+		} while(marker != null);
+		assertEquals(names, listedNames);
+	}
+
+	@Test
+	public final void testEvictsAboveCapacity()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final List<String> evictedNames = new ArrayList<>();
+		final ConcurrentObjectContainerMock<DataItemMock> container =
+			new ConcurrentObjectContainerMock<>(2, usage, EvictionPolicy.FIFO, evictedNames::add);
+		container.put("a", newObject("a", 1));
+		container.put("b", newObject("b", 1));
+		container.put("c", newObject("c", 1));
+		assertEquals(2, container.size());
+		assertEquals(2, usage.count());
+		assertEquals(Collections.singletonList("a"), evictedNames);
+		assertNull(container.get("a"));
+	}
+
+	@Test
+	public final void testConcurrentPuts()
+	throws Exception {
+		final int threadCount = 8;
+		final int countPerThread = 1000;
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final ConcurrentObjectContainerMock<DataItemMock> container =
+			new ConcurrentObjectContainerMock<>(
+				threadCount * countPerThread, usage, EvictionPolicy.FIFO, name -> {}
+			);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			executor.submit(
+				() -> {
+					String name;
+					for(int j = 0; j < countPerThread; j ++) {
+						name = threadIndex + "-" + j;
+						container.put(name, newObject(name, 1));
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertEquals(threadCount * countPerThread, container.size());
+		assertEquals(threadCount * countPerThread, usage.count());
+		final List<DataItemMock> listed = new ArrayList<>();
+		assertNull(container.list(null, listed, threadCount * countPerThread));
+		assertEquals(threadCount * countPerThread, listed.size());
+	}
+}
@@ -0,0 +1,91 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.http.request.ContainerTrafficShaper;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ContainerTrafficShaperTest {
+
+	// 1MB/s, so the byte takes 1 microsecond
+	private static final double BANDWIDTH = 1_000_000;
+	private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+	// the tolerance for the time passed between the acquisitions
+	private static final long EPSILON_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testInvalidBandwidth()
+	throws Exception {
+		new ContainerTrafficShaper(0);
+	}
+
+	@Test
+	public final void testTransferDelaysTheNextOne()
+	throws Exception {
+		final ContainerTrafficShaper shaper = new ContainerTrafficShaper(BANDWIDTH);
+		assertEquals(0, shaper.acquire("c1", 1_000_000));
+		// the next transfer waits until the previous one's bytes are refilled
+		final long delayNanos = shaper.acquire("c1", 1);
+		assertTrue(delayNanos > SECOND_NANOS - 2 * EPSILON_NANOS);
+		assertTrue(delayNanos <= SECOND_NANOS);
+	}
+
+	@Test
+	public final void testContainersAreIndependent()
+	throws Exception {
+		final ContainerTrafficShaper shaper = new ContainerTrafficShaper(BANDWIDTH);
+		assertEquals(0, shaper.acquire("c1", 1_000_000));
+		assertEquals(0, shaper.acquire("c2", 1_000_000));
+		assertTrue(shaper.acquire("c1", 1) > 0);
+		assertTrue(shaper.acquire("c2", 1) > 0);
+	}
+
+	@Test
+	public final void testRemovedContainerIsReset()
+	throws Exception {
+		final ContainerTrafficShaper shaper = new ContainerTrafficShaper(BANDWIDTH);
+		assertEquals(0, shaper.acquire("c1", 1_000_000));
+		shaper.remove("c1");
+		// the container created again with the same name has the full bandwidth
+		assertEquals(0, shaper.acquire("c1", 1));
+	}
+
+	@Test
+	public final void testConcurrentTransfersShareTheBandwidth()
+	throws Exception {
+		final int threadCount = 8;
+		final int transferCount = 1000;
+		final long transferSize = 1000;
+		final ContainerTrafficShaper shaper = new ContainerTrafficShaper(BANDWIDTH);
+		final long startNanos = System.nanoTime();
+		final AtomicLong lastDueNanos = new AtomicLong(startNanos);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					for(int j = 0; j < transferCount / threadCount; j ++) {
+						final long delayNanos = shaper.acquire("c1", transferSize);
+						final long dueNanos = System.nanoTime() + delayNanos;
+						lastDueNanos.accumulateAndGet(dueNanos, Math::max);
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		// 1MB at 1MB/s, the last transfer starts after the others' bytes are refilled
+		final long busyNanos = SECOND_NANOS - transferSize * 1000;
+		assertTrue(lastDueNanos.get() - startNanos > busyNanos - 2 * EPSILON_NANOS);
+		assertTrue(lastDueNanos.get() - startNanos <= busyNanos + elapsedNanos);
+	}
+}
@@ -0,0 +1,101 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.BasicDataItemMockFactory;
+import com.emc.nagaina.impl.base.ConcurrentEvictingMap;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.CsvItemExporter;
+import com.emc.nagaina.impl.base.ParallelCsvItemLoader;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static com.emc.nagaina.api.StorageMock.DEFAULT_CONTAINER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class CsvItemExporterTest {
+
+	private static final int OBJ_COUNT = 10000; // more than one listing page
+
+	private Path file;
+	private ConcurrentEvictingMap<String, ObjectContainerMock<DataItemMock>> containers;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		file = Files.createTempFile(CsvItemExporterTest.class.getSimpleName(), ".csv");
+		containers = new ConcurrentEvictingMap<>(
+			Integer.MAX_VALUE, EvictionPolicy.NONE, ObjectContainerMock::sizeBytes, c -> {}
+		);
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		for(final String containerName : new String[] { DEFAULT_CONTAINER_NAME, "container1" }) {
+			final ObjectContainerMock<DataItemMock> container = new ConcurrentObjectContainerMock<>(
+				Integer.MAX_VALUE, new StorageMockUsage(usage), EvictionPolicy.NONE, name -> {}
+			);
+			String name;
+			for(int i = 0; i < OBJ_COUNT; i ++) {
+				name = Integer.toString(i);
+				container.put(name, new BasicDataItemMock(name, i, i, i % 3));
+			}
+			containers.put(containerName, container);
+		}
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		Files.delete(file);
+	}
+
+	private Map<String, DataItemMock> load()
+	throws Exception {
+		final Map<String, DataItemMock> items = new ConcurrentHashMap<>();
+		new ParallelCsvItemLoader<DataItemMock>(
+			file, new BasicDataItemMockFactory<>(), item -> items.put(item.getName(), item)
+		).load(2);
+		return items;
+	}
+
+	@Test
+	public final void testExportAllContainers()
+	throws Exception {
+		assertEquals(2 * OBJ_COUNT, CsvItemExporter.export(file, containers, null));
+		assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+		final Map<String, DataItemMock> items = load();
+		assertEquals(2 * OBJ_COUNT, items.size());
+		DataItemMock item;
+		for(int i = 0; i < OBJ_COUNT; i ++) {
+			item = items.get(Integer.toString(i));
+			assertEquals(i, item.offset());
+			assertEquals(i, item.size());
+			assertEquals(i % 3, item.layer());
+			// the objects of the non-default container are prefixed with the container name
+			item = items.get("/container1/" + i);
+			assertEquals(i, item.offset());
+		}
+	}
+
+	@Test
+	public final void testExportSingleContainer()
+	throws Exception {
+		assertEquals(OBJ_COUNT, CsvItemExporter.export(file, containers, "container1"));
+		final Map<String, DataItemMock> items = load();
+		assertEquals(OBJ_COUNT, items.size());
+		for(final String name : items.keySet()) {
+			assertEquals(0, name.indexOf("/container1/"));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.StorageMock;
+import com.emc.nagaina.impl.base.ShardedObjectContainerMock;
+import com.emc.nagaina.ui.config.Config;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class DefaultContainerPartitionsTest {
+
+	private static final String DEFAULT = StorageMock.DEFAULT_CONTAINER_NAME;
+
+	private static TestStorageMock newStorageMock(
+		final String type, final int partitions, final int capacity
+	) throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		final ContainerConfig containerConfig = config
+			.getStorageConfig().getMockConfig().getContainerConfig();
+		containerConfig.setType(type);
+		containerConfig.setDefaultPartitions(partitions);
+		containerConfig.setCapacity(capacity);
+		return new TestStorageMock(config);
+	}
+
+	@Test
+	public final void testNotPartitionedByDefault()
+	throws Exception {
+		try(
+			final TestStorageMock storageMock = new TestStorageMock(TestStorageMock.defaultConfig())
+		) {
+			assertFalse(storageMock.getContainer(DEFAULT) instanceof ShardedObjectContainerMock);
+		}
+	}
+
+	@Test
+	public final void testOnlyConcurrentContainerIsPartitioned()
+	throws Exception {
+		try(final TestStorageMock storageMock = newStorageMock("lru", 16, 100)) {
+			assertFalse(storageMock.getContainer(DEFAULT) instanceof ShardedObjectContainerMock);
+		}
+		try(final TestStorageMock storageMock = newStorageMock("concurrent", 16, 100)) {
+			assertTrue(storageMock.getContainer(DEFAULT) instanceof ShardedObjectContainerMock);
+		}
+	}
+
+	@Test
+	public final void testPartitionsDontExceedCapacity()
+	throws Exception {
+		final int capacity = 100;
+		try(final TestStorageMock storageMock = newStorageMock("concurrent", 16, capacity)) {
+			for(int i = 0; i < 10 * capacity; i ++) {
+				storageMock.createObject(DEFAULT, Integer.toString(i, Character.MAX_RADIX), 0, 1);
+				assertTrue(storageMock.getContainer(DEFAULT).size() <= capacity);
+			}
+			// every partition is full
+			assertEquals(capacity, storageMock.getContainer(DEFAULT).size());
+		}
+	}
+
+	@Test
+	public final void testPartitionsAreListedInNameOrder()
+	throws Exception {
+		try(final TestStorageMock storageMock = newStorageMock("concurrent", 16, 1000)) {
+			final List<String> names = new ArrayList<>();
+			for(int i = 0; i < 100; i ++) {
+				final String name = String.format("%03d", i);
+				storageMock.createObject(DEFAULT, name, 0, 1);
+				names.add(name);
+			}
+			final List<DataItemMock> objects = new ArrayList<>();
+			String marker = null;
+			do {
+				marker = storageMock.listObjects(
+					DEFAULT, "", null, marker, objects, new ArrayList<>(), 7
+				);
+			} while(marker != null);
+			final List<String> listedNames = new ArrayList<>();
+			for(final DataItemMock obj : objects) {
+				listedNames.add(obj.getName());
+			}
+			assertEquals(names, listedNames);
+		}
+	}
+}
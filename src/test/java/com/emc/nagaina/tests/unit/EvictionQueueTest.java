@@ -0,0 +1,223 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.EvictionQueue;
+import com.emc.nagaina.impl.base.StorageMockBase;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class EvictionQueueTest {
+
+	private static final class TestEntry
+	extends EvictionQueue.Entry {
+
+		private final String name;
+		private final long weight;
+
+		private TestEntry(final String name, final long weight) {
+			this.name = name;
+			this.weight = weight;
+		}
+
+		@Override
+		protected final long weight() {
+			return weight;
+		}
+	}
+
+	private static List<TestEntry> addAll(
+		final EvictionQueue<TestEntry> queue, final long... weights
+	) {
+		final List<TestEntry> entries = new ArrayList<>();
+		for(int i = 0; i < weights.length; i ++) {
+			final TestEntry entry = new TestEntry(Integer.toString(i), weights[i]);
+			entries.add(entry);
+			queue.added(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 @return the evicted entry's name, null if nothing was evicted
+	 */
+	private static String evict(final EvictionQueue<TestEntry> queue) {
+		final List<String> evicted = new ArrayList<>(1);
+		queue.evict(entry -> evicted.add(entry.name));
+		return evicted.isEmpty() ? null : evicted.get(0);
+	}
+
+	@Test
+	public final void testFifo()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.FIFO, 10);
+		final List<TestEntry> entries = addAll(queue, 1, 1, 1, 1);
+		queue.accessed(entries.get(0));
+		queue.removed(entries.get(1));
+		assertEquals("0", evict(queue));
+		// the removed entry is skipped
+		assertEquals("2", evict(queue));
+		assertEquals("3", evict(queue));
+		assertFalse(queue.evict(entry -> true));
+	}
+
+	@Test
+	public final void testFailedRemovalChoosesTheNextVictim()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.FIFO, 10);
+		addAll(queue, 1, 1, 1);
+		final List<String> victims = new ArrayList<>();
+		// the first victim was replaced concurrently
+		assertTrue(
+			queue.evict(
+				entry -> {
+					victims.add(entry.name);
+					return victims.size() > 1;
+				}
+			)
+		);
+		assertEquals(2, victims.size());
+		assertEquals("0", victims.get(0));
+		assertEquals("1", victims.get(1));
+		assertEquals("2", evict(queue));
+	}
+
+	@Test
+	public final void testClockGivesTheSecondChance()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.CLOCK, 10);
+		final List<TestEntry> entries = addAll(queue, 1, 1, 1);
+		queue.accessed(entries.get(0));
+		queue.accessed(entries.get(1));
+		assertEquals("2", evict(queue));
+		// the access flags are cleared by the previous pass
+		assertEquals("0", evict(queue));
+		assertEquals("1", evict(queue));
+	}
+
+	@Test
+	public final void testSizeEvictsTheLargestOfTheOldest()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.SIZE, 10);
+		// the last entry is out of the sample
+		addAll(queue, 10, 30, 20, 5, 1, 1000);
+		assertEquals("1", evict(queue));
+		assertEquals("5", evict(queue));
+		assertEquals("2", evict(queue));
+	}
+
+	@Test
+	public final void testRandomEvictsEveryEntryOnce()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.RANDOM, 100);
+		addAll(queue, new long[100]);
+		final Set<String> evicted = ConcurrentHashMap.newKeySet();
+		String name;
+		while(null != (name = evict(queue))) {
+			assertTrue(evicted.add(name));
+		}
+		assertEquals(100, evicted.size());
+	}
+
+	@Test
+	public final void testNoneDoesNotEvict()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.NONE, 10);
+		addAll(queue, 1, 1, 1);
+		assertFalse(queue.evict(entry -> true));
+	}
+
+	@Test
+	public final void testManyRemovedEntriesAreSkipped()
+	throws Exception {
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.FIFO, 10);
+		for(int i = 0; i < 100_000; i ++) {
+			queue.removed(addAll(queue, 1).get(0));
+		}
+		final TestEntry last = addAll(queue, 1).get(0);
+		final AtomicInteger victimCount = new AtomicInteger(0);
+		assertTrue(
+			queue.evict(
+				entry -> {
+					victimCount.incrementAndGet();
+					return entry == last;
+				}
+			)
+		);
+		assertEquals(1, victimCount.get());
+	}
+
+	@Test
+	public final void testConcurrentEvictionTakesEveryEntryOnce()
+	throws Exception {
+		final int threadCount = 8;
+		final int count = 100_000;
+		final EvictionQueue<TestEntry> queue = new EvictionQueue<>(EvictionPolicy.SIZE, count);
+		addAll(queue, new long[count]);
+		final Set<String> evicted = ConcurrentHashMap.newKeySet();
+		final AtomicInteger duplicateCount = new AtomicInteger(0);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					while(
+						queue.evict(
+							entry -> {
+								if(!evicted.add(entry.name)) {
+									duplicateCount.incrementAndGet();
+								}
+								return true;
+							}
+						)
+					);
+				}
+			);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(0, duplicateCount.get());
+		assertEquals(count, evicted.size());
+	}
+
+	@Test
+	public final void testEffectiveObjectEvictionPolicy()
+	throws Exception {
+		for(final EvictionPolicy policy : EvictionPolicy.values()) {
+			final String policyName = policy.name().toLowerCase();
+			assertEquals(
+				policyName,
+				StorageMockBase.objectEvictionPolicyName(
+					ObjectContainerMock.Type.CONCURRENT, policy
+				)
+			);
+			final boolean none = policy == EvictionPolicy.NONE;
+			assertEquals(
+				none ? policyName : "lru",
+				StorageMockBase.objectEvictionPolicyName(ObjectContainerMock.Type.LRU, policy)
+			);
+			assertEquals(
+				none ? policyName : "fifo",
+				StorageMockBase.objectEvictionPolicyName(ObjectContainerMock.Type.COMPACT, policy)
+			);
+			assertEquals(
+				none ? policyName : "fifo",
+				StorageMockBase.objectEvictionPolicyName(ObjectContainerMock.Type.OFFHEAP, policy)
+			);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.base.ExpirationWheel;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ExpirationWheelTest {
+
+	private static final long TICK_MILLIS = 1000;
+	private static final int SLOT_COUNT = 0x10;
+
+	// the middle of the current tick so the deadlines below are not rounded to the next tick
+	private static long startTime() {
+		return System.currentTimeMillis() / TICK_MILLIS * TICK_MILLIS + TICK_MILLIS / 2;
+	}
+
+	@Test
+	public final void testEntriesExpireAtTheirDeadlines()
+	throws Exception {
+		final long t0 = startTime();
+		final ExpirationWheel<String> wheel = new ExpirationWheel<>(TICK_MILLIS, SLOT_COUNT);
+		wheel.add("a", t0 + 2 * TICK_MILLIS);
+		wheel.add("b", t0 + 3 * TICK_MILLIS);
+		// beyond the wheel revolution, the same slot as "b"
+		wheel.add("c", t0 + (3 + SLOT_COUNT) * TICK_MILLIS);
+		final List<String> expired = new ArrayList<>();
+		wheel.advance(t0 + TICK_MILLIS, expired::add);
+		assertTrue(expired.isEmpty());
+		wheel.advance(t0 + 4 * TICK_MILLIS, expired::add);
+		assertEquals(Arrays.asList("a", "b"), expired);
+		wheel.advance(t0 + (3 + SLOT_COUNT) * TICK_MILLIS, expired::add);
+		assertEquals(2, expired.size());
+		wheel.advance(t0 + (4 + SLOT_COUNT) * TICK_MILLIS, expired::add);
+		assertEquals(Arrays.asList("a", "b", "c"), expired);
+	}
+
+	@Test
+	public final void testPastDeadlineExpiresOnNextTick()
+	throws Exception {
+		final long t0 = startTime();
+		final ExpirationWheel<String> wheel = new ExpirationWheel<>(TICK_MILLIS, SLOT_COUNT);
+		final List<String> expired = new ArrayList<>();
+		wheel.advance(t0 + 5 * TICK_MILLIS, expired::add);
+		wheel.add("a", t0);
+		wheel.advance(t0 + 6 * TICK_MILLIS, expired::add);
+		assertEquals(Arrays.asList("a"), expired);
+	}
+
+	@Test
+	public final void testConcurrentAddsWhileAdvancing()
+	throws Exception {
+		final int threadCount = 4;
+		final int countPerThread = 100000;
+		final ExpirationWheel<String> wheel = new ExpirationWheel<>(1, SLOT_COUNT);
+		final Set<String> expired = ConcurrentHashMap.newKeySet();
+		final AtomicBoolean addsDone = new AtomicBoolean(false);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			executor.submit(
+				() -> {
+					for(int j = 0; j < countPerThread; j ++) {
+						wheel.add(threadIndex + "-" + j, System.currentTimeMillis() + j % 40);
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		final Thread advancingThread = new Thread(
+			() -> {
+				while(!addsDone.get()) {
+					wheel.advance(System.currentTimeMillis(), expired::add);
+				}
+			}
+		);
+		advancingThread.start();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		addsDone.set(true);
+		advancingThread.join();
+		// none of the entries added concurrently with the advancing is lost
+		wheel.advance(System.currentTimeMillis() + 100, expired::add);
+		final Set<String> expected = new HashSet<>();
+		for(int i = 0; i < threadCount; i ++) {
+			for(int j = 0; j < countPerThread; j ++) {
+				expected.add(i + "-" + j);
+			}
+		}
+		assertEquals(expected, expired);
+	}
+}
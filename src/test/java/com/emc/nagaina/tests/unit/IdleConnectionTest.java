@@ -0,0 +1,158 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.LatencyProfile;
+import com.emc.nagaina.impl.http.request.ResponseDelayHandler;
+import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+import com.emc.nagaina.impl.http.request.TokenBucketRateLimiter;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.IdleStateHandler;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class IdleConnectionTest {
+
+	private static final String CONTAINER_NAME = "c1";
+	private static final long IDLE_TIMEOUT_MILLIS = 50;
+	// much longer than the idle timeout
+	private static final long LATENCY_MILLIS = 300;
+
+	private TestStorageMock storageMock;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		storageMock = new TestStorageMock(TestStorageMock.defaultConfig());
+		storageMock.createContainer(CONTAINER_NAME);
+		storageMock.createObject(CONTAINER_NAME, "a", 0, 1);
+		// the first request's handling is slow, so it's not measured
+		final EmbeddedChannel warmUpChannel = new EmbeddedChannel(
+			new SwiftRequestHandler<DataItemMock>(
+				null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+		writeRequest(warmUpChannel);
+		final FullHttpResponse response = warmUpChannel.readOutbound();
+		response.release();
+		warmUpChannel.finishAndReleaseAll();
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		storageMock.close();
+	}
+
+	private static void writeRequest(final EmbeddedChannel channel) {
+		channel.writeInbound(
+			new DefaultHttpRequest(
+				HTTP_1_1, HttpMethod.GET, "/v1/ns1/" + CONTAINER_NAME + "?format=plain"
+			)
+		);
+		channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+	}
+
+	/**
+	 Runs the channel's tasks until the response is written, the channel should stay open
+	 */
+	private static String awaitResponse(final EmbeddedChannel channel)
+	throws InterruptedException {
+		final long startMillis = System.currentTimeMillis();
+		FullHttpResponse response;
+		while(null == (response = channel.readOutbound())) {
+			assertTrue(channel.isOpen());
+			assertTrue(System.currentTimeMillis() - startMillis < 10_000);
+			Thread.sleep(5);
+			channel.runPendingTasks();
+		}
+		final String content = response.content().toString(StandardCharsets.UTF_8);
+		response.release();
+		return content;
+	}
+
+	private static void awaitClosed(final EmbeddedChannel channel)
+	throws InterruptedException {
+		final long startMillis = System.currentTimeMillis();
+		while(channel.isOpen()) {
+			assertTrue(System.currentTimeMillis() - startMillis < 10_000);
+			Thread.sleep(5);
+			channel.runPendingTasks();
+		}
+	}
+
+	private static IdleStateHandler newIdleStateHandler() {
+		return new IdleStateHandler(0, 0, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public final void testDelayedResponseIsNotClosed()
+	throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(
+			newIdleStateHandler(), new ResponseDelayHandler(),
+			new SwiftRequestHandler<DataItemMock>(
+				null, null, new LatencyProfile(null, null, null, null, "fixed:" + LATENCY_MILLIS),
+				null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+		writeRequest(channel);
+		assertEquals("a\n", awaitResponse(channel));
+		// the connection is idle after the response
+		awaitClosed(channel);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public final void testQueuedRequestIsNotClosed()
+	throws Exception {
+		final double rate = 1000.0 / LATENCY_MILLIS;
+		final EmbeddedChannel channel = new EmbeddedChannel(
+			newIdleStateHandler(),
+			new SwiftRequestHandler<DataItemMock>(
+				new TokenBucketRateLimiter(rate), null, null, null, null, null,
+				Character.MAX_RADIX, storageMock, null
+			)
+		);
+		// the first two requests take the burst tokens, the third one is deferred
+		for(int i = 0; i < 3; i ++) {
+			writeRequest(channel);
+		}
+		for(int i = 0; i < 3; i ++) {
+			assertEquals("a\n", awaitResponse(channel));
+		}
+		awaitClosed(channel);
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public final void testIdleConnectionIsClosed()
+	throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(
+			newIdleStateHandler(),
+			new SwiftRequestHandler<DataItemMock>(
+				null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+		writeRequest(channel);
+		assertEquals("a\n", awaitResponse(channel));
+		final long startMillis = System.currentTimeMillis();
+		awaitClosed(channel);
+		assertTrue(System.currentTimeMillis() - startMillis < LATENCY_MILLIS);
+		channel.finishAndReleaseAll();
+	}
+}
@@ -0,0 +1,166 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.http.request.LatencyDistribution;
+import com.emc.nagaina.impl.http.request.LatencyProfile;
+import com.emc.nagaina.impl.http.request.LatencyProfile.Operation;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class LatencyDistributionTest {
+
+	private static final int SAMPLE_COUNT = 100_000;
+	private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static long[] samples(final String spec) {
+		final LatencyDistribution distribution = LatencyDistribution.parse(spec);
+		final long samples[] = new long[SAMPLE_COUNT];
+		for(int i = 0; i < SAMPLE_COUNT; i ++) {
+			samples[i] = distribution.nextNanos();
+		}
+		Arrays.sort(samples);
+		return samples;
+	}
+
+	private static double millis(final long nanos) {
+		return (double) nanos / NANOS_PER_MILLI;
+	}
+
+	private static double meanMillis(final long samples[]) {
+		double sum = 0;
+		for(final long sample : samples) {
+			sum += millis(sample);
+		}
+		return sum / samples.length;
+	}
+
+	private static double medianMillis(final long samples[]) {
+		return millis(samples[samples.length / 2]);
+	}
+
+	@Test
+	public final void testNoDistribution()
+	throws Exception {
+		assertNull(LatencyDistribution.parse(null));
+		assertNull(LatencyDistribution.parse(""));
+	}
+
+	@Test
+	public final void testFixed()
+	throws Exception {
+		final LatencyDistribution distribution = LatencyDistribution.parse("fixed:2.5");
+		assertEquals(2_500_000, distribution.nextNanos());
+		assertEquals("fixed:2.5", distribution.toString());
+		// the samples are limited by 1 minute
+		assertEquals(
+			TimeUnit.MINUTES.toNanos(1), LatencyDistribution.parse("fixed:1e9").nextNanos()
+		);
+	}
+
+	@Test
+	public final void testUniform()
+	throws Exception {
+		final long samples[] = samples("uniform:20,10");
+		assertTrue(samples[0] >= 10 * NANOS_PER_MILLI);
+		assertTrue(samples[SAMPLE_COUNT - 1] < 20 * NANOS_PER_MILLI);
+		assertEquals(15, meanMillis(samples), 0.1);
+	}
+
+	@Test
+	public final void testNormalIsTruncated()
+	throws Exception {
+		final long samples[] = samples("normal:0,10");
+		assertEquals(0, samples[0]);
+		// the negative half is truncated to 0
+		assertEquals(0, samples[SAMPLE_COUNT / 2 - SAMPLE_COUNT / 100]);
+		assertTrue(samples[SAMPLE_COUNT / 2 + SAMPLE_COUNT / 100] > 0);
+		assertEquals(10 / Math.sqrt(2 * Math.PI), meanMillis(samples), 0.2);
+	}
+
+	@Test
+	public final void testLognormal()
+	throws Exception {
+		final long samples[] = samples("lognormal:10,0.5");
+		assertTrue(samples[0] > 0);
+		assertEquals(10, medianMillis(samples), 0.2);
+	}
+
+	@Test
+	public final void testPareto()
+	throws Exception {
+		final long samples[] = samples("pareto:5,2");
+		assertTrue(samples[0] >= 5 * NANOS_PER_MILLI);
+		// the median is X * 2 ^ (1 / A)
+		assertEquals(5 * Math.sqrt(2), medianMillis(samples), 0.1);
+		// the mean is X * A / (A - 1)
+		assertEquals(10, meanMillis(samples), 1);
+	}
+
+	@Test
+	public final void testHistogram()
+	throws Exception {
+		final Path file = Files.createTempFile(LatencyDistributionTest.class.getSimpleName(), "");
+		try {
+			Files.write(
+				file, "# latency weight\n1 1\n\n5,3\n9;0\n".getBytes(StandardCharsets.UTF_8)
+			);
+			final long samples[] = samples("histogram:" + file);
+			int count1 = 0, count5 = 0;
+			for(final long sample : samples) {
+				if(sample == NANOS_PER_MILLI) {
+					count1 ++;
+				} else if(sample == 5 * NANOS_PER_MILLI) {
+					count5 ++;
+				} else {
+					fail("Unexpected sample: " + sample);
+				}
+			}
+			assertEquals(0.25, (double) count1 / SAMPLE_COUNT, 0.01);
+			assertEquals(0.75, (double) count5 / SAMPLE_COUNT, 0.01);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public final void testInvalidSpecs()
+	throws Exception {
+		for(
+			final String spec : new String[] {
+				"fixed", "fixed:a", "fixed:1,2", "uniform:1", "pareto:1,0", "gamma:1,2",
+				"histogram:/nonexistent/latency/histogram"
+			}
+		) {
+			try {
+				LatencyDistribution.parse(spec);
+				fail("The spec \"" + spec + "\" should be rejected");
+			} catch(final IllegalArgumentException ignored) {
+			}
+		}
+	}
+
+	@Test
+	public final void testProfile()
+	throws Exception {
+		assertTrue(new LatencyProfile().isEmpty());
+		assertTrue(new LatencyProfile(null, "", null, null, null).isEmpty());
+		final LatencyProfile profile = new LatencyProfile(null, "fixed:1", null, null, "fixed:2");
+		assertFalse(profile.isEmpty());
+		assertEquals(0, profile.nextNanos(Operation.CREATE));
+		assertEquals(NANOS_PER_MILLI, profile.nextNanos(Operation.READ));
+		assertEquals(2 * NANOS_PER_MILLI, profile.nextNanos(Operation.LIST));
+	}
+}
@@ -0,0 +1,189 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.ListingCursorCache;
+import com.emc.nagaina.impl.base.ObjectNameIndex;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+import com.emc.nagaina.ui.config.Config;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ListingCursorCacheTest {
+
+	private static ObjectNameIndex<DataItemMock> newIndex(final String... names) {
+		final ObjectContainerMock<DataItemMock> container = new ConcurrentObjectContainerMock<>(
+			100, new StorageMockUsage(null), EvictionPolicy.NONE, name -> {}
+		);
+		for(final String name : names) {
+			container.put(name, new BasicDataItemMock(name, 0, 1, 0));
+		}
+		return new ObjectNameIndex<>(container);
+	}
+
+	private static ObjectNameIndex.Cursor listedCursor(final ObjectNameIndex<DataItemMock> index) {
+		final ObjectNameIndex.Cursor cursor = index.cursor("", null, null, false);
+		assertTrue(index.list(cursor, new ArrayList<>(), new ArrayList<>(), 1));
+		return cursor;
+	}
+
+	@Test
+	public final void testTakeOnce()
+	throws Exception {
+		final ListingCursorCache cache = new ListingCursorCache(10, 60_000);
+		final ObjectNameIndex.Cursor cursor = listedCursor(newIndex("a", "b"));
+		final String token = cache.put(cursor);
+		assertEquals("a", ListingCursorCache.lastListed(token));
+		assertNotEquals(token, cache.put(cursor));
+		assertSame(cursor, cache.take(token));
+		// the cursor is not used concurrently
+		assertNull(cache.take(token));
+	}
+
+	@Test
+	public final void testExpiredCursor()
+	throws Exception {
+		final ListingCursorCache cache = new ListingCursorCache(10, 0);
+		final String token = cache.put(listedCursor(newIndex("a", "b")));
+		Thread.sleep(10);
+		assertNull(cache.take(token));
+		// the listing may be continued by the name lookup still
+		assertEquals("a", ListingCursorCache.lastListed(token));
+	}
+
+	@Test
+	public final void testNoCaching()
+	throws Exception {
+		final ListingCursorCache cache = new ListingCursorCache(0, 60_000);
+		final String token = cache.put(listedCursor(newIndex("a", "b")));
+		assertNull(cache.take(token));
+		assertEquals("a", ListingCursorCache.lastListed(token));
+		assertEquals("b", ListingCursorCache.lastListed(cache.token("b", false)));
+	}
+
+	@Test
+	public final void testBoundedCapacity()
+	throws Exception {
+		final ListingCursorCache cache = new ListingCursorCache(2, 60_000);
+		final ObjectNameIndex<DataItemMock> index = newIndex("a", "b");
+		final List<String> tokens = new ArrayList<>();
+		for(int i = 0; i < 10; i ++) {
+			tokens.add(cache.put(listedCursor(index)));
+		}
+		int cachedCount = 0;
+		for(final String token : tokens) {
+			if(cache.take(token) != null) {
+				cachedCount ++;
+			}
+		}
+		assertTrue(cachedCount <= 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testInvalidToken()
+	throws Exception {
+		ListingCursorCache.lastListed("AAAA");
+	}
+
+	@Test
+	public final void testStoragePagesByToken()
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		// the cursors of the abandoned listings are evicted
+		config.getStorageConfig().getMockConfig().getContainerConfig().getListingConfig()
+			.setCursorCacheSize(1);
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.createContainer("c1");
+			final List<String> expectedNames = new ArrayList<>();
+			for(int i = 0; i < 10; i ++) {
+				storageMock.createObject("c1", "p/" + i, 0, 1);
+				expectedNames.add("p/" + i);
+				storageMock.createObject("c1", "q" + i, 0, 1);
+			}
+			final List<DataItemMock> objects = new ArrayList<>();
+			final List<String> commonPrefixes = new ArrayList<>();
+			final List<String> tokens = new ArrayList<>();
+			String token = null;
+			do {
+				token = storageMock.listObjectsPage(
+					"c1", "p/", null, token, null, objects, commonPrefixes, 3
+				);
+				if(token != null) {
+					tokens.add(token);
+				}
+			} while(token != null);
+			final List<String> listedNames = new ArrayList<>();
+			for(final DataItemMock obj : objects) {
+				listedNames.add(obj.getName());
+			}
+			assertEquals(expectedNames, listedNames);
+			assertEquals(3, tokens.size());
+			// the used token's cursor is taken, the page is listed again by the name lookup
+			objects.clear();
+			assertEquals(
+				"p/5", ListingCursorCache.lastListed(
+					storageMock.listObjectsPage(
+						"c1", "p/", null, tokens.get(0), null, objects, commonPrefixes, 3
+					)
+				)
+			);
+			assertEquals("p/3", objects.get(0).getName());
+			try {
+				storageMock.listObjectsPage(
+					"c1", "p/", null, "AAAA", null, objects, commonPrefixes, 3
+				);
+				fail("The invalid token should be rejected");
+			} catch(final IllegalArgumentException ignored) {
+			}
+		}
+	}
+
+	@Test
+	public final void testUnsortedContainerPagesInNameOrder()
+	throws Exception {
+		for(final String containerType : new String[] { "lru", "compact", "concurrent" }) {
+			final Config config = TestStorageMock.defaultConfig();
+			config.getStorageConfig().getMockConfig().getContainerConfig().setType(containerType);
+			try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+				storageMock.createContainer("c1");
+				final List<String> expectedNames = new ArrayList<>();
+				for(int i = 9; i >= 0; i --) {
+					storageMock.createObject("c1", "o" + i, 0, 1);
+					if(i > 2) {
+						expectedNames.add(0, "o" + i);
+					}
+				}
+				// the read changes the lru container's order
+				storageMock.getObject("c1", "o5", 0, 0);
+				final List<DataItemMock> objects = new ArrayList<>();
+				final List<String> commonPrefixes = new ArrayList<>();
+				String token = null;
+				do {
+					token = storageMock.listObjectsPage(
+						"c1", null, null, token, "o2", objects, commonPrefixes, 3
+					);
+				} while(token != null);
+				final List<String> listedNames = new ArrayList<>();
+				for(final DataItemMock obj : objects) {
+					listedNames.add(obj.getName());
+				}
+				assertEquals(containerType, expectedNames, listedNames);
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.base.MutationJournal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class MutationJournalTest {
+
+	private static final int PARALLELISM = 4;
+	// enough for all the records written by the test so none is dropped
+	private static final int RING_SIZE = 0x20000;
+
+	/**
+	 The containers with the object sizes by the object names
+	 */
+	private static final class State
+	implements MutationJournal.Target {
+
+		private final Map<String, Map<String, Long>> containers = new ConcurrentHashMap<>();
+
+		@Override
+		public final void put(
+			final String containerName, final String name, final long offset, final long size,
+			final int layer, final long mask
+		) {
+			containers
+				.computeIfAbsent(containerName, n -> new ConcurrentHashMap<>())
+				.put(name, size);
+		}
+
+		@Override
+		public final void remove(final String containerName, final String name) {
+			final Map<String, Long> container = containers.get(containerName);
+			if(container != null) {
+				container.remove(name);
+			}
+		}
+
+		@Override
+		public final void createContainer(final String name) {
+			containers.putIfAbsent(name, new ConcurrentHashMap<>());
+		}
+
+		@Override
+		public final void deleteContainer(final String name) {
+			containers.remove(name);
+		}
+	}
+
+	private Path dir;
+	private Path file;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		dir = Files.createTempDirectory(MutationJournalTest.class.getSimpleName());
+		file = dir.resolve("journal");
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		try(final Stream<Path> files = Files.list(dir)) {
+			files.forEach(
+				f -> {
+					try {
+						Files.delete(f);
+					} catch(final IOException ignored) {
+					}
+				}
+			);
+		}
+		Files.delete(dir);
+	}
+
+	private MutationJournal newJournal(final int syncPeriodMillis) {
+		return new MutationJournal(file, syncPeriodMillis, RING_SIZE, null);
+	}
+
+	private static void writeMutations(final MutationJournal journal) {
+		journal.createContainer("c1");
+		journal.createContainer("c2");
+		for(int i = 0; i < 100000; i ++) {
+			journal.put("c1", Integer.toString(i % 1000), i, i, 0, 0);
+		}
+		journal.remove("c1", "0");
+		journal.put("c2", "a", 0, 1, 0, 0);
+		journal.deleteContainer("c2");
+		journal.put("c2", "b", 0, 2, 0, 0);
+	}
+
+	private static void checkState(final State state) {
+		assertEquals(2, state.containers.size());
+		final Map<String, Long> c1 = state.containers.get("c1");
+		assertEquals(999, c1.size());
+		assertNull(c1.get("0"));
+		// the latest record of the object wins
+		for(int i = 1; i < 1000; i ++) {
+			assertEquals(99000 + i, (long) c1.get(Integer.toString(i)));
+		}
+		final Map<String, Long> c2 = state.containers.get("c2");
+		assertEquals(1, c2.size());
+		assertEquals(2, (long) c2.get("b"));
+	}
+
+	private State replay()
+	throws Exception {
+		final State state = new State();
+		try(final MutationJournal journal = newJournal(0)) {
+			journal.start(state, PARALLELISM);
+		}
+		return state;
+	}
+
+	@Test
+	public final void testReplay()
+	throws Exception {
+		try(final MutationJournal journal = newJournal(10)) {
+			assertEquals(0, journal.start(new State(), PARALLELISM));
+			writeMutations(journal);
+		}
+		checkState(replay());
+		// the replay is idempotent
+		checkState(replay());
+	}
+
+	@Test
+	public final void testTornTailIsTruncated()
+	throws Exception {
+		try(final MutationJournal journal = newJournal(0)) {
+			journal.start(new State(), PARALLELISM);
+			writeMutations(journal);
+		}
+		final long validSize = Files.size(file);
+		// the record header with the part of the payload
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			final ByteBuffer tail = ByteBuffer.allocate(12);
+			tail.putInt(100).putInt(0).putInt(1).flip();
+			channel.write(tail);
+		}
+		checkState(replay());
+		assertEquals(validSize, Files.size(file));
+	}
+
+	@Test
+	public final void testCorruptedRecordStopsReplay()
+	throws Exception {
+		try(final MutationJournal journal = newJournal(0)) {
+			journal.start(new State(), PARALLELISM);
+			journal.put("c1", "a", 0, 1, 0, 0);
+			journal.put("c1", "b", 0, 2, 0, 0);
+		}
+		final long size = Files.size(file);
+		// corrupt the last byte of the last record's payload
+		try(final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), size - 1);
+		}
+		final State state = replay();
+		assertEquals(1, state.containers.get("c1").size());
+		assertEquals(1, (long) state.containers.get("c1").get("a"));
+		assertEquals(size / 2, Files.size(file));
+	}
+
+	@Test
+	public final void testRotatedFilesAreReplayedFirst()
+	throws Exception {
+		final Path rotatedFile = dir.resolve("journal.1");
+		try(final MutationJournal journal = newJournal(0)) {
+			journal.start(new State(), PARALLELISM);
+			journal.put("c1", "a", 0, 1, 0, 0);
+			assertTrue(journal.rotate());
+			assertTrue(Files.exists(rotatedFile));
+			journal.put("c1", "a", 0, 2, 0, 0);
+		}
+		assertEquals(2, (long) replay().containers.get("c1").get("a"));
+		try(final MutationJournal journal = newJournal(0)) {
+			journal.start(new State(), PARALLELISM);
+			journal.deleteRotated();
+		}
+		assertFalse(Files.exists(rotatedFile));
+		assertEquals(2, (long) replay().containers.get("c1").get("a"));
+	}
+
+	@Test
+	public final void testFullRingDropsRecords()
+	throws Exception {
+		final int count = 1_000_000;
+		final LongAdder dropListenerCalls = new LongAdder();
+		final long droppedCount;
+		try(
+			final MutationJournal journal = new MutationJournal(
+				file, 0, 2, dropListenerCalls::increment
+			)
+		) {
+			journal.start(new State(), PARALLELISM);
+			// the writer can't keep up with the tight loop so the publishing has to drop
+			for(int i = 0; i < count; i ++) {
+				journal.put("c1", Integer.toString(i), 0, i, 0, 0);
+			}
+			droppedCount = journal.getDroppedCount();
+		}
+		assertTrue(droppedCount > 0);
+		assertEquals(droppedCount, dropListenerCalls.sum());
+		try(final MutationJournal journal = newJournal(0)) {
+			assertEquals(count - droppedCount, journal.start(new State(), PARALLELISM));
+		}
+	}
+}
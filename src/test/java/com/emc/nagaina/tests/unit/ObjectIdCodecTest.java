@@ -0,0 +1,70 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.base.ObjectIdCodec;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ObjectIdCodecTest {
+
+	@Test
+	public final void testRoundTrip()
+	throws Exception {
+		final ObjectIdCodec codec = new ObjectIdCodec(null, Character.MAX_RADIX);
+		for(final String key : new String[] { "0", "z", "00az", "3xk9c0m7q2", "0000000001" }) {
+			final long id = codec.parse(key, codec.start(key));
+			assertEquals(key, codec.format(id, key.length()));
+		}
+		assertEquals(Long.MAX_VALUE, codec.parse("1y2p0ij32e8e7", 0));
+	}
+
+	@Test
+	public final void testRoundTripWithPrefix()
+	throws Exception {
+		final ObjectIdCodec codec = new ObjectIdCodec("dir", 16);
+		final String key = "dir/00ff";
+		final int start = codec.start(key);
+		assertEquals(4, start);
+		final long id = codec.parse(key, start);
+		assertEquals(0xff, id);
+		assertEquals(key, codec.format(id, key.length() - start));
+		assertEquals(-1, codec.start("other/00ff"));
+		assertEquals(-1, codec.parse("other/00ff", codec.start("other/00ff")));
+	}
+
+	@Test
+	public final void testRejectsNotCanonicalDigits()
+	throws Exception {
+		final ObjectIdCodec codec = new ObjectIdCodec(null, Character.MAX_RADIX);
+		// upper case
+		assertEquals(-1, codec.parse("A1", 0));
+		// arabic-indic digit one
+		assertEquals(-1, codec.parse("١", 0));
+		// fullwidth digit one
+		assertEquals(-1, codec.parse("１", 0));
+		// fullwidth small letter a
+		assertEquals(-1, codec.parse("ａ", 0));
+		assertEquals(-1, codec.parse("-1", 0));
+		assertEquals(-1, codec.parse("", 0));
+	}
+
+	@Test
+	public final void testRejectsDigitsOutOfRadix()
+	throws Exception {
+		final ObjectIdCodec codec = new ObjectIdCodec(null, 8);
+		assertEquals(7, codec.parse("7", 0));
+		assertEquals(-1, codec.parse("8", 0));
+		assertEquals(-1, codec.parse("a", 0));
+	}
+
+	@Test
+	public final void testRejectsOverflow()
+	throws Exception {
+		final ObjectIdCodec codec = new ObjectIdCodec(null, Character.MAX_RADIX);
+		assertEquals(-1, codec.parse("1y2p0ij32e8e8", 0));
+		assertEquals(-1, codec.parse("zzzzzzzzzzzzzz", 0));
+	}
+}
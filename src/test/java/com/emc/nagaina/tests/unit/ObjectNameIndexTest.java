@@ -0,0 +1,202 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.ListingCursorCache;
+import com.emc.nagaina.impl.base.ObjectNameIndex;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ObjectNameIndexTest {
+
+	private static ObjectContainerMock<DataItemMock> newContainer(
+		final int capacity, final AtomicReference<ObjectNameIndex<DataItemMock>> indexRef
+	) {
+		return new ConcurrentObjectContainerMock<>(
+			capacity, new StorageMockUsage(null), EvictionPolicy.FIFO,
+			name -> {
+				final ObjectNameIndex<DataItemMock> index = indexRef.get();
+				if(index != null) {
+					index.evicted(name);
+				}
+			}
+		);
+	}
+
+	private static void create(
+		final ObjectContainerMock<DataItemMock> container,
+		final ObjectNameIndex<DataItemMock> index, final String name
+	) {
+		container.put(name, new BasicDataItemMock(name, 0, 1, 0));
+		index.add(name);
+	}
+
+	private static List<String> names(final List<DataItemMock> objects) {
+		final List<String> names = new ArrayList<>(objects.size());
+		for(final DataItemMock obj : objects) {
+			names.add(obj.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public final void testPrefixAndDelimiterListing()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(
+			100, new AtomicReference<>()
+		);
+		for(final String name : new String[] { "b/2", "a", "b/1", "c/x/1", "c/y", "d" }) {
+			container.put(name, new BasicDataItemMock(name, 0, 1, 0));
+		}
+		// the index is built from the container on the first listing
+		final ObjectNameIndex<DataItemMock> index = new ObjectNameIndex<>(container);
+		final List<DataItemMock> objects = new ArrayList<>();
+		final List<String> commonPrefixes = new ArrayList<>();
+		String marker = index.list("", "/", null, objects, commonPrefixes, 3);
+		assertEquals(Arrays.asList("a"), names(objects));
+		assertEquals(Arrays.asList("b/", "c/"), commonPrefixes);
+		assertEquals("c/", marker);
+		objects.clear();
+		commonPrefixes.clear();
+		marker = index.list("", "/", marker, objects, commonPrefixes, 3);
+		assertNull(marker);
+		assertEquals(Arrays.asList("d"), names(objects));
+		assertEquals(0, commonPrefixes.size());
+		objects.clear();
+		assertNull(index.list("c/", null, null, objects, commonPrefixes, 10));
+		assertEquals(Arrays.asList("c/x/1", "c/y"), names(objects));
+	}
+
+	@Test
+	public final void testDelimiterEndingNameMarker()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(
+			100, new AtomicReference<>()
+		);
+		for(final String name : new String[] { "dir/", "dir/a", "dir/b", "dir/c/1", "dir/d" }) {
+			container.put(name, new BasicDataItemMock(name, 0, 1, 0));
+		}
+		final ObjectNameIndex<DataItemMock> index = new ObjectNameIndex<>(container);
+		final List<DataItemMock> objects = new ArrayList<>();
+		final List<String> commonPrefixes = new ArrayList<>();
+		// the "dir/" object is not rolled up under the "dir/" prefix, so its children follow it
+		String marker = index.list("dir/", "/", null, objects, commonPrefixes, 1);
+		assertEquals("dir/", marker);
+		marker = index.list("dir/", "/", marker, objects, commonPrefixes, 3);
+		assertEquals(Arrays.asList("dir/", "dir/a", "dir/b"), names(objects));
+		assertEquals(Arrays.asList("dir/c/"), commonPrefixes);
+		// the common prefix marker skips the names under it
+		marker = index.list("dir/", "/", marker, objects, commonPrefixes, 3);
+		assertNull(marker);
+		assertEquals(Arrays.asList("dir/", "dir/a", "dir/b", "dir/d"), names(objects));
+		// the same by the continuation token issued after the common prefix
+		final ListingCursorCache cache = new ListingCursorCache(0, 60_000);
+		objects.clear();
+		commonPrefixes.clear();
+		ObjectNameIndex.Cursor cursor = index.cursor("dir/", "/", null, false);
+		assertTrue(index.list(cursor, objects, commonPrefixes, 4));
+		final String token = cache.put(cursor);
+		assertEquals("dir/c/", ListingCursorCache.lastListed(token));
+		assertTrue(ListingCursorCache.isLastListedCommonPrefix(token));
+		objects.clear();
+		cursor = index.cursor(
+			"dir/", "/", ListingCursorCache.lastListed(token),
+			ListingCursorCache.isLastListedCommonPrefix(token)
+		);
+		assertFalse(index.list(cursor, objects, commonPrefixes, 4));
+		assertEquals(Arrays.asList("dir/d"), names(objects));
+	}
+
+	@Test
+	public final void testEvictedNamesAreRemoved()
+	throws Exception {
+		final AtomicReference<ObjectNameIndex<DataItemMock>> indexRef = new AtomicReference<>();
+		final ObjectContainerMock<DataItemMock> container = newContainer(10, indexRef);
+		final ObjectNameIndex<DataItemMock> index = new ObjectNameIndex<>(container);
+		indexRef.set(index);
+		index.cursor("", null, null, false);
+		for(int i = 0; i < 1000; i ++) {
+			create(container, index, String.format("%04d", i));
+		}
+		assertEquals(10, container.size());
+		// the index doesn't grow with the evicted names
+		assertEquals(10, index.size());
+		final List<DataItemMock> objects = new ArrayList<>();
+		assertNull(index.list("", null, null, objects, new ArrayList<>(), 100));
+		assertEquals(10, objects.size());
+		assertEquals("0990", objects.get(0).getName());
+	}
+
+	@Test
+	public final void testEvictedNameCreatedAgainIsKept()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(
+			100, new AtomicReference<>()
+		);
+		final ObjectNameIndex<DataItemMock> index = new ObjectNameIndex<>(container);
+		index.cursor("", null, null, false);
+		create(container, index, "a");
+		create(container, index, "b");
+		// the object evicted and created again before the eviction listener is invoked
+		index.evicted("a");
+		container.remove("b");
+		index.evicted("b");
+		assertEquals(1, index.size());
+		final List<DataItemMock> objects = new ArrayList<>();
+		index.list("", null, null, objects, new ArrayList<>(), 10);
+		assertEquals(Arrays.asList("a"), names(objects));
+	}
+
+	@Test
+	public final void testStorageListingWithoutPrefix()
+	throws Exception {
+		try(
+			final TestStorageMock storageMock = new TestStorageMock(TestStorageMock.defaultConfig())
+		) {
+			storageMock.createContainer("c1");
+			final Set<String> createdNames = new HashSet<>();
+			for(int i = 0; i < 10; i ++) {
+				storageMock.createObject("c1", "obj" + i, 0, 1);
+				createdNames.add("obj" + i);
+			}
+			final List<DataItemMock> objects = new ArrayList<>();
+			final List<String> commonPrefixes = new ArrayList<>();
+			String token = null;
+			do {
+				token = storageMock.listObjectsPage(
+					"c1", null, null, token, null, objects, commonPrefixes, 3
+				);
+			} while(token != null);
+			assertEquals(createdNames, new HashSet<>(names(objects)));
+			assertEquals(10, objects.size());
+			assertEquals(0, commonPrefixes.size());
+			objects.clear();
+			String marker = null;
+			do {
+				marker = storageMock.listObjects(
+					"c1", "", null, marker, objects, commonPrefixes, 4
+				);
+			} while(marker != null);
+			assertEquals(createdNames, new HashSet<>(names(objects)));
+			assertEquals(10, objects.size());
+		}
+	}
+}
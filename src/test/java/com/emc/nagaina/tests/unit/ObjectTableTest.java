@@ -0,0 +1,149 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.CompactObjectContainerMock;
+import com.emc.nagaina.impl.base.HeapObjectTable;
+import com.emc.nagaina.impl.base.ObjectTable;
+import com.emc.nagaina.impl.base.ObjectTableFactory;
+import com.emc.nagaina.impl.base.OffHeapObjectTable;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ObjectTableTest {
+
+	private static final int SLOT_COUNT = 0x20000; // more than one off-heap slab
+
+	private static void fill(final ObjectTable table) {
+		for(int i = 0; i < table.slotCount(); i += 3) {
+			table.store(i, i * 7L, 1 + i % 10, i, i % 5, ~ (long) i);
+		}
+	}
+
+	private static void check(final ObjectTable table) {
+		for(int i = 0; i < table.slotCount(); i ++) {
+			if(i % 3 == 0) {
+				assertFalse(table.isFree(i));
+				assertEquals(i * 7L, table.id(i));
+				assertEquals(1 + i % 10, table.idLength(i));
+				assertEquals(i, table.size(i));
+				assertEquals(i % 5, table.layer(i));
+				assertEquals(~ (long) i, table.mask(i));
+			} else {
+				assertTrue(table.isFree(i));
+			}
+		}
+	}
+
+	private static void testStoreAndLoad(final ObjectTableFactory factory)
+	throws Exception {
+		final ObjectTable table = factory.newTable(SLOT_COUNT);
+		assertEquals(SLOT_COUNT, table.slotCount());
+		fill(table);
+		check(table);
+		// the zero size object should not be taken for the free slot
+		assertFalse(table.isFree(0));
+		table.free(3);
+		assertTrue(table.isFree(3));
+		table.store(3, 21, 4, 3, 3, ~ 3L);
+		final Path file = Files.createTempFile(ObjectTableTest.class.getSimpleName(), ".bin");
+		try {
+			try(
+				final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)
+			) {
+				// the records may be preceded by the header
+				channel.position(100);
+				table.write(channel);
+			}
+			// the private mapping requires the channel opened for the writing too
+			try(
+				final FileChannel channel = FileChannel.open(
+					file, StandardOpenOption.READ, StandardOpenOption.WRITE
+				)
+			) {
+				final ObjectTable loadedTable = factory.loadTable(channel, 100, SLOT_COUNT);
+				check(loadedTable);
+				// the loaded table should be writable
+				loadedTable.free(0);
+				assertTrue(loadedTable.isFree(0));
+				loadedTable.release();
+			}
+		} finally {
+			table.release();
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public final void testHeapTable()
+	throws Exception {
+		testStoreAndLoad(HeapObjectTable.FACTORY);
+	}
+
+	@Test
+	public final void testOffHeapTable()
+	throws Exception {
+		final AtomicLong budget = new AtomicLong(Long.MAX_VALUE);
+		testStoreAndLoad(OffHeapObjectTable.factory(budget));
+		assertEquals(Long.MAX_VALUE, budget.get());
+	}
+
+	@Test
+	public final void testOffHeapBudget()
+	throws Exception {
+		final long tableMemSize = 0x100 * OffHeapObjectTable.RECORD_SIZE;
+		final AtomicLong budget = new AtomicLong(tableMemSize);
+		final ObjectTable table = OffHeapObjectTable.allocate(0x100, budget, false);
+		assertNotNull(table);
+		assertEquals(0, budget.get());
+		assertNull(OffHeapObjectTable.allocate(0x100, budget, false));
+		assertEquals(0, budget.get());
+		// the forced allocation may exceed the budget
+		final ObjectTable forcedTable = OffHeapObjectTable.allocate(0x100, budget, true);
+		assertNotNull(forcedTable);
+		assertEquals(-tableMemSize, budget.get());
+		forcedTable.release();
+		table.release();
+		assertEquals(tableMemSize, budget.get());
+	}
+
+	@Test
+	public final void testContainerEvictsWhenBudgetIsExhausted()
+	throws Exception {
+		final int slotCount = 0x40;
+		// enough for the table and the previous table while growing
+		final AtomicLong budget = new AtomicLong(
+			(slotCount + (slotCount >> 1)) * OffHeapObjectTable.RECORD_SIZE
+		);
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final CompactObjectContainerMock<DataItemMock> container = new CompactObjectContainerMock<>(
+			Integer.MAX_VALUE, usage, null, 10, OffHeapObjectTable.factory(budget), name -> {}
+		);
+		String name;
+		for(long id = 0; id < 1000; id ++) {
+			name = Long.toString(id);
+			container.put(name, new BasicDataItemMock(name, id, 1, 0));
+		}
+		// the larger table doesn't fit the budget so the load factor grows up to 7/8
+		assertTrue(container.size() <= slotCount - (slotCount >> 3));
+		assertTrue(container.size() > slotCount - (slotCount >> 2));
+		assertEquals(container.size(), usage.count());
+		assertEquals("999", container.get("999").getName());
+		container.close();
+	}
+}
@@ -0,0 +1,154 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.DataItemMockVersion;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ObjectVersionChains;
+import com.emc.nagaina.ui.config.Config;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ObjectVersionChainsTest {
+
+	private static final String NAME = "obj";
+	private static final long OFFSET = 123;
+
+	/**
+	 Overwrites the object with the sizes given, the size of the initial version is 0
+	 */
+	private static ObjectVersionChains overwrite(final long... sizes)
+	throws Exception {
+		final ObjectVersionChains chains = new ObjectVersionChains();
+		DataItemMock prevObj;
+		long prevSize = 0;
+		assertEquals(1, chains.created(NAME, OFFSET, null));
+		for(int i = 0; i < sizes.length; i ++) {
+			prevObj = new BasicDataItemMock(NAME, OFFSET, prevSize, i, 1L << i);
+			assertEquals(i + 2, chains.created(NAME, OFFSET, prevObj));
+			prevSize = sizes[i];
+		}
+		return chains;
+	}
+
+	@Test
+	public final void testVersionsAreKept()
+	throws Exception {
+		// more versions than the initial chain's capacity
+		final ObjectVersionChains chains = overwrite(10, 20, 30, 40);
+		assertEquals(5, chains.currentVersion(NAME));
+		for(int version = 1; version < 5; version ++) {
+			final BasicDataItemMock item = chains.get(NAME, version);
+			assertEquals(NAME, item.getName());
+			assertEquals(OFFSET, item.offset());
+			assertEquals((version - 1) * 10, item.size());
+			assertEquals(version - 1, item.layer());
+			assertEquals(1L << (version - 1), item.getModifiedRangesMask());
+		}
+		// the current version is not in the chain
+		assertNull(chains.get(NAME, 5));
+		assertNull(chains.get(NAME, 6));
+		assertEquals(1, chains.currentVersion("other"));
+		assertNull(chains.get("other", 1));
+	}
+
+	@Test
+	public final void testRemoveVersion()
+	throws Exception {
+		final ObjectVersionChains chains = overwrite(10, 20);
+		assertTrue(chains.remove(NAME, 2));
+		assertFalse(chains.remove(NAME, 2));
+		assertNull(chains.get(NAME, 2));
+		assertEquals(0, chains.get(NAME, 1).size());
+		// the removed version's number is not reused
+		chains.created(NAME, OFFSET, new BasicDataItemMock(NAME, OFFSET, 20, 0));
+		assertEquals(4, chains.currentVersion(NAME));
+		assertNull(chains.get(NAME, 2));
+		assertEquals(20, chains.get(NAME, 3).size());
+	}
+
+	@Test
+	public final void testPromoteLatest()
+	throws Exception {
+		final ObjectVersionChains chains = overwrite(10, 20);
+		BasicDataItemMock promoted = chains.promoteLatest(NAME);
+		assertEquals(10, promoted.size());
+		assertEquals(2, chains.currentVersion(NAME));
+		assertNull(chains.get(NAME, 2));
+		promoted = chains.promoteLatest(NAME);
+		assertEquals(0, promoted.size());
+		assertEquals(1, chains.currentVersion(NAME));
+		assertNull(chains.promoteLatest(NAME));
+		assertEquals(1, chains.currentVersion(NAME));
+	}
+
+	@Test
+	public final void testEvictedObjectDropsTheChain()
+	throws Exception {
+		final ObjectVersionChains chains = overwrite(10, 20);
+		// the object was evicted and created again
+		assertEquals(1, chains.created(NAME, OFFSET, null));
+		assertEquals(1, chains.currentVersion(NAME));
+		assertNull(chains.get(NAME, 1));
+		assertNull(chains.get(NAME, 2));
+	}
+
+	@Test
+	public final void testListFromTheNewest()
+	throws Exception {
+		final ObjectVersionChains chains = overwrite(10, 20);
+		final List<DataItemMockVersion<DataItemMock>> versions = new ArrayList<>();
+		chains.list(new BasicDataItemMock(NAME, OFFSET, 20), versions);
+		assertEquals(3, versions.size());
+		assertEquals(3, versions.get(0).getVersion());
+		assertTrue(versions.get(0).isLatest());
+		assertEquals(20, versions.get(0).getItem().size());
+		assertEquals(2, versions.get(1).getVersion());
+		assertFalse(versions.get(1).isLatest());
+		assertEquals(10, versions.get(1).getItem().size());
+		assertEquals(1, versions.get(2).getVersion());
+		assertEquals(0, versions.get(2).getItem().size());
+		versions.clear();
+		chains.list(new BasicDataItemMock("other", 0, 1), versions);
+		assertEquals(1, versions.size());
+		assertEquals(1, versions.get(0).getVersion());
+		assertTrue(versions.get(0).isLatest());
+	}
+
+	@Test
+	public final void testStorageVersions()
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		config.getStorageConfig().getNetConfig().getHttpConfig().setVersioning(true);
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.createContainer("c1");
+			assertEquals(1, storageMock.createObject("c1", NAME, 0, 10));
+			assertEquals(2, storageMock.createObject("c1", NAME, 0, 20));
+			assertEquals(3, storageMock.createObject("c1", NAME, 0, 30));
+			assertEquals(10, storageMock.getObjectVersion("c1", NAME, 1).size());
+			assertEquals(30, storageMock.getObjectVersion("c1", NAME, 3).size());
+			assertNull(storageMock.getObjectVersion("c1", NAME, 4));
+			final List<DataItemMockVersion<DataItemMock>> versions = new ArrayList<>();
+			assertNull(storageMock.listObjectVersions("c1", null, versions, 10));
+			assertEquals(3, versions.size());
+			// delete the current version, the latest remaining one becomes current
+			assertTrue(storageMock.deleteObjectVersion("c1", NAME, 3));
+			assertEquals(20, storageMock.getObjectVersion("c1", NAME, 2).size());
+			assertEquals(20, storageMock.getContainer("c1").get(NAME).size());
+			assertTrue(storageMock.deleteObjectVersion("c1", NAME, 1));
+			assertFalse(storageMock.deleteObjectVersion("c1", NAME, 1));
+			assertTrue(storageMock.deleteObjectVersion("c1", NAME, 2));
+			assertNull(storageMock.getContainer("c1").get(NAME));
+			assertEquals(0, storageMock.getSize());
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.base.BasicDataItemMockFactory;
+import com.emc.nagaina.impl.base.ParallelCsvItemLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ParallelCsvItemLoaderTest {
+
+	private Path file;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		file = Files.createTempFile(ParallelCsvItemLoaderTest.class.getSimpleName(), ".csv");
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		Files.delete(file);
+	}
+
+	@Test
+	public final void testLoadSkipsEmptyAndInvalidLines()
+	throws Exception {
+		final String content = "a,0,1,0/0\r\n" + "\n" + "invalid\n" + "container/b,a,2,1/0\n" +
+			"/container/c,b,3,0/1";
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		final Map<String, DataItemMock> items = new ConcurrentHashMap<>();
+		final ParallelCsvItemLoader<DataItemMock> loader = new ParallelCsvItemLoader<>(
+			file, new BasicDataItemMockFactory<>(), item -> items.put(item.getName(), item)
+		);
+		assertEquals(3, loader.load(4));
+		assertEquals(3, loader.getCount());
+		assertEquals(1, loader.getInvalidCount());
+		assertEquals(3, items.size());
+		assertEquals(1, items.get("a").size());
+		assertEquals(0xa, items.get("container/b").offset());
+		assertEquals(1, items.get("container/b").layer());
+		// the last line without the line end
+		assertEquals(3, items.get("/container/c").size());
+	}
+
+	@Test
+	public final void testEveryLineIsLoadedOnceAcrossRanges()
+	throws Exception {
+		// the file is larger than 2 ranges so the range boundaries split some lines
+		final long lineCount = 1_500_000;
+		try(final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for(long i = 0; i < lineCount; i ++) {
+				writer.write("item" + i + ',' + Long.toHexString(i) + ",1,0/0\n");
+			}
+		}
+		final LongAdder offsetSum = new LongAdder();
+		final ParallelCsvItemLoader<DataItemMock> loader = new ParallelCsvItemLoader<>(
+			file, new BasicDataItemMockFactory<>(), item -> offsetSum.add(item.offset())
+		);
+		assertEquals(lineCount, loader.load(4));
+		assertEquals(0, loader.getInvalidCount());
+		assertEquals(lineCount * (lineCount - 1) / 2, offsetSum.sum());
+	}
+}
@@ -0,0 +1,142 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.RequestHandlerBase;
+import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+import com.emc.nagaina.impl.http.request.TokenBucketRateLimiter;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.LastHttpContent;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class RateLimitedRequestHandlingTest {
+
+	private static void writeRequest(final EmbeddedChannel channel, final String containerName) {
+		channel.writeInbound(
+			new DefaultHttpRequest(
+				HTTP_1_1, HttpMethod.GET, "/v1/ns1/" + containerName + "?format=plain"
+			)
+		);
+		channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+	}
+
+	private static String readResponse(final EmbeddedChannel channel) {
+		final FullHttpResponse response = channel.readOutbound();
+		if(response == null) {
+			return null;
+		}
+		final String content = response.content().toString(StandardCharsets.UTF_8);
+		response.release();
+		return content;
+	}
+
+	private static String awaitResponse(final EmbeddedChannel channel)
+	throws InterruptedException {
+		final long startMillis = System.currentTimeMillis();
+		String response;
+		while(null == (response = readResponse(channel))) {
+			assertTrue(System.currentTimeMillis() - startMillis < 10_000);
+			Thread.sleep(10);
+			channel.runPendingTasks();
+		}
+		return response;
+	}
+
+	@Test
+	public final void testDeferredRequestsAreAnsweredInOrder()
+	throws Exception {
+		try(
+			final TestStorageMock storageMock = new TestStorageMock(TestStorageMock.defaultConfig())
+		) {
+			for(int i = 0; i < 4; i ++) {
+				storageMock.createContainer("c" + i);
+				storageMock.createObject("c" + i, "object-of-c" + i, 0, 1);
+			}
+			// the first request's handling is slow, so it's not measured
+			final EmbeddedChannel warmUpChannel = new EmbeddedChannel(
+				new SwiftRequestHandler<DataItemMock>(
+					null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+				)
+			);
+			writeRequest(warmUpChannel, "c0");
+			assertEquals("object-of-c0\n", readResponse(warmUpChannel));
+			warmUpChannel.finishAndReleaseAll();
+			// one request per 100ms, the first two requests are not delayed
+			final EmbeddedChannel channel = new EmbeddedChannel(
+				new SwiftRequestHandler<DataItemMock>(
+					new TokenBucketRateLimiter(10), null, null, null, null, null,
+					Character.MAX_RADIX, storageMock, null
+				)
+			);
+			for(int i = 0; i < 4; i ++) {
+				writeRequest(channel, "c" + i);
+			}
+			assertEquals("object-of-c0\n", readResponse(channel));
+			assertEquals("object-of-c1\n", readResponse(channel));
+			assertNull(readResponse(channel));
+			// the deferred requests don't stop the channel reading
+			assertTrue(channel.config().isAutoRead());
+			final long startMillis = System.currentTimeMillis();
+			assertEquals("object-of-c2\n", awaitResponse(channel));
+			assertEquals("object-of-c3\n", awaitResponse(channel));
+			assertTrue(System.currentTimeMillis() - startMillis >= 150);
+			assertTrue(channel.config().isAutoRead());
+			channel.finishAndReleaseAll();
+		}
+	}
+
+	@Test
+	public final void testTooManyWaitingRequestsPauseReading()
+	throws Exception {
+		try(
+			final TestStorageMock storageMock = new TestStorageMock(TestStorageMock.defaultConfig())
+		) {
+			storageMock.createContainer("c0");
+			storageMock.createObject("c0", "object-of-c0", 0, 1);
+			final EmbeddedChannel warmUpChannel = new EmbeddedChannel(
+				new SwiftRequestHandler<DataItemMock>(
+					null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+				)
+			);
+			writeRequest(warmUpChannel, "c0");
+			assertEquals("object-of-c0\n", readResponse(warmUpChannel));
+			warmUpChannel.finishAndReleaseAll();
+			final EmbeddedChannel channel = new EmbeddedChannel(
+				new SwiftRequestHandler<DataItemMock>(
+					new TokenBucketRateLimiter(100), null, null, null, null, null,
+					Character.MAX_RADIX, storageMock, null
+				)
+			);
+			// a few first requests are not delayed, the next one is deferred; the requests are
+			// passed to the pipeline directly, so the deferred one is not processed meanwhile
+			final int requestCount = 2 * RequestHandlerBase.MAX_WAITING_REQUEST_COUNT;
+			for(int i = 0; i < requestCount; i ++) {
+				channel.pipeline().fireChannelRead(
+					new DefaultHttpRequest(HTTP_1_1, HttpMethod.GET, "/v1/ns1/c0?format=plain")
+				);
+				channel.pipeline().fireChannelRead(LastHttpContent.EMPTY_LAST_CONTENT);
+			}
+			channel.pipeline().fireChannelReadComplete();
+			assertFalse(channel.config().isAutoRead());
+			for(int i = 0; i < requestCount; i ++) {
+				assertEquals("object-of-c0\n", awaitResponse(channel));
+			}
+			assertTrue(channel.config().isAutoRead());
+			channel.finishAndReleaseAll();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.LatencyProfile;
+import com.emc.nagaina.impl.http.request.ResponseDelayHandler;
+import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ResponseDelayHandlerTest {
+
+	private static final String CONTAINER_NAME = "c1";
+	// the container listing latency
+	private static final long LIST_LATENCY_MILLIS = 100;
+
+	private TestStorageMock storageMock;
+	private EmbeddedChannel channel;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		storageMock = new TestStorageMock(TestStorageMock.defaultConfig());
+		storageMock.createContainer(CONTAINER_NAME);
+		storageMock.createObject(CONTAINER_NAME, "a", 0, 1);
+		channel = new EmbeddedChannel(
+			new ResponseDelayHandler(),
+			new SwiftRequestHandler<DataItemMock>(
+				null, null,
+				new LatencyProfile(null, null, null, null, "fixed:" + LIST_LATENCY_MILLIS),
+				null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		channel.finishAndReleaseAll();
+		storageMock.close();
+	}
+
+	private void writeRequest(final HttpMethod method) {
+		channel.writeInbound(
+			new DefaultHttpRequest(HTTP_1_1, method, "/v1/ns1/" + CONTAINER_NAME + "?format=plain")
+		);
+		channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+	}
+
+	private FullHttpResponse awaitResponse()
+	throws InterruptedException {
+		final long startMillis = System.currentTimeMillis();
+		FullHttpResponse response;
+		while(null == (response = channel.readOutbound())) {
+			assertTrue(System.currentTimeMillis() - startMillis < 10_000);
+			Thread.sleep(5);
+			channel.runPendingTasks();
+		}
+		return response;
+	}
+
+	@Test
+	public final void testResponseIsDelayed()
+	throws Exception {
+		final long startNanos = System.nanoTime();
+		writeRequest(HttpMethod.GET);
+		assertNull(channel.readOutbound());
+		final FullHttpResponse response = awaitResponse();
+		assertTrue(System.nanoTime() - startNanos >= LIST_LATENCY_MILLIS * 1_000_000);
+		assertEquals("a\n", response.content().toString(StandardCharsets.UTF_8));
+		response.release();
+	}
+
+	@Test
+	public final void testUndelayedResponseDoesntOvertake()
+	throws Exception {
+		writeRequest(HttpMethod.GET);
+		// the container existence check has no latency
+		writeRequest(HttpMethod.HEAD);
+		assertNull(channel.readOutbound());
+		final FullHttpResponse listResponse = awaitResponse();
+		assertEquals("a\n", listResponse.content().toString(StandardCharsets.UTF_8));
+		listResponse.release();
+		final FullHttpResponse headResponse = awaitResponse();
+		assertEquals(HttpResponseStatus.OK, headResponse.status());
+		assertEquals(0, headResponse.content().readableBytes());
+		headResponse.release();
+	}
+
+	@Test
+	public final void testPendingResponsesAreDiscardedOnClose()
+	throws Exception {
+		writeRequest(HttpMethod.GET);
+		writeRequest(HttpMethod.GET);
+		channel.close();
+		Thread.sleep(LIST_LATENCY_MILLIS * 2);
+		channel.runPendingTasks();
+		assertNull(channel.readOutbound());
+		assertFalse(channel.isActive());
+	}
+}
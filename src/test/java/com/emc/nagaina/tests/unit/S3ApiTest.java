@@ -89,23 +89,13 @@ public class S3ApiTest {
 		this.concurrency = concurrency;
 		objIds = new ArrayList<>(objCount);
 
-		final StorageConfig.MockConfig mockConfig = storageConfig.getMockConfig();
-		final StorageConfig.MockConfig.ContainerConfig containerConfig = mockConfig.getContainerConfig();
-		final StorageConfig.MockConfig.FailConfig failConfig = mockConfig.getFailConfig();
-		final StorageConfig.NetConfig netConfig = storageConfig.getNetConfig();
-		final ItemConfig.NamingConfig namingConfig = itemConfig.getNamingConfig();
 		final ItemConfig.DataConfig.ContentConfig contentConfig = itemConfig.getDataConfig().getContentConfig();
 		final DataInput dataInput = DataInput.getInstance(
 			contentConfig.getFile(), contentConfig.getSeed(), contentConfig.getRingConfig().getSize(),
 			contentConfig.getRingConfig().getCache()
 		);
 
-		storageMock = new StorageMockFactory(
-			itemConfig.getInputConfig().getFile(), mockConfig.getCapacity(), containerConfig.getCapacity(),
-			containerConfig.getCountLimit(), (int) stepConfig.getMetricsConfig().getPeriod(), failConfig.getConnections(),
-			failConfig.getResponses(), dataInput, netConfig.getNodeConfig().getPort(), netConfig.getSsl(),
-			(float) stepConfig.getLimitConfig().getRate(), namingConfig.getPrefix(), namingConfig.getRadix()
-		)
+		storageMock = new StorageMockFactory(itemConfig, storageConfig, stepConfig, dataInput)
 			.newStorageMock();
 		storageMock.start();
 		
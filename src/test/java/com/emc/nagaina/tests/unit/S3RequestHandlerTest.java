@@ -0,0 +1,158 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.S3RequestHandler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ Created by agent on 18.10.26.
+ */
+public class S3RequestHandlerTest {
+
+	private static final String BUCKET_NAME = "b1";
+
+	private TestStorageMock storageMock;
+	private EmbeddedChannel channel;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		storageMock = new TestStorageMock(TestStorageMock.defaultConfig());
+		storageMock.createContainer(BUCKET_NAME);
+		channel = new EmbeddedChannel(
+			new S3RequestHandler<DataItemMock>(
+				null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		channel.finishAndReleaseAll();
+		storageMock.close();
+	}
+
+	/**
+	 @return the response head, the content is appended to the given output stream
+	 */
+	private HttpResponse request(final String uri, final ByteArrayOutputStream content) {
+		return request(HttpMethod.GET, uri, content);
+	}
+
+	private HttpResponse request(
+		final HttpMethod method, final String uri, final ByteArrayOutputStream content
+	) {
+		channel.writeInbound(new DefaultHttpRequest(HTTP_1_1, method, uri));
+		channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+		channel.flush();
+		final HttpResponse head = channel.readOutbound();
+		if(head instanceof FullHttpResponse) {
+			readContent(((FullHttpResponse) head).content(), content);
+		} else {
+			HttpContent chunk;
+			do {
+				chunk = channel.readOutbound();
+				readContent(chunk.content(), content);
+			} while(!(chunk instanceof LastHttpContent));
+		}
+		return head;
+	}
+
+	private static void readContent(final ByteBuf buff, final ByteArrayOutputStream out) {
+		final byte bytes[] = new byte[buff.readableBytes()];
+		buff.readBytes(bytes);
+		out.write(bytes, 0, bytes.length);
+		buff.release();
+	}
+
+	@Test
+	public final void testInvalidMaxKeys()
+	throws Exception {
+		for(
+			final String query : new String[] {
+				"max-keys=abc", "max-keys=-1", "list-type=2&max-keys=99999999999",
+				"prefix=a&max-keys=", "versions&max-keys=x"
+			}
+		) {
+			assertEquals(
+				query, HttpResponseStatus.BAD_REQUEST,
+				request("/" + BUCKET_NAME + "?" + query, new ByteArrayOutputStream()).status()
+			);
+		}
+	}
+
+	@Test
+	public final void testListV2InNameOrder()
+	throws Exception {
+		for(final String name : new String[] { "d", "b", "e", "a", "c" }) {
+			storageMock.createObject(BUCKET_NAME, name, 0, 1);
+		}
+		final List<String> keys = new ArrayList<>();
+		String token = null;
+		do {
+			final ByteArrayOutputStream content = new ByteArrayOutputStream();
+			final HttpResponse head = request(
+				"/" + BUCKET_NAME + "?list-type=2&max-keys=2&start-after=a" +
+					(token == null ? "" : "&continuation-token=" + token),
+				content
+			);
+			assertEquals(HttpResponseStatus.OK, head.status());
+			assertEquals(
+				"application/xml; charset=utf-8", head.headers().get(HttpHeaderNames.CONTENT_TYPE)
+			);
+			final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+				new ByteArrayInputStream(content.toByteArray())
+			);
+			final NodeList keyNodes = doc.getElementsByTagName("Key");
+			for(int i = 0; i < keyNodes.getLength(); i ++) {
+				keys.add(keyNodes.item(i).getTextContent());
+			}
+			final NodeList tokenNodes = doc.getElementsByTagName("NextContinuationToken");
+			token = tokenNodes.getLength() == 0 ? null : tokenNodes.item(0).getTextContent();
+		} while(token != null);
+		assertEquals(Arrays.asList("b", "c", "d", "e"), keys);
+	}
+
+	@Test
+	public final void testNestedObjectName()
+	throws Exception {
+		storageMock.createObject(BUCKET_NAME, "a/b/c", 0, 1);
+		final ByteArrayOutputStream listing = new ByteArrayOutputStream();
+		request("/" + BUCKET_NAME + "?prefix=a/&delimiter=/", listing);
+		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+			new ByteArrayInputStream(listing.toByteArray())
+		);
+		assertEquals("a/b/", doc.getElementsByTagName("Prefix").item(1).getTextContent());
+		// the object is addressed by the full name
+		request(HttpMethod.DELETE, "/" + BUCKET_NAME + "/a/b/c", new ByteArrayOutputStream());
+		assertNull(storageMock.getObject(BUCKET_NAME, "a/b/c", 0, 0));
+	}
+}
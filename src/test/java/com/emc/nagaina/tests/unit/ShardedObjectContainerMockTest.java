@@ -0,0 +1,151 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.ShardedObjectContainerMock;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+import com.emc.nagaina.impl.base.WeightlessObjectContainerMock;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ShardedObjectContainerMockTest {
+
+	private static final int SHARD_COUNT = 4;
+
+	@SuppressWarnings("unchecked")
+	private static ShardedObjectContainerMock<DataItemMock> newContainer(final boolean sorted) {
+		final StorageMockUsage usage = new StorageMockUsage(null);
+		final ObjectContainerMock<DataItemMock> shards[] = new ObjectContainerMock[SHARD_COUNT];
+		for(int i = 0; i < SHARD_COUNT; i ++) {
+			shards[i] = sorted ?
+				new ConcurrentObjectContainerMock<>(100, usage, EvictionPolicy.NONE, name -> {}) :
+				new WeightlessObjectContainerMock<>(100, usage, name -> {});
+		}
+		return new ShardedObjectContainerMock<>(shards, usage, sorted);
+	}
+
+	private static List<String> fill(
+		final ObjectContainerMock<DataItemMock> container, final int count
+	) {
+		final List<String> names = new ArrayList<>(count);
+		for(int i = 0; i < count; i ++) {
+			final String name = String.format("%03d", i);
+			container.put(name, new BasicDataItemMock(name, 0, 1, 0));
+			names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 @return the names listed page by page
+	 */
+	private static List<String> listAll(
+		final ObjectContainerMock<DataItemMock> container, final int limit
+	) {
+		final List<String> names = new ArrayList<>();
+		final List<DataItemMock> page = new ArrayList<>(limit);
+		DataItemMock lastObject = null;
+		do {
+			page.clear();
+			lastObject = container.list(
+				lastObject == null ? null : lastObject.getName(), page, limit
+			);
+			assertTrue(page.size() <= limit);
+			for(final DataItemMock obj : page) {
+				names.add(obj.getName());
+			}
+		} while(lastObject != null);
+		return names;
+	}
+
+	@Test
+	public final void testShardIndex()
+	throws Exception {
+		final int counts[] = new int[SHARD_COUNT];
+		for(int i = 0; i < 10_000; i ++) {
+			final int shardIndex = ShardedObjectContainerMock.shardIndex("obj" + i, SHARD_COUNT);
+			assertEquals(
+				shardIndex, ShardedObjectContainerMock.shardIndex("obj" + i, SHARD_COUNT)
+			);
+			counts[shardIndex] ++;
+		}
+		for(final int count : counts) {
+			assertTrue(count > 2000);
+		}
+	}
+
+	@Test
+	public final void testPutGetRemove()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(true);
+		final List<String> names = fill(container, 100);
+		assertEquals(100, container.size());
+		for(final String name : names) {
+			assertEquals(name, container.get(name).getName());
+		}
+		final DataItemMock obj = container.get("042");
+		assertSame(obj, container.remove("042"));
+		assertNull(container.get("042"));
+		assertEquals(99, container.size());
+		final Set<String> valueNames = new HashSet<>();
+		for(final DataItemMock value : container.values()) {
+			valueNames.add(value.getName());
+		}
+		assertEquals(99, valueNames.size());
+		assertEquals(99, container.values().size());
+	}
+
+	@Test
+	public final void testSortedShardsListingIsMerged()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(true);
+		final List<String> names = fill(container, 100);
+		assertEquals(names, listAll(container, 7));
+		assertEquals(names, listAll(container, 1000));
+	}
+
+	@Test
+	public final void testUnsortedShardsListing()
+	throws Exception {
+		final ObjectContainerMock<DataItemMock> container = newContainer(false);
+		final List<String> names = fill(container, 100);
+		final List<String> listedNames = listAll(container, 7);
+		assertEquals(names.size(), listedNames.size());
+		assertEquals(new HashSet<>(names), new HashSet<>(listedNames));
+	}
+
+	@Test
+	public final void testReservedPutIsAccountedOnce()
+	throws Exception {
+		for(final boolean sorted : new boolean[] { true, false }) {
+			final ShardedObjectContainerMock<DataItemMock> container = newContainer(sorted);
+			assertTrue(container.reserveCount());
+			assertTrue(container.reserve(10));
+			assertNull(container.putReserved("a", new BasicDataItemMock("a", 0, 10, 0), true));
+			assertEquals(1, container.size());
+			assertEquals(10, container.sizeBytes());
+			// the overwrite accounts the size difference only
+			assertTrue(container.reserve(4));
+			container.putReserved("a", new BasicDataItemMock("a", 0, 4, 0), false);
+			assertEquals(1, container.size());
+			assertEquals(4, container.sizeBytes());
+			container.put("b", new BasicDataItemMock("b", 0, 6, 0));
+			assertEquals(10, container.sizeBytes());
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+import com.emc.nagaina.ui.config.Config;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.LastHttpContent;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class ShardedRequestHandlingTest {
+
+	private static final int SHARD_COUNT = 4;
+	private static final int CONTAINER_COUNT = 16;
+
+	private static Config newConfig(final String containerType)
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		config.getStorageConfig().getMockConfig().setShards(SHARD_COUNT);
+		config.getStorageConfig().getMockConfig().getContainerConfig().setType(containerType);
+		return config;
+	}
+
+	@Test
+	public final void testShardsRequireConcurrentContainers()
+	throws Exception {
+		try(final TestStorageMock storageMock = new TestStorageMock(newConfig("lru"))) {
+			assertEquals(0, storageMock.getShardCount());
+		}
+	}
+
+	@Test
+	public final void testPipelinedResponsesAreOrdered()
+	throws Exception {
+		final EventLoopGroup group = new DefaultEventLoopGroup(SHARD_COUNT);
+		try(final TestStorageMock storageMock = new TestStorageMock(newConfig("concurrent"))) {
+			assertEquals(SHARD_COUNT, storageMock.getShardCount());
+			for(int i = 0; i < CONTAINER_COUNT; i ++) {
+				storageMock.createContainer("c" + i);
+			}
+			storageMock.createContainer("l");
+			storageMock.createObject("l", "object-of-l", 0, 1);
+			final LocalAddress addr = new LocalAddress("sharded-request-handling-test");
+			final Channel serverChannel = new ServerBootstrap()
+				.group(group)
+				.channel(LocalServerChannel.class)
+				.childHandler(
+					new SwiftRequestHandler<DataItemMock>(
+						null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+					)
+				)
+				.bind(addr).sync().channel();
+			final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+			final Channel clientChannel = new Bootstrap()
+				.group(group)
+				.channel(LocalChannel.class)
+				.handler(
+					new ChannelInboundHandlerAdapter() {
+						@Override
+						public final void channelRead(
+							final ChannelHandlerContext ctx, final Object msg
+						) {
+							final FullHttpResponse response = (FullHttpResponse) msg;
+							responses.add(
+								response.status().code() + " " +
+									response.content().toString(StandardCharsets.UTF_8)
+							);
+							response.release();
+						}
+					}
+				)
+				.connect(addr).sync().channel();
+			try {
+				// the object requests are handed over to the objects' shards owners while the
+				// container listings are processed by the channel's event loop
+				final int requestCount = 1000;
+				final List<String> expectedResponses = new ArrayList<>(requestCount);
+				for(int i = 0; i < requestCount; i ++) {
+					final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+					final String uri;
+					if(rnd.nextInt(4) == 0) {
+						uri = "/v1/ns1/l?format=plain";
+						expectedResponses.add("200 object-of-l\n");
+					} else if(rnd.nextBoolean()) {
+						uri = "/v1/ns1/c" + rnd.nextInt(CONTAINER_COUNT) + "/o" + rnd.nextInt();
+						expectedResponses.add("200 ");
+					} else {
+						uri = "/v1/ns1/x" + rnd.nextInt(CONTAINER_COUNT) + "/o" + rnd.nextInt();
+						expectedResponses.add("404 ");
+					}
+					final HttpMethod method = uri.endsWith("plain") ?
+						HttpMethod.GET : HttpMethod.DELETE;
+					clientChannel.write(new DefaultHttpRequest(HTTP_1_1, method, uri));
+					clientChannel.write(LastHttpContent.EMPTY_LAST_CONTENT);
+				}
+				clientChannel.flush();
+				for(final String expectedResponse : expectedResponses) {
+					assertEquals(expectedResponse, responses.poll(10, TimeUnit.SECONDS));
+				}
+			} finally {
+				clientChannel.close().sync();
+				serverChannel.close().sync();
+			}
+		} finally {
+			group.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+		}
+	}
+}
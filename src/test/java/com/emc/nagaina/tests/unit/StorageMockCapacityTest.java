@@ -0,0 +1,80 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.exception.StorageMockCapacityLimitReachedException;
+import com.emc.nagaina.ui.config.Config;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class StorageMockCapacityTest {
+
+	private static final String CONTAINER = "container0";
+
+	private static TestStorageMock newStorageMock(final int capacity)
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		config.getStorageConfig().getMockConfig().setCapacity(capacity);
+		final TestStorageMock storageMock = new TestStorageMock(config);
+		storageMock.createContainer(CONTAINER);
+		return storageMock;
+	}
+
+	@Test
+	public final void testOverwriteIsAllowedWhenFull()
+	throws Exception {
+		final TestStorageMock storageMock = newStorageMock(2);
+		storageMock.createObject(CONTAINER, "a", 0, 1);
+		storageMock.createObject(CONTAINER, "b", 0, 1);
+		try {
+			storageMock.createObject(CONTAINER, "c", 0, 1);
+			fail("The new object should be rejected");
+		} catch(final StorageMockCapacityLimitReachedException ignored) {
+		}
+		storageMock.createObject(CONTAINER, "a", 0, 2);
+		assertEquals(2, storageMock.getSize());
+		assertEquals(3, storageMock.getSizeBytes());
+		storageMock.deleteObject(CONTAINER, "b", 0, -1);
+		storageMock.createObject(CONTAINER, "c", 0, 1);
+		assertEquals(2, storageMock.getSize());
+	}
+
+	@Test
+	public final void testConcurrentCreatesDontExceedCapacity()
+	throws Exception {
+		final int capacity = 1000;
+		final int threadCount = 8;
+		final TestStorageMock storageMock = newStorageMock(capacity);
+		final AtomicInteger createdCount = new AtomicInteger(0);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			executor.submit(
+				() -> {
+					for(int j = 0; j < capacity; j ++) {
+						try {
+							storageMock.createObject(CONTAINER, threadIndex + "-" + j, 0, 1);
+							createdCount.incrementAndGet();
+						} catch(final StorageMockCapacityLimitReachedException ignored) {
+						} catch(final Exception e) {
+							throw new AssertionError(e);
+						}
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertTrue(createdCount.get() <= capacity);
+		assertEquals(createdCount.get(), storageMock.getSize());
+	}
+}
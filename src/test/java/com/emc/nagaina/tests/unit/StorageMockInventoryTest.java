@@ -0,0 +1,145 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.ui.config.Config;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static com.emc.nagaina.api.StorageMock.DEFAULT_CONTAINER_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class StorageMockInventoryTest {
+
+	private static final String CONTAINER = "container0";
+	private static final int OBJ_COUNT = 1000;
+
+	private Path dir;
+	private Path inventoryFile;
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		dir = Files.createTempDirectory(StorageMockInventoryTest.class.getSimpleName());
+		inventoryFile = dir.resolve("inventory.bin");
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		try(final Stream<Path> files = Files.list(dir)) {
+			files.forEach(
+				file -> {
+					try {
+						Files.delete(file);
+					} catch(final IOException ignored) {
+					}
+				}
+			);
+		}
+		Files.delete(dir);
+	}
+
+	private Config newConfig(final String containerType)
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		final MockConfig mockConfig = config.getStorageConfig().getMockConfig();
+		mockConfig.getContainerConfig().setType(containerType);
+		mockConfig.getInventoryConfig().setFile(inventoryFile.toString());
+		return config;
+	}
+
+	private static String name(final long i) {
+		final String digits = Long.toString(i, Character.MAX_RADIX);
+		return "000000000000".substring(digits.length()) + digits;
+	}
+
+	private void testSaveAndLoad(final String containerType)
+	throws Exception {
+		try(final TestStorageMock storageMock = new TestStorageMock(newConfig(containerType))) {
+			storageMock.start();
+			storageMock.createContainer(CONTAINER);
+			for(long i = 0; i < OBJ_COUNT; i ++) {
+				storageMock.createObject(CONTAINER, name(i), i, i);
+			}
+			// not parsable id
+			storageMock.createObject(CONTAINER, "X", 0, 1);
+			storageMock.createObject(DEFAULT_CONTAINER_NAME, name(1), 1, 2);
+			storageMock.deleteObject(CONTAINER, name(0), 0, -1);
+		}
+		try(final TestStorageMock storageMock = new TestStorageMock(newConfig(containerType))) {
+			storageMock.start();
+			assertEquals(OBJ_COUNT + 1, storageMock.getSize());
+			assertNull(storageMock.getObject(CONTAINER, name(0), 0, 0));
+			DataItemMock obj;
+			for(long i = 1; i < OBJ_COUNT; i ++) {
+				obj = storageMock.getObject(CONTAINER, name(i), i, i);
+				assertNotNull(name(i), obj);
+				assertEquals(i, obj.offset());
+				assertEquals(i, obj.size());
+			}
+			assertEquals(1, storageMock.getObject(CONTAINER, "X", 0, 1).size());
+			assertEquals(2, storageMock.getObject(DEFAULT_CONTAINER_NAME, name(1), 1, 2).size());
+		}
+	}
+
+	@Test
+	public final void testLruContainers()
+	throws Exception {
+		testSaveAndLoad("lru");
+	}
+
+	@Test
+	public final void testConcurrentContainers()
+	throws Exception {
+		testSaveAndLoad("concurrent");
+	}
+
+	@Test
+	public final void testCompactContainers()
+	throws Exception {
+		testSaveAndLoad("compact");
+	}
+
+	@Test
+	public final void testOffHeapContainers()
+	throws Exception {
+		testSaveAndLoad("offheap");
+	}
+
+	@Test
+	public final void testItemInputFileIsIgnoredIfInventoryExists()
+	throws Exception {
+		final Path itemInputFile = dir.resolve("items.csv");
+		Files.write(
+			itemInputFile, Collections.singletonList("deleted,0,1,0/0"), StandardCharsets.UTF_8
+		);
+		// the item input file is loaded while there's no inventory yet
+		final Config config = newConfig("lru");
+		config.getItemConfig().getInputConfig().setFile(itemInputFile.toString());
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.start();
+			assertNotNull(storageMock.getObject(DEFAULT_CONTAINER_NAME, "deleted", 0, 1));
+			storageMock.deleteObject(DEFAULT_CONTAINER_NAME, "deleted", 0, -1);
+		}
+		// the deleted object shouldn't be restored from the item input file
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.start();
+			assertNull(storageMock.getObject(DEFAULT_CONTAINER_NAME, "deleted", 0, 1));
+			assertEquals(0, storageMock.getSize());
+		}
+	}
+}
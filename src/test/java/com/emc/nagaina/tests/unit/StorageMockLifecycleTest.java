@@ -0,0 +1,203 @@
+package com.emc.nagaina.tests.unit;
+
+import com.github.akurilov.commons.system.SizeInBytes;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.ObjectContainerMock;
+import com.emc.nagaina.api.ObjectContainerMock.EvictionPolicy;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.ConcurrentObjectContainerMock;
+import com.emc.nagaina.impl.base.StorageMockLifecycle;
+import com.emc.nagaina.impl.base.StorageMockUsage;
+import com.emc.nagaina.ui.config.Config;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class StorageMockLifecycleTest {
+
+	private static final String CONTAINER_NAME = "c1";
+
+	private static ObjectContainerMock<DataItemMock> newContainer() {
+		return new ConcurrentObjectContainerMock<>(
+			100000, new StorageMockUsage(null), EvictionPolicy.NONE, name -> {}
+		);
+	}
+
+	private static StorageMockLifecycle<DataItemMock> newLifecycle(
+		final long sizeLimit, final List<String> expired
+	) {
+		return new StorageMockLifecycle<>(
+			0, sizeLimit,
+			(containerName, container, name, expiredCheck) -> {
+				synchronized(container) {
+					if(expiredCheck.getAsBoolean() && container.remove(name) != null) {
+						expired.add(name);
+					}
+				}
+			}
+		);
+	}
+
+	private static void create(
+		final StorageMockLifecycle<DataItemMock> lifecycle,
+		final ObjectContainerMock<DataItemMock> container, final String name, final long size
+	) {
+		synchronized(container) {
+			container.put(name, new BasicDataItemMock(name, 0, size, 0));
+			lifecycle.created(CONTAINER_NAME, container, name);
+		}
+		lifecycle.applySizeLimit(CONTAINER_NAME);
+	}
+
+	@Test
+	public final void testExpiresTheOldestAboveSizeLimit()
+	throws Exception {
+		final List<String> expired = new ArrayList<>();
+		final ObjectContainerMock<DataItemMock> container = newContainer();
+		try(final StorageMockLifecycle<DataItemMock> lifecycle = newLifecycle(100, expired)) {
+			create(lifecycle, container, "a", 40);
+			create(lifecycle, container, "b", 40);
+			assertTrue(expired.isEmpty());
+			create(lifecycle, container, "c", 40);
+			assertEquals(Collections.singletonList("a"), expired);
+			create(lifecycle, container, "d", 90);
+			assertEquals(3, expired.size());
+			assertEquals("b", expired.get(1));
+			assertEquals("c", expired.get(2));
+			assertEquals(90, container.sizeBytes());
+		}
+	}
+
+	@Test
+	public final void testSkipsTheDeletedNames()
+	throws Exception {
+		final List<String> expired = new ArrayList<>();
+		final ObjectContainerMock<DataItemMock> container = newContainer();
+		try(final StorageMockLifecycle<DataItemMock> lifecycle = newLifecycle(100, expired)) {
+			create(lifecycle, container, "a", 50);
+			create(lifecycle, container, "b", 50);
+			container.remove("a");
+			create(lifecycle, container, "c", 50);
+			assertTrue(expired.isEmpty());
+			create(lifecycle, container, "d", 50);
+			// the deleted one is skipped
+			assertEquals(Collections.singletonList("b"), expired);
+			assertNotNull(container.get("c"));
+			assertNotNull(container.get("d"));
+		}
+	}
+
+	@Test
+	public final void testRecreatedExpireByLatestCreation()
+	throws Exception {
+		final List<String> expired = new ArrayList<>();
+		final ObjectContainerMock<DataItemMock> container = newContainer();
+		try(final StorageMockLifecycle<DataItemMock> lifecycle = newLifecycle(100, expired)) {
+			create(lifecycle, container, "a", 30);
+			create(lifecycle, container, "b", 30);
+			create(lifecycle, container, "c", 30);
+			// the overwrite and the deletion followed by the creation make the object the newest
+			create(lifecycle, container, "a", 30);
+			container.remove("b");
+			create(lifecycle, container, "b", 30);
+			assertTrue(expired.isEmpty());
+			create(lifecycle, container, "d", 30);
+			assertEquals(Collections.singletonList("c"), expired);
+			create(lifecycle, container, "e", 30);
+			assertEquals(Arrays.asList("c", "a"), expired);
+			assertNotNull(container.get("b"));
+		}
+	}
+
+	@Test
+	public final void testRestoredExpireFirst()
+	throws Exception {
+		final List<String> expired = new ArrayList<>();
+		final ObjectContainerMock<DataItemMock> container = newContainer();
+		try(final StorageMockLifecycle<DataItemMock> lifecycle = newLifecycle(100, expired)) {
+			for(final String name : new String[] { "x", "y", "z" }) {
+				container.put(name, new BasicDataItemMock(name, 0, 50, 0));
+				lifecycle.restored(CONTAINER_NAME, container, name);
+			}
+			// the size limit is not applied on the restoration
+			assertTrue(expired.isEmpty());
+			create(lifecycle, container, "a", 10);
+			assertEquals(2, expired.size());
+			assertEquals("x", expired.get(0));
+			assertEquals("y", expired.get(1));
+			assertNotNull(container.get("z"));
+			assertNotNull(container.get("a"));
+		}
+	}
+
+	@Test
+	public final void testConcurrentCreatesStayBounded()
+	throws Exception {
+		final int threadCount = 8;
+		final int countPerThread = 10000;
+		final long sizeLimit = 1000;
+		final List<String> expired = Collections.synchronizedList(new ArrayList<>());
+		final ObjectContainerMock<DataItemMock> container = newContainer();
+		try(final StorageMockLifecycle<DataItemMock> lifecycle = newLifecycle(sizeLimit, expired)) {
+			final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+			for(int i = 0; i < threadCount; i ++) {
+				final int threadIndex = i;
+				executor.submit(
+					() -> {
+						String name;
+						for(int j = 0; j < countPerThread; j ++) {
+							name = threadIndex + "-" + j;
+							create(lifecycle, container, name, 1);
+							// some objects are deleted by the other means
+							if(j % 3 == 0) {
+								container.remove(name);
+							}
+						}
+					}
+				);
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+			assertTrue(container.sizeBytes() <= sizeLimit);
+			assertEquals(container.size(), container.sizeBytes());
+		}
+	}
+
+	@Test
+	public final void testStorageRestoredObjectsExpire()
+	throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		config.getStorageConfig().getMockConfig().getContainerConfig().getLifecycleConfig()
+			.setSize(new SizeInBytes(100));
+		try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+			storageMock.createContainer(CONTAINER_NAME);
+			final List<DataItemMock> restored = new ArrayList<>();
+			restored.add(new BasicDataItemMock(CONTAINER_NAME + "/x", 0, 60, 0));
+			restored.add(new BasicDataItemMock(CONTAINER_NAME + "/y", 0, 30, 0));
+			storageMock.put(restored);
+			storageMock.createObject(CONTAINER_NAME, "a", 0, 20);
+			final ObjectContainerMock<DataItemMock> container = storageMock.getContainer(
+				CONTAINER_NAME
+			);
+			assertNull(container.get("x"));
+			assertNotNull(container.get("y"));
+			assertNotNull(container.get("a"));
+			assertEquals(50, container.sizeBytes());
+		}
+	}
+}
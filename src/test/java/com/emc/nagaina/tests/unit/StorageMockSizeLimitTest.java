@@ -0,0 +1,209 @@
+package com.emc.nagaina.tests.unit;
+
+import com.github.akurilov.commons.collection.Range;
+import com.github.akurilov.commons.system.SizeInBytes;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.api.exception.ObjectMockNotFoundException;
+import com.emc.nagaina.api.exception.StorageMockCapacityLimitReachedException;
+import com.emc.nagaina.ui.config.Config;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
+import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class StorageMockSizeLimitTest {
+
+	private static TestStorageMock newStorageMock(
+		final long storageSizeLimit, final long containerSizeLimit
+	) throws Exception {
+		final Config config = TestStorageMock.defaultConfig();
+		final MockConfig mockConfig = config.getStorageConfig().getMockConfig();
+		mockConfig.setSizeLimit(new SizeInBytes(storageSizeLimit));
+		mockConfig.getContainerConfig().setSizeLimit(new SizeInBytes(containerSizeLimit));
+		return new TestStorageMock(config);
+	}
+
+	private static void assertRejected(
+		final TestStorageMock storageMock, final String containerName, final long size
+	) throws Exception {
+		try {
+			storageMock.createObject(containerName, "rejected", 0, size);
+			fail("The object should be rejected");
+		} catch(final StorageMockCapacityLimitReachedException ignored) {
+		}
+	}
+
+	@Test
+	public final void testContainerSizeLimit()
+	throws Exception {
+		final TestStorageMock storageMock = newStorageMock(0, 100);
+		storageMock.createContainer("c1");
+		storageMock.createContainer("c2");
+		storageMock.createObject("c1", "a", 0, 60);
+		assertRejected(storageMock, "c1", 41);
+		storageMock.createObject("c1", "b", 0, 40);
+		// the other container has its own limit
+		storageMock.createObject("c2", "a", 0, 100);
+		assertEquals(200, storageMock.getSizeBytes());
+		// the append is limited too
+		try {
+			storageMock.updateObject("c1", "b", 0, new Range(-1, -1, 1));
+			fail("The append should be rejected");
+		} catch(final StorageMockCapacityLimitReachedException ignored) {
+		}
+		storageMock.deleteObject("c1", "a", 0, -1);
+		storageMock.updateObject("c1", "b", 0, new Range(-1, -1, 10));
+		assertEquals(50, storageMock.getContainer("c1").sizeBytes());
+	}
+
+	@Test
+	public final void testStorageSizeLimit()
+	throws Exception {
+		final TestStorageMock storageMock = newStorageMock(100, 0);
+		storageMock.createContainer("c1");
+		storageMock.createContainer("c2");
+		storageMock.createObject("c1", "a", 0, 60);
+		assertRejected(storageMock, "c2", 41);
+		storageMock.createObject("c2", "a", 0, 40);
+		assertEquals(100, storageMock.getSizeBytes());
+	}
+
+	@Test
+	public final void testConcurrentWritesDontExceedLimit()
+	throws Exception {
+		final long sizeLimit = 10000;
+		final TestStorageMock storageMock = newStorageMock(sizeLimit, 0);
+		storageMock.createContainer("c1");
+		final int threadCount = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			executor.submit(
+				() -> {
+					for(int j = 0; j < 1000; j ++) {
+						try {
+							storageMock.createObject("c1", threadIndex + "-" + j, 0, 7);
+						} catch(final StorageMockCapacityLimitReachedException ignored) {
+						} catch(final Exception e) {
+							throw new AssertionError(e);
+						}
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertTrue(storageMock.getSizeBytes() <= sizeLimit);
+		assertEquals(7 * storageMock.getSize(), storageMock.getSizeBytes());
+	}
+
+	@Test
+	public final void testConcurrentWritesFillTheLimit()
+	throws Exception {
+		final int threadCount = 8;
+		final int countPerThread = 1000;
+		final long sizeLimit = 7 * threadCount * countPerThread;
+		final TestStorageMock storageMock = newStorageMock(sizeLimit, sizeLimit);
+		storageMock.createContainer("c1");
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		final List<Future<?>> results = new ArrayList<>();
+		for(int i = 0; i < threadCount; i ++) {
+			final int threadIndex = i;
+			results.add(
+				executor.submit(
+					() -> {
+						for(int j = 0; j < countPerThread; j ++) {
+							storageMock.createObject("c1", threadIndex + "-" + j, 0, 7);
+						}
+						return null;
+					}
+				)
+			);
+		}
+		executor.shutdown();
+		// the object is accounted once, so none of the writes fitting the limit is rejected
+		for(final Future<?> result : results) {
+			result.get(1, TimeUnit.MINUTES);
+		}
+		assertEquals(threadCount * countPerThread, storageMock.getSize());
+		assertEquals(sizeLimit, storageMock.getSizeBytes());
+		assertEquals(sizeLimit, storageMock.getContainer("c1").sizeBytes());
+	}
+
+	@Test
+	public final void testAppendsRacingDeletesAndEvictions()
+	throws Exception {
+		final int objectCount = 64;
+		for(final String containerType : new String[] { "lru", "concurrent", "compact" }) {
+			final Config config = TestStorageMock.defaultConfig();
+			final ContainerConfig containerConfig = config
+				.getStorageConfig().getMockConfig().getContainerConfig();
+			containerConfig.setType(containerType);
+			// the creates evict the objects being appended
+			containerConfig.setCapacity(objectCount / 4);
+			try(final TestStorageMock storageMock = new TestStorageMock(config)) {
+				storageMock.createContainer("c1");
+				final ExecutorService executor = Executors.newFixedThreadPool(4);
+				final List<Future<?>> results = new ArrayList<>();
+				for(int i = 0; i < 4; i ++) {
+					final int threadIndex = i;
+					results.add(
+						executor.submit(
+							() -> {
+								final Random rnd = new Random(threadIndex);
+								for(int j = 0; j < 20000; j ++) {
+									final int n = rnd.nextInt(objectCount);
+									final String name = Integer.toString(n, 36);
+									if(threadIndex == 0) {
+										storageMock.createObject("c1", name, n, 1);
+									} else if(threadIndex == 1 && j % 2 == 0) {
+										storageMock.deleteObject("c1", name, 0, -1);
+									} else {
+										try {
+											storageMock.updateObject(
+												"c1", name, 0, new Range(-1, -1, 1)
+											);
+										} catch(final ObjectMockNotFoundException ignored) {
+										}
+									}
+								}
+								return null;
+							}
+						)
+					);
+				}
+				executor.shutdown();
+				for(final Future<?> result : results) {
+					result.get(1, TimeUnit.MINUTES);
+				}
+				// the appends to the deleted or evicted objects are not accounted
+				long sizeSum = 0;
+				for(int n = 0; n < objectCount; n ++) {
+					final DataItemMock obj = storageMock.getObject(
+						"c1", Integer.toString(n, 36), 0, 0
+					);
+					if(obj != null) {
+						sizeSum += obj.size();
+					}
+				}
+				assertEquals(containerType, sizeSum, storageMock.getSizeBytes());
+				assertEquals(containerType, sizeSum, storageMock.getContainer("c1").sizeBytes());
+			}
+		}
+	}
+}
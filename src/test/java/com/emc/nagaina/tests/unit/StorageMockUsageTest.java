@@ -0,0 +1,137 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.base.StorageMockUsage;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class StorageMockUsageTest {
+
+	@Test
+	public final void testChangesPropagateToParent()
+	throws Exception {
+		final StorageMockUsage storageUsage = new StorageMockUsage(null);
+		final StorageMockUsage containerUsage = new StorageMockUsage(storageUsage);
+		containerUsage.add(10);
+		containerUsage.add(20);
+		containerUsage.resize(5);
+		containerUsage.remove(10);
+		assertEquals(1, containerUsage.count());
+		assertEquals(25, containerUsage.bytes());
+		assertEquals(1, storageUsage.count());
+		assertEquals(25, storageUsage.bytes());
+		containerUsage.clear();
+		assertEquals(0, containerUsage.count());
+		assertEquals(0, storageUsage.count());
+		assertEquals(0, storageUsage.bytes());
+	}
+
+	@Test
+	public final void testSizeReservation()
+	throws Exception {
+		final StorageMockUsage storageUsage = new StorageMockUsage(null, 100);
+		final StorageMockUsage containerUsage = new StorageMockUsage(storageUsage, 60);
+		assertTrue(containerUsage.reserve(50));
+		// the container's limit
+		assertFalse(containerUsage.reserve(20));
+		containerUsage.add(50);
+		containerUsage.release(50);
+		assertEquals(50, containerUsage.bytes());
+		assertEquals(50, storageUsage.bytes());
+		storageUsage.add(40);
+		// the parent's limit, the failed reservation should be rolled back
+		assertFalse(containerUsage.reserve(10 + 1));
+		assertEquals(50, containerUsage.bytes());
+		assertEquals(90, storageUsage.bytes());
+	}
+
+	@Test
+	public final void testCountReservation()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null, 0, 2);
+		assertTrue(usage.reserveCount());
+		usage.add(1);
+		usage.releaseCount();
+		assertTrue(usage.reserveCount());
+		assertFalse(usage.reserveCount());
+		usage.add(1);
+		usage.releaseCount();
+		assertEquals(2, usage.count());
+		assertFalse(usage.reserveCount());
+		usage.remove(1);
+		assertTrue(usage.reserveCount());
+		usage.releaseCount();
+		assertEquals(1, usage.count());
+	}
+
+	@Test
+	public final void testReservationBecomesAccounting()
+	throws Exception {
+		final StorageMockUsage storageUsage = new StorageMockUsage(null, 0, 2);
+		final StorageMockUsage containerUsage = new StorageMockUsage(storageUsage, 100);
+		assertTrue(containerUsage.reserveCount());
+		assertTrue(containerUsage.reserve(60));
+		containerUsage.put(60, -1, true, true);
+		assertEquals(1, storageUsage.count());
+		assertEquals(60, containerUsage.bytes());
+		// the overwrite releases the replaced object and the excess count reservation
+		assertTrue(containerUsage.reserveCount());
+		assertTrue(containerUsage.reserve(30));
+		containerUsage.put(30, 60, true, true);
+		assertEquals(1, containerUsage.count());
+		assertEquals(30, containerUsage.bytes());
+		assertEquals(1, storageUsage.count());
+		assertEquals(30, storageUsage.bytes());
+		// the object which count isn't reserved
+		assertTrue(containerUsage.reserve(70));
+		containerUsage.put(70, -1, true, false);
+		assertEquals(2, storageUsage.count());
+		assertEquals(100, storageUsage.bytes());
+		assertFalse(containerUsage.reserve(1));
+	}
+
+	@Test
+	public final void testZeroCountLimitRejectsAll()
+	throws Exception {
+		final StorageMockUsage usage = new StorageMockUsage(null, 0, 0);
+		assertFalse(usage.reserveCount());
+		assertEquals(0, usage.count());
+	}
+
+	@Test
+	public final void testConcurrentCountReservationsDontExceedLimit()
+	throws Exception {
+		final int countLimit = 1000;
+		final int threadCount = 8;
+		final StorageMockUsage usage = new StorageMockUsage(null, 0, countLimit);
+		final AtomicInteger admittedCount = new AtomicInteger(0);
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					for(int j = 0; j < countLimit; j ++) {
+						if(usage.reserveCount()) {
+							usage.add(1);
+							usage.releaseCount();
+							admittedCount.incrementAndGet();
+						}
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertTrue(admittedCount.get() <= countLimit);
+		assertEquals(admittedCount.get(), usage.count());
+	}
+}
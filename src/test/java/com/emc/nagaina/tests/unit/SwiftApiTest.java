@@ -12,11 +12,6 @@ import com.emc.nagaina.impl.http.StorageMockFactory;
 import com.emc.nagaina.ui.config.Config;
 
 import com.emc.nagaina.ui.config.Config.ItemConfig.DataConfig.ContentConfig;
-import com.emc.nagaina.ui.config.Config.ItemConfig.NamingConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.ContainerConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.MockConfig.FailConfig;
-import com.emc.nagaina.ui.config.Config.StorageConfig.NetConfig;
 import com.emc.nagaina.ui.config.reader.jackson.ConfigParser;
 import static com.emc.nagaina.ui.config.Config.ItemConfig;
 import static com.emc.nagaina.ui.config.Config.StorageConfig;
@@ -96,23 +91,13 @@ public class SwiftApiTest {
 		this.concurrency = concurrency;
 		objIds = new ArrayList<>(objCount);
 
-		final MockConfig mockConfig = storageConfig.getMockConfig();
-		final ContainerConfig containerConfig = mockConfig.getContainerConfig();
-		final FailConfig failConfig = mockConfig.getFailConfig();
-		final NetConfig netConfig = storageConfig.getNetConfig();
-		final NamingConfig namingConfig = itemConfig.getNamingConfig();
 		final ContentConfig contentConfig = itemConfig.getDataConfig().getContentConfig();
 		final DataInput dataInput = DataInput.getInstance(
 			contentConfig.getFile(), contentConfig.getSeed(), contentConfig.getRingConfig().getSize(),
 			contentConfig.getRingConfig().getCache()
 		);
 
-		storageMock = new StorageMockFactory(
-			itemConfig.getInputConfig().getFile(), mockConfig.getCapacity(), containerConfig.getCapacity(),
-			containerConfig.getCountLimit(), (int) stepConfig.getMetricsConfig().getPeriod(), failConfig.getConnections(),
-			failConfig.getResponses(), dataInput, netConfig.getNodeConfig().getPort(), netConfig.getSsl(),
-			(float) stepConfig.getLimitConfig().getRate(), namingConfig.getPrefix(), namingConfig.getRadix()
-		)
+		storageMock = new StorageMockFactory(itemConfig, storageConfig, stepConfig, dataInput)
 			.newStorageMock();
 		storageMock.start();
 		
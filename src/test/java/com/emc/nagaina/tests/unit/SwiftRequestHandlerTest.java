@@ -0,0 +1,185 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.http.request.SwiftRequestHandler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class SwiftRequestHandlerTest {
+
+	private static final String CONTAINER_NAME = "c1";
+
+	private TestStorageMock storageMock;
+	private EmbeddedChannel channel;
+
+	/**
+	 The response head and the content
+	 */
+	private static final class Response {
+
+		private final HttpResponse head;
+		private final byte content[];
+
+		private Response(final HttpResponse head, final byte content[]) {
+			this.head = head;
+			this.content = content;
+		}
+
+		private String contentString() {
+			return new String(content, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Before
+	public final void setUp()
+	throws Exception {
+		storageMock = new TestStorageMock(TestStorageMock.defaultConfig());
+		storageMock.createContainer(CONTAINER_NAME);
+		channel = new EmbeddedChannel(
+			new SwiftRequestHandler<DataItemMock>(
+				null, null, null, null, null, null, Character.MAX_RADIX, storageMock, null
+			)
+		);
+	}
+
+	@After
+	public final void tearDown()
+	throws Exception {
+		channel.finishAndReleaseAll();
+		storageMock.close();
+	}
+
+	private Response request(final String uri) {
+		channel.writeInbound(new DefaultHttpRequest(HTTP_1_1, HttpMethod.GET, uri));
+		channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+		channel.flush();
+		final HttpResponse head = channel.readOutbound();
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		if(head instanceof FullHttpResponse) {
+			readContent(((FullHttpResponse) head).content(), content);
+		} else {
+			HttpContent chunk;
+			do {
+				chunk = channel.readOutbound();
+				readContent(chunk.content(), content);
+			} while(!(chunk instanceof LastHttpContent));
+		}
+		return new Response(head, content.toByteArray());
+	}
+
+	private static void readContent(final ByteBuf buff, final ByteArrayOutputStream out) {
+		final byte bytes[] = new byte[buff.readableBytes()];
+		buff.readBytes(bytes);
+		out.write(bytes, 0, bytes.length);
+		buff.release();
+	}
+
+	@Test
+	public final void testJsonList()
+	throws Exception {
+		storageMock.createObject(CONTAINER_NAME, "a", 0, 10);
+		storageMock.createObject(CONTAINER_NAME, "b\"c", 0, 20);
+		final Response response = request("/v1/ns1/" + CONTAINER_NAME);
+		assertEquals(HttpResponseStatus.OK, response.head.status());
+		assertTrue(
+			response.head.headers().get(HttpHeaderNames.CONTENT_TYPE).startsWith("application/json")
+		);
+		final JsonNode list = new ObjectMapper().readTree(response.content);
+		assertEquals(2, list.size());
+		final Set<String> names = new HashSet<>();
+		long bytes = 0;
+		for(final JsonNode entry : list) {
+			names.add(entry.get("name").asText());
+			bytes += entry.get("bytes").asLong();
+		}
+		assertEquals(new HashSet<>(Arrays.asList("a", "b\"c")), names);
+		assertEquals(30, bytes);
+	}
+
+	@Test
+	public final void testXmlList()
+	throws Exception {
+		storageMock.createObject(CONTAINER_NAME, "a&b", 0, 10);
+		final Response response = request("/v1/ns1/" + CONTAINER_NAME + "?format=xml");
+		assertEquals(HttpResponseStatus.OK, response.head.status());
+		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+			new ByteArrayInputStream(response.content)
+		);
+		assertEquals(CONTAINER_NAME, doc.getDocumentElement().getAttribute("name"));
+		assertEquals("a&b", doc.getElementsByTagName("name").item(0).getTextContent());
+		assertEquals("10", doc.getElementsByTagName("bytes").item(0).getTextContent());
+	}
+
+	@Test
+	public final void testPlainList()
+	throws Exception {
+		storageMock.createObject(CONTAINER_NAME, "a", 0, 10);
+		storageMock.createObject(CONTAINER_NAME, "b", 0, 10);
+		final Response response = request("/v1/ns1/" + CONTAINER_NAME + "?format=plain");
+		assertEquals(HttpResponseStatus.OK, response.head.status());
+		assertEquals(
+			new HashSet<>(Arrays.asList("a", "b")),
+			new HashSet<>(Arrays.asList(response.contentString().split("\n")))
+		);
+	}
+
+	@Test
+	public final void testLargeListIsChunked()
+	throws Exception {
+		final int count = 50_000;
+		for(int i = 0; i < count; i ++) {
+			storageMock.createObject(CONTAINER_NAME, "object-" + i, 0, i);
+		}
+		final Response response = request("/v1/ns1/" + CONTAINER_NAME + "?limit=" + count);
+		assertEquals(HttpResponseStatus.OK, response.head.status());
+		assertTrue(HttpUtil.isTransferEncodingChunked(response.head));
+		assertEquals(count, new ObjectMapper().readTree(response.content).size());
+	}
+
+	@Test
+	public final void testListErrors()
+	throws Exception {
+		assertEquals(
+			HttpResponseStatus.NO_CONTENT, request("/v1/ns1/" + CONTAINER_NAME).head.status()
+		);
+		assertEquals(HttpResponseStatus.NOT_FOUND, request("/v1/ns1/missing").head.status());
+		storageMock.createObject(CONTAINER_NAME, "a", 0, 10);
+		assertEquals(
+			HttpResponseStatus.BAD_REQUEST,
+			request("/v1/ns1/" + CONTAINER_NAME + "?format=yaml").head.status()
+		);
+	}
+}
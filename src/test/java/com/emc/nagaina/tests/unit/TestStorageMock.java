@@ -0,0 +1,74 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.mongoose.api.model.data.DataInput;
+
+import com.emc.nagaina.api.DataItemMock;
+import com.emc.nagaina.impl.base.BasicDataItemMock;
+import com.emc.nagaina.impl.base.StorageMockBase;
+import com.emc.nagaina.ui.config.Config;
+import com.emc.nagaina.ui.config.Config.ItemConfig.DataConfig.ContentConfig;
+import com.emc.nagaina.ui.config.reader.jackson.ConfigParser;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ The storage mock without the network front end, for the storage logic unit tests
+ */
+public final class TestStorageMock
+extends StorageMockBase<DataItemMock> {
+
+	public TestStorageMock(final Config config)
+	throws IOException {
+		super(
+			config.getItemConfig(), config.getStorageConfig(),
+			config.getTestConfig().getStepConfig(), newDataInput(config)
+		);
+	}
+
+	private static DataInput newDataInput(final Config config)
+	throws IOException {
+		final ContentConfig contentConfig = config
+			.getItemConfig().getDataConfig().getContentConfig();
+		return DataInput.getInstance(
+			contentConfig.getFile(), contentConfig.getSeed(),
+			contentConfig.getRingConfig().getSize(), contentConfig.getRingConfig().getCache()
+		);
+	}
+
+	/**
+	 @return the new default configuration instance which may be changed by the test
+	 */
+	public static Config defaultConfig()
+	throws IOException {
+		return ConfigParser.loadDefaultConfig();
+	}
+
+	@Override
+	protected final DataItemMock newDataObject(
+		final String id, final long offset, final long size
+	) {
+		return new BasicDataItemMock(id, offset, size, 0);
+	}
+
+	@Override
+	public final int getPort() {
+		return 0;
+	}
+
+	@Override
+	public final boolean sslEnabled() {
+		return false;
+	}
+
+	@Override
+	public final boolean chunkedContentEnabled() {
+		return false;
+	}
+
+	@Override
+	public final boolean await(final long timeout, final TimeUnit timeUnit) {
+		return true;
+	}
+}
@@ -0,0 +1,101 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.http.request.TokenBucketRateLimiter;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class TokenBucketRateLimiterTest {
+
+	private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	// the tolerance for the time passed between the acquisitions
+	private static final long EPSILON_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+	@Test(expected = IllegalArgumentException.class)
+	public final void testInvalidRate()
+	throws Exception {
+		new TokenBucketRateLimiter(0);
+	}
+
+	@Test
+	public final void testSequentialTokensAreDelayed()
+	throws Exception {
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10);
+		// the full bucket holds the current token and the burst worth of the tokens
+		assertEquals(0, limiter.acquire());
+		assertEquals(0, limiter.acquire());
+		for(int i = 1; i < 5; i ++) {
+			final long delayNanos = limiter.acquire();
+			assertTrue(delayNanos > i * INTERVAL_NANOS - EPSILON_NANOS);
+			assertTrue(delayNanos <= i * INTERVAL_NANOS);
+		}
+	}
+
+	@Test
+	public final void testUnusedTokensAreAccumulatedUpToTheBurst()
+	throws Exception {
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1000);
+		// the 10ms burst holds 10 tokens
+		Thread.sleep(50);
+		int undelayedCount = 0;
+		while(limiter.acquire() == 0) {
+			undelayedCount ++;
+		}
+		assertTrue(undelayedCount >= 10);
+		assertTrue(undelayedCount < 20);
+	}
+
+	@Test
+	public final void testManyTokensDelayTheNextCaller()
+	throws Exception {
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10);
+		assertEquals(0, limiter.acquire(3));
+		// the burst token is taken too
+		final long delayNanos = limiter.acquire();
+		assertTrue(delayNanos > 2 * INTERVAL_NANOS - EPSILON_NANOS);
+		assertTrue(delayNanos <= 2 * INTERVAL_NANOS);
+	}
+
+	@Test
+	public final void testConcurrentCallersTakeTheDistinctTokens()
+	throws Exception {
+		final int threadCount = 8;
+		final int tokenCount = 1000;
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10);
+		final Queue<Long> dueTimes = new ConcurrentLinkedQueue<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		for(int i = 0; i < threadCount; i ++) {
+			executor.submit(
+				() -> {
+					for(int j = 0; j < tokenCount / threadCount; j ++) {
+						dueTimes.add(System.nanoTime() + limiter.acquire());
+					}
+				}
+			);
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		final List<Long> sortedDueTimes = new ArrayList<>(dueTimes);
+		Collections.sort(sortedDueTimes);
+		assertEquals(tokenCount, sortedDueTimes.size());
+		// every token except the burst ones is due at its own interval
+		for(int i = 2; i < tokenCount; i ++) {
+			assertTrue(
+				sortedDueTimes.get(i) - sortedDueTimes.get(i - 1) > INTERVAL_NANOS - EPSILON_NANOS
+			);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.emc.nagaina.tests.unit;
+
+import com.emc.nagaina.impl.http.request.ResponseContentStream;
+import com.emc.nagaina.impl.http.request.XmlResponseWriter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ Created by agent on 17.10.26.
+ */
+public class XmlResponseWriterTest {
+
+	private static final String XML_DECLARATION =
+		"<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+
+	private static ChannelHandlerContext context(final EmbeddedChannel channel) {
+		return channel.pipeline().firstContext();
+	}
+
+	private static void readContent(final ByteBuf content, final ByteArrayOutputStream out) {
+		final byte bytes[] = new byte[content.readableBytes()];
+		content.readBytes(bytes);
+		out.write(bytes, 0, bytes.length);
+		content.release();
+	}
+
+	@Test
+	public final void testSmallDocument()
+	throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		final XmlResponseWriter xml = new XmlResponseWriter(
+			new ResponseContentStream(context(channel), null, "application/xml")
+		);
+		xml.startElement("Result", "xmlns", "urn:a&b");
+		xml.element("Name", "a&b<c>\"d'e");
+		xml.element("Unicode", "\u0444\u0430\u0439\u043b");
+		xml.element("Count", 42);
+		xml.element("IsTruncated", false);
+		xml.emptyElement("Prefix");
+		xml.endElement("Result");
+		xml.finish();
+		channel.flush();
+		final FullHttpResponse response = channel.readOutbound();
+		assertNull(channel.readOutbound());
+		assertEquals("application/xml", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+		assertFalse(HttpUtil.isTransferEncodingChunked(response));
+		final String expected = XML_DECLARATION + "<Result xmlns=\"urn:a&amp;b\">" +
+			"<Name>a&amp;b&lt;c&gt;&quot;d&apos;e</Name>" +
+			"<Unicode>\u0444\u0430\u0439\u043b</Unicode>" +
+			"<Count>42</Count><IsTruncated>false</IsTruncated><Prefix/></Result>";
+		final byte expectedBytes[] = expected.getBytes(StandardCharsets.UTF_8);
+		assertEquals(expectedBytes.length, HttpUtil.getContentLength(response));
+		assertEquals(expected, response.content().toString(StandardCharsets.UTF_8));
+		response.release();
+		assertFalse(channel.finish());
+	}
+
+	@Test
+	public final void testLargeDocumentIsChunked()
+	throws Exception {
+		final int count = 100_000;
+		final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		final XmlResponseWriter xml = new XmlResponseWriter(
+			new ResponseContentStream(context(channel), null, "application/xml")
+		);
+		xml.startElement("Result");
+		for(int i = 0; i < count; i ++) {
+			xml.startElement("Contents");
+			xml.element("Key", "object-with-a-long-enough-name-" + i);
+			xml.element("Size", i);
+			xml.endElement("Contents");
+		}
+		xml.endElement("Result");
+		xml.finish();
+		channel.flush();
+		final HttpResponse response = channel.readOutbound();
+		assertFalse(response instanceof FullHttpResponse);
+		assertTrue(HttpUtil.isTransferEncodingChunked(response));
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		int chunkCount = 0;
+		Object msg;
+		while(null != (msg = channel.readOutbound())) {
+			readContent(((HttpContent) msg).content(), content);
+			chunkCount ++;
+			if(msg instanceof LastHttpContent) {
+				break;
+			}
+		}
+		assertTrue(chunkCount > 1);
+		assertNull(channel.readOutbound());
+		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+			new ByteArrayInputStream(content.toByteArray())
+		);
+		assertEquals(count, doc.getElementsByTagName("Contents").getLength());
+		assertEquals(
+			"object-with-a-long-enough-name-" + (count - 1),
+			doc.getElementsByTagName("Key").item(count - 1).getTextContent()
+		);
+		assertFalse(channel.finish());
+	}
+
+	@Test
+	public final void testUnwritableChannelIsFlushed()
+	throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(1, 2));
+		final XmlResponseWriter xml = new XmlResponseWriter(
+			new ResponseContentStream(context(channel), null, "application/xml")
+		);
+		xml.startElement("Result");
+		for(int i = 0; i < 100_000; i ++) {
+			xml.element("Key", "object-with-a-long-enough-name-" + i);
+		}
+		// the chunks are sent before the response is finished and flushed
+		final HttpResponse response = channel.readOutbound();
+		assertTrue(HttpUtil.isTransferEncodingChunked(response));
+		final HttpContent chunk = channel.readOutbound();
+		assertTrue(chunk.content().readableBytes() > 0);
+		chunk.release();
+		xml.release();
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public final void testReleaseWithoutFinish()
+	throws Exception {
+		final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+		final ResponseContentStream out = new ResponseContentStream(
+			context(channel), null, "application/xml"
+		);
+		final ByteBuf buff = out.buffer();
+		final XmlResponseWriter xml = new XmlResponseWriter(out);
+		try {
+			xml.startElement("Result");
+			throw new IllegalStateException();
+		} catch(final IllegalStateException expected) {
+		} finally {
+			xml.release();
+		}
+		assertEquals(0, buff.refCnt());
+		// nothing is sent and the release is idempotent
+		xml.release();
+		channel.flush();
+		assertNull(channel.readOutbound());
+		assertFalse(channel.finish());
+	}
+}